@@ -15,6 +15,8 @@
 package org.openyolo.api;
 
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.openyolo.protocol.ProtocolConstants.BATCH_DELETE_CREDENTIAL_ACTION;
+import static org.openyolo.protocol.ProtocolConstants.BATCH_SAVE_CREDENTIAL_ACTION;
 import static org.openyolo.protocol.ProtocolConstants.DELETE_CREDENTIAL_ACTION;
 import static org.openyolo.protocol.ProtocolConstants.EXTRA_DELETE_REQUEST;
 import static org.openyolo.protocol.ProtocolConstants.EXTRA_HINT_REQUEST;
@@ -24,6 +26,8 @@ import static org.openyolo.protocol.ProtocolConstants.EXTRA_SAVE_REQUEST;
 import static org.openyolo.protocol.ProtocolConstants.EXTRA_SAVE_RESULT;
 import static org.openyolo.protocol.ProtocolConstants.HINT_CREDENTIAL_ACTION;
 import static org.openyolo.protocol.ProtocolConstants.OPENYOLO_CATEGORY;
+import static org.openyolo.protocol.ProtocolConstants.RETRIEVE_CREDENTIAL_ACTION;
+import static org.openyolo.protocol.ProtocolConstants.RETRIEVE_CREDENTIAL_OR_HINT_ACTION;
 import static org.openyolo.protocol.ProtocolConstants.SAVE_CREDENTIAL_ACTION;
 import static org.valid4j.Assertive.require;
 import static org.valid4j.Validation.validate;
@@ -31,6 +35,8 @@ import static org.valid4j.Validation.validate;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
@@ -38,17 +44,34 @@ import android.util.Log;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import org.openyolo.api.internal.ActivityResult;
+import org.openyolo.api.internal.CredentialOrHintRetrieveActivity;
 import org.openyolo.api.internal.CredentialRetrieveActivity;
+import org.openyolo.api.internal.CredentialRetrievePrefetcher;
+import org.openyolo.api.internal.CredentialRetrieveQuery;
 import org.openyolo.api.internal.FinishWithResultActivity;
+import org.openyolo.api.internal.FlowTracer;
+import org.openyolo.api.internal.HintAvailabilityQuery;
+import org.openyolo.api.internal.HintRetrieveActivity;
 import org.openyolo.api.internal.KnownProviders;
+import org.openyolo.api.internal.PendingProviderChoices;
+import org.openyolo.api.internal.ProviderEligibilityActivity;
+import org.openyolo.api.internal.ProviderEligibilityQuery;
 import org.openyolo.api.internal.ProviderPickerActivity;
-import org.openyolo.api.internal.ProviderResolver;
+import org.openyolo.api.internal.ProviderResolutionCache;
+import org.openyolo.api.internal.SilentRetrieveQuery;
 import org.openyolo.api.persistence.AppSettings;
 import org.openyolo.api.persistence.internal.AppSettingsImpl;
+import org.openyolo.api.persistence.internal.RememberedProviderSettings;
+import org.openyolo.protocol.AuthenticationDomain;
 import org.openyolo.protocol.Credential;
 import org.openyolo.protocol.CredentialDeleteRequest;
 import org.openyolo.protocol.CredentialDeleteResult;
+import org.openyolo.protocol.CredentialOrHintRetrieveRequest;
+import org.openyolo.protocol.CredentialOrHintRetrieveResult;
 import org.openyolo.protocol.CredentialRetrieveRequest;
 import org.openyolo.protocol.CredentialRetrieveResult;
 import org.openyolo.protocol.CredentialSaveRequest;
@@ -100,8 +123,63 @@ public class CredentialClient {
 
     private static final String LOG_TAG = "CredentialClient";
 
+    /**
+     * The library-owned executor on which the asynchronous intent builders resolve providers
+     * and encode requests. A single thread is sufficient, as each task is short and provider
+     * resolution is cached after the first.
+     */
+    private static final Executor INTENT_EXECUTOR = Executors.newSingleThreadExecutor();
+
     private final Context mApplicationContext;
     private final AppSettings mDeviceState;
+    private final RememberedProviderSettings mRememberedProviders;
+    private final boolean mKnownProvidersOnly;
+    private final ProviderResolutionCache mProviderCache;
+    private final Executor mIntentExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Receives an Intent built on a background thread by one of the asynchronous intent
+     * builders, such as {@link #getSaveIntentAsync(CredentialSaveRequest, IntentCallback)}.
+     */
+    public interface IntentCallback {
+
+        /**
+         * Invoked on the main thread with the Intent, exactly as it would have been returned by
+         * the equivalent synchronous method.
+         */
+        void onIntentReady(@NonNull Intent intent);
+    }
+
+    /**
+     * Receives the outcome of
+     * {@link #retrieveSilently(CredentialRetrieveRequest, SilentRetrieveCallback)}. Exactly one
+     * of the methods is invoked, on the main thread.
+     */
+    public interface SilentRetrieveCallback {
+
+        /**
+         * Invoked with the credential that was retrieved without user interaction.
+         */
+        void onCredentialRetrieved(@NonNull Credential credential);
+
+        /**
+         * Invoked when no credential could be retrieved silently. The app should use the
+         * interactive retrieve flow instead.
+         */
+        void onSilentRetrieveUnavailable();
+    }
+
+    /**
+     * Starts loading the persisted settings used by credential clients with the default options
+     * in the background, so that the first flow does not wait for them. This is typically
+     * called from {@link android.app.Application#onCreate()}; the load is otherwise started by
+     * the first call to {@link #getInstance(Context)}.
+     */
+    public static void preload(@NonNull Context context) {
+        validate(context, notNullValue(), NullPointerException.class);
+        AppSettingsImpl.getInstance(context);
+    }
 
     /**
      * Returns a new credential client instance configured with the default options.
@@ -127,11 +205,65 @@ public class CredentialClient {
     CredentialClient(
             @NonNull Context context,
             @NonNull CredentialClientOptions options) {
+        this(context, options, INTENT_EXECUTOR);
+    }
+
+    @VisibleForTesting
+    CredentialClient(
+            @NonNull Context context,
+            @NonNull CredentialClientOptions options,
+            @NonNull Executor intentExecutor) {
         validate(context, notNullValue(), NullPointerException.class);
         validate(options, notNullValue(), NullPointerException.class);
+        validate(intentExecutor, notNullValue(), NullPointerException.class);
 
         mApplicationContext = context.getApplicationContext();
         mDeviceState = options.getDeviceState();
+        mRememberedProviders = (mDeviceState instanceof RememberedProviderSettings)
+                ? (RememberedProviderSettings) mDeviceState
+                : RememberedProviderSettings.NONE;
+        mKnownProvidersOnly = options.isKnownProvidersOnly();
+        mProviderCache = ProviderResolutionCache.getInstance(mApplicationContext);
+        mIntentExecutor = intentExecutor;
+    }
+
+    /**
+     * Determines which OpenYOLO operations have at least one provider on the device, without
+     * starting any Activity. This can be used to avoid offering an operation, such as a sign in
+     * button, that would immediately conclude with a "no provider available" result.
+     *
+     * <p>Providers are resolved once and then held in memory until a package is added, changed
+     * or removed, so after the first resolution this is inexpensive enough to call from the
+     * main thread, for example while binding a view. The first call, or the first after a
+     * package change, queries the package manager; calling one of the asynchronous intent
+     * builders ahead of time performs that resolution off the main thread.
+     */
+    @NonNull
+    public ProviderAvailability getProviderAvailability() {
+        return new ProviderAvailability(
+                hasRetrieveProvider(),
+                !mProviderCache.getProviders(HINT_CREDENTIAL_ACTION).isEmpty(),
+                !mProviderCache.getProviders(SAVE_CREDENTIAL_ACTION).isEmpty(),
+                !mProviderCache.getProviders(DELETE_CREDENTIAL_ACTION).isEmpty());
+    }
+
+    private boolean hasRetrieveProvider() {
+        Set<String> retrieveProviders =
+                mProviderCache.getProviders(RETRIEVE_CREDENTIAL_ACTION).keySet();
+        if (!mKnownProvidersOnly) {
+            return !retrieveProviders.isEmpty();
+        }
+
+        // retrieve queries are restricted to known providers, so unknown providers do not
+        // count towards availability
+        KnownProviders knownProviders = KnownProviders.getInstance(mApplicationContext);
+        for (String providerPackage : retrieveProviders) {
+            if (knownProviders.isKnown(providerPackage)) {
+                return true;
+            }
+        }
+
+        return false;
     }
 
     /**
@@ -169,13 +301,182 @@ public class CredentialClient {
      */
     @NonNull
     public Intent getCredentialRetrieveIntent(CredentialRetrieveRequest request) {
-        if (mDeviceState.isAutoSignInDisabled()) {
-            request = new CredentialRetrieveRequest.Builder(request)
-                    .setRequireUserMediation(true)
-                    .build();
+        long startTimeMs = FlowTracer.now();
+        long flowId = FlowTracer.startFlow(RETRIEVE_CREDENTIAL_ACTION);
+        boolean sectionBegun = FlowTracer.beginSection(CredentialClientTracer.SPAN_CREATE_INTENT);
+        try {
+            return buildCredentialRetrieveIntent(request, flowId);
+        } finally {
+            FlowTracer.endSection(sectionBegun);
+            FlowTracer.span(
+                    RETRIEVE_CREDENTIAL_ACTION,
+                    flowId,
+                    CredentialClientTracer.SPAN_CREATE_INTENT,
+                    startTimeMs);
+        }
+    }
+
+    private Intent buildCredentialRetrieveIntent(
+            CredentialRetrieveRequest request,
+            long flowId) {
+        request = applyDeviceState(request);
+
+        // if the outcome was prefetched, the retrieve activity is not required
+        CredentialRetrieveQuery.Result prefetched =
+                CredentialRetrievePrefetcher.getInstance(mApplicationContext)
+                        .takeCompleted(request, mKnownProvidersOnly);
+        if (prefetched != null) {
+            CredentialRetrieveResult terminalResult = prefetched.getTerminalResult();
+            if (terminalResult == null) {
+                return prefetched.createContinuationIntent(mApplicationContext, flowId);
+            }
+
+            ActivityResult result = ActivityResult.of(
+                    terminalResult.getResultCode(),
+                    terminalResult.toResultDataIntent());
+            return FlowTracer.attach(
+                    FinishWithResultActivity.createIntent(mApplicationContext, result),
+                    flowId);
+        }
+
+        return FlowTracer.attach(
+                CredentialRetrieveActivity.createIntent(
+                        mApplicationContext,
+                        request,
+                        mKnownProvidersOnly,
+                        getRememberedRetrieveProvider()),
+                flowId);
+    }
+
+    /**
+     * Starts querying the credential providers on the device for the specified request in the
+     * background, so that a subsequent call to
+     * {@link #getCredentialRetrieveIntent(CredentialRetrieveRequest)} or
+     * {@link #prepareCredentialRetrieve(CredentialRetrieveRequest,
+     * PreparedCredentialRetrieve.Callback)} with an equal request can use the outcome rather
+     * than waiting for the providers to respond. This is typically called as early as possible,
+     * for example before the login screen is inflated.
+     *
+     * <p>If the user previously retrieved a credential through a provider, that provider is
+     * queried first, with a short deadline, before all other providers.
+     *
+     * <p>The outcome may be used at most once, and expires shortly after the query completes.
+     * It is also discarded if the set of installed packages changes, or if auto sign-in is
+     * disabled or re-enabled in the meantime.
+     */
+    public void prefetchCredentialRetrieve(@NonNull CredentialRetrieveRequest request) {
+        validate(request, notNullValue(), NullPointerException.class);
+        CredentialRetrievePrefetcher.getInstance(mApplicationContext)
+                .prefetch(
+                        applyDeviceState(request),
+                        mKnownProvidersOnly,
+                        getRememberedRetrieveProvider());
+    }
+
+    /**
+     * Determines, without starting any Activity, how a request for {@link Credential credentials}
+     * should proceed. The credential providers on the device are queried in-process, and the
+     * callback is then invoked on the main thread with either an Intent for the provider (or
+     * provider picker) that holds credentials, or a terminal result if none do.
+     *
+     * <p>This avoids the intermediate Activity started by
+     * {@link #getCredentialRetrieveIntent(CredentialRetrieveRequest)}, and allows the app to
+     * skip the retrieve flow entirely when no credentials are available:
+     *
+     * <pre>{@code
+     * client.prepareCredentialRetrieve(request, new PreparedCredentialRetrieve.Callback() {
+     *     @Override
+     *     public void onCredentialRetrievePrepared(PreparedCredentialRetrieve prepared) {
+     *         if (prepared.hasIntent()) {
+     *             startActivityForResult(prepared.getIntent(), RC_RETRIEVE_CREDENTIAL);
+     *         } else {
+     *             // no credentials available, continue with manual sign in
+     *         }
+     *     }
+     * });
+     * }</pre>
+     *
+     * @see #getCredentialRetrieveResult(Intent)
+     */
+    public void prepareCredentialRetrieve(
+            @NonNull CredentialRetrieveRequest request,
+            @NonNull final PreparedCredentialRetrieve.Callback callback) {
+        validate(request, notNullValue(), NullPointerException.class);
+        validate(callback, notNullValue(), NullPointerException.class);
+
+        request = applyDeviceState(request);
+        final long flowId = FlowTracer.startFlow(RETRIEVE_CREDENTIAL_ACTION);
+        final long queryStartTimeMs = FlowTracer.now();
+        CredentialRetrieveQuery.Callback queryCallback = new CredentialRetrieveQuery.Callback() {
+            @Override
+            public void onComplete(@NonNull CredentialRetrieveQuery.Result result) {
+                FlowTracer.span(
+                        RETRIEVE_CREDENTIAL_ACTION,
+                        flowId,
+                        CredentialClientTracer.SPAN_PROVIDER_QUERY,
+                        queryStartTimeMs);
+                deliverPreparedRetrieve(result, flowId, callback);
+            }
+        };
+
+        if (!CredentialRetrievePrefetcher.getInstance(mApplicationContext)
+                .take(request, mKnownProvidersOnly, queryCallback)) {
+            CredentialRetrieveQuery.start(
+                    mApplicationContext,
+                    request,
+                    mKnownProvidersOnly,
+                    getRememberedRetrieveProvider(),
+                    queryCallback);
         }
+    }
 
-        return CredentialRetrieveActivity.createIntent(mApplicationContext, request);
+    /**
+     * Attempts to retrieve a {@link Credential credential} without starting any Activity, for
+     * apps that sign the user in automatically on launch. The credential providers on the
+     * device are queried in-process, and a provider may return a credential directly if it is
+     * the only one for this app and the user has not opted this app out of silent retrieval.
+     * Only known providers, and the provider the user explicitly chose for credential
+     * retrieval, are queried, regardless of
+     * {@link CredentialClientOptions.Builder#setKnownProvidersOnly(boolean)}.
+     *
+     * <p>The credential is returned unencrypted in the provider's response. Restricting the
+     * query to these trusted providers is the only protection it has.
+     *
+     * <p>Silent retrieval is never available if the request requires user mediation, or if auto
+     * sign-in has been disabled. In that case, or if no single provider can return a
+     * credential, {@link SilentRetrieveCallback#onSilentRetrieveUnavailable()} is invoked, and
+     * the app should fall back to
+     * {@link #getCredentialRetrieveIntent(CredentialRetrieveRequest)}.
+     */
+    public void retrieveSilently(
+            @NonNull CredentialRetrieveRequest request,
+            @NonNull final SilentRetrieveCallback callback) {
+        validate(request, notNullValue(), NullPointerException.class);
+        validate(callback, notNullValue(), NullPointerException.class);
+
+        request = applyDeviceState(request);
+        if (request.getRequireUserMediation()) {
+            deliverSilentRetrieve(null, callback);
+            return;
+        }
+
+        final long flowId = FlowTracer.startFlow(RETRIEVE_CREDENTIAL_ACTION);
+        final long queryStartTimeMs = FlowTracer.now();
+        SilentRetrieveQuery.start(
+                mApplicationContext,
+                request,
+                getRememberedRetrieveProvider(),
+                new SilentRetrieveQuery.Callback() {
+                    @Override
+                    public void onComplete(@Nullable Credential credential) {
+                        FlowTracer.span(
+                                RETRIEVE_CREDENTIAL_ACTION,
+                                flowId,
+                                CredentialClientTracer.SPAN_PROVIDER_QUERY,
+                                queryStartTimeMs);
+                        deliverSilentRetrieve(credential, callback);
+                    }
+                });
     }
 
     /**
@@ -213,32 +514,184 @@ public class CredentialClient {
      */
     @NonNull
     public Intent getHintRetrieveIntent(final HintRetrieveRequest request) {
+        long startTimeMs = FlowTracer.now();
+        long flowId = FlowTracer.startFlow(HINT_CREDENTIAL_ACTION);
+        boolean sectionBegun = FlowTracer.beginSection(CredentialClientTracer.SPAN_CREATE_INTENT);
+        try {
+            return buildHintRetrieveIntent(request, flowId);
+        } finally {
+            FlowTracer.endSection(sectionBegun);
+            FlowTracer.span(
+                    HINT_CREDENTIAL_ACTION,
+                    flowId,
+                    CredentialClientTracer.SPAN_CREATE_INTENT,
+                    startTimeMs);
+        }
+    }
+
+    /**
+     * Asynchronously provides an Activity intent to request any available
+     * {@link org.openyolo.protocol.Hint hints}. Provider resolution and request encoding are
+     * performed on a background thread, rather than on the calling thread as for
+     * {@link #getHintRetrieveIntent(HintRetrieveRequest)}; the Intent is delivered to the
+     * callback on the main thread, and is used in exactly the same way.
+     */
+    public void getHintRetrieveIntentAsync(
+            @NonNull final HintRetrieveRequest request,
+            @NonNull IntentCallback callback) {
+        validate(request, notNullValue(), NullPointerException.class);
+        validate(callback, notNullValue(), NullPointerException.class);
+
+        buildIntentAsync(callback, new IntentBuilder() {
+            @Override
+            public Intent build() {
+                return getHintRetrieveIntent(request);
+            }
+        });
+    }
+
+    private Intent buildHintRetrieveIntent(HintRetrieveRequest request, long flowId) {
         List<ComponentName> hintProviders =
-                ProviderResolver.findProviders(mApplicationContext, HINT_CREDENTIAL_ACTION);
+                mProviderCache.getProviderComponents(HINT_CREDENTIAL_ACTION);
 
         if (hintProviders.isEmpty()) {
             ActivityResult result = ActivityResult.of(
                     HintRetrieveResult.CODE_NO_PROVIDER_AVAILABLE,
                     HintRetrieveResult.NO_PROVIDER_AVAILABLE.toResultDataIntent());
 
-            return FinishWithResultActivity.createIntent(mApplicationContext, result);
+            return FlowTracer.attach(
+                    FinishWithResultActivity.createIntent(mApplicationContext, result),
+                    flowId);
         }
 
-        byte[] encodedRequest = request.toProtocolBuffer().toByteArray();
+        byte[] encodedRequest = request.toProtocolBufferBytes();
+        ComponentName preferredProviderActivity =
+                getPreferredProvider(hintProviders, HINT_CREDENTIAL_ACTION);
+
+        // a preferred provider that cannot report whether it has hints available would be
+        // invoked regardless of the query outcome, so it is directly invoked.
+        Set<String> queryableProviders = HintAvailabilityQuery.getQueryableProviders(
+                mApplicationContext,
+                getPackageNames(hintProviders));
+        if (preferredProviderActivity != null
+                && !queryableProviders.contains(preferredProviderActivity.getPackageName())) {
+            PendingProviderChoices.record(
+                    HINT_CREDENTIAL_ACTION,
+                    preferredProviderActivity.getPackageName());
+            FlowTracer.providerLaunched(HINT_CREDENTIAL_ACTION, flowId);
+            return createHintIntent(preferredProviderActivity, encodedRequest);
+        }
 
-        // if there is a preferred provider, directly invoke it.
-        ComponentName preferredProviderActivity = getPreferredProvider(hintProviders);
+        // if any provider can report whether it has hints available, query before invoking
+        // any provider, so that providers without hints can be omitted. A preferred provider
+        // is queried alone first, with a short deadline.
+        if (!queryableProviders.isEmpty()) {
+            ArrayList<Intent> hintIntents = new ArrayList<>();
+            for (ComponentName providerActivity : hintProviders) {
+                hintIntents.add(createHintIntent(providerActivity, encodedRequest));
+            }
+
+            return FlowTracer.attach(
+                    HintRetrieveActivity.createIntent(
+                            mApplicationContext,
+                            request,
+                            hintIntents,
+                            preferredProviderActivity != null
+                                    ? preferredProviderActivity.getPackageName()
+                                    : null),
+                    flowId);
+        }
+
+        // otherwise, display a picker for all the providers.
+        return createHintPickerIntent(hintProviders, encodedRequest, flowId);
+    }
+
+    /**
+     * Provides an Activity intent to request a {@link Credential credential} or, if none is
+     * available, a {@link org.openyolo.protocol.Hint hint}, in a single flow. The providers are
+     * queried for credentials once, and if none have credentials available the hint flow is
+     * started directly, without the additional provider query and return to the calling app
+     * that would be required by following a failed credential request with
+     * {@link #getHintRetrieveIntent(HintRetrieveRequest)}.
+     *
+     * <p>Launch the returned intent via
+     * {@link android.app.Activity#startActivityForResult(Intent, int)} and extract the result via
+     * {@link #getCredentialOrHintRetrieveResult(Intent)}:
+     *
+     * <pre>{@code
+     * CredentialOrHintRetrieveResult result = client.getCredentialOrHintRetrieveResult(data);
+     * if (result.getCredential() != null) {
+     *     // sign the user in with the credential
+     * } else if (result.getHint() != null) {
+     *     // offer to create an account from the hint
+     * }
+     * }</pre>
+     *
+     * @see #getCredentialOrHintRetrieveResult(Intent)
+     */
+    @NonNull
+    public Intent getCredentialOrHintRetrieveIntent(
+            @NonNull CredentialOrHintRetrieveRequest request) {
+        validate(request, notNullValue(), NullPointerException.class);
+
+        long startTimeMs = FlowTracer.now();
+        long flowId = FlowTracer.startFlow(RETRIEVE_CREDENTIAL_ACTION);
+        boolean sectionBegun = FlowTracer.beginSection(CredentialClientTracer.SPAN_CREATE_INTENT);
+        try {
+            request = CredentialOrHintRetrieveRequest.fromRequests(
+                    applyDeviceState(request.getCredentialRetrieveRequest()),
+                    request.getHintRetrieveRequest());
+
+            return FlowTracer.attach(
+                    CredentialOrHintRetrieveActivity.createIntent(
+                            mApplicationContext,
+                            request,
+                            mKnownProvidersOnly,
+                            getRememberedRetrieveProvider(),
+                            createHintFallbackIntent(request.getHintRetrieveRequest(), flowId)),
+                    flowId);
+        } finally {
+            FlowTracer.endSection(sectionBegun);
+            FlowTracer.span(
+                    RETRIEVE_CREDENTIAL_ACTION,
+                    flowId,
+                    CredentialClientTracer.SPAN_CREATE_INTENT,
+                    startTimeMs);
+        }
+    }
+
+    @Nullable
+    private Intent createHintFallbackIntent(HintRetrieveRequest request, long flowId) {
+        List<ComponentName> hintProviders =
+                mProviderCache.getProviderComponents(HINT_CREDENTIAL_ACTION);
+        if (hintProviders.isEmpty()) {
+            return null;
+        }
+
+        // hint availability is not queried, as that would reintroduce the second query that
+        // the combined flow exists to avoid.
+        byte[] encodedRequest = request.toProtocolBufferBytes();
+        ComponentName preferredProviderActivity =
+                getPreferredProvider(hintProviders, HINT_CREDENTIAL_ACTION);
         if (preferredProviderActivity != null) {
             return createHintIntent(preferredProviderActivity, encodedRequest);
         }
 
-        // otherwise, display a picker for all the providers.
+        return createHintPickerIntent(hintProviders, encodedRequest, flowId);
+    }
+
+    private Intent createHintPickerIntent(
+            List<ComponentName> hintProviders,
+            byte[] encodedRequest,
+            long flowId) {
         ArrayList<Intent> hintIntents = new ArrayList<>();
         for (ComponentName providerActivity : hintProviders) {
             hintIntents.add(createHintIntent(providerActivity, encodedRequest));
         }
 
-        return ProviderPickerActivity.createHintIntent(mApplicationContext, hintIntents);
+        return FlowTracer.attach(
+                ProviderPickerActivity.createHintIntent(mApplicationContext, hintIntents),
+                flowId);
     }
 
     /**
@@ -283,36 +736,124 @@ public class CredentialClient {
      */
     @NonNull
     public Intent getSaveIntent(final CredentialSaveRequest saveRequest) {
-        List<ComponentName> saveProviders =
-                ProviderResolver.findProviders(mApplicationContext, SAVE_CREDENTIAL_ACTION);
+        return getSaveIntent(saveRequest, SAVE_CREDENTIAL_ACTION);
+    }
+
+    /**
+     * Provides an Activity intent to save all of the provided credentials, which must be
+     * non-empty, in a single interaction with the provider. Only providers that declare support
+     * for {@link org.openyolo.protocol.ProtocolConstants#BATCH_SAVE_CREDENTIAL_ACTION batch
+     * saves} are offered.
+     *
+     * Launch the returned intent via
+     * {@link android.app.Activity#startActivityForResult(Intent, int)} and extract the result via
+     * {@link #getBatchSaveResult(Intent)} using the Intent data received in the associated
+     * {@link android.app.Activity#onActivityResult(int, int, Intent)} callback. The outcome for
+     * each credential is available from {@link CredentialSaveResult#getItemResultCodes()}.
+     *
+     * @see #getBatchSaveResult(Intent)
+     */
+    @NonNull
+    public Intent getBatchSaveIntent(@NonNull List<Credential> credentials) {
+        require(credentials, notNullValue());
+
+        return getSaveIntent(
+                CredentialSaveRequest.fromCredentials(credentials),
+                BATCH_SAVE_CREDENTIAL_ACTION);
+    }
+
+    /**
+     * Asynchronously provides an Activity intent to save the provided credential. Provider
+     * resolution and request encoding are performed on a background thread, rather than on the
+     * calling thread as for {@link #getSaveIntent(CredentialSaveRequest)}; the Intent is
+     * delivered to the callback on the main thread, and is used in exactly the same way.
+     */
+    public void getSaveIntentAsync(
+            @NonNull final CredentialSaveRequest saveRequest,
+            @NonNull IntentCallback callback) {
+        validate(saveRequest, notNullValue(), NullPointerException.class);
+        validate(callback, notNullValue(), NullPointerException.class);
+
+        buildIntentAsync(callback, new IntentBuilder() {
+            @Override
+            public Intent build() {
+                return getSaveIntent(saveRequest);
+            }
+        });
+    }
+
+    private Intent getSaveIntent(CredentialSaveRequest saveRequest, String action) {
+        long startTimeMs = FlowTracer.now();
+        long flowId = FlowTracer.startFlow(action);
+        boolean sectionBegun = FlowTracer.beginSection(CredentialClientTracer.SPAN_CREATE_INTENT);
+        try {
+            return buildSaveIntent(saveRequest, action, flowId);
+        } finally {
+            FlowTracer.endSection(sectionBegun);
+            FlowTracer.span(
+                    action,
+                    flowId,
+                    CredentialClientTracer.SPAN_CREATE_INTENT,
+                    startTimeMs);
+        }
+    }
+
+    private Intent buildSaveIntent(
+            CredentialSaveRequest saveRequest,
+            String action,
+            long flowId) {
+        List<ComponentName> saveProviders = mProviderCache.getProviderComponents(action);
 
         if (saveProviders.isEmpty()) {
             ActivityResult result = ActivityResult.of(
                     CredentialSaveResult.CODE_NO_PROVIDER_AVAILABLE,
                     CredentialSaveResult.NO_PROVIDER_AVAILABLE.toResultDataIntent());
 
-            return FinishWithResultActivity.createIntent(mApplicationContext, result);
+            return FlowTracer.attach(
+                    FinishWithResultActivity.createIntent(mApplicationContext, result),
+                    flowId);
+        }
+
+        byte[] encodedSaveRequest = saveRequest.toProtocolBufferBytes();
+        ArrayList<Intent> saveIntents = new ArrayList<>(saveProviders.size());
+        for (ComponentName providerActivity : saveProviders) {
+            saveIntents.add(createSaveIntent(
+                    providerActivity,
+                    action,
+                    encodedSaveRequest));
         }
 
-        byte[] encodedSaveRequest = saveRequest.toProtocolBuffer().toByteArray();
+        ComponentName preferredSaveActivity = getPreferredProvider(saveProviders, action);
+
+        // if any provider can report whether it would refuse the save, determine this before
+        // invoking any provider, so that refusing providers are omitted.
+        Intent eligibilityIntent = createEligibilityIntent(
+                action,
+                encodedSaveRequest,
+                saveIntents,
+                preferredSaveActivity,
+                ActivityResult.of(
+                        CredentialSaveResult.CODE_PROVIDER_REFUSED,
+                        CredentialSaveResult.PROVIDER_REFUSED.toResultDataIntent()),
+                flowId);
+        if (eligibilityIntent != null) {
+            return eligibilityIntent;
+        }
 
         // if there is a preferred provider, directly invoke it.
-        ComponentName preferredSaveActivity = getPreferredProvider(saveProviders);
         if (preferredSaveActivity != null) {
+            PendingProviderChoices.record(action, preferredSaveActivity.getPackageName());
+            FlowTracer.providerLaunched(action, flowId);
             return createSaveIntent(
                     preferredSaveActivity,
+                    action,
                     encodedSaveRequest);
         }
 
         // otherwise, display a picker for all the providers.
-        ArrayList<Intent> saveIntents = new ArrayList<>(saveProviders.size());
-        for (ComponentName providerActivity : saveProviders) {
-            saveIntents.add(createSaveIntent(
-                    providerActivity,
-                    encodedSaveRequest));
-        }
-
-        return ProviderPickerActivity.createSaveIntent(mApplicationContext, saveIntents);
+        return FlowTracer.attach(
+                ProviderPickerActivity.createSaveIntent(mApplicationContext, saveIntents),
+                flowId);
     }
 
     /**
@@ -361,34 +902,161 @@ public class CredentialClient {
     public Intent getDeleteIntent(@NonNull CredentialDeleteRequest request) {
         require(request, notNullValue());
 
-        List<ComponentName> deleteProviders =
-                ProviderResolver.findProviders(mApplicationContext, DELETE_CREDENTIAL_ACTION);
+        return getDeleteIntent(request, DELETE_CREDENTIAL_ACTION);
+    }
+
+    /**
+     * Provides an Activity intent to delete all of the provided credentials, which must be
+     * non-empty, in a single interaction with the provider. Only providers that declare support
+     * for {@link org.openyolo.protocol.ProtocolConstants#BATCH_DELETE_CREDENTIAL_ACTION batch
+     * deletes} are offered.
+     *
+     * Launch the returned intent via
+     * {@link android.app.Activity#startActivityForResult(Intent, int)} and extract the result via
+     * {@link #getBatchDeleteResult(Intent)} using the Intent data received in the associated
+     * {@link android.app.Activity#onActivityResult(int, int, Intent)} callback. The outcome for
+     * each credential is available from {@link CredentialDeleteResult#getItemResultCodes()}.
+     *
+     * @see #getBatchDeleteResult(Intent)
+     */
+    @NonNull
+    public Intent getBatchDeleteIntent(@NonNull List<Credential> credentials) {
+        require(credentials, notNullValue());
+
+        return getDeleteIntent(
+                CredentialDeleteRequest.fromCredentials(credentials),
+                BATCH_DELETE_CREDENTIAL_ACTION);
+    }
+
+    /**
+     * Asynchronously provides an Activity intent to delete the given credential. Provider
+     * resolution and request encoding are performed on a background thread, rather than on the
+     * calling thread as for {@link #getDeleteIntent(CredentialDeleteRequest)}; the Intent is
+     * delivered to the callback on the main thread, and is used in exactly the same way.
+     */
+    public void getDeleteIntentAsync(
+            @NonNull final CredentialDeleteRequest request,
+            @NonNull IntentCallback callback) {
+        validate(request, notNullValue(), NullPointerException.class);
+        validate(callback, notNullValue(), NullPointerException.class);
+
+        buildIntentAsync(callback, new IntentBuilder() {
+            @Override
+            public Intent build() {
+                return getDeleteIntent(request);
+            }
+        });
+    }
+
+    private Intent getDeleteIntent(CredentialDeleteRequest request, String action) {
+        long startTimeMs = FlowTracer.now();
+        long flowId = FlowTracer.startFlow(action);
+        boolean sectionBegun = FlowTracer.beginSection(CredentialClientTracer.SPAN_CREATE_INTENT);
+        try {
+            return buildDeleteIntent(request, action, flowId);
+        } finally {
+            FlowTracer.endSection(sectionBegun);
+            FlowTracer.span(
+                    action,
+                    flowId,
+                    CredentialClientTracer.SPAN_CREATE_INTENT,
+                    startTimeMs);
+        }
+    }
+
+    private Intent buildDeleteIntent(
+            CredentialDeleteRequest request,
+            String action,
+            long flowId) {
+        List<ComponentName> deleteProviders = mProviderCache.getProviderComponents(action);
 
         if (deleteProviders.isEmpty()) {
             ActivityResult result = ActivityResult.of(
                     CredentialDeleteResult.CODE_NO_PROVIDER_AVAILABLE,
                     CredentialDeleteResult.NO_PROVIDER_AVAILABLE.toResultDataIntent());
 
-            return FinishWithResultActivity.createIntent(mApplicationContext, result);
+            return FlowTracer.attach(
+                    FinishWithResultActivity.createIntent(mApplicationContext, result),
+                    flowId);
+        }
+
+        byte[] encodedRequest = request.toProtobufBytes();
+        ArrayList<Intent> deleteIntents = new ArrayList<>(deleteProviders.size());
+        for (ComponentName providerActivity : deleteProviders) {
+            deleteIntents.add(createDeleteIntent(
+                    providerActivity,
+                    action,
+                    encodedRequest));
         }
 
-        byte[] encodedRequest = request.toProtobuf().toByteArray();
+        ComponentName preferredDeleteActivity = getPreferredProvider(deleteProviders, action);
+
+        // if any provider can report whether it stores a matching credential, determine this
+        // before invoking any provider, so that providers without a match are omitted.
+        Intent eligibilityIntent = createEligibilityIntent(
+                action,
+                encodedRequest,
+                deleteIntents,
+                preferredDeleteActivity,
+                ActivityResult.of(
+                        CredentialDeleteResult.CODE_NO_MATCHING_CREDENTIAL,
+                        CredentialDeleteResult.NO_MATCHING_CREDENTIAL.toResultDataIntent()),
+                flowId);
+        if (eligibilityIntent != null) {
+            return eligibilityIntent;
+        }
 
         // if there is a preferred provider, directly invoke it.
-        ComponentName preferredDeleteActivity = getPreferredProvider(deleteProviders);
         if (preferredDeleteActivity != null) {
-            return createDeleteIntent(preferredDeleteActivity, encodedRequest);
+            PendingProviderChoices.record(action, preferredDeleteActivity.getPackageName());
+            FlowTracer.providerLaunched(action, flowId);
+            return createDeleteIntent(preferredDeleteActivity, action, encodedRequest);
         }
 
         // otherwise, display a picker for all the providers
-        ArrayList<Intent> deleteIntents = new ArrayList<>(deleteProviders.size());
-        for (ComponentName providerActivity : deleteProviders) {
-            deleteIntents.add(createDeleteIntent(
-                    providerActivity,
-                    encodedRequest));
+        return FlowTracer.attach(
+                ProviderPickerActivity.createDeleteIntent(mApplicationContext, deleteIntents),
+                flowId);
+    }
+
+    @Nullable
+    private Intent createEligibilityIntent(
+            String action,
+            byte[] encodedRequest,
+            ArrayList<Intent> providerIntents,
+            @Nullable ComponentName preferredProvider,
+            ActivityResult declinedResult,
+            long flowId) {
+        ArrayList<String> providerPackages = new ArrayList<>(providerIntents.size());
+        for (Intent providerIntent : providerIntents) {
+            providerPackages.add(providerIntent.getComponent().getPackageName());
+        }
+
+        Set<String> queryableProviders = ProviderEligibilityQuery.getQueryableProviders(
+                mApplicationContext,
+                ProviderEligibilityQuery.getDataTypeForAction(action),
+                providerPackages);
+        if (queryableProviders.isEmpty()) {
+            return null;
+        }
+
+        // a preferred provider that cannot decline would be invoked regardless of the query
+        // outcome, so no query is needed. Otherwise, it is queried alone first, with a short
+        // deadline.
+        if (preferredProvider != null
+                && !queryableProviders.contains(preferredProvider.getPackageName())) {
+            return null;
         }
 
-        return ProviderPickerActivity.createDeleteIntent(mApplicationContext, deleteIntents);
+        return FlowTracer.attach(
+                ProviderEligibilityActivity.createIntent(
+                        mApplicationContext,
+                        action,
+                        encodedRequest,
+                        providerIntents,
+                        preferredProvider != null ? preferredProvider.getPackageName() : null,
+                        declinedResult),
+                flowId);
     }
 
     private Intent createIntent(ComponentName component, String action) {
@@ -408,16 +1076,18 @@ public class CredentialClient {
 
     private Intent createSaveIntent(
             ComponentName providerActivity,
+            String action,
             byte[] encodedSaveRequest) {
-        Intent saveIntent = createIntent(providerActivity, SAVE_CREDENTIAL_ACTION);
+        Intent saveIntent = createIntent(providerActivity, action);
         saveIntent.putExtra(EXTRA_SAVE_REQUEST, encodedSaveRequest);
         return saveIntent;
     }
 
     private Intent createDeleteIntent(
             ComponentName providerActivity,
+            String action,
             byte[] deleteRequest) {
-        Intent deleteIntent = createIntent(providerActivity, DELETE_CREDENTIAL_ACTION);
+        Intent deleteIntent = createIntent(providerActivity, action);
         deleteIntent.putExtra(EXTRA_DELETE_REQUEST, deleteRequest);
         return deleteIntent;
     }
@@ -453,6 +1123,18 @@ public class CredentialClient {
     @NonNull
     public CredentialRetrieveResult getCredentialRetrieveResult(
             @Nullable Intent resultData) {
+        long parseStartTimeMs = FlowTracer.now();
+        boolean sectionBegun = FlowTracer.beginSection(CredentialClientTracer.SPAN_PARSE_RESULT);
+        try {
+            return parseCredentialRetrieveResult(resultData);
+        } finally {
+            FlowTracer.endSection(sectionBegun);
+            FlowTracer.finishFlow(RETRIEVE_CREDENTIAL_ACTION, resultData, parseStartTimeMs);
+        }
+    }
+
+    private CredentialRetrieveResult parseCredentialRetrieveResult(
+            @Nullable Intent resultData) {
         if (resultData == null) {
             Log.i(LOG_TAG, "resultData is null, returning default response");
             return CredentialRetrieveResult.UNKNOWN;
@@ -478,6 +1160,10 @@ public class CredentialClient {
                 mDeviceState.setIsAutoSignInDisabled(false);
             }
 
+            rememberPendingProvider(
+                    RETRIEVE_CREDENTIAL_ACTION,
+                    CredentialRetrieveResult.CODE_CREDENTIAL_SELECTED == result.getResultCode());
+
             return result;
         } catch (MalformedDataException ex) {
             Log.e(LOG_TAG, "validation of result proto failed, returning default response", ex);
@@ -485,6 +1171,39 @@ public class CredentialClient {
         }
     }
 
+    /**
+     * Returns the result of a combined credential or hint retrieve flow, started via
+     * {@link #getCredentialOrHintRetrieveIntent(CredentialOrHintRetrieveRequest)}. The result
+     * carries a hint result if the flow fell back to retrieving a hint, and a credential
+     * result otherwise.
+     */
+    @NonNull
+    public CredentialOrHintRetrieveResult getCredentialOrHintRetrieveResult(
+            @Nullable Intent resultData) {
+        // a provider that handled the combined action is remembered as a retrieve provider
+        PendingProviderChoices.Choice combinedProvider =
+                PendingProviderChoices.takeChoice(RETRIEVE_CREDENTIAL_OR_HINT_ACTION);
+        if (combinedProvider != null) {
+            PendingProviderChoices.record(RETRIEVE_CREDENTIAL_ACTION, combinedProvider);
+        }
+
+        long parseStartTimeMs = FlowTracer.now();
+        boolean sectionBegun = FlowTracer.beginSection(CredentialClientTracer.SPAN_PARSE_RESULT);
+        try {
+            if (resultData != null && resultData.hasExtra(EXTRA_HINT_RESULT)) {
+                PendingProviderChoices.take(RETRIEVE_CREDENTIAL_ACTION);
+                return CredentialOrHintRetrieveResult.fromHintRetrieveResult(
+                        parseHintRetrieveResult(resultData));
+            }
+
+            return CredentialOrHintRetrieveResult.fromCredentialRetrieveResult(
+                    parseCredentialRetrieveResult(resultData));
+        } finally {
+            FlowTracer.endSection(sectionBegun);
+            FlowTracer.finishFlow(RETRIEVE_CREDENTIAL_ACTION, resultData, parseStartTimeMs);
+        }
+    }
+
     /**
      * Returns the result of a {@link HintRetrieveResult}.
      *
@@ -515,6 +1234,17 @@ public class CredentialClient {
      */
     @NonNull
     public HintRetrieveResult getHintRetrieveResult(Intent resultData) {
+        long parseStartTimeMs = FlowTracer.now();
+        boolean sectionBegun = FlowTracer.beginSection(CredentialClientTracer.SPAN_PARSE_RESULT);
+        try {
+            return parseHintRetrieveResult(resultData);
+        } finally {
+            FlowTracer.endSection(sectionBegun);
+            FlowTracer.finishFlow(HINT_CREDENTIAL_ACTION, resultData, parseStartTimeMs);
+        }
+    }
+
+    private HintRetrieveResult parseHintRetrieveResult(Intent resultData) {
         if (resultData == null) {
             Log.i(LOG_TAG, "resultData is null, returning default response");
             return HintRetrieveResult.UNKNOWN;
@@ -532,7 +1262,11 @@ public class CredentialClient {
         }
 
         try {
-            return HintRetrieveResult.fromProtobufBytes(resultBytes);
+            HintRetrieveResult result = HintRetrieveResult.fromProtobufBytes(resultBytes);
+            rememberPendingProvider(
+                    HINT_CREDENTIAL_ACTION,
+                    HintRetrieveResult.CODE_HINT_SELECTED == result.getResultCode());
+            return result;
         } catch (MalformedDataException ex) {
             Log.e(LOG_TAG, "hint result is malformed, returning default response", ex);
             return HintRetrieveResult.UNKNOWN;
@@ -561,6 +1295,31 @@ public class CredentialClient {
      */
     @NonNull
     public CredentialSaveResult getCredentialSaveResult(Intent resultData) {
+        return getSaveResult(resultData, SAVE_CREDENTIAL_ACTION);
+    }
+
+    /**
+     * Returns the result of a batch save, initiated via {@link #getBatchSaveIntent(List)}. The
+     * outcome for each credential, in the order provided, is available from
+     * {@link CredentialSaveResult#getItemResultCodes()}.
+     */
+    @NonNull
+    public CredentialSaveResult getBatchSaveResult(Intent resultData) {
+        return getSaveResult(resultData, BATCH_SAVE_CREDENTIAL_ACTION);
+    }
+
+    private CredentialSaveResult getSaveResult(Intent resultData, String action) {
+        long parseStartTimeMs = FlowTracer.now();
+        boolean sectionBegun = FlowTracer.beginSection(CredentialClientTracer.SPAN_PARSE_RESULT);
+        try {
+            return parseCredentialSaveResult(resultData, action);
+        } finally {
+            FlowTracer.endSection(sectionBegun);
+            FlowTracer.finishFlow(action, resultData, parseStartTimeMs);
+        }
+    }
+
+    private CredentialSaveResult parseCredentialSaveResult(Intent resultData, String action) {
         if (resultData == null) {
             Log.i(LOG_TAG, "resultData is null, returning default response");
             return CredentialSaveResult.UNKNOWN;
@@ -573,7 +1332,11 @@ public class CredentialClient {
         }
 
         try {
-            return CredentialSaveResult.fromProtobufBytes(resultBytes);
+            CredentialSaveResult result = CredentialSaveResult.fromProtobufBytes(resultBytes);
+            rememberPendingProvider(
+                    action,
+                    CredentialSaveResult.CODE_SAVED == result.getResultCode());
+            return result;
         } catch (MalformedDataException ex) {
             Log.e(LOG_TAG, "save result is malformed, returning default response", ex);
             return CredentialSaveResult.UNKNOWN;
@@ -602,8 +1365,39 @@ public class CredentialClient {
      */
     @NonNull
     public CredentialDeleteResult getCredentialDeleteResult(Intent resultData) {
+        return getDeleteResult(resultData, DELETE_CREDENTIAL_ACTION);
+    }
+
+    /**
+     * Returns the result of a batch deletion, initiated via {@link #getBatchDeleteIntent(List)}.
+     * The outcome for each credential, in the order provided, is available from
+     * {@link CredentialDeleteResult#getItemResultCodes()}.
+     */
+    @NonNull
+    public CredentialDeleteResult getBatchDeleteResult(Intent resultData) {
+        return getDeleteResult(resultData, BATCH_DELETE_CREDENTIAL_ACTION);
+    }
+
+    private CredentialDeleteResult getDeleteResult(Intent resultData, String action) {
+        long parseStartTimeMs = FlowTracer.now();
+        boolean sectionBegun = FlowTracer.beginSection(CredentialClientTracer.SPAN_PARSE_RESULT);
         try {
-            return CredentialDeleteResult.fromResultIntentData(resultData);
+            return parseCredentialDeleteResult(resultData, action);
+        } finally {
+            FlowTracer.endSection(sectionBegun);
+            FlowTracer.finishFlow(action, resultData, parseStartTimeMs);
+        }
+    }
+
+    private CredentialDeleteResult parseCredentialDeleteResult(
+            Intent resultData,
+            String action) {
+        try {
+            CredentialDeleteResult result = CredentialDeleteResult.fromResultIntentData(resultData);
+            rememberPendingProvider(
+                    action,
+                    CredentialDeleteResult.CODE_DELETED == result.getResultCode());
+            return result;
         } catch (MalformedDataException ex) {
             Log.w(LOG_TAG, "delete result is missing or malformed, returning default response", ex);
             return CredentialDeleteResult.UNKNOWN;
@@ -634,8 +1428,177 @@ public class CredentialClient {
         mDeviceState.setIsAutoSignInDisabled(true);
     }
 
+    /**
+     * Sets the tracer that receives timing spans for each OpenYOLO flow initiated by any
+     * credential client in this process, or clears it if {@code null}. Tracing is disabled by
+     * default, and imposes no overhead beyond a field read while disabled. While enabled, the
+     * construction of intents and parsing of results are also marked as trace sections on
+     * API 18 and above, so that they are visible in systrace.
+     */
+    public static void setTracer(@Nullable CredentialClientTracer tracer) {
+        FlowTracer.setTracer(tracer);
+    }
+
+    /**
+     * Forgets the providers that the user previously completed each operation with. Subsequent
+     * operations will query all providers, and display the provider picker where there is no
+     * preferred provider, until the user again completes an operation with a provider.
+     *
+     * <p>The provider that last completed each operation successfully is otherwise remembered,
+     * and invoked directly (or, for credential retrieval, queried first) while it remains
+     * installed with the same signature.
+     */
+    public void resetRememberedProviders() {
+        for (String action : ProviderResolutionCache.PROVIDER_ACTIONS) {
+            PendingProviderChoices.take(action);
+            mRememberedProviders.setRememberedProvider(action, null);
+        }
+    }
+
+    private CredentialRetrieveRequest applyDeviceState(CredentialRetrieveRequest request) {
+        if (mDeviceState.isAutoSignInDisabled()) {
+            return new CredentialRetrieveRequest.Builder(request)
+                    .setRequireUserMediation(true)
+                    .build();
+        }
+
+        return request;
+    }
+
+    private void buildIntentAsync(
+            @NonNull final IntentCallback callback,
+            @NonNull final IntentBuilder intentBuilder) {
+        mIntentExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Intent intent = intentBuilder.build();
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onIntentReady(intent);
+                    }
+                });
+            }
+        });
+    }
+
+    private void deliverPreparedRetrieve(
+            final CredentialRetrieveQuery.Result result,
+            long flowId,
+            final PreparedCredentialRetrieve.Callback callback) {
+        final PreparedCredentialRetrieve prepared = new PreparedCredentialRetrieve(
+                result.createContinuationIntent(mApplicationContext, flowId),
+                result.getTerminalResult());
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onCredentialRetrievePrepared(prepared);
+            }
+        });
+    }
+
+    private void deliverSilentRetrieve(
+            @Nullable final Credential credential,
+            final SilentRetrieveCallback callback) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (credential != null) {
+                    callback.onCredentialRetrieved(credential);
+                } else {
+                    callback.onSilentRetrieveUnavailable();
+                }
+            }
+        });
+    }
+
+    private void rememberPendingProvider(@NonNull String action, boolean successful) {
+        PendingProviderChoices.Choice choice = PendingProviderChoices.takeChoice(action);
+        if (!successful || choice == null) {
+            return;
+        }
+
+        String providerPackageName = choice.getProviderPackageName();
+        AuthenticationDomain provider =
+                AuthenticationDomain.fromPackageName(mApplicationContext, providerPackageName);
+        if (provider == null) {
+            return;
+        }
+
+        if (choice.isUserChoice()) {
+            mRememberedProviders.setRememberedProvider(action, provider, true /* userChosen */);
+        } else if (KnownProviders.getInstance(mApplicationContext).isKnown(providerPackageName)) {
+            mRememberedProviders.setRememberedProvider(action, provider);
+        }
+
+        // An unknown provider that was launched automatically is not remembered: doing so would
+        // let it be invoked directly in later flows without the picker's unknown provider warning.
+        // A previously remembered user choice of that provider is left in place.
+    }
+
     @Nullable
-    private ComponentName getPreferredProvider(@NonNull List<ComponentName> providers) {
+    private String getRememberedRetrieveProvider() {
+        ComponentName rememberedProvider = getRememberedProvider(
+                mProviderCache.getProviderComponents(RETRIEVE_CREDENTIAL_ACTION),
+                RETRIEVE_CREDENTIAL_ACTION);
+        return (rememberedProvider != null) ? rememberedProvider.getPackageName() : null;
+    }
+
+    @Nullable
+    private ComponentName getRememberedProvider(
+            @NonNull List<ComponentName> providers,
+            @NonNull String action) {
+        AuthenticationDomain rememberedProvider =
+                mRememberedProviders.getRememberedProvider(action);
+        if (rememberedProvider == null) {
+            return null;
+        }
+
+        if (rememberedProvider.isAndroidAuthDomain()) {
+            String packageName = rememberedProvider.getAndroidPackageName();
+            for (ComponentName provider : providers) {
+                if (provider.getPackageName().equals(packageName)) {
+                    // the package must still be signed by the same key as when it was remembered
+                    if (rememberedProvider.equals(
+                            AuthenticationDomain.fromPackageName(
+                                    mApplicationContext,
+                                    packageName))
+                            && isTrustedRememberedProvider(packageName, action)) {
+                        return provider;
+                    }
+
+                    break;
+                }
+            }
+        }
+
+        Log.i(LOG_TAG, "Remembered provider is no longer available or trusted for " + action);
+        mRememberedProviders.setRememberedProvider(action, null);
+        return null;
+    }
+
+    /**
+     * A remembered provider is only invoked directly if it is known, or if the user explicitly
+     * chose it in the provider picker and was therefore shown any unknown provider warning.
+     */
+    private boolean isTrustedRememberedProvider(
+            @NonNull String packageName,
+            @NonNull String action) {
+        return KnownProviders.getInstance(mApplicationContext).isKnown(packageName)
+                || mRememberedProviders.isRememberedProviderUserChosen(action);
+    }
+
+    @Nullable
+    private ComponentName getPreferredProvider(
+            @NonNull List<ComponentName> providers,
+            @NonNull String action) {
+        // If the user previously completed this operation with a provider that is still present,
+        // it is the preferred provider.
+        ComponentName rememberedProvider = getRememberedProvider(providers, action);
+        if (rememberedProvider != null) {
+            return rememberedProvider;
+        }
+
         // In the future, the user will be able to explicitly set their preferred provider in
         // their device settings. For now, we heuristically determine the preferred provider based
         // on the following rules:
@@ -686,6 +1649,15 @@ public class CredentialClient {
         return filteredProviders;
     }
 
+    private List<String> getPackageNames(List<ComponentName> providers) {
+        ArrayList<String> packageNames = new ArrayList<>(providers.size());
+        for (ComponentName provider : providers) {
+            packageNames.add(provider.getPackageName());
+        }
+
+        return packageNames;
+    }
+
     private List<ComponentName> filterOutGoogle(List<ComponentName> providers) {
         Iterator<ComponentName> providerIter = providers.iterator();
         while (providerIter.hasNext()) {
@@ -698,4 +1670,8 @@ public class CredentialClient {
 
         return providers;
     }
+
+    private interface IntentBuilder {
+        Intent build();
+    }
 }
@@ -29,9 +29,11 @@ import org.openyolo.api.persistence.AppSettings;
  */
 public class CredentialClientOptions {
     private final AppSettings mAppSettings;
+    private final boolean mKnownProvidersOnly;
 
     private CredentialClientOptions(Builder builder) {
         mAppSettings = builder.mAppSettings;
+        mKnownProvidersOnly = builder.mKnownProvidersOnly;
     }
 
     @NonNull
@@ -39,11 +41,16 @@ public class CredentialClientOptions {
         return mAppSettings;
     }
 
+    boolean isKnownProvidersOnly() {
+        return mKnownProvidersOnly;
+    }
+
     /**
      * Builder for {@link CredentialClientOptions}.
      */
     public static final class Builder {
         private AppSettings mAppSettings;
+        private boolean mKnownProvidersOnly = false;
 
         /**
          * Default builder for {@link CredentialClientOptions}.
@@ -63,6 +70,17 @@ public class CredentialClientOptions {
             return this;
         }
 
+        /**
+         * Specifies whether credential retrieval queries should only be sent to providers on the
+         * {@link org.openyolo.api.internal.KnownProviders known provider list}. Unknown providers
+         * are then never queried, reducing the number of broadcasts sent. Defaults to
+         * {@code false}.
+         */
+        public Builder setKnownProvidersOnly(boolean knownProvidersOnly) {
+            mKnownProvidersOnly = knownProvidersOnly;
+            return this;
+        }
+
         /**
          * Returns a new {@link CredentialClientOptions} instance based on the configuration of this
          * builder.
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Receives timing spans for the operations of {@link CredentialClient}, for performance
+ * monitoring. Register a tracer via {@link CredentialClient#setTracer(CredentialClientTracer)}.
+ *
+ * <p>Each operation is assigned a flow identifier when its intent is created, which is carried
+ * through the intermediate activities of the flow and returned with its result, so that the
+ * spans of a single operation can be correlated. The spans of a flow are:
+ * <ul>
+ *     <li>{@link #SPAN_CREATE_INTENT}: creating the intent for the operation.</li>
+ *     <li>{@link #SPAN_PROVIDER_QUERY}: querying the providers for available credentials
+ *         (credential retrieval only).</li>
+ *     <li>{@link #SPAN_PROVIDER_PICKER}: displaying the provider picker, until the user
+ *         chooses a provider.</li>
+ *     <li>{@link #SPAN_PROVIDER_ACTIVITY}: from handing the operation to a provider until its
+ *         result is parsed.</li>
+ *     <li>{@link #SPAN_PARSE_RESULT}: parsing the result of the operation.</li>
+ *     <li>{@link #SPAN_FLOW}: the whole operation, from creating the intent until its result
+ *         is parsed.</li>
+ * </ul>
+ *
+ * <p>The same spans are also emitted as {@link android.os.Trace} sections where they occur on
+ * a single thread, while a tracer is registered. When no tracer is registered, tracing has no
+ * cost beyond a single field read at each span.
+ */
+public interface CredentialClientTracer {
+
+    /**
+     * The span for creating the intent for an operation.
+     */
+    String SPAN_CREATE_INTENT = "createIntent";
+
+    /**
+     * The span for querying the providers for available credentials.
+     */
+    String SPAN_PROVIDER_QUERY = "providerQuery";
+
+    /**
+     * The span for displaying the provider picker, until the user chooses a provider.
+     */
+    String SPAN_PROVIDER_PICKER = "providerPicker";
+
+    /**
+     * The span from handing the operation to a provider, until its result is parsed.
+     */
+    String SPAN_PROVIDER_ACTIVITY = "providerActivity";
+
+    /**
+     * The span for parsing the result of an operation.
+     */
+    String SPAN_PARSE_RESULT = "parseResult";
+
+    /**
+     * The span for a whole operation, from creating its intent until its result is parsed.
+     */
+    String SPAN_FLOW = "flow";
+
+    /**
+     * Invoked when a span completes. This may be invoked on any thread, and should return
+     * quickly.
+     *
+     * @param action the OpenYOLO action of the operation, such as
+     *     {@link org.openyolo.protocol.ProtocolConstants#RETRIEVE_CREDENTIAL_ACTION}.
+     * @param flowId the identifier of the operation, which is the same for all of its spans.
+     * @param spanName the name of the span, one of the {@code SPAN_} constants.
+     * @param startTimeMs the start of the span, in the
+     *     {@link android.os.SystemClock#elapsedRealtime()} time base.
+     * @param durationMs the duration of the span.
+     */
+    void onSpan(
+            @NonNull String action,
+            long flowId,
+            @NonNull String spanName,
+            long startTimeMs,
+            long durationMs);
+}
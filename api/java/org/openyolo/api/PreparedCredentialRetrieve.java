@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api;
+
+import android.content.Intent;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import org.openyolo.protocol.CredentialRetrieveRequest;
+import org.openyolo.protocol.CredentialRetrieveResult;
+
+/**
+ * The outcome of
+ * {@link CredentialClient#prepareCredentialRetrieve(CredentialRetrieveRequest,
+ * PreparedCredentialRetrieve.Callback)}. Either an Intent is available, which continues the
+ * retrieve flow with the provider (or provider picker) that holds credentials, or the flow has
+ * already concluded with a terminal {@link CredentialRetrieveResult}.
+ */
+public final class PreparedCredentialRetrieve {
+
+    /**
+     * Receives the outcome of a prepared credential retrieve.
+     */
+    public interface Callback {
+
+        /**
+         * Invoked on the main thread once the credential retrieve has been prepared.
+         */
+        void onCredentialRetrievePrepared(@NonNull PreparedCredentialRetrieve prepared);
+    }
+
+    @Nullable
+    private final Intent mIntent;
+
+    @Nullable
+    private final CredentialRetrieveResult mResult;
+
+    PreparedCredentialRetrieve(
+            @Nullable Intent intent,
+            @Nullable CredentialRetrieveResult result) {
+        mIntent = intent;
+        mResult = result;
+    }
+
+    /**
+     * Indicates whether the retrieve flow must be continued by launching {@link #getIntent()}.
+     */
+    public boolean hasIntent() {
+        return mIntent != null;
+    }
+
+    /**
+     * The Intent that continues the retrieve flow, if available. Launch it via
+     * {@link android.app.Activity#startActivityForResult(Intent, int)} and extract the result
+     * via {@link CredentialClient#getCredentialRetrieveResult(Intent)}, exactly as for an
+     * Intent returned by
+     * {@link CredentialClient#getCredentialRetrieveIntent(CredentialRetrieveRequest)}.
+     */
+    @Nullable
+    public Intent getIntent() {
+        return mIntent;
+    }
+
+    /**
+     * The terminal result of the retrieve flow, if no Intent is available. This will be either
+     * {@link CredentialRetrieveResult#NO_PROVIDER_AVAILABLE} or
+     * {@link CredentialRetrieveResult#PROVIDER_TIMEOUT}.
+     */
+    @Nullable
+    public CredentialRetrieveResult getResult() {
+        return mResult;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api;
+
+/**
+ * Describes which OpenYOLO operations have at least one provider installed on the device, as
+ * returned by {@link CredentialClient#getProviderAvailability()}. This allows an app to decide
+ * whether to offer an operation at all, such as whether to display a sign in button, without
+ * starting a flow that would immediately conclude with a "no provider available" result.
+ *
+ * <p>The availability of a provider does not imply that the provider holds any credentials or
+ * hints for the app; that can only be determined by starting the corresponding flow.
+ */
+public final class ProviderAvailability {
+
+    private final boolean mRetrieveAvailable;
+    private final boolean mHintAvailable;
+    private final boolean mSaveAvailable;
+    private final boolean mDeleteAvailable;
+
+    ProviderAvailability(
+            boolean retrieveAvailable,
+            boolean hintAvailable,
+            boolean saveAvailable,
+            boolean deleteAvailable) {
+        mRetrieveAvailable = retrieveAvailable;
+        mHintAvailable = hintAvailable;
+        mSaveAvailable = saveAvailable;
+        mDeleteAvailable = deleteAvailable;
+    }
+
+    /**
+     * Indicates whether any provider can handle a credential retrieve request.
+     */
+    public boolean isRetrieveAvailable() {
+        return mRetrieveAvailable;
+    }
+
+    /**
+     * Indicates whether any provider can handle a hint retrieve request.
+     */
+    public boolean isHintAvailable() {
+        return mHintAvailable;
+    }
+
+    /**
+     * Indicates whether any provider can handle a credential save request.
+     */
+    public boolean isSaveAvailable() {
+        return mSaveAvailable;
+    }
+
+    /**
+     * Indicates whether any provider can handle a credential delete request.
+     */
+    public boolean isDeleteAvailable() {
+        return mDeleteAvailable;
+    }
+}
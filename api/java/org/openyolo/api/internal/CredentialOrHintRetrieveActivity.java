@@ -0,0 +1,169 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.openyolo.protocol.ProtocolConstants.HINT_CREDENTIAL_ACTION;
+import static org.openyolo.protocol.ProtocolConstants.RETRIEVE_CREDENTIAL_ACTION;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.WindowManager.LayoutParams;
+import org.openyolo.api.CredentialClientTracer;
+import org.openyolo.protocol.CredentialOrHintRetrieveRequest;
+import org.openyolo.protocol.CredentialRetrieveRequest;
+import org.openyolo.protocol.CredentialRetrieveResult;
+
+/**
+ * An invisible Activity that forwards a given {@link CredentialOrHintRetrieveRequest} to the
+ * credential providers with credentials available, or if there are none, to the hint flow. A
+ * single provider query is used to make this determination, so falling back to the hint flow
+ * incurs no additional query or round trip through the calling app.
+ */
+public final class CredentialOrHintRetrieveActivity extends Activity {
+
+    private static final String EXTRA_REQUEST = "Request";
+    private static final String EXTRA_COMBINED_REQUEST = "CombinedRequest";
+    private static final String EXTRA_KNOWN_PROVIDERS_ONLY = "KnownProvidersOnly";
+    private static final String EXTRA_PREFERRED_PROVIDER = "PreferredProvider";
+    private static final String EXTRA_HINT_INTENT = "HintIntent";
+
+    private boolean mIsDestroyed = false;
+    private long mFlowId = FlowTracer.NO_FLOW;
+    private long mQueryStartTimeMs;
+
+    /**
+     * Returns an Intent for {@link CredentialOrHintRetrieveActivity} for the given combined
+     * request, optionally restricting the query to {@link KnownProviders known providers}. If
+     * a preferred provider package is specified, it is queried before all other providers. If
+     * no provider has credentials available, the specified hint intent is invoked; if there is
+     * no hint intent, the credential retrieve result is returned instead.
+     */
+    public static Intent createIntent(
+            Context context,
+            CredentialOrHintRetrieveRequest request,
+            boolean knownProvidersOnly,
+            @Nullable String preferredProvider,
+            @Nullable Intent hintIntent) {
+        return new Intent()
+                .setClass(context, CredentialOrHintRetrieveActivity.class)
+                .putExtra(EXTRA_REQUEST, request.getCredentialRetrieveRequest())
+                .putExtra(EXTRA_COMBINED_REQUEST, request.toProtocolBufferBytes())
+                .putExtra(EXTRA_KNOWN_PROVIDERS_ONLY, knownProvidersOnly)
+                .putExtra(EXTRA_PREFERRED_PROVIDER, preferredProvider)
+                .putExtra(EXTRA_HINT_INTENT, hintIntent);
+    }
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        getWindow().addFlags(LayoutParams.FLAG_NOT_TOUCHABLE);
+
+        CredentialRetrieveRequest request =
+                getIntent().getParcelableExtra(EXTRA_REQUEST);
+        byte[] combinedRequest = getIntent().getByteArrayExtra(EXTRA_COMBINED_REQUEST);
+        if (null == request || null == combinedRequest) {
+            setResult(
+                    CredentialRetrieveResult.CODE_UNKNOWN,
+                    CredentialRetrieveResult.UNKNOWN.toResultDataIntent());
+            finish();
+            return;
+        }
+
+        boolean knownProvidersOnly = getIntent().getBooleanExtra(EXTRA_KNOWN_PROVIDERS_ONLY, false);
+        mFlowId = FlowTracer.getFlowId(getIntent());
+        mQueryStartTimeMs = FlowTracer.now();
+        QueryCallback callback = new QueryCallback(combinedRequest);
+
+        // a prefetch that is still pending is awaited, rather than starting a duplicate query
+        if (!CredentialRetrievePrefetcher.getInstance(this)
+                .take(request, knownProvidersOnly, callback)) {
+            CredentialRetrieveQuery.start(
+                    this,
+                    request,
+                    knownProvidersOnly,
+                    getIntent().getStringExtra(EXTRA_PREFERRED_PROVIDER),
+                    callback);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mIsDestroyed = true;
+    }
+
+    private class QueryCallback implements CredentialRetrieveQuery.Callback {
+
+        private final byte[] mCombinedRequest;
+
+        QueryCallback(@NonNull byte[] combinedRequest) {
+            mCombinedRequest = combinedRequest;
+        }
+
+        @Override
+        public void onComplete(@NonNull CredentialRetrieveQuery.Result result) {
+            FlowTracer.span(
+                    RETRIEVE_CREDENTIAL_ACTION,
+                    mFlowId,
+                    CredentialClientTracer.SPAN_PROVIDER_QUERY,
+                    mQueryStartTimeMs);
+
+            CredentialRetrieveResult terminalResult = result.getTerminalResult();
+            if (terminalResult == null) {
+                forwardResultFromActivity(
+                        result.withHintFallback(
+                                ProviderResolutionCache.getInstance(
+                                        CredentialOrHintRetrieveActivity.this),
+                                mCombinedRequest)
+                                .createContinuationIntent(
+                                        CredentialOrHintRetrieveActivity.this,
+                                        mFlowId));
+                return;
+            }
+
+            Intent hintIntent = getIntent().getParcelableExtra(EXTRA_HINT_INTENT);
+            if (hintIntent == null) {
+                setResult(
+                        terminalResult.getResultCode(),
+                        FlowTracer.attach(terminalResult.toResultDataIntent(), mFlowId));
+                finish();
+                return;
+            }
+
+            // a hint intent that directly targets a provider is recorded here, as the provider
+            // picker would otherwise do
+            if (HINT_CREDENTIAL_ACTION.equals(hintIntent.getAction())) {
+                PendingProviderChoices.record(hintIntent);
+                FlowTracer.providerLaunched(RETRIEVE_CREDENTIAL_ACTION, mFlowId);
+            }
+
+            forwardResultFromActivity(hintIntent);
+        }
+    }
+
+    private void forwardResultFromActivity(Intent intent) {
+        if (mIsDestroyed) {
+            return;
+        }
+
+        intent.addFlags(Intent.FLAG_ACTIVITY_FORWARD_RESULT);
+        startActivity(intent);
+        finish();
+    }
+}
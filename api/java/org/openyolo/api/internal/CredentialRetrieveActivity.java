@@ -14,7 +14,7 @@
 
 package org.openyolo.api.internal;
 
-import static org.openyolo.protocol.ProtocolConstants.CREDENTIAL_DATA_TYPE;
+import static org.openyolo.protocol.ProtocolConstants.RETRIEVE_CREDENTIAL_ACTION;
 
 import android.app.Activity;
 import android.content.Context;
@@ -22,19 +22,10 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.util.Log;
 import android.view.WindowManager.LayoutParams;
-import com.google.bbq.BroadcastQueryClient;
-import com.google.bbq.QueryCallback;
-import com.google.bbq.QueryResponse;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import org.openyolo.api.CredentialClientTracer;
 import org.openyolo.protocol.CredentialRetrieveRequest;
 import org.openyolo.protocol.CredentialRetrieveResult;
-import org.openyolo.protocol.Protobufs;
-import org.openyolo.protocol.ProtocolConstants;
-import org.openyolo.protocol.internal.IntentUtil;
 
 /**
  * An invisible Activity that forwards a given {@link CredentialRetrieveRequest} based on the
@@ -44,24 +35,50 @@ import org.openyolo.protocol.internal.IntentUtil;
  */
 public final class CredentialRetrieveActivity extends Activity {
 
-    private static final String LOG_TAG = "CredentialRetrieveAct";
     private static final String EXTRA_REQUEST = "Request";
-
-    // The amount of time we will permit providers to "think" about responding to a retrieve
-    // BBQ request. The default BBQ timeout of two seconds proved to be too short when the device
-    // is actively updating and compiling apps, so we extend it here.
-    private static final long RETRIEVE_TIMEOUT_MS = 4000;
+    private static final String EXTRA_KNOWN_PROVIDERS_ONLY = "KnownProvidersOnly";
+    private static final String EXTRA_PREFERRED_PROVIDER = "PreferredProvider";
 
     private boolean mIsDestroyed = false;
+    private long mFlowId = FlowTracer.NO_FLOW;
+    private long mQueryStartTimeMs;
 
     /**
      * Returns an Intent for {@link CredentialRetrieveActivity} for the given
      * {@link CredentialRetrieveRequest}.
      */
     public static Intent createIntent(Context context, CredentialRetrieveRequest request) {
+        return createIntent(context, request, false /* knownProvidersOnly */);
+    }
+
+    /**
+     * Returns an Intent for {@link CredentialRetrieveActivity} for the given
+     * {@link CredentialRetrieveRequest}, optionally restricting the query to
+     * {@link KnownProviders known providers}.
+     */
+    public static Intent createIntent(
+            Context context,
+            CredentialRetrieveRequest request,
+            boolean knownProvidersOnly) {
+        return createIntent(context, request, knownProvidersOnly, null /* preferredProvider */);
+    }
+
+    /**
+     * Returns an Intent for {@link CredentialRetrieveActivity} for the given
+     * {@link CredentialRetrieveRequest}, optionally restricting the query to
+     * {@link KnownProviders known providers}. If a preferred provider package is specified, it
+     * is queried before all other providers.
+     */
+    public static Intent createIntent(
+            Context context,
+            CredentialRetrieveRequest request,
+            boolean knownProvidersOnly,
+            @Nullable String preferredProvider) {
         return new Intent()
                 .setClass(context, CredentialRetrieveActivity.class)
-                .putExtra(EXTRA_REQUEST, request);
+                .putExtra(EXTRA_REQUEST, request)
+                .putExtra(EXTRA_KNOWN_PROVIDERS_ONLY, knownProvidersOnly)
+                .putExtra(EXTRA_PREFERRED_PROVIDER, preferredProvider);
     }
 
     @Override
@@ -78,12 +95,21 @@ public final class CredentialRetrieveActivity extends Activity {
             return;
         }
 
-        BroadcastQueryClient.getInstance(this)
-                .queryFor(
-                        CREDENTIAL_DATA_TYPE,
-                        request.toProtocolBuffer(),
-                        RETRIEVE_TIMEOUT_MS,
-                        new CredentialRetrieveQueryCallback(request));
+        boolean knownProvidersOnly = getIntent().getBooleanExtra(EXTRA_KNOWN_PROVIDERS_ONLY, false);
+        mFlowId = FlowTracer.getFlowId(getIntent());
+        mQueryStartTimeMs = FlowTracer.now();
+        CredentialRetrieveQueryCallback callback = new CredentialRetrieveQueryCallback();
+
+        // a prefetch that is still pending is awaited, rather than starting a duplicate query
+        if (!CredentialRetrievePrefetcher.getInstance(this)
+                .take(request, knownProvidersOnly, callback)) {
+            CredentialRetrieveQuery.start(
+                    this,
+                    request,
+                    knownProvidersOnly,
+                    getIntent().getStringExtra(EXTRA_PREFERRED_PROVIDER),
+                    callback);
+        }
     }
 
     @Override
@@ -92,88 +118,27 @@ public final class CredentialRetrieveActivity extends Activity {
         mIsDestroyed = true;
     }
 
-
-    private class CredentialRetrieveQueryCallback implements QueryCallback {
-
-        private CredentialRetrieveRequest mRetrieveRequest;
-
-        CredentialRetrieveQueryCallback(@NonNull CredentialRetrieveRequest retrieveRequest) {
-            mRetrieveRequest = retrieveRequest;
-        }
+    private class CredentialRetrieveQueryCallback implements CredentialRetrieveQuery.Callback {
 
         @Override
-        public void onResponse(long queryId, List<QueryResponse> queryResponses) {
-            if (queryResponses.isEmpty()) {
+        public void onComplete(@NonNull CredentialRetrieveQuery.Result result) {
+            FlowTracer.span(
+                    RETRIEVE_CREDENTIAL_ACTION,
+                    mFlowId,
+                    CredentialClientTracer.SPAN_PROVIDER_QUERY,
+                    mQueryStartTimeMs);
+
+            CredentialRetrieveResult terminalResult = result.getTerminalResult();
+            if (terminalResult != null) {
                 setResult(
-                        CredentialRetrieveResult.CODE_PROVIDER_TIMEOUT,
-                        CredentialRetrieveResult.PROVIDER_TIMEOUT.toResultDataIntent());
+                        terminalResult.getResultCode(),
+                        FlowTracer.attach(terminalResult.toResultDataIntent(), mFlowId));
                 finish();
                 return;
             }
 
-            ArrayList<Intent> retrieveIntents = new ArrayList<>();
-            for (QueryResponse queryResponse : queryResponses) {
-                Protobufs.CredentialRetrieveBbqResponse response;
-                try {
-                    response = Protobufs.CredentialRetrieveBbqResponse.parseFrom(
-                            queryResponse.responseMessage);
-                } catch (IOException e) {
-                    Log.w(LOG_TAG, "Failed to decode credential retrieve response");
-                    continue;
-                }
-
-                // a provider indicates that it has credentials via the credentials_available field
-                // on the response proto. Prior 0.3.0, the provider would directly return an intent.
-                // For backwards compatibility this is currently inspected as a fallback for the
-                // absence of the credentials_available field.
-
-                if (response.getCredentialsAvailable()) {
-                    Intent retrieveIntent = ProviderResolver.createIntentForAction(
-                            CredentialRetrieveActivity.this.getApplicationContext(),
-                            queryResponse.responderPackage,
-                            ProtocolConstants.RETRIEVE_CREDENTIAL_ACTION);
-                    retrieveIntent.putExtra(
-                            ProtocolConstants.EXTRA_RETRIEVE_REQUEST,
-                            mRetrieveRequest.toProtocolBuffer().toByteArray());
-
-                    if (!response.getPreloadedData().isEmpty()) {
-                        retrieveIntent.putExtra(ProtocolConstants.EXTRA_RETRIEVE_PRELOADED_DATA,
-                                response.getPreloadedData().toByteArray());
-                    }
-
-                    retrieveIntents.add(retrieveIntent);
-                } else if (!response.getRetrieveIntent().isEmpty()) {
-                    // TODO: remove backwards compatibility with retrieve_intent after 0.3.0
-                    Intent retrieveIntent =
-                            IntentUtil.fromBytes(response.getRetrieveIntent().toByteArray());
-
-                    if (!queryResponse.responderPackage.equals(
-                            retrieveIntent.getComponent().getPackageName())) {
-                        Log.w(LOG_TAG, "Package mismatch between provider and retrieve intent");
-                    } else {
-                        retrieveIntents.add(retrieveIntent);
-                    }
-                }
-            }
-
-            if (retrieveIntents.isEmpty()) {
-                setResult(
-                        CredentialRetrieveResult.CODE_NO_PROVIDER_AVAILABLE,
-                        CredentialRetrieveResult.NO_PROVIDER_AVAILABLE.toResultDataIntent());
-                finish();
-                return;
-            }
-
-            if (retrieveIntents.size() == 1) {
-                forwardResultFromActivity(retrieveIntents.get(0));
-                return;
-            }
-
-            Intent intent = ProviderPickerActivity.createRetrieveIntent(
-                    CredentialRetrieveActivity.this,
-                    retrieveIntents);
-
-            forwardResultFromActivity(intent);
+            forwardResultFromActivity(
+                    result.createContinuationIntent(CredentialRetrieveActivity.this, mFlowId));
         }
     }
 
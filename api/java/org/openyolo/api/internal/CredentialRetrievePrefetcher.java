@@ -0,0 +1,310 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.valid4j.Assertive.require;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.openyolo.protocol.CredentialRetrieveRequest;
+
+/**
+ * Holds the outcomes of credential retrieve queries that were started ahead of the retrieve
+ * flow, so that the flow can use them rather than waiting for a new query. Each outcome is
+ * keyed by its request, may be used at most once, and expires shortly after the query
+ * completes. All outcomes are discarded whenever a package is added, removed or changed, as
+ * the set of providers may have changed.
+ */
+public final class CredentialRetrievePrefetcher {
+
+    /**
+     * The time for which a completed prefetch may be used.
+     */
+    public static final long PREFETCH_EXPIRY_MS = TimeUnit.SECONDS.toMillis(15);
+
+    private static final AtomicReference<CredentialRetrievePrefetcher> INSTANCE_REF =
+            new AtomicReference<>();
+
+    /**
+     * Retrieves the singleton instance of the prefetcher.
+     */
+    @NonNull
+    public static CredentialRetrievePrefetcher getInstance(@NonNull Context context) {
+        CredentialRetrievePrefetcher prefetcher = INSTANCE_REF.get();
+        if (prefetcher != null) {
+            return prefetcher;
+        }
+
+        prefetcher = new CredentialRetrievePrefetcher(context, new QueryRunner() {
+            @Override
+            public void run(
+                    Context context,
+                    CredentialRetrieveRequest request,
+                    boolean knownProvidersOnly,
+                    String preferredProvider,
+                    CredentialRetrieveQuery.Callback callback) {
+                CredentialRetrieveQuery.start(
+                        context,
+                        request,
+                        knownProvidersOnly,
+                        preferredProvider,
+                        callback);
+            }
+        });
+
+        if (INSTANCE_REF.compareAndSet(null, prefetcher)) {
+            prefetcher.registerPackageChangeReceiver();
+        } else {
+            prefetcher = INSTANCE_REF.get();
+        }
+
+        return prefetcher;
+    }
+
+    /**
+     * FOR TESTING ONLY - Clears the current instance of the prefetcher.
+     */
+    @VisibleForTesting
+    public static void clearApplicationBoundInstance() {
+        INSTANCE_REF.set(null);
+    }
+
+    /**
+     * Starts credential retrieve queries on behalf of the prefetcher.
+     */
+    @VisibleForTesting
+    interface QueryRunner {
+        void run(
+                Context context,
+                CredentialRetrieveRequest request,
+                boolean knownProvidersOnly,
+                @Nullable String preferredProvider,
+                CredentialRetrieveQuery.Callback callback);
+    }
+
+    private final Context mApplicationContext;
+    private final QueryRunner mQueryRunner;
+    private final Map<Key, Prefetch> mPrefetches = new HashMap<>();
+
+    @VisibleForTesting
+    CredentialRetrievePrefetcher(@NonNull Context context, @NonNull QueryRunner queryRunner) {
+        require(context, notNullValue());
+        require(queryRunner, notNullValue());
+        mApplicationContext = context.getApplicationContext();
+        mQueryRunner = queryRunner;
+    }
+
+    /**
+     * Starts a credential retrieve query for the specified request in the background, unless
+     * one is already pending or a usable outcome is already held.
+     */
+    public void prefetch(
+            @NonNull CredentialRetrieveRequest request,
+            boolean knownProvidersOnly) {
+        prefetch(request, knownProvidersOnly, null /* preferredProvider */);
+    }
+
+    /**
+     * Starts a credential retrieve query for the specified request in the background, unless
+     * one is already pending or a usable outcome is already held. If a preferred provider is
+     * specified, it is queried first.
+     *
+     * @see CredentialRetrieveQuery#start(Context, CredentialRetrieveRequest, boolean, String,
+     *     CredentialRetrieveQuery.Callback)
+     */
+    public void prefetch(
+            @NonNull CredentialRetrieveRequest request,
+            boolean knownProvidersOnly,
+            @Nullable String preferredProvider) {
+        require(request, notNullValue());
+        final Key key = new Key(request, knownProvidersOnly);
+        final Prefetch prefetch;
+        synchronized (this) {
+            Prefetch existing = mPrefetches.get(key);
+            if (existing != null && !existing.isExpired()) {
+                return;
+            }
+
+            prefetch = new Prefetch();
+            mPrefetches.put(key, prefetch);
+        }
+
+        mQueryRunner.run(
+                mApplicationContext,
+                request,
+                knownProvidersOnly,
+                preferredProvider,
+                new CredentialRetrieveQuery.Callback() {
+                    @Override
+                    public void onComplete(@NonNull CredentialRetrieveQuery.Result result) {
+                        complete(key, prefetch, result);
+                    }
+                });
+    }
+
+    /**
+     * Takes the outcome of a completed prefetch for the specified request, if one is available
+     * and has not expired. The outcome is no longer held once taken.
+     */
+    @Nullable
+    public synchronized CredentialRetrieveQuery.Result takeCompleted(
+            @NonNull CredentialRetrieveRequest request,
+            boolean knownProvidersOnly) {
+        Key key = new Key(request, knownProvidersOnly);
+        Prefetch prefetch = mPrefetches.get(key);
+        if (prefetch == null || prefetch.mResult == null) {
+            return null;
+        }
+
+        mPrefetches.remove(key);
+        return prefetch.isExpired() ? null : prefetch.mResult;
+    }
+
+    /**
+     * Takes the outcome of a prefetch for the specified request, waiting for it to complete if
+     * necessary. If there is no usable prefetch, false is returned and the callback will not be
+     * invoked; otherwise, the callback will be invoked with the outcome, possibly before this
+     * method returns.
+     */
+    public boolean take(
+            @NonNull CredentialRetrieveRequest request,
+            boolean knownProvidersOnly,
+            @NonNull CredentialRetrieveQuery.Callback callback) {
+        require(callback, notNullValue());
+        CredentialRetrieveQuery.Result result;
+        synchronized (this) {
+            Key key = new Key(request, knownProvidersOnly);
+            Prefetch prefetch = mPrefetches.get(key);
+            if (prefetch == null || prefetch.isExpired()) {
+                mPrefetches.remove(key);
+                return false;
+            }
+
+            if (prefetch.mResult == null) {
+                prefetch.mWaitingCallbacks.add(callback);
+                return true;
+            }
+
+            mPrefetches.remove(key);
+            result = prefetch.mResult;
+        }
+
+        callback.onComplete(result);
+        return true;
+    }
+
+    /**
+     * Discards all prefetched outcomes. Pending queries will still complete, but their outcome
+     * will only be delivered to callbacks that are already waiting for it.
+     */
+    public synchronized void invalidate() {
+        mPrefetches.clear();
+    }
+
+    private void complete(Key key, Prefetch prefetch, CredentialRetrieveQuery.Result result) {
+        List<CredentialRetrieveQuery.Callback> waitingCallbacks;
+        synchronized (this) {
+            prefetch.mResult = result;
+            prefetch.mCompletedAtMs = SystemClock.elapsedRealtime();
+            waitingCallbacks = new ArrayList<>(prefetch.mWaitingCallbacks);
+            prefetch.mWaitingCallbacks.clear();
+
+            // an outcome that a waiting flow has consumed is not retained for reuse
+            if (!waitingCallbacks.isEmpty() && mPrefetches.get(key) == prefetch) {
+                mPrefetches.remove(key);
+            }
+        }
+
+        for (CredentialRetrieveQuery.Callback callback : waitingCallbacks) {
+            callback.onComplete(result);
+        }
+    }
+
+    @VisibleForTesting
+    void registerPackageChangeReceiver() {
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme("package");
+        mApplicationContext.registerReceiver(new PackageChangeReceiver(), filter);
+    }
+
+    private final class PackageChangeReceiver extends BroadcastReceiver {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            invalidate();
+        }
+    }
+
+    private static final class Prefetch {
+        final List<CredentialRetrieveQuery.Callback> mWaitingCallbacks = new ArrayList<>();
+
+        @Nullable
+        CredentialRetrieveQuery.Result mResult;
+        long mCompletedAtMs;
+
+        boolean isExpired() {
+            return mResult != null
+                    && SystemClock.elapsedRealtime() - mCompletedAtMs >= PREFETCH_EXPIRY_MS;
+        }
+    }
+
+    private static final class Key {
+        final byte[] mRequestBytes;
+        final boolean mKnownProvidersOnly;
+
+        Key(@NonNull CredentialRetrieveRequest request, boolean knownProvidersOnly) {
+            require(request, notNullValue());
+            mRequestBytes = request.toProtocolBufferBytes();
+            mKnownProvidersOnly = knownProvidersOnly;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) obj;
+            return mKnownProvidersOnly == other.mKnownProvidersOnly
+                    && Arrays.equals(mRequestBytes, other.mRequestBytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(mRequestBytes) + (mKnownProvidersOnly ? 1 : 0);
+        }
+    }
+}
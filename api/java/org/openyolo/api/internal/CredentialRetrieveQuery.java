@@ -0,0 +1,440 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.openyolo.protocol.ProtocolConstants.CREDENTIAL_DATA_TYPE;
+import static org.valid4j.Assertive.require;
+
+import android.content.Context;
+import android.content.Intent;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+import com.google.bbq.BroadcastQueryClient;
+import com.google.bbq.QueryCallback;
+import com.google.bbq.QueryResponse;
+import com.google.bbq.ResponderFilter;
+import com.google.bbq.ResponderFilters;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.openyolo.protocol.CredentialRetrieveRequest;
+import org.openyolo.protocol.CredentialRetrieveResult;
+import org.openyolo.protocol.Protobufs;
+import org.openyolo.protocol.Protobufs.AccountPreview;
+import org.openyolo.protocol.ProtocolConstants;
+import org.openyolo.protocol.internal.IntentUtil;
+
+/**
+ * Runs the broadcast query step of a credential retrieve flow, determining which providers
+ * have credentials available for a {@link CredentialRetrieveRequest}. This does not require an
+ * Activity, so that the outcome can be determined before deciding whether any UI is necessary.
+ */
+public final class CredentialRetrieveQuery {
+
+    /**
+     * The amount of time we will permit providers to "think" about responding to a retrieve
+     * BBQ request. The default BBQ timeout of two seconds proved to be too short when the device
+     * is actively updating and compiling apps, so it is extended here.
+     */
+    public static final long RETRIEVE_TIMEOUT_MS = 4000;
+
+    /**
+     * The amount of time the user's remembered provider is given to respond, before the query
+     * falls back to all providers.
+     */
+    public static final long PREFERRED_PROVIDER_TIMEOUT_MS = 1000;
+
+    private static final String LOG_TAG = "CredentialRetrieveQuery";
+    private static final String SECTION_PROCESS_RESPONSES = "processRetrieveResponses";
+
+    /**
+     * Receives the outcome of a credential retrieve query.
+     */
+    public interface Callback {
+
+        /**
+         * Invoked when the query completes. This may be invoked on any thread.
+         */
+        void onComplete(@NonNull Result result);
+    }
+
+    /**
+     * Starts a credential retrieve query for the specified request, optionally restricted to
+     * {@link KnownProviders known providers}.
+     */
+    public static void start(
+            @NonNull Context context,
+            @NonNull CredentialRetrieveRequest request,
+            boolean knownProvidersOnly,
+            @NonNull Callback callback) {
+        start(context, request, knownProvidersOnly, null /* preferredProvider */, callback);
+    }
+
+    /**
+     * Starts a credential retrieve query for the specified request, optionally restricted to
+     * {@link KnownProviders known providers}. If a preferred provider is specified, it is
+     * queried alone first with a short deadline; all providers are only queried if it does not
+     * have credentials available.
+     */
+    public static void start(
+            @NonNull Context context,
+            @NonNull final CredentialRetrieveRequest request,
+            boolean knownProvidersOnly,
+            @Nullable String preferredProvider,
+            @NonNull final Callback callback) {
+        require(context, notNullValue());
+        require(request, notNullValue());
+        require(callback, notNullValue());
+
+        final Context applicationContext = context.getApplicationContext();
+        ResponderFilter filter = ResponderFilters.acceptAll();
+        if (knownProvidersOnly) {
+            filter = new KnownProvidersResponderFilter(
+                    KnownProviders.getInstance(applicationContext));
+        }
+
+        if (preferredProvider == null) {
+            query(applicationContext, request, filter, RETRIEVE_TIMEOUT_MS, callback);
+            return;
+        }
+
+        final ResponderFilter fallbackFilter = filter;
+        query(
+                applicationContext,
+                request,
+                ResponderFilters.allOf(filter, ResponderFilters.allowOnly(preferredProvider)),
+                PREFERRED_PROVIDER_TIMEOUT_MS,
+                new Callback() {
+                    @Override
+                    public void onComplete(@NonNull Result result) {
+                        if (!result.getRetrieveIntents().isEmpty()) {
+                            callback.onComplete(result);
+                            return;
+                        }
+
+                        query(
+                                applicationContext,
+                                request,
+                                fallbackFilter,
+                                RETRIEVE_TIMEOUT_MS,
+                                callback);
+                    }
+                });
+    }
+
+    private static void query(
+            @NonNull final Context applicationContext,
+            @NonNull final CredentialRetrieveRequest request,
+            @NonNull ResponderFilter responderFilter,
+            long timeoutMs,
+            @NonNull final Callback callback) {
+        BroadcastQueryClient.getInstance(applicationContext)
+                .queryFor(
+                        CREDENTIAL_DATA_TYPE,
+                        request.toProtocolBuffer(),
+                        timeoutMs,
+                        responderFilter,
+                        new QueryCallback() {
+                            @Override
+                            public void onResponse(long queryId, List<QueryResponse> responses) {
+                                Result result;
+                                boolean sectionBegun =
+                                        FlowTracer.beginSection(SECTION_PROCESS_RESPONSES);
+                                try {
+                                    result = processResponses(
+                                            ProviderResolutionCache.getInstance(
+                                                    applicationContext),
+                                            request,
+                                            responses);
+                                } finally {
+                                    FlowTracer.endSection(sectionBegun);
+                                }
+
+                                callback.onComplete(result);
+                            }
+                        });
+    }
+
+    /**
+     * Determines the outcome of a credential retrieve query from the responses received.
+     */
+    @VisibleForTesting
+    @NonNull
+    static Result processResponses(
+            @NonNull ProviderResolutionCache providerCache,
+            @NonNull CredentialRetrieveRequest request,
+            @NonNull List<QueryResponse> queryResponses) {
+        if (queryResponses.isEmpty()) {
+            return new Result(
+                    Collections.<Intent>emptyList(),
+                    CredentialRetrieveResult.PROVIDER_TIMEOUT);
+        }
+
+        // the encoded request is shared by all of the retrieve intents
+        byte[] encodedRequest = request.toProtocolBufferBytes();
+        ArrayList<Intent> retrieveIntents = new ArrayList<>();
+
+        // a merged account chooser is only possible if every provider with credentials
+        // available describes its accounts, otherwise some accounts would not be offered
+        ArrayList<Intent> accountIntents = new ArrayList<>();
+        ArrayList<AccountPreview> accountPreviews = new ArrayList<>();
+        boolean allProvidersPreviewed = true;
+        for (QueryResponse queryResponse : queryResponses) {
+            Protobufs.CredentialRetrieveBbqResponse response;
+            try {
+                response = Protobufs.CredentialRetrieveBbqResponse.parseFrom(
+                        queryResponse.responseMessage);
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Failed to decode credential retrieve response");
+                continue;
+            }
+
+            // a provider indicates that it has credentials via the credentials_available field
+            // on the response proto. Prior 0.3.0, the provider would directly return an intent.
+            // For backwards compatibility this is currently inspected as a fallback for the
+            // absence of the credentials_available field.
+
+            if (response.getCredentialsAvailable()) {
+                Intent retrieveIntent = providerCache.createIntentForAction(
+                        queryResponse.responderPackage,
+                        ProtocolConstants.RETRIEVE_CREDENTIAL_ACTION);
+                if (retrieveIntent == null) {
+                    Log.w(LOG_TAG, "Provider indicated credentials are available, but has "
+                            + "no retrieve activity");
+                    continue;
+                }
+
+                retrieveIntent.putExtra(ProtocolConstants.EXTRA_RETRIEVE_REQUEST, encodedRequest);
+
+                if (!response.getPreloadedData().isEmpty()) {
+                    retrieveIntent.putExtra(ProtocolConstants.EXTRA_RETRIEVE_PRELOADED_DATA,
+                            response.getPreloadedData().toByteArray());
+                }
+
+                retrieveIntents.add(retrieveIntent);
+
+                if (response.getAccountPreviewsCount() == 0) {
+                    allProvidersPreviewed = false;
+                }
+
+                for (AccountPreview preview : response.getAccountPreviewsList()) {
+                    Intent accountIntent = new Intent(retrieveIntent);
+                    accountIntent.putExtra(ProtocolConstants.EXTRA_RETRIEVE_PRELOADED_DATA,
+                            preview.getToken().toByteArray());
+                    accountIntents.add(accountIntent);
+                    accountPreviews.add(preview);
+                }
+            } else if (!response.getRetrieveIntent().isEmpty()) {
+                // TODO: remove backwards compatibility with retrieve_intent after 0.3.0
+                Intent retrieveIntent =
+                        IntentUtil.fromBytes(response.getRetrieveIntent().toByteArray());
+
+                if (!queryResponse.responderPackage.equals(
+                        retrieveIntent.getComponent().getPackageName())) {
+                    Log.w(LOG_TAG, "Package mismatch between provider and retrieve intent");
+                } else {
+                    retrieveIntents.add(retrieveIntent);
+                    allProvidersPreviewed = false;
+                }
+            }
+        }
+
+        if (retrieveIntents.isEmpty()) {
+            return new Result(
+                    Collections.<Intent>emptyList(),
+                    CredentialRetrieveResult.NO_PROVIDER_AVAILABLE);
+        }
+
+        if (!allProvidersPreviewed) {
+            accountIntents.clear();
+            accountPreviews.clear();
+        }
+
+        return new Result(retrieveIntents, null, accountIntents, accountPreviews);
+    }
+
+    private CredentialRetrieveQuery() {
+        // not intended to be constructed
+    }
+
+    /**
+     * The outcome of a credential retrieve query: either the provider retrieve intents for the
+     * providers with credentials available, or a terminal result if there are none.
+     */
+    public static final class Result {
+
+        private final List<Intent> mRetrieveIntents;
+
+        @Nullable
+        private final CredentialRetrieveResult mTerminalResult;
+
+        private final List<Intent> mAccountIntents;
+        private final List<AccountPreview> mAccountPreviews;
+
+        Result(
+                @NonNull List<Intent> retrieveIntents,
+                @Nullable CredentialRetrieveResult terminalResult) {
+            this(
+                    retrieveIntents,
+                    terminalResult,
+                    Collections.<Intent>emptyList(),
+                    Collections.<AccountPreview>emptyList());
+        }
+
+        Result(
+                @NonNull List<Intent> retrieveIntents,
+                @Nullable CredentialRetrieveResult terminalResult,
+                @NonNull List<Intent> accountIntents,
+                @NonNull List<AccountPreview> accountPreviews) {
+            require(accountIntents.size() == accountPreviews.size(),
+                    "each account preview must have an account intent");
+            mRetrieveIntents = Collections.unmodifiableList(retrieveIntents);
+            mTerminalResult = terminalResult;
+            mAccountIntents = Collections.unmodifiableList(accountIntents);
+            mAccountPreviews = Collections.unmodifiableList(accountPreviews);
+        }
+
+        /**
+         * Returns a copy of this result in which the intents for providers that also handle the
+         * combined credential or hint action are directed at that action instead, carrying the
+         * specified combined request. Such providers may then fall back to returning a hint,
+         * should the credentials they reported turn out to be unusable.
+         */
+        @NonNull
+        Result withHintFallback(
+                @NonNull ProviderResolutionCache providerCache,
+                @NonNull byte[] encodedCombinedRequest) {
+            return new Result(
+                    toCombinedIntents(providerCache, mRetrieveIntents, encodedCombinedRequest),
+                    mTerminalResult,
+                    toCombinedIntents(providerCache, mAccountIntents, encodedCombinedRequest),
+                    mAccountPreviews);
+        }
+
+        /**
+         * The retrieve intents of the providers that have credentials available. Empty if
+         * a terminal result was determined.
+         */
+        @NonNull
+        public List<Intent> getRetrieveIntents() {
+            return mRetrieveIntents;
+        }
+
+        /**
+         * The terminal result of the flow, if no provider has credentials available.
+         */
+        @Nullable
+        public CredentialRetrieveResult getTerminalResult() {
+            return mTerminalResult;
+        }
+
+        /**
+         * The previews of the accounts available across all providers, if every provider with
+         * credentials available supplied them. Otherwise, empty.
+         */
+        @NonNull
+        public List<AccountPreview> getAccountPreviews() {
+            return mAccountPreviews;
+        }
+
+        /**
+         * Creates the Intent that continues the flow: the retrieve intent of the single provider
+         * with credentials available, or if there are several, a merged account chooser where
+         * all providers supplied account previews and a provider picker otherwise. Null is
+         * returned if a terminal result was determined. A new Intent is created on each call.
+         */
+        @Nullable
+        public Intent createContinuationIntent(@NonNull Context context) {
+            return createContinuationIntent(context, FlowTracer.NO_FLOW);
+        }
+
+        /**
+         * Creates the Intent that continues the specified traced flow.
+         * @see #createContinuationIntent(Context)
+         */
+        @Nullable
+        public Intent createContinuationIntent(@NonNull Context context, long flowId) {
+            if (mRetrieveIntents.isEmpty()) {
+                return null;
+            }
+
+            if (mRetrieveIntents.size() == 1) {
+                Intent retrieveIntent = new Intent(mRetrieveIntents.get(0));
+                PendingProviderChoices.record(retrieveIntent);
+                FlowTracer.providerLaunched(
+                        ProtocolConstants.RETRIEVE_CREDENTIAL_ACTION,
+                        flowId);
+                return retrieveIntent;
+            }
+
+            if (!mAccountIntents.isEmpty()) {
+                ArrayList<Intent> accountIntents = new ArrayList<>(mAccountIntents.size());
+                for (Intent accountIntent : mAccountIntents) {
+                    accountIntents.add(new Intent(accountIntent));
+                }
+
+                return FlowTracer.attach(
+                        ProviderPickerActivity.createAccountChooserIntent(
+                                context,
+                                accountIntents,
+                                mAccountPreviews),
+                        flowId);
+            }
+
+            ArrayList<Intent> retrieveIntents = new ArrayList<>(mRetrieveIntents.size());
+            for (Intent retrieveIntent : mRetrieveIntents) {
+                retrieveIntents.add(new Intent(retrieveIntent));
+            }
+
+            return FlowTracer.attach(
+                    ProviderPickerActivity.createRetrieveIntent(context, retrieveIntents),
+                    flowId);
+        }
+
+        private static List<Intent> toCombinedIntents(
+                ProviderResolutionCache providerCache,
+                List<Intent> retrieveIntents,
+                byte[] encodedCombinedRequest) {
+            ArrayList<Intent> intents = new ArrayList<>(retrieveIntents.size());
+            for (Intent retrieveIntent : retrieveIntents) {
+                Intent combinedIntent = null;
+                if (retrieveIntent.getComponent() != null) {
+                    combinedIntent = providerCache.createIntentForAction(
+                            retrieveIntent.getComponent().getPackageName(),
+                            ProtocolConstants.RETRIEVE_CREDENTIAL_OR_HINT_ACTION);
+                }
+
+                if (combinedIntent == null) {
+                    intents.add(retrieveIntent);
+                    continue;
+                }
+
+                // the retrieve request and any preloaded data are retained alongside the
+                // combined request
+                combinedIntent.putExtras(retrieveIntent);
+                combinedIntent.putExtra(
+                        ProtocolConstants.EXTRA_RETRIEVE_OR_HINT_REQUEST,
+                        encodedCombinedRequest);
+                intents.add(combinedIntent);
+            }
+
+            return intents;
+        }
+    }
+}
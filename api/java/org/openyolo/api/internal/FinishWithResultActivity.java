@@ -43,6 +43,7 @@ public final class FinishWithResultActivity extends Activity {
 
         ActivityResult result = getIntent().getParcelableExtra(KEY_RESULT);
         if (null != result) {
+            FlowTracer.attach(result.getData(), FlowTracer.getFlowId(getIntent()));
             setResult(result.getResultCode(), result.getData());
         }
 
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.valid4j.Assertive.require;
+
+import android.content.Intent;
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openyolo.api.CredentialClientTracer;
+
+/**
+ * Emits the timing spans of {@link org.openyolo.api.CredentialClient} flows to the registered
+ * {@link CredentialClientTracer}. Each flow is identified by an ID that is carried in the
+ * intents of the flow's intermediate activities. As provider results do not carry the ID, the
+ * most recently started flow for each action is also retained, so that a result without an ID
+ * can be attributed to it.
+ *
+ * <p>All operations return immediately, without reading the clock or modifying intents, when
+ * no tracer is registered.
+ */
+public final class FlowTracer {
+
+    /**
+     * The identifier used when tracing is disabled, or the flow is unknown.
+     */
+    public static final long NO_FLOW = 0;
+
+    private static final String EXTRA_FLOW_ID = "org.openyolo.api.FlowId";
+    private static final String SECTION_PREFIX = "OpenYOLO:";
+
+    private static final AtomicLong NEXT_FLOW_ID = new AtomicLong(NO_FLOW + 1);
+    private static final Map<String, Flow> PENDING_FLOWS = new HashMap<>();
+
+    @Nullable
+    private static volatile CredentialClientTracer sTracer;
+
+    /**
+     * Registers the tracer that receives spans, replacing any previously registered tracer.
+     * Tracing is disabled if the tracer is null.
+     */
+    public static void setTracer(@Nullable CredentialClientTracer tracer) {
+        sTracer = tracer;
+        if (tracer == null) {
+            synchronized (PENDING_FLOWS) {
+                PENDING_FLOWS.clear();
+            }
+        }
+    }
+
+    /**
+     * Determines whether a tracer is registered.
+     */
+    public static boolean isEnabled() {
+        return sTracer != null;
+    }
+
+    /**
+     * Returns the current time for the start of a span, or zero if tracing is disabled.
+     */
+    public static long now() {
+        return (sTracer != null) ? SystemClock.elapsedRealtime() : 0;
+    }
+
+    /**
+     * Starts a new flow for the specified action, returning its ID. {@link #NO_FLOW} is returned
+     * if tracing is disabled.
+     */
+    public static long startFlow(@NonNull String action) {
+        if (sTracer == null) {
+            return NO_FLOW;
+        }
+
+        require(action, notNullValue());
+        Flow flow = new Flow(NEXT_FLOW_ID.getAndIncrement(), SystemClock.elapsedRealtime());
+        synchronized (PENDING_FLOWS) {
+            PENDING_FLOWS.put(action, flow);
+        }
+
+        return flow.mId;
+    }
+
+    /**
+     * Carries the specified flow ID in the intent, returning the intent.
+     */
+    @Nullable
+    public static Intent attach(@Nullable Intent intent, long flowId) {
+        if (intent != null && flowId != NO_FLOW) {
+            intent.putExtra(EXTRA_FLOW_ID, flowId);
+        }
+
+        return intent;
+    }
+
+    /**
+     * Returns the flow ID carried by the intent, or {@link #NO_FLOW}.
+     */
+    public static long getFlowId(@Nullable Intent intent) {
+        if (sTracer == null || intent == null) {
+            return NO_FLOW;
+        }
+
+        return intent.getLongExtra(EXTRA_FLOW_ID, NO_FLOW);
+    }
+
+    /**
+     * Emits a span of the specified flow, from the specified start time until now.
+     */
+    public static void span(
+            @NonNull String action,
+            long flowId,
+            @NonNull String spanName,
+            long startTimeMs) {
+        CredentialClientTracer tracer = sTracer;
+        if (tracer == null || flowId == NO_FLOW) {
+            return;
+        }
+
+        long endTimeMs = SystemClock.elapsedRealtime();
+        tracer.onSpan(action, flowId, spanName, startTimeMs, endTimeMs - startTimeMs);
+    }
+
+    /**
+     * Records that the specified flow has been handed to a provider.
+     */
+    public static void providerLaunched(@NonNull String action, long flowId) {
+        if (sTracer == null) {
+            return;
+        }
+
+        Flow flow = getPendingFlow(action, flowId);
+        if (flow != null) {
+            flow.mProviderLaunchTimeMs = SystemClock.elapsedRealtime();
+        }
+    }
+
+    /**
+     * Completes the flow that produced the specified result, emitting the result parsing span
+     * from the specified start time, and the provider activity and whole flow spans where their
+     * start is known.
+     */
+    public static void finishFlow(
+            @NonNull String action,
+            @Nullable Intent resultData,
+            long parseStartTimeMs) {
+        CredentialClientTracer tracer = sTracer;
+        if (tracer == null) {
+            return;
+        }
+
+        long flowId = getFlowId(resultData);
+        Flow flow;
+        synchronized (PENDING_FLOWS) {
+            flow = PENDING_FLOWS.get(action);
+            if (flow != null && (flowId == NO_FLOW || flowId == flow.mId)) {
+                PENDING_FLOWS.remove(action);
+                flowId = flow.mId;
+            } else {
+                flow = null;
+            }
+        }
+
+        span(action, flowId, CredentialClientTracer.SPAN_PARSE_RESULT, parseStartTimeMs);
+        if (flow != null) {
+            if (flow.mProviderLaunchTimeMs != 0) {
+                span(
+                        action,
+                        flowId,
+                        CredentialClientTracer.SPAN_PROVIDER_ACTIVITY,
+                        flow.mProviderLaunchTimeMs);
+            }
+
+            span(action, flowId, CredentialClientTracer.SPAN_FLOW, flow.mStartTimeMs);
+        }
+    }
+
+    /**
+     * Begins an {@link android.os.Trace} section with the specified name, if tracing is enabled,
+     * and returns whether it was begun. The result must be passed to a following call to
+     * {@link #endSection(boolean)} on the same thread, so that the section is ended even if the
+     * tracer is changed in between.
+     */
+    public static boolean beginSection(@NonNull String sectionName) {
+        if (sTracer == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            return false;
+        }
+
+        Trace.beginSection(SECTION_PREFIX + sectionName);
+        return true;
+    }
+
+    /**
+     * Ends the most recent {@link android.os.Trace} section begun on this thread, if the
+     * matching call to {@link #beginSection(String)} began one.
+     */
+    public static void endSection(boolean sectionBegun) {
+        // the version check is implied by the section having been begun
+        if (sectionBegun && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+
+    @Nullable
+    private static Flow getPendingFlow(String action, long flowId) {
+        if (flowId == NO_FLOW) {
+            return null;
+        }
+
+        synchronized (PENDING_FLOWS) {
+            Flow flow = PENDING_FLOWS.get(action);
+            return (flow != null && flow.mId == flowId) ? flow : null;
+        }
+    }
+
+    private FlowTracer() {
+        // not intended to be constructed
+    }
+
+    private static final class Flow {
+        final long mId;
+        final long mStartTimeMs;
+        volatile long mProviderLaunchTimeMs;
+
+        Flow(long id, long startTimeMs) {
+            mId = id;
+            mStartTimeMs = startTimeMs;
+        }
+    }
+}
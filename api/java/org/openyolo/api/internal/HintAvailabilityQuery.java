@@ -0,0 +1,305 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.openyolo.protocol.ProtocolConstants.HINT_AVAILABILITY_DATA_TYPE;
+import static org.valid4j.Assertive.require;
+
+import android.content.Context;
+import android.content.Intent;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+import com.google.bbq.BroadcastQueryClient;
+import com.google.bbq.QueryCallback;
+import com.google.bbq.QueryResponse;
+import com.google.bbq.ResponderFilters;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.openyolo.protocol.HintRetrieveRequest;
+import org.openyolo.protocol.Protobufs.HintAvailabilityBbqResponse;
+import org.openyolo.protocol.ProtocolConstants;
+
+/**
+ * Runs the optional broadcast query step of a hint retrieve flow, determining which hint
+ * providers have no hints available for a {@link HintRetrieveRequest}. Such providers are omitted
+ * from the flow, so that the user is not shown a provider that can only report that it has
+ * nothing to offer. Providers that do not answer hint availability queries are retained, as
+ * their availability is unknown.
+ */
+public final class HintAvailabilityQuery {
+
+    /**
+     * The amount of time we will permit providers to respond to a hint availability query.
+     * This matches the retrieve query deadline, for the same reasons.
+     */
+    public static final long HINT_AVAILABILITY_TIMEOUT_MS =
+            CredentialRetrieveQuery.RETRIEVE_TIMEOUT_MS;
+
+    private static final String LOG_TAG = "HintAvailabilityQuery";
+    private static final String SECTION_PROCESS_RESPONSES = "processHintAvailabilityResponses";
+
+    /**
+     * Receives the outcome of a hint availability query.
+     */
+    public interface Callback {
+
+        /**
+         * Invoked when the query completes. This may be invoked on any thread.
+         */
+        void onComplete(@NonNull Result result);
+    }
+
+    /**
+     * Determines which of the specified hint provider packages answer hint availability
+     * queries. If the returned set is empty, there is no need to run a query. The responders
+     * are resolved through the {@link ProviderResolutionCache}.
+     */
+    @NonNull
+    public static Set<String> getQueryableProviders(
+            @NonNull Context context,
+            @NonNull Collection<String> hintProviderPackages) {
+        require(context, notNullValue());
+        require(hintProviderPackages, notNullValue());
+
+        Set<String> queryableProviders = new HashSet<>(
+                ProviderResolutionCache.getInstance(context)
+                        .getQueryResponders(HINT_AVAILABILITY_DATA_TYPE));
+        queryableProviders.retainAll(hintProviderPackages);
+        return queryableProviders;
+    }
+
+    /**
+     * Starts a hint availability query for the specified request, directed to the specified
+     * provider packages.
+     */
+    public static void start(
+            @NonNull Context context,
+            @NonNull HintRetrieveRequest request,
+            @NonNull Set<String> queriedProviders,
+            @NonNull Callback callback) {
+        start(context, request, queriedProviders, null /* preferredProvider */, callback);
+    }
+
+    /**
+     * Starts a hint availability query for the specified request, directed to the specified
+     * provider packages. If a preferred provider is specified and is one of the queried
+     * providers, it is queried alone first with a short deadline; the other providers are only
+     * queried if it does not report that it has hints available.
+     */
+    public static void start(
+            @NonNull Context context,
+            @NonNull final HintRetrieveRequest request,
+            @NonNull final Set<String> queriedProviders,
+            @Nullable final String preferredProvider,
+            @NonNull final Callback callback) {
+        require(context, notNullValue());
+        require(request, notNullValue());
+        require(queriedProviders, notNullValue());
+        require(callback, notNullValue());
+
+        final Context applicationContext = context.getApplicationContext();
+        if (preferredProvider == null || !queriedProviders.contains(preferredProvider)) {
+            query(
+                    applicationContext,
+                    request,
+                    queriedProviders,
+                    HINT_AVAILABILITY_TIMEOUT_MS,
+                    callback);
+            return;
+        }
+
+        query(
+                applicationContext,
+                request,
+                Collections.singleton(preferredProvider),
+                CredentialRetrieveQuery.PREFERRED_PROVIDER_TIMEOUT_MS,
+                new Callback() {
+                    @Override
+                    public void onComplete(@NonNull Result result) {
+                        if (result.getExcludedProviders().isEmpty()) {
+                            callback.onComplete(result);
+                            return;
+                        }
+
+                        Set<String> otherProviders = new HashSet<>(queriedProviders);
+                        otherProviders.remove(preferredProvider);
+                        if (otherProviders.isEmpty()) {
+                            callback.onComplete(result);
+                            return;
+                        }
+
+                        query(
+                                applicationContext,
+                                request,
+                                otherProviders,
+                                HINT_AVAILABILITY_TIMEOUT_MS,
+                                new Callback() {
+                                    @Override
+                                    public void onComplete(@NonNull Result fallbackResult) {
+                                        Set<String> excludedProviders = new HashSet<>(
+                                                fallbackResult.getExcludedProviders());
+                                        excludedProviders.add(preferredProvider);
+                                        callback.onComplete(new Result(excludedProviders));
+                                    }
+                                });
+                    }
+                });
+    }
+
+    private static void query(
+            @NonNull Context applicationContext,
+            @NonNull HintRetrieveRequest request,
+            @NonNull final Set<String> queriedProviders,
+            long timeoutMs,
+            @NonNull final Callback callback) {
+        BroadcastQueryClient.getInstance(applicationContext)
+                .queryFor(
+                        HINT_AVAILABILITY_DATA_TYPE,
+                        request.toProtocolBuffer(),
+                        timeoutMs,
+                        ResponderFilters.allowOnly(queriedProviders),
+                        new QueryCallback() {
+                            @Override
+                            public void onResponse(long queryId, List<QueryResponse> responses) {
+                                Result result;
+                                boolean sectionBegun =
+                                        FlowTracer.beginSection(SECTION_PROCESS_RESPONSES);
+                                try {
+                                    result = processResponses(queriedProviders, responses);
+                                } finally {
+                                    FlowTracer.endSection(sectionBegun);
+                                }
+
+                                callback.onComplete(result);
+                            }
+                        });
+    }
+
+    /**
+     * Determines the outcome of a hint availability query from the responses received. Queried
+     * providers that did not respond, responded with a malformed message, or indicated that
+     * they have no hints, are excluded.
+     */
+    @VisibleForTesting
+    @NonNull
+    static Result processResponses(
+            @NonNull Set<String> queriedProviders,
+            @NonNull List<QueryResponse> queryResponses) {
+        Set<String> excludedProviders = new HashSet<>(queriedProviders);
+        for (QueryResponse queryResponse : queryResponses) {
+            HintAvailabilityBbqResponse response;
+            try {
+                response = HintAvailabilityBbqResponse.parseFrom(queryResponse.responseMessage);
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Failed to decode hint availability response");
+                continue;
+            }
+
+            if (response.getHintsAvailable()) {
+                excludedProviders.remove(queryResponse.responderPackage);
+            }
+        }
+
+        return new Result(excludedProviders);
+    }
+
+    private HintAvailabilityQuery() {
+        // not intended to be constructed
+    }
+
+    /**
+     * The outcome of a hint availability query: the set of providers that should be omitted
+     * from the hint retrieve flow.
+     */
+    public static final class Result {
+
+        private final Set<String> mExcludedProviders;
+
+        Result(@NonNull Set<String> excludedProviders) {
+            mExcludedProviders = Collections.unmodifiableSet(excludedProviders);
+        }
+
+        /**
+         * The packages of the providers that have no hints available.
+         */
+        @NonNull
+        public Set<String> getExcludedProviders() {
+            return mExcludedProviders;
+        }
+
+        /**
+         * Filters the specified provider hint intents to those of providers that may have hints
+         * available.
+         */
+        @NonNull
+        public List<Intent> filterHintIntents(@NonNull List<Intent> hintIntents) {
+            require(hintIntents, notNullValue());
+            ArrayList<Intent> availableIntents = new ArrayList<>(hintIntents.size());
+            for (Intent hintIntent : hintIntents) {
+                String providerPackage = hintIntent.getComponent().getPackageName();
+                if (!mExcludedProviders.contains(providerPackage)) {
+                    availableIntents.add(hintIntent);
+                }
+            }
+
+            return availableIntents;
+        }
+
+        /**
+         * Creates the Intent that continues the specified traced flow: the hint intent of the
+         * preferred provider if it may have hints available, or otherwise a provider picker for
+         * all providers that may have hints available. Null is returned if no provider has
+         * hints available. A new Intent is created on each call.
+         */
+        @Nullable
+        public Intent createContinuationIntent(
+                @NonNull Context context,
+                @NonNull List<Intent> hintIntents,
+                @Nullable String preferredProvider,
+                long flowId) {
+            List<Intent> availableIntents = filterHintIntents(hintIntents);
+            if (availableIntents.isEmpty()) {
+                return null;
+            }
+
+            ArrayList<Intent> continuationIntents = new ArrayList<>(availableIntents.size());
+            for (Intent hintIntent : availableIntents) {
+                Intent continuationIntent = new Intent(hintIntent);
+                String providerPackage = continuationIntent.getComponent().getPackageName();
+                if (providerPackage.equals(preferredProvider)) {
+                    PendingProviderChoices.record(continuationIntent);
+                    FlowTracer.providerLaunched(
+                            ProtocolConstants.HINT_CREDENTIAL_ACTION,
+                            flowId);
+                    return continuationIntent;
+                }
+
+                continuationIntents.add(continuationIntent);
+            }
+
+            return FlowTracer.attach(
+                    ProviderPickerActivity.createHintIntent(context, continuationIntents),
+                    flowId);
+        }
+    }
+}
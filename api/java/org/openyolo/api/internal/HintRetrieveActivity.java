@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.openyolo.protocol.ProtocolConstants.HINT_CREDENTIAL_ACTION;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.WindowManager.LayoutParams;
+import java.util.ArrayList;
+import java.util.Set;
+import org.openyolo.api.CredentialClientTracer;
+import org.openyolo.protocol.HintRetrieveRequest;
+import org.openyolo.protocol.HintRetrieveResult;
+
+/**
+ * An invisible Activity that forwards a given {@link HintRetrieveRequest} to the hint providers
+ * that may have hints available for it, as determined by a {@link HintAvailabilityQuery}. A
+ * {@link HintRetrieveResult} will be returned as described by
+ * {@link org.openyolo.api.CredentialClient#getHintRetrieveIntent(HintRetrieveRequest)}.
+ */
+public final class HintRetrieveActivity extends Activity {
+
+    private static final String EXTRA_REQUEST = "Request";
+    private static final String EXTRA_HINT_INTENTS = "HintIntents";
+    private static final String EXTRA_PREFERRED_PROVIDER = "PreferredProvider";
+
+    private boolean mIsDestroyed = false;
+    private long mFlowId = FlowTracer.NO_FLOW;
+    private long mQueryStartTimeMs;
+    private ArrayList<Intent> mHintIntents;
+
+    /**
+     * Returns an Intent for {@link HintRetrieveActivity} for the given
+     * {@link HintRetrieveRequest}, which will be forwarded to a subset of the specified provider
+     * hint intents. If a preferred provider package is specified, it is queried first with a
+     * short deadline, and is invoked directly if it may have hints available.
+     */
+    public static Intent createIntent(
+            Context context,
+            HintRetrieveRequest request,
+            ArrayList<Intent> hintIntents,
+            @Nullable String preferredProvider) {
+        return new Intent()
+                .setClass(context, HintRetrieveActivity.class)
+                .putExtra(EXTRA_REQUEST, request)
+                .putParcelableArrayListExtra(EXTRA_HINT_INTENTS, hintIntents)
+                .putExtra(EXTRA_PREFERRED_PROVIDER, preferredProvider);
+    }
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        getWindow().addFlags(LayoutParams.FLAG_NOT_TOUCHABLE);
+
+        HintRetrieveRequest request = getIntent().getParcelableExtra(EXTRA_REQUEST);
+        mHintIntents = getIntent().getParcelableArrayListExtra(EXTRA_HINT_INTENTS);
+        if (null == request || null == mHintIntents) {
+            setResult(
+                    HintRetrieveResult.CODE_UNKNOWN,
+                    HintRetrieveResult.UNKNOWN.toResultDataIntent());
+            finish();
+            return;
+        }
+
+        ArrayList<String> hintProviders = new ArrayList<>(mHintIntents.size());
+        for (Intent hintIntent : mHintIntents) {
+            hintProviders.add(hintIntent.getComponent().getPackageName());
+        }
+
+        mFlowId = FlowTracer.getFlowId(getIntent());
+        mQueryStartTimeMs = FlowTracer.now();
+        Set<String> queriedProviders =
+                HintAvailabilityQuery.getQueryableProviders(this, hintProviders);
+        HintAvailabilityQuery.start(
+                this,
+                request,
+                queriedProviders,
+                getIntent().getStringExtra(EXTRA_PREFERRED_PROVIDER),
+                new HintAvailabilityQueryCallback());
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mIsDestroyed = true;
+    }
+
+    private class HintAvailabilityQueryCallback implements HintAvailabilityQuery.Callback {
+
+        @Override
+        public void onComplete(@NonNull HintAvailabilityQuery.Result result) {
+            FlowTracer.span(
+                    HINT_CREDENTIAL_ACTION,
+                    mFlowId,
+                    CredentialClientTracer.SPAN_PROVIDER_QUERY,
+                    mQueryStartTimeMs);
+
+            Intent continuationIntent = result.createContinuationIntent(
+                    HintRetrieveActivity.this,
+                    mHintIntents,
+                    getIntent().getStringExtra(EXTRA_PREFERRED_PROVIDER),
+                    mFlowId);
+
+            if (continuationIntent == null) {
+                setResult(
+                        HintRetrieveResult.CODE_NO_HINTS_AVAILABLE,
+                        FlowTracer.attach(
+                                HintRetrieveResult.NO_HINTS_AVAILABLE.toResultDataIntent(),
+                                mFlowId));
+                finish();
+                return;
+            }
+
+            forwardResultFromActivity(continuationIntent);
+        }
+    }
+
+    private void forwardResultFromActivity(Intent intent) {
+        if (mIsDestroyed) {
+            return;
+        }
+
+        intent.addFlags(Intent.FLAG_ACTIVITY_FORWARD_RESULT);
+        startActivity(intent);
+        finish();
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.valid4j.Assertive.require;
+
+import android.support.annotation.NonNull;
+import android.util.Base64;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openyolo.protocol.AuthenticationDomain;
+import org.openyolo.protocol.MalformedDataException;
+
+/**
+ * A list of known providers, verified against the signing key of its publisher. The list is
+ * published as a JSON document of the form:
+ *
+ * <pre>
+ * {
+ *   "payload": "(base64 encoded payload)",
+ *   "signature": "(base64 encoded SHA256withECDSA signature of the decoded payload)"
+ * }
+ * </pre>
+ *
+ * <p>The decoded payload is itself a UTF-8 JSON object, with a "providers" array containing
+ * the Android authentication domain of each known provider, and a positive "version" number.
+ * Signing the raw payload bytes, rather than a re-serialized form of the list, avoids any need
+ * for canonicalization.
+ *
+ * <p>The publisher must increase the version with every change to the list. As the version is
+ * covered by the signature, a client that remembers the version of the last list it accepted
+ * can reject a replayed older list, which would otherwise roll back additions or removals.
+ */
+public final class KnownProviderList {
+
+    /**
+     * The algorithm used to sign the list payload.
+     */
+    public static final String SIGNATURE_ALGORITHM = "SHA256withECDSA";
+
+    /**
+     * The algorithm of the public key that verifies the list signature.
+     */
+    public static final String KEY_ALGORITHM = "EC";
+
+    private static final String FIELD_PAYLOAD = "payload";
+    private static final String FIELD_SIGNATURE = "signature";
+    private static final String FIELD_PROVIDERS = "providers";
+    private static final String FIELD_VERSION = "version";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Decodes a base64 encoded, X.509 formatted signing key.
+     * @throws MalformedDataException if the key could not be decoded.
+     */
+    @NonNull
+    public static PublicKey decodeSigningKey(@NonNull String encodedKey)
+            throws MalformedDataException {
+        require(encodedKey, notNullValue());
+        try {
+            byte[] keyBytes = Base64.decode(encodedKey, Base64.DEFAULT);
+            return KeyFactory.getInstance(KEY_ALGORITHM)
+                    .generatePublic(new X509EncodedKeySpec(keyBytes));
+        } catch (IllegalArgumentException | GeneralSecurityException ex) {
+            throw new MalformedDataException("Unable to decode known provider signing key", ex);
+        }
+    }
+
+    /**
+     * Parses a signed list document, verifying its signature against the provided key.
+     * @throws MalformedDataException if the document could not be parsed, or its signature
+     *     is not valid.
+     */
+    @NonNull
+    public static KnownProviderList parse(
+            @NonNull byte[] document,
+            @NonNull PublicKey signingKey)
+            throws MalformedDataException {
+        require(document, notNullValue());
+        require(signingKey, notNullValue());
+
+        byte[] payload;
+        byte[] signature;
+        try {
+            JSONObject envelope = new JSONObject(new String(document, UTF_8));
+            payload = Base64.decode(envelope.getString(FIELD_PAYLOAD), Base64.DEFAULT);
+            signature = Base64.decode(envelope.getString(FIELD_SIGNATURE), Base64.DEFAULT);
+        } catch (JSONException | IllegalArgumentException ex) {
+            throw new MalformedDataException("Unable to parse known provider list", ex);
+        }
+
+        if (!isSignatureValid(payload, signature, signingKey)) {
+            throw new MalformedDataException("Known provider list signature is not valid");
+        }
+
+        HashSet<AuthenticationDomain> providers = new HashSet<>();
+        long version;
+        try {
+            JSONObject list = new JSONObject(new String(payload, UTF_8));
+            version = list.getLong(FIELD_VERSION);
+            if (version <= 0) {
+                throw new MalformedDataException("Known provider list version is not positive");
+            }
+
+            JSONArray providerArray = list.getJSONArray(FIELD_PROVIDERS);
+            for (int i = 0; i < providerArray.length(); i++) {
+                AuthenticationDomain provider =
+                        AuthenticationDomain.of(providerArray.getString(i));
+                if (!provider.isAndroidAuthDomain()) {
+                    throw new MalformedDataException(
+                            "Known provider is not an Android authentication domain: "
+                                    + provider);
+                }
+                providers.add(provider);
+            }
+        } catch (JSONException | IllegalArgumentException ex) {
+            throw new MalformedDataException("Unable to parse known provider list payload", ex);
+        }
+
+        return new KnownProviderList(version, providers);
+    }
+
+    private static boolean isSignatureValid(
+            byte[] payload,
+            byte[] signature,
+            PublicKey signingKey) {
+        try {
+            Signature verifier = Signature.getInstance(SIGNATURE_ALGORITHM);
+            verifier.initVerify(signingKey);
+            verifier.update(payload);
+            return verifier.verify(signature);
+        } catch (GeneralSecurityException ex) {
+            return false;
+        }
+    }
+
+    private final long mVersion;
+    private final Set<AuthenticationDomain> mProviders;
+
+    private KnownProviderList(long version, Set<AuthenticationDomain> providers) {
+        mVersion = version;
+        mProviders = Collections.unmodifiableSet(providers);
+    }
+
+    /**
+     * The version of the list, which increases with every change made by the publisher.
+     */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * The authentication domains of the known providers on the list.
+     */
+    @NonNull
+    public Set<AuthenticationDomain> getProviders() {
+        return mProviders;
+    }
+}
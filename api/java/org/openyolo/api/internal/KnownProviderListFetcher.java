@@ -0,0 +1,192 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.valid4j.Assertive.require;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retrieves the signed known provider list document over HTTP, revalidating any previously
+ * retrieved copy using its entity tag.
+ */
+public class KnownProviderListFetcher {
+
+    /**
+     * The default freshness lifetime of a retrieved list, used when the response does not
+     * specify a max-age.
+     */
+    public static final long DEFAULT_MAX_AGE_MS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * The upper bound on the size of a list document; larger responses are rejected.
+     */
+    public static final int MAX_DOCUMENT_SIZE = 64 * 1024;
+
+    private static final int TIMEOUT_MS = (int) TimeUnit.SECONDS.toMillis(10);
+
+    private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String DIRECTIVE_MAX_AGE = "max-age=";
+
+    private final URL mListUrl;
+
+    /**
+     * Creates a fetcher for the list document at the specified URL.
+     */
+    public KnownProviderListFetcher(@NonNull URL listUrl) {
+        require(listUrl, notNullValue());
+        mListUrl = listUrl;
+    }
+
+    /**
+     * Retrieves the list document, if it differs from the version identified by the provided
+     * entity tag.
+     * @throws IOException if the document could not be retrieved.
+     */
+    @NonNull
+    public Result fetch(@Nullable String etag) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) mListUrl.openConnection();
+        try {
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setReadTimeout(TIMEOUT_MS);
+            connection.setUseCaches(false);
+            if (etag != null) {
+                connection.setRequestProperty(HEADER_IF_NONE_MATCH, etag);
+            }
+
+            int responseCode = connection.getResponseCode();
+            long maxAgeMs = parseMaxAge(connection.getHeaderField(HEADER_CACHE_CONTROL));
+            String responseEtag = connection.getHeaderField(HEADER_ETAG);
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return new Result(null, (responseEtag != null) ? responseEtag : etag, maxAgeMs);
+            }
+
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected response code: " + responseCode);
+            }
+
+            return new Result(readDocument(connection.getInputStream()), responseEtag, maxAgeMs);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Extracts the max-age directive from a Cache-Control header, in milliseconds. If the
+     * header is absent or does not specify a valid max-age, {@link #DEFAULT_MAX_AGE_MS} is
+     * returned.
+     */
+    static long parseMaxAge(@Nullable String cacheControl) {
+        if (cacheControl == null) {
+            return DEFAULT_MAX_AGE_MS;
+        }
+
+        for (String directive : cacheControl.split(",")) {
+            String trimmed = directive.trim();
+            if (trimmed.regionMatches(
+                    true, 0, DIRECTIVE_MAX_AGE, 0, DIRECTIVE_MAX_AGE.length())) {
+                try {
+                    long maxAgeSeconds =
+                            Long.parseLong(trimmed.substring(DIRECTIVE_MAX_AGE.length()));
+                    if (maxAgeSeconds >= 0) {
+                        return TimeUnit.SECONDS.toMillis(maxAgeSeconds);
+                    }
+                } catch (NumberFormatException ex) {
+                    // fall through to the default
+                }
+                break;
+            }
+        }
+
+        return DEFAULT_MAX_AGE_MS;
+    }
+
+    private static byte[] readDocument(InputStream stream) throws IOException {
+        try {
+            ByteArrayOutputStream document = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                if (document.size() + read > MAX_DOCUMENT_SIZE) {
+                    throw new IOException("Known provider list exceeds maximum size");
+                }
+                document.write(buffer, 0, read);
+            }
+            return document.toByteArray();
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * The outcome of a list retrieval.
+     */
+    public static final class Result {
+
+        @Nullable
+        private final byte[] mDocument;
+
+        @Nullable
+        private final String mEtag;
+
+        private final long mMaxAgeMs;
+
+        Result(@Nullable byte[] document, @Nullable String etag, long maxAgeMs) {
+            mDocument = document;
+            mEtag = etag;
+            mMaxAgeMs = maxAgeMs;
+        }
+
+        /**
+         * Indicates that the previously retrieved document remains current.
+         */
+        public boolean isNotModified() {
+            return mDocument == null;
+        }
+
+        /**
+         * The retrieved document, or null if the previously retrieved document remains current.
+         */
+        @Nullable
+        public byte[] getDocument() {
+            return mDocument;
+        }
+
+        /**
+         * The entity tag identifying the current version of the document, if provided.
+         */
+        @Nullable
+        public String getEtag() {
+            return mEtag;
+        }
+
+        /**
+         * The freshness lifetime of the document, in milliseconds.
+         */
+        public long getMaxAgeMs() {
+            return mMaxAgeMs;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.valid4j.Assertive.require;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Persists the most recently retrieved known provider list document, along with the metadata
+ * required to revalidate it. The stored document is not trusted: its signature must be verified
+ * again when it is read.
+ */
+public class KnownProviderListStore {
+
+    private static final String LOG_TAG = "KnownProviderListStore";
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final File mFile;
+
+    /**
+     * Creates a store persisting to the specified file.
+     */
+    public KnownProviderListStore(@NonNull File file) {
+        require(file, notNullValue());
+        mFile = file;
+    }
+
+    /**
+     * Reads the stored list document, if present. Null is returned if there is no stored
+     * document, or it could not be read.
+     */
+    @Nullable
+    public synchronized Entry read() {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(mFile));
+            if (in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+
+            String etag = in.readBoolean() ? in.readUTF() : null;
+            long expiresAtMs = in.readLong();
+            int documentLength = in.readInt();
+            if (documentLength < 0
+                    || documentLength > KnownProviderListFetcher.MAX_DOCUMENT_SIZE) {
+                return null;
+            }
+
+            byte[] document = new byte[documentLength];
+            in.readFully(document);
+            return new Entry(document, etag, expiresAtMs);
+        } catch (FileNotFoundException ex) {
+            return null;
+        } catch (IOException ex) {
+            Log.w(LOG_TAG, "Unable to read stored known provider list", ex);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Replaces the stored list document. The document is written to a temporary file first,
+     * so that a partially written document is never observed.
+     * @throws IOException if the document could not be written.
+     */
+    public synchronized void write(@NonNull Entry entry) throws IOException {
+        require(entry, notNullValue());
+        File tempFile = new File(mFile.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(tempFile));
+        try {
+            out.writeInt(FORMAT_VERSION);
+            out.writeBoolean(entry.getEtag() != null);
+            if (entry.getEtag() != null) {
+                out.writeUTF(entry.getEtag());
+            }
+            out.writeLong(entry.getExpiresAtMs());
+            out.writeInt(entry.getDocument().length);
+            out.write(entry.getDocument());
+        } finally {
+            out.close();
+        }
+
+        if (!tempFile.renameTo(mFile)) {
+            tempFile.delete();
+            throw new IOException("Unable to replace stored known provider list");
+        }
+    }
+
+    /**
+     * Discards the stored list document, if present.
+     */
+    public synchronized void clear() {
+        mFile.delete();
+    }
+
+    private static void closeQuietly(@Nullable DataInputStream in) {
+        if (in == null) {
+            return;
+        }
+
+        try {
+            in.close();
+        } catch (IOException ex) {
+            // nothing useful can be done
+        }
+    }
+
+    /**
+     * A stored list document and its revalidation metadata.
+     */
+    public static final class Entry {
+
+        private final byte[] mDocument;
+
+        @Nullable
+        private final String mEtag;
+
+        private final long mExpiresAtMs;
+
+        /**
+         * Creates a stored list entry.
+         * @param document the signed list document.
+         * @param etag the entity tag of the document, if known.
+         * @param expiresAtMs the wall clock time at which the document must be revalidated.
+         */
+        public Entry(@NonNull byte[] document, @Nullable String etag, long expiresAtMs) {
+            require(document, notNullValue());
+            mDocument = document;
+            mEtag = etag;
+            mExpiresAtMs = expiresAtMs;
+        }
+
+        /**
+         * The signed list document.
+         */
+        @NonNull
+        public byte[] getDocument() {
+            return mDocument;
+        }
+
+        /**
+         * The entity tag of the document, if known.
+         */
+        @Nullable
+        public String getEtag() {
+            return mEtag;
+        }
+
+        /**
+         * The wall clock time at which the document must be revalidated.
+         */
+        public long getExpiresAtMs() {
+            return mExpiresAtMs;
+        }
+
+        /**
+         * Determines whether the document must be revalidated at the specified time.
+         */
+        public boolean isExpired(long nowMs) {
+            return nowMs >= mExpiresAtMs;
+        }
+
+        /**
+         * Creates a copy of this entry with a new entity tag and expiry time, following a
+         * successful revalidation.
+         */
+        @NonNull
+        public Entry revalidated(@Nullable String etag, long expiresAtMs) {
+            return new Entry(mDocument, (etag != null) ? etag : mEtag, expiresAtMs);
+        }
+    }
+}
@@ -14,20 +14,56 @@
 
 package org.openyolo.api.internal;
 
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.valid4j.Assertive.require;
+
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.PublicKey;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import org.openyolo.protocol.AuthenticationDomain;
+import org.openyolo.protocol.MalformedDataException;
 
 /**
  * Manages a list of known providers, identified by their package name and a hash of their
- * signing certificate. This class will attempt to dynamically retrieve a list of known providers
- * from openyolo.org if possible, otherwise it will fall back to the list of known providers at
+ * signing certificate. This class will attempt to dynamically retrieve a signed list of known
+ * providers if possible, otherwise it will fall back to the list of known providers at
  * compile time.
+ *
+ * <p>Dynamic retrieval is enabled by declaring the base64 encoded, X.509 formatted public key
+ * that signs the list as application meta-data, under
+ * {@link #LIST_SIGNING_KEY_META_DATA}. The list is retrieved from {@link #DEFAULT_LIST_URL},
+ * unless an alternative is declared under {@link #LIST_URL_META_DATA}; the application must
+ * hold the INTERNET permission. The retrieved list is persisted, and revalidated in the
+ * background once its max-age has elapsed.
+ *
+ * <p>The installed packages that match the list are indexed by package name, so that
+ * {@link #isKnown(String)} does not need to query the package manager. The index is rebuilt
+ * only when the list changes, or a package is added, removed or changed.
  */
 public class KnownProviders {
 
@@ -36,7 +72,7 @@ public class KnownProviders {
      * <a href="https://www.dashlane.com">Dashlane</a>.
      */
     public static final AuthenticationDomain DASHLANE_PROVIDER =
-            new AuthenticationDomain("android://"
+            AuthenticationDomain.of("android://"
                     + "DcxjRReUBVOOF1ztasdT8TO_5z-2aFWBTliZC8pMuy0r"
                     + "QomVAPv88RfGomI4dJS2CEVNJuu1jSIGBamB1Ni9iw=="
                     + "@com.dashlane");
@@ -47,7 +83,7 @@ public class KnownProviders {
      * Smart Lock for Passwords</a>.
      */
     public static final AuthenticationDomain GOOGLE_PROVIDER =
-            new AuthenticationDomain("android://"
+            AuthenticationDomain.of("android://"
                     + "7fmduHKTdHHrlMvldlEqAIlSfii1tl35bxj1OXN5Ve8c"
                     + "4lU6URVu4xtSHc3BVZxS6WWJnxMDhIfQN0N0K2NDJg=="
                     + "@com.google.android.gms");
@@ -57,7 +93,7 @@ public class KnownProviders {
      * <a href="https://keepersecurity.com/">Keeper</a>.
      */
     public static final AuthenticationDomain KEEPER_PROVIDER =
-            new AuthenticationDomain("android://"
+            AuthenticationDomain.of("android://"
                     + "qLhgSEs508k28WNBOalEFKqiNiUsWQ81o-OKOc9i__pf"
                     + "APc-eCrhdbQe9Gak2DopEEsI6rc12KwmPYoaNg-zEg=="
                     + "@com.callpod.android_apps.keeper");
@@ -67,7 +103,7 @@ public class KnownProviders {
      * <a href="https://www.lastpass.com/">LastPass</a>.
      */
     public static final AuthenticationDomain LASTPASS_PROVIDER =
-            new AuthenticationDomain("android://"
+            AuthenticationDomain.of("android://"
                     + "d5XXKGMGcVvMZ7bw3-Aotgq035ClbqO7RwDQG7x6P7of"
                     + "wLxW42VRYL8jScbFfyW7hLyXYZEmrPrPsYqkJfDeNQ=="
                     + "@com.lastpass.lpandroid");
@@ -77,7 +113,7 @@ public class KnownProviders {
      * <a href="https://1password.com/">1Password</a>.
      */
     public static final AuthenticationDomain ONEPASSWORD_PROVIDER =
-            new AuthenticationDomain("android://"
+            AuthenticationDomain.of("android://"
                     + "13u4RbkHxfV1nNgX9TJADGCzjyANu3HBL6IPPj8LO82U"
                     + "iGvPNYngjSJfIWT-FsxaaEGz0QKEqrhgtlxM-DF8ow=="
                     + "@com.agilebits.onepassword");
@@ -87,7 +123,7 @@ public class KnownProviders {
      * <a href="https://www.roboform.com/">Roboform</a>.
      */
     public static final AuthenticationDomain ROBOFORM_PROVIDER =
-            new AuthenticationDomain("android://"
+            AuthenticationDomain.of("android://"
                     + "JY5BCpB1lKVw_KSpeji4Pp9znAYiho9rDyETFaAC-nCM"
                     + "hNpekHTlp45wMt7YDwe8FcMW5wrSBYLWeKEIdes77g=="
                     + "@com.siber.roboform");
@@ -105,6 +141,34 @@ public class KnownProviders {
                     ROBOFORM_PROVIDER
             )));
 
+    /**
+     * The URL from which the known provider list is retrieved, if no alternative is declared.
+     */
+    public static final String DEFAULT_LIST_URL = "https://www.openyolo.org/known-providers";
+
+    /**
+     * The application meta-data key under which an alternative known provider list URL
+     * may be declared.
+     */
+    public static final String LIST_URL_META_DATA = "org.openyolo.api.KnownProvidersUrl";
+
+    /**
+     * The application meta-data key under which the known provider list signing key is
+     * declared. Dynamic retrieval of the list is disabled if no key is declared.
+     */
+    public static final String LIST_SIGNING_KEY_META_DATA =
+            "org.openyolo.api.KnownProvidersSigningKey";
+
+    /**
+     * The delay before retrying a failed list retrieval.
+     */
+    public static final long RETRY_DELAY_MS = TimeUnit.HOURS.toMillis(1);
+
+    @VisibleForTesting
+    static final String LIST_FILE_NAME = "openyolo_known_providers";
+
+    private static final String LOG_TAG = "KnownProviders";
+
     private static final AtomicReference<KnownProviders> INSTANCE_REF =
             new AtomicReference<>();
 
@@ -112,8 +176,16 @@ public class KnownProviders {
      * Retrieves the singleton instance of the known provider list.
      */
     public static KnownProviders getInstance(Context context) {
-        KnownProviders providers = new KnownProviders(context);
-        if (!INSTANCE_REF.compareAndSet(null, providers)) {
+        KnownProviders providers = INSTANCE_REF.get();
+        if (providers != null) {
+            return providers;
+        }
+
+        providers = create(context);
+        if (INSTANCE_REF.compareAndSet(null, providers)) {
+            providers.registerPackageChangeReceiver();
+            providers.refreshListIfStale();
+        } else {
             providers = INSTANCE_REF.get();
         }
 
@@ -138,19 +210,97 @@ public class KnownProviders {
         INSTANCE_REF.set(null);
     }
 
+    private static KnownProviders create(Context context) {
+        Context applicationContext = context.getApplicationContext();
+        Bundle metaData = getMetaData(applicationContext);
+        String encodedKey =
+                (metaData != null) ? metaData.getString(LIST_SIGNING_KEY_META_DATA) : null;
+        if (encodedKey == null) {
+            return new KnownProviders(applicationContext, null, null, null, null);
+        }
+
+        try {
+            PublicKey signingKey = KnownProviderList.decodeSigningKey(encodedKey);
+            URL listUrl = new URL(metaData.getString(LIST_URL_META_DATA, DEFAULT_LIST_URL));
+            return new KnownProviders(
+                    applicationContext,
+                    new KnownProviderListFetcher(listUrl),
+                    new KnownProviderListStore(
+                            new File(applicationContext.getCacheDir(), LIST_FILE_NAME)),
+                    signingKey,
+                    Executors.newSingleThreadExecutor());
+        } catch (MalformedDataException | MalformedURLException ex) {
+            Log.w(LOG_TAG, "Invalid known provider list configuration, using default list", ex);
+            return new KnownProviders(applicationContext, null, null, null, null);
+        }
+    }
+
+    @Nullable
+    private static Bundle getMetaData(Context context) {
+        try {
+            ApplicationInfo info = context.getPackageManager().getApplicationInfo(
+                    context.getPackageName(),
+                    PackageManager.GET_META_DATA);
+            return (info != null) ? info.metaData : null;
+        } catch (PackageManager.NameNotFoundException ex) {
+            return null;
+        }
+    }
+
     private final Context mApplicationContext;
-    private Set<AuthenticationDomain> mKnownProviders;
 
-    private KnownProviders(Context context) {
-        mApplicationContext = context.getApplicationContext();
+    @Nullable
+    private final KnownProviderListFetcher mListFetcher;
+
+    @Nullable
+    private final KnownProviderListStore mListStore;
+
+    @Nullable
+    private final PublicKey mListSigningKey;
+
+    @Nullable
+    private final Executor mRefreshExecutor;
+
+    private final AtomicBoolean mRefreshPending = new AtomicBoolean(false);
+    private volatile Set<AuthenticationDomain> mKnownProviders;
+    private volatile long mListExpiresAtMs;
+
+    /**
+     * The version of the most recent dynamically retrieved list that was accepted, or zero if
+     * only the default list has been used. Older lists are rejected, so that a replayed list
+     * cannot roll back changes.
+     */
+    private volatile long mListVersion;
+    private Map<String, AuthenticationDomain> mKnownPackageIndex;
 
-        // TODO: implement dynamic retrieval of known providers from
-        // https://www.openyolo.org/known-providers
-        // and fall back to the static list only if this fails
+    /**
+     * Creates a known provider list. If a list fetcher is provided, the list is dynamically
+     * retrieved using it; otherwise, the default list is used.
+     */
+    @VisibleForTesting
+    KnownProviders(
+            @NonNull Context context,
+            @Nullable KnownProviderListFetcher listFetcher,
+            @Nullable KnownProviderListStore listStore,
+            @Nullable PublicKey listSigningKey,
+            @Nullable Executor refreshExecutor) {
+        require(context, notNullValue());
+        if (listFetcher != null) {
+            require(listStore, notNullValue());
+            require(listSigningKey, notNullValue());
+            require(refreshExecutor, notNullValue());
+        }
+
+        mApplicationContext = context.getApplicationContext();
+        mListFetcher = listFetcher;
+        mListStore = listStore;
+        mListSigningKey = listSigningKey;
+        mRefreshExecutor = refreshExecutor;
         mKnownProviders = DEFAULT_KNOWN_PROVIDERS;
     }
 
     public Set<AuthenticationDomain> getKnownProviders() {
+        refreshListIfStale();
         return new HashSet<>(mKnownProviders);
     }
 
@@ -159,25 +309,33 @@ public class KnownProviders {
      * on the known provider list.
      */
     public boolean isKnown(String packageName) {
-        AuthenticationDomain authDomain =
-                AuthenticationDomain.fromPackageName(mApplicationContext, packageName);
-        if (null == authDomain) {
-            return false;
+        return getKnownAuthenticationDomain(packageName) != null;
+    }
+
+    /**
+     * Retrieves the authentication domain of the application with the specified package name,
+     * if it is installed and on the known provider list. Otherwise, null is returned.
+     */
+    @Nullable
+    public AuthenticationDomain getKnownAuthenticationDomain(@Nullable String packageName) {
+        refreshListIfStale();
+        if (packageName == null) {
+            return null;
         }
 
-        return mKnownProviders.contains(authDomain);
+        return getKnownPackageIndex().get(packageName);
     }
 
     /**
      * Reset the list of known providers to the default provider set. If possible, this will be
-     * dynamically updated with a list retrieved from openyolo.org.
+     * dynamically updated with a retrieved list.
      *
      * <p><em>NOTE</em>: it is not typically necessary to ever call this method for anything other
      * than a unit test or test app.
      */
     @VisibleForTesting
     public void resetKnownProvidersToDefault() {
-        mKnownProviders = DEFAULT_KNOWN_PROVIDERS;
+        setKnownProviders(DEFAULT_KNOWN_PROVIDERS);
     }
 
     /**
@@ -190,6 +348,180 @@ public class KnownProviders {
     public void addKnownProvider(AuthenticationDomain provider) {
         HashSet<AuthenticationDomain> knownProviders = new HashSet<>(mKnownProviders);
         knownProviders.add(provider);
-        mKnownProviders = Collections.unmodifiableSet(knownProviders);
+        setKnownProviders(Collections.unmodifiableSet(knownProviders));
+    }
+
+    /**
+     * Discards the index of installed known providers, so that it will be rebuilt on next use.
+     */
+    public synchronized void invalidateIndex() {
+        mKnownPackageIndex = null;
+    }
+
+    private synchronized void setKnownProviders(Set<AuthenticationDomain> knownProviders) {
+        if (!knownProviders.equals(mKnownProviders)) {
+            mKnownProviders = knownProviders;
+            mKnownPackageIndex = null;
+        }
+    }
+
+    private synchronized Map<String, AuthenticationDomain> getKnownPackageIndex() {
+        if (mKnownPackageIndex == null) {
+            mKnownPackageIndex = buildKnownPackageIndex(mKnownProviders);
+        }
+
+        return mKnownPackageIndex;
+    }
+
+    private Map<String, AuthenticationDomain> buildKnownPackageIndex(
+            Set<AuthenticationDomain> knownProviders) {
+        // only packages named on the list can be known, so only those need to be inspected
+        HashMap<String, AuthenticationDomain> index = new HashMap<>();
+        HashSet<String> inspectedPackages = new HashSet<>();
+        for (AuthenticationDomain provider : knownProviders) {
+            if (!provider.isAndroidAuthDomain()) {
+                continue;
+            }
+
+            String packageName = provider.getAndroidPackageName();
+            if (!inspectedPackages.add(packageName)) {
+                continue;
+            }
+
+            AuthenticationDomain installedDomain =
+                    AuthenticationDomain.fromPackageName(mApplicationContext, packageName);
+            if (installedDomain != null && knownProviders.contains(installedDomain)) {
+                index.put(packageName, installedDomain);
+            }
+        }
+
+        return Collections.unmodifiableMap(index);
+    }
+
+    /**
+     * Schedules a background revalidation of the dynamically retrieved list, if it has expired
+     * and no revalidation is already pending.
+     */
+    @VisibleForTesting
+    void refreshListIfStale() {
+        if (mListFetcher == null || System.currentTimeMillis() < mListExpiresAtMs) {
+            return;
+        }
+
+        if (!mRefreshPending.compareAndSet(false, true)) {
+            return;
+        }
+
+        mRefreshExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    refreshList();
+                } finally {
+                    mRefreshPending.set(false);
+                }
+            }
+        });
+    }
+
+    private void refreshList() {
+        KnownProviderListStore.Entry storedEntry = mListStore.read();
+        if (storedEntry != null) {
+            KnownProviderList storedList = parseList(storedEntry.getDocument());
+            if (storedList == null) {
+                mListStore.clear();
+                storedEntry = null;
+            } else {
+                setKnownProviders(storedList.getProviders());
+                mListVersion = Math.max(mListVersion, storedList.getVersion());
+                mListExpiresAtMs = storedEntry.getExpiresAtMs();
+                if (!storedEntry.isExpired(System.currentTimeMillis())) {
+                    return;
+                }
+            }
+        }
+
+        try {
+            KnownProviderListFetcher.Result result =
+                    mListFetcher.fetch((storedEntry != null) ? storedEntry.getEtag() : null);
+            long expiresAtMs = System.currentTimeMillis() + result.getMaxAgeMs();
+            if (result.isNotModified()) {
+                if (storedEntry == null) {
+                    throw new IOException("Not modified response for unknown list version");
+                }
+
+                persistList(storedEntry.revalidated(result.getEtag(), expiresAtMs));
+                mListExpiresAtMs = expiresAtMs;
+                return;
+            }
+
+            KnownProviderList list = KnownProviderList.parse(result.getDocument(), mListSigningKey);
+            if (list.getVersion() < mListVersion) {
+                throw new MalformedDataException("Retrieved known provider list version "
+                        + list.getVersion() + " is older than accepted version " + mListVersion);
+            }
+
+            persistList(
+                    new KnownProviderListStore.Entry(
+                            result.getDocument(),
+                            result.getEtag(),
+                            expiresAtMs));
+            setKnownProviders(list.getProviders());
+            mListVersion = list.getVersion();
+            mListExpiresAtMs = expiresAtMs;
+        } catch (IOException | MalformedDataException | SecurityException ex) {
+            Log.w(LOG_TAG, "Unable to retrieve known provider list", ex);
+            mListExpiresAtMs = System.currentTimeMillis() + RETRY_DELAY_MS;
+        }
+    }
+
+    @Nullable
+    private KnownProviderList parseList(byte[] document) {
+        try {
+            return KnownProviderList.parse(document, mListSigningKey);
+        } catch (MalformedDataException ex) {
+            Log.w(LOG_TAG, "Discarding invalid stored known provider list", ex);
+            return null;
+        }
+    }
+
+    private void persistList(KnownProviderListStore.Entry entry) {
+        try {
+            mListStore.write(entry);
+        } catch (IOException ex) {
+            Log.w(LOG_TAG, "Unable to persist known provider list", ex);
+        }
+    }
+
+    @VisibleForTesting
+    void registerPackageChangeReceiver() {
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme("package");
+        mApplicationContext.registerReceiver(new PackageChangeReceiver(), filter);
+    }
+
+    private final class PackageChangeReceiver extends BroadcastReceiver {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            String packageName = (data != null) ? data.getSchemeSpecificPart() : null;
+            if (packageName == null) {
+                invalidateIndex();
+                return;
+            }
+
+            // changes to packages that are not named on the list cannot affect the index
+            for (AuthenticationDomain provider : mKnownProviders) {
+                if (provider.isAndroidAuthDomain()
+                        && packageName.equals(provider.getAndroidPackageName())) {
+                    invalidateIndex();
+                    return;
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.valid4j.Assertive.require;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.google.bbq.ResponderFilter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A BBQ {@link ResponderFilter} which permits only those responders that are on the
+ * {@link KnownProviders known provider list}, and optionally one additional provider that the
+ * user explicitly chose.
+ */
+public final class KnownProvidersResponderFilter implements ResponderFilter {
+
+    private final KnownProviders mKnownProviders;
+
+    @Nullable
+    private final String mChosenProvider;
+
+    /**
+     * Creates a filter backed by the specified known provider list.
+     */
+    public KnownProvidersResponderFilter(@NonNull KnownProviders knownProviders) {
+        this(knownProviders, null /* chosenProvider */);
+    }
+
+    /**
+     * Creates a filter backed by the specified known provider list, which additionally permits
+     * the specified provider package, if any.
+     */
+    public KnownProvidersResponderFilter(
+            @NonNull KnownProviders knownProviders,
+            @Nullable String chosenProvider) {
+        require(knownProviders, notNullValue());
+        mKnownProviders = knownProviders;
+        mChosenProvider = chosenProvider;
+    }
+
+    @NonNull
+    @Override
+    public List<String> filter(@NonNull String dataType, @NonNull List<String> responders) {
+        ArrayList<String> knownResponders = new ArrayList<>(responders.size());
+        for (String responder : responders) {
+            if (mKnownProviders.isKnown(responder) || responder.equals(mChosenProvider)) {
+                knownResponders.add(responder);
+            }
+        }
+
+        return knownResponders;
+    }
+}
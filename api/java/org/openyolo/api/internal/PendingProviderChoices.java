@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.valid4j.Assertive.require;
+
+import android.content.Intent;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records, per OpenYOLO action, the provider that the most recently launched flow was directed
+ * to. Provider results do not identify the provider that produced them, so the client uses this
+ * record to determine which provider to remember once a flow completes successfully.
+ *
+ * <p>Choices are recorded either as automatic launches, where the library selected the provider
+ * on the user's behalf, or as explicit user choices made in the provider picker. Only the latter
+ * permit an unknown provider to be remembered and invoked directly in later flows.
+ */
+public final class PendingProviderChoices {
+
+    private static final Map<String, Choice> PENDING_CHOICES = new HashMap<>();
+
+    /**
+     * Records that a flow for the specified action was automatically directed to the provider
+     * targeted by the specified intent. Intents that do not target a specific provider are
+     * ignored.
+     */
+    public static void record(@NonNull Intent providerIntent) {
+        record(providerIntent, false /* userChoice */);
+    }
+
+    /**
+     * Records that the user explicitly chose the provider targeted by the specified intent to
+     * handle a flow for its action. Intents that do not target a specific provider are ignored.
+     */
+    public static void recordUserChoice(@NonNull Intent providerIntent) {
+        record(providerIntent, true /* userChoice */);
+    }
+
+    /**
+     * Records that a flow for the specified action was automatically directed to the specified
+     * provider.
+     */
+    public static void record(@NonNull String action, @NonNull String providerPackageName) {
+        record(action, new Choice(providerPackageName, false /* userChoice */));
+    }
+
+    /**
+     * Records the specified choice for a flow of the specified action.
+     */
+    public static void record(@NonNull String action, @NonNull Choice choice) {
+        require(action, notNullValue());
+        require(choice, notNullValue());
+        synchronized (PENDING_CHOICES) {
+            PENDING_CHOICES.put(action, choice);
+        }
+    }
+
+    /**
+     * Takes the provider package most recently recorded for the specified action, if any. The
+     * record is no longer held once taken.
+     */
+    @Nullable
+    public static String take(@NonNull String action) {
+        Choice choice = takeChoice(action);
+        return (choice != null) ? choice.getProviderPackageName() : null;
+    }
+
+    /**
+     * Takes the choice most recently recorded for the specified action, if any. The record is no
+     * longer held once taken.
+     */
+    @Nullable
+    public static Choice takeChoice(@NonNull String action) {
+        require(action, notNullValue());
+        synchronized (PENDING_CHOICES) {
+            return PENDING_CHOICES.remove(action);
+        }
+    }
+
+    /**
+     * FOR TESTING ONLY - Discards all recorded choices.
+     */
+    @VisibleForTesting
+    public static void clear() {
+        synchronized (PENDING_CHOICES) {
+            PENDING_CHOICES.clear();
+        }
+    }
+
+    private static void record(@NonNull Intent providerIntent, boolean userChoice) {
+        require(providerIntent, notNullValue());
+        if (providerIntent.getAction() == null || providerIntent.getComponent() == null) {
+            return;
+        }
+
+        record(
+                providerIntent.getAction(),
+                new Choice(providerIntent.getComponent().getPackageName(), userChoice));
+    }
+
+    private PendingProviderChoices() {
+        // not intended to be constructed
+    }
+
+    /**
+     * A provider that a flow was directed to, and whether the user explicitly chose it.
+     */
+    public static final class Choice {
+
+        private final String mProviderPackageName;
+        private final boolean mUserChoice;
+
+        /**
+         * Creates a choice of the specified provider.
+         */
+        public Choice(@NonNull String providerPackageName, boolean userChoice) {
+            require(providerPackageName, notNullValue());
+            mProviderPackageName = providerPackageName;
+            mUserChoice = userChoice;
+        }
+
+        /**
+         * The package name of the chosen provider.
+         */
+        @NonNull
+        public String getProviderPackageName() {
+            return mProviderPackageName;
+        }
+
+        /**
+         * Whether the user explicitly chose the provider, rather than it being launched
+         * automatically.
+         */
+        public boolean isUserChoice() {
+            return mUserChoice;
+        }
+    }
+}
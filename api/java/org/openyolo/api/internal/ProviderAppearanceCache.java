@@ -0,0 +1,267 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.valid4j.Assertive.require;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+import android.util.LruCache;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A process-wide, memory-bounded cache of the icons and labels of credential providers, as
+ * displayed by {@link ProviderPickerActivity}. Appearances are loaded on a background thread,
+ * and cached entries are only reused while the provider's version is unchanged.
+ *
+ * <p>Icons are retained as {@link Drawable.ConstantState constant state}, rather than as
+ * drawables, so that cached icons never retain a reference to the views of a destroyed picker.
+ */
+public final class ProviderAppearanceCache {
+
+    /**
+     * The fraction of the maximum heap size that the cache may occupy.
+     */
+    private static final int HEAP_FRACTION = 64;
+
+    /**
+     * The estimated size of an icon for which the size of the underlying image is unknown.
+     */
+    private static final int DEFAULT_ICON_SIZE_BYTES = 16 * 1024;
+
+    private static final String LOG_TAG = "ProviderAppearance";
+
+    private static final AtomicReference<ProviderAppearanceCache> INSTANCE_REF =
+            new AtomicReference<>();
+
+    /**
+     * Retrieves the singleton instance of the provider appearance cache.
+     */
+    @NonNull
+    public static ProviderAppearanceCache getInstance(@NonNull Context context) {
+        ProviderAppearanceCache cache = INSTANCE_REF.get();
+        if (cache != null) {
+            return cache;
+        }
+
+        cache = new ProviderAppearanceCache(
+                context,
+                (int) Math.min(Runtime.getRuntime().maxMemory() / HEAP_FRACTION,
+                        Integer.MAX_VALUE),
+                AsyncTask.THREAD_POOL_EXECUTOR);
+        if (!INSTANCE_REF.compareAndSet(null, cache)) {
+            cache = INSTANCE_REF.get();
+        }
+
+        return cache;
+    }
+
+    /**
+     * FOR TESTING ONLY - Clears the current instance of the cache.
+     */
+    @VisibleForTesting
+    public static void clearApplicationBoundInstance() {
+        INSTANCE_REF.set(null);
+    }
+
+    /**
+     * Receives a loaded provider appearance.
+     */
+    public interface Callback {
+
+        /**
+         * Invoked on the main thread once the appearance of the provider has been loaded. This
+         * is not invoked if the cached appearance was current.
+         */
+        void onAppearanceLoaded(@NonNull String packageName, @NonNull Appearance appearance);
+    }
+
+    private final Context mApplicationContext;
+    private final Executor mLoadExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final LruCache<String, Entry> mEntries;
+
+    @VisibleForTesting
+    ProviderAppearanceCache(
+            @NonNull Context context,
+            int maxSizeBytes,
+            @NonNull Executor loadExecutor) {
+        require(context, notNullValue());
+        require(loadExecutor, notNullValue());
+        mApplicationContext = context.getApplicationContext();
+        mLoadExecutor = loadExecutor;
+        mEntries = new LruCache<String, Entry>(maxSizeBytes) {
+            @Override
+            protected int sizeOf(String packageName, Entry entry) {
+                return entry.mSizeBytes;
+            }
+        };
+    }
+
+    /**
+     * Retrieves the cached appearance of the specified provider, if available. This does not
+     * verify that the cached appearance is current, and so is safe to call on the main thread.
+     */
+    @Nullable
+    public Appearance getCached(@NonNull String packageName) {
+        Entry entry = mEntries.get(packageName);
+        return (entry != null) ? entry.mAppearance : null;
+    }
+
+    /**
+     * Verifies that the cached appearance of the specified provider is current on a background
+     * thread, loading it if not. If a new appearance is loaded, it is delivered to the callback
+     * on the main thread.
+     */
+    public void load(@NonNull final String packageName, @NonNull final Callback callback) {
+        require(packageName, notNullValue());
+        require(callback, notNullValue());
+        mLoadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Appearance appearance = loadIfChanged(packageName);
+                if (appearance == null) {
+                    return;
+                }
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onAppearanceLoaded(packageName, appearance);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * The approximate number of bytes retained by the cache.
+     */
+    public int size() {
+        return mEntries.size();
+    }
+
+    @Nullable
+    private Appearance loadIfChanged(String packageName) {
+        PackageManager packageManager = mApplicationContext.getPackageManager();
+        PackageInfo packageInfo;
+        try {
+            packageInfo = packageManager.getPackageInfo(packageName, 0);
+        } catch (PackageManager.NameNotFoundException ex) {
+            mEntries.remove(packageName);
+            return null;
+        }
+
+        Entry entry = mEntries.get(packageName);
+        if (entry != null
+                && entry.mVersionCode == packageInfo.versionCode
+                && entry.mLastUpdateTime == packageInfo.lastUpdateTime) {
+            return null;
+        }
+
+        ApplicationInfo applicationInfo = packageInfo.applicationInfo;
+        if (applicationInfo == null) {
+            Log.w(LOG_TAG, "No application info for provider " + packageName);
+            return null;
+        }
+
+        Drawable icon = applicationInfo.loadIcon(packageManager);
+        CharSequence label = packageManager.getApplicationLabel(applicationInfo);
+        Appearance appearance = new Appearance(
+                (icon != null) ? icon.getConstantState() : null,
+                (label != null) ? label.toString() : packageName);
+
+        mEntries.put(packageName, new Entry(
+                packageInfo.versionCode,
+                packageInfo.lastUpdateTime,
+                appearance,
+                estimateSize(icon, appearance.getLabel())));
+        return appearance;
+    }
+
+    private static int estimateSize(@Nullable Drawable icon, String label) {
+        int iconSize = DEFAULT_ICON_SIZE_BYTES;
+        if (icon instanceof BitmapDrawable && ((BitmapDrawable) icon).getBitmap() != null) {
+            iconSize = ((BitmapDrawable) icon).getBitmap().getRowBytes()
+                    * ((BitmapDrawable) icon).getBitmap().getHeight();
+        } else if (icon != null && icon.getIntrinsicWidth() > 0 && icon.getIntrinsicHeight() > 0) {
+            iconSize = icon.getIntrinsicWidth() * icon.getIntrinsicHeight() * 4;
+        }
+
+        return Math.max(1, iconSize + 2 * label.length());
+    }
+
+    /**
+     * The displayed icon and label of a provider.
+     */
+    public static final class Appearance {
+
+        @Nullable
+        private final Drawable.ConstantState mIconState;
+
+        @NonNull
+        private final String mLabel;
+
+        Appearance(@Nullable Drawable.ConstantState iconState, @NonNull String label) {
+            mIconState = iconState;
+            mLabel = label;
+        }
+
+        /**
+         * Creates a new instance of the provider's icon, if available. The icon is created from
+         * the provider's own resources, so that it has the density and qualifiers it was loaded
+         * with.
+         */
+        @Nullable
+        public Drawable createIcon() {
+            return (mIconState != null) ? mIconState.newDrawable() : null;
+        }
+
+        /**
+         * The provider's label.
+         */
+        @NonNull
+        public String getLabel() {
+            return mLabel;
+        }
+    }
+
+    private static final class Entry {
+        final int mVersionCode;
+        final long mLastUpdateTime;
+        final Appearance mAppearance;
+        final int mSizeBytes;
+
+        Entry(int versionCode, long lastUpdateTime, Appearance appearance, int sizeBytes) {
+            mVersionCode = versionCode;
+            mLastUpdateTime = lastUpdateTime;
+            mAppearance = appearance;
+            mSizeBytes = sizeBytes;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.WindowManager.LayoutParams;
+import java.util.ArrayList;
+import java.util.Set;
+import org.openyolo.api.CredentialClientTracer;
+
+/**
+ * An invisible Activity that forwards a credential save or delete request to the providers that
+ * did not decline it, as determined by a {@link ProviderEligibilityQuery}. If all providers
+ * decline, the specified terminal result is returned without starting any provider Activity.
+ */
+public final class ProviderEligibilityActivity extends Activity {
+
+    private static final String EXTRA_ACTION = "Action";
+    private static final String EXTRA_ENCODED_REQUEST = "EncodedRequest";
+    private static final String EXTRA_PROVIDER_INTENTS = "ProviderIntents";
+    private static final String EXTRA_PREFERRED_PROVIDER = "PreferredProvider";
+    private static final String EXTRA_DECLINED_RESULT = "DeclinedResult";
+
+    private boolean mIsDestroyed = false;
+    private long mFlowId = FlowTracer.NO_FLOW;
+    private long mQueryStartTimeMs;
+    private String mAction;
+    private ArrayList<Intent> mProviderIntents;
+    private ActivityResult mDeclinedResult;
+
+    /**
+     * Returns an Intent for {@link ProviderEligibilityActivity} for the given provider action
+     * and encoded request, which will be forwarded to a subset of the specified provider
+     * intents. If a preferred provider package is specified, it is queried first with a short
+     * deadline, and is invoked directly if it does not decline. If all providers decline, the
+     * declined result is returned.
+     */
+    public static Intent createIntent(
+            Context context,
+            String action,
+            byte[] encodedRequest,
+            ArrayList<Intent> providerIntents,
+            @Nullable String preferredProvider,
+            ActivityResult declinedResult) {
+        return new Intent()
+                .setClass(context, ProviderEligibilityActivity.class)
+                .putExtra(EXTRA_ACTION, action)
+                .putExtra(EXTRA_ENCODED_REQUEST, encodedRequest)
+                .putParcelableArrayListExtra(EXTRA_PROVIDER_INTENTS, providerIntents)
+                .putExtra(EXTRA_PREFERRED_PROVIDER, preferredProvider)
+                .putExtra(EXTRA_DECLINED_RESULT, declinedResult);
+    }
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        getWindow().addFlags(LayoutParams.FLAG_NOT_TOUCHABLE);
+
+        mAction = getIntent().getStringExtra(EXTRA_ACTION);
+        byte[] encodedRequest = getIntent().getByteArrayExtra(EXTRA_ENCODED_REQUEST);
+        mProviderIntents = getIntent().getParcelableArrayListExtra(EXTRA_PROVIDER_INTENTS);
+        mDeclinedResult = getIntent().getParcelableExtra(EXTRA_DECLINED_RESULT);
+        String dataType =
+                (mAction != null) ? ProviderEligibilityQuery.getDataTypeForAction(mAction) : null;
+        if (null == dataType
+                || null == encodedRequest
+                || null == mProviderIntents
+                || null == mDeclinedResult) {
+            setResult(Activity.RESULT_CANCELED);
+            finish();
+            return;
+        }
+
+        ArrayList<String> providers = new ArrayList<>(mProviderIntents.size());
+        for (Intent providerIntent : mProviderIntents) {
+            providers.add(providerIntent.getComponent().getPackageName());
+        }
+
+        mFlowId = FlowTracer.getFlowId(getIntent());
+        mQueryStartTimeMs = FlowTracer.now();
+        Set<String> queriedProviders =
+                ProviderEligibilityQuery.getQueryableProviders(this, dataType, providers);
+        ProviderEligibilityQuery.start(
+                this,
+                dataType,
+                encodedRequest,
+                queriedProviders,
+                getIntent().getStringExtra(EXTRA_PREFERRED_PROVIDER),
+                new EligibilityQueryCallback());
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mIsDestroyed = true;
+    }
+
+    private class EligibilityQueryCallback implements ProviderEligibilityQuery.Callback {
+
+        @Override
+        public void onComplete(@NonNull ProviderEligibilityQuery.Result result) {
+            FlowTracer.span(
+                    mAction,
+                    mFlowId,
+                    CredentialClientTracer.SPAN_PROVIDER_QUERY,
+                    mQueryStartTimeMs);
+
+            Intent continuationIntent = result.createContinuationIntent(
+                    ProviderEligibilityActivity.this,
+                    mAction,
+                    mProviderIntents,
+                    getIntent().getStringExtra(EXTRA_PREFERRED_PROVIDER),
+                    mFlowId);
+
+            if (continuationIntent == null) {
+                setResult(
+                        mDeclinedResult.getResultCode(),
+                        FlowTracer.attach(mDeclinedResult.getData(), mFlowId));
+                finish();
+                return;
+            }
+
+            forwardResultFromActivity(continuationIntent);
+        }
+    }
+
+    private void forwardResultFromActivity(Intent intent) {
+        if (mIsDestroyed) {
+            return;
+        }
+
+        intent.addFlags(Intent.FLAG_ACTIVITY_FORWARD_RESULT);
+        startActivity(intent);
+        finish();
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.valid4j.Assertive.require;
+
+import android.content.Context;
+import android.content.Intent;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+import com.google.bbq.BroadcastQueryClient;
+import com.google.bbq.QueryCallback;
+import com.google.bbq.QueryResponse;
+import com.google.bbq.ResponderFilters;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.openyolo.protocol.Protobufs.CredentialDeleteMatchBbqResponse;
+import org.openyolo.protocol.Protobufs.CredentialSaveEligibilityBbqResponse;
+import org.openyolo.protocol.ProtocolConstants;
+
+/**
+ * Runs the optional broadcast query step of a credential save or delete flow, determining which
+ * providers would decline the request: for saves, those that would refuse it, and for deletes,
+ * those that do not store a matching credential. Such providers are omitted from the flow.
+ *
+ * <p>Only an explicit negative response excludes a provider. Providers that do not answer,
+ * whether because they do not support the query or did not respond in time, are retained, as
+ * wrongly omitting a provider would silently lose the user's save or delete.
+ */
+public final class ProviderEligibilityQuery {
+
+    /**
+     * The amount of time we will permit providers to respond to an eligibility query. This
+     * matches the retrieve query deadline, for the same reasons.
+     */
+    public static final long ELIGIBILITY_TIMEOUT_MS = CredentialRetrieveQuery.RETRIEVE_TIMEOUT_MS;
+
+    private static final String LOG_TAG = "ProviderEligibility";
+    private static final String SECTION_PROCESS_RESPONSES = "processEligibilityResponses";
+
+    /**
+     * Receives the outcome of an eligibility query.
+     */
+    public interface Callback {
+
+        /**
+         * Invoked when the query completes. This may be invoked on any thread.
+         */
+        void onComplete(@NonNull Result result);
+    }
+
+    /**
+     * Returns the eligibility query data type for the specified provider action, or null if
+     * the action has no eligibility query.
+     */
+    @Nullable
+    public static String getDataTypeForAction(@NonNull String action) {
+        switch (action) {
+            case ProtocolConstants.SAVE_CREDENTIAL_ACTION:
+            case ProtocolConstants.BATCH_SAVE_CREDENTIAL_ACTION:
+                return ProtocolConstants.SAVE_ELIGIBILITY_DATA_TYPE;
+            case ProtocolConstants.DELETE_CREDENTIAL_ACTION:
+            case ProtocolConstants.BATCH_DELETE_CREDENTIAL_ACTION:
+                return ProtocolConstants.DELETE_MATCH_DATA_TYPE;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Determines which of the specified provider packages answer eligibility queries of the
+     * specified data type. If the returned set is empty, there is no need to run a query. The
+     * responders are resolved through the {@link ProviderResolutionCache}.
+     */
+    @NonNull
+    public static Set<String> getQueryableProviders(
+            @NonNull Context context,
+            @NonNull String dataType,
+            @NonNull Collection<String> providerPackages) {
+        require(context, notNullValue());
+        require(dataType, notNullValue());
+        require(providerPackages, notNullValue());
+
+        Set<String> queryableProviders = new HashSet<>(
+                ProviderResolutionCache.getInstance(context).getQueryResponders(dataType));
+        queryableProviders.retainAll(providerPackages);
+        return queryableProviders;
+    }
+
+    /**
+     * Starts an eligibility query of the specified data type, carrying the specified encoded
+     * request, directed to the specified provider packages.
+     */
+    public static void start(
+            @NonNull Context context,
+            @NonNull String dataType,
+            @NonNull byte[] encodedRequest,
+            @NonNull Set<String> queriedProviders,
+            @NonNull Callback callback) {
+        start(
+                context,
+                dataType,
+                encodedRequest,
+                queriedProviders,
+                null /* preferredProvider */,
+                callback);
+    }
+
+    /**
+     * Starts an eligibility query of the specified data type, carrying the specified encoded
+     * request, directed to the specified provider packages. If a preferred provider is
+     * specified and is one of the queried providers, it is queried alone first with a short
+     * deadline; the other providers are only queried if it declines.
+     */
+    public static void start(
+            @NonNull Context context,
+            @NonNull final String dataType,
+            @NonNull final byte[] encodedRequest,
+            @NonNull final Set<String> queriedProviders,
+            @Nullable final String preferredProvider,
+            @NonNull final Callback callback) {
+        require(context, notNullValue());
+        require(dataType, notNullValue());
+        require(encodedRequest, notNullValue());
+        require(queriedProviders, notNullValue());
+        require(callback, notNullValue());
+
+        final Context applicationContext = context.getApplicationContext();
+        if (preferredProvider == null || !queriedProviders.contains(preferredProvider)) {
+            query(
+                    applicationContext,
+                    dataType,
+                    encodedRequest,
+                    queriedProviders,
+                    ELIGIBILITY_TIMEOUT_MS,
+                    callback);
+            return;
+        }
+
+        query(
+                applicationContext,
+                dataType,
+                encodedRequest,
+                Collections.singleton(preferredProvider),
+                CredentialRetrieveQuery.PREFERRED_PROVIDER_TIMEOUT_MS,
+                new Callback() {
+                    @Override
+                    public void onComplete(@NonNull Result result) {
+                        Set<String> otherProviders = new HashSet<>(queriedProviders);
+                        otherProviders.remove(preferredProvider);
+                        if (result.getExcludedProviders().isEmpty()
+                                || otherProviders.isEmpty()) {
+                            callback.onComplete(result);
+                            return;
+                        }
+
+                        query(
+                                applicationContext,
+                                dataType,
+                                encodedRequest,
+                                otherProviders,
+                                ELIGIBILITY_TIMEOUT_MS,
+                                new Callback() {
+                                    @Override
+                                    public void onComplete(@NonNull Result fallbackResult) {
+                                        Set<String> excludedProviders = new HashSet<>(
+                                                fallbackResult.getExcludedProviders());
+                                        excludedProviders.add(preferredProvider);
+                                        callback.onComplete(new Result(excludedProviders));
+                                    }
+                                });
+                    }
+                });
+    }
+
+    private static void query(
+            @NonNull Context applicationContext,
+            @NonNull final String dataType,
+            @NonNull byte[] encodedRequest,
+            @NonNull Set<String> queriedProviders,
+            long timeoutMs,
+            @NonNull final Callback callback) {
+        BroadcastQueryClient.getInstance(applicationContext)
+                .queryFor(
+                        dataType,
+                        encodedRequest,
+                        timeoutMs,
+                        ResponderFilters.allowOnly(queriedProviders),
+                        new QueryCallback() {
+                            @Override
+                            public void onResponse(long queryId, List<QueryResponse> responses) {
+                                Result result;
+                                boolean sectionBegun =
+                                        FlowTracer.beginSection(SECTION_PROCESS_RESPONSES);
+                                try {
+                                    result = processResponses(dataType, responses);
+                                } finally {
+                                    FlowTracer.endSection(sectionBegun);
+                                }
+
+                                callback.onComplete(result);
+                            }
+                        });
+    }
+
+    /**
+     * Determines the outcome of an eligibility query from the responses received. Only the
+     * providers that explicitly declined are excluded.
+     */
+    @VisibleForTesting
+    @NonNull
+    static Result processResponses(
+            @NonNull String dataType,
+            @NonNull List<QueryResponse> queryResponses) {
+        Set<String> excludedProviders = new HashSet<>();
+        for (QueryResponse queryResponse : queryResponses) {
+            boolean eligible;
+            try {
+                eligible = isEligible(dataType, queryResponse.responseMessage);
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Failed to decode eligibility response");
+                continue;
+            }
+
+            if (!eligible) {
+                excludedProviders.add(queryResponse.responderPackage);
+            }
+        }
+
+        return new Result(excludedProviders);
+    }
+
+    private static boolean isEligible(String dataType, byte[] responseMessage)
+            throws IOException {
+        switch (dataType) {
+            case ProtocolConstants.SAVE_ELIGIBILITY_DATA_TYPE:
+                return CredentialSaveEligibilityBbqResponse.parseFrom(responseMessage)
+                        .getSaveEligible();
+            case ProtocolConstants.DELETE_MATCH_DATA_TYPE:
+                return CredentialDeleteMatchBbqResponse.parseFrom(responseMessage)
+                        .getMatchingCredentialAvailable();
+            default:
+                throw new IllegalArgumentException("Unsupported data type: " + dataType);
+        }
+    }
+
+    private ProviderEligibilityQuery() {
+        // not intended to be constructed
+    }
+
+    /**
+     * The outcome of an eligibility query: the set of providers that should be omitted from the
+     * save or delete flow.
+     */
+    public static final class Result {
+
+        private final Set<String> mExcludedProviders;
+
+        Result(@NonNull Set<String> excludedProviders) {
+            mExcludedProviders = Collections.unmodifiableSet(excludedProviders);
+        }
+
+        /**
+         * The packages of the providers that declined the request.
+         */
+        @NonNull
+        public Set<String> getExcludedProviders() {
+            return mExcludedProviders;
+        }
+
+        /**
+         * Filters the specified provider intents to those of providers that did not decline the
+         * request.
+         */
+        @NonNull
+        public List<Intent> filterProviderIntents(@NonNull List<Intent> providerIntents) {
+            require(providerIntents, notNullValue());
+            ArrayList<Intent> eligibleIntents = new ArrayList<>(providerIntents.size());
+            for (Intent providerIntent : providerIntents) {
+                String providerPackage = providerIntent.getComponent().getPackageName();
+                if (!mExcludedProviders.contains(providerPackage)) {
+                    eligibleIntents.add(providerIntent);
+                }
+            }
+
+            return eligibleIntents;
+        }
+
+        /**
+         * Creates the Intent that continues the specified traced flow: the provider intent of
+         * the preferred provider if it did not decline, or otherwise a provider picker for all
+         * providers that did not decline. Null is returned if all providers declined. A new
+         * Intent is created on each call.
+         */
+        @Nullable
+        public Intent createContinuationIntent(
+                @NonNull Context context,
+                @NonNull String action,
+                @NonNull List<Intent> providerIntents,
+                @Nullable String preferredProvider,
+                long flowId) {
+            List<Intent> eligibleIntents = filterProviderIntents(providerIntents);
+            if (eligibleIntents.isEmpty()) {
+                return null;
+            }
+
+            ArrayList<Intent> continuationIntents = new ArrayList<>(eligibleIntents.size());
+            for (Intent providerIntent : eligibleIntents) {
+                Intent continuationIntent = new Intent(providerIntent);
+                String providerPackage = continuationIntent.getComponent().getPackageName();
+                if (providerPackage.equals(preferredProvider)) {
+                    PendingProviderChoices.record(action, providerPackage);
+                    FlowTracer.providerLaunched(action, flowId);
+                    return continuationIntent;
+                }
+
+                continuationIntents.add(continuationIntent);
+            }
+
+            Intent pickerIntent = isSaveAction(action)
+                    ? ProviderPickerActivity.createSaveIntent(context, continuationIntents)
+                    : ProviderPickerActivity.createDeleteIntent(context, continuationIntents);
+            return FlowTracer.attach(pickerIntent, flowId);
+        }
+
+        private static boolean isSaveAction(String action) {
+            return ProtocolConstants.SAVE_CREDENTIAL_ACTION.equals(action)
+                    || ProtocolConstants.BATCH_SAVE_CREDENTIAL_ACTION.equals(action);
+        }
+    }
+}
@@ -20,15 +20,12 @@ import static org.valid4j.Assertive.require;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
-import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageManager;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.StringRes;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
@@ -41,12 +38,13 @@ import android.widget.TextView;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import org.openyolo.api.CredentialClientTracer;
 import org.openyolo.api.R;
-import org.openyolo.protocol.AuthenticationDomain;
 import org.openyolo.protocol.CredentialDeleteResult;
 import org.openyolo.protocol.CredentialRetrieveResult;
 import org.openyolo.protocol.CredentialSaveResult;
 import org.openyolo.protocol.HintRetrieveResult;
+import org.openyolo.protocol.Protobufs.AccountPreview;
 
 /**
  * Activity which presents the given list of providers and their associated intent operations.
@@ -56,9 +54,11 @@ import org.openyolo.protocol.HintRetrieveResult;
 public final class ProviderPickerActivity extends Activity {
 
     private static final String EXTRA_PROVIDER_INTENTS = "providerIntents";
+    private static final String EXTRA_PROVIDER_KNOWN = "providerKnown";
     private static final String EXTRA_TITLE_RES_ID = "titleRes";
     private static final String EXTRA_USER_CANCELED_RESULT = "userCanceledResult";
-    private static final String LOG_TAG = "ProviderPicker";
+    private static final String EXTRA_ACCOUNT_NAMES = "accountNames";
+    private static final String EXTRA_ACCOUNT_IDENTIFIERS = "accountIdentifiers";
 
     private static final ActivityResult RETRIEVE_USER_CANCELED_RESULT =
             ActivityResult.of(
@@ -81,6 +81,8 @@ public final class ProviderPickerActivity extends Activity {
                     CredentialDeleteResult.USER_CANCELED.toResultDataIntent());
 
     private View mPickerContainer;
+    private long mFlowId = FlowTracer.NO_FLOW;
+    private long mShownTimeMs;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -90,6 +92,8 @@ public final class ProviderPickerActivity extends Activity {
         getWindow().setLayout(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT);
 
         mPickerContainer = findViewById(R.id.picker_container);
+        mFlowId = FlowTracer.getFlowId(getIntent());
+        mShownTimeMs = FlowTracer.now();
 
         // Setup title
         TextView titleView = findViewById(R.id.picker_title);
@@ -104,7 +108,29 @@ public final class ProviderPickerActivity extends Activity {
         if (retrieveIntents == null) {
             retrieveIntents = Collections.emptyList();
         }
-        providerView.setAdapter(new ProviderAdapter(retrieveIntents));
+
+        // providers are treated as unknown if their known status was not determined
+        boolean[] providerKnown = getIntent().getBooleanArrayExtra(EXTRA_PROVIDER_KNOWN);
+        if (providerKnown == null || providerKnown.length != retrieveIntents.size()) {
+            providerKnown = new boolean[retrieveIntents.size()];
+        }
+
+        // in account chooser mode, each item is an account rather than a provider
+        String[] accountNames = getIntent().getStringArrayExtra(EXTRA_ACCOUNT_NAMES);
+        String[] accountIdentifiers = getIntent().getStringArrayExtra(EXTRA_ACCOUNT_IDENTIFIERS);
+        if (accountNames == null
+                || accountIdentifiers == null
+                || accountNames.length != retrieveIntents.size()
+                || accountIdentifiers.length != retrieveIntents.size()) {
+            accountNames = null;
+            accountIdentifiers = null;
+        }
+
+        providerView.setAdapter(new ProviderAdapter(
+                retrieveIntents,
+                providerKnown,
+                accountNames,
+                accountIdentifiers));
     }
 
     @Override
@@ -133,12 +159,31 @@ public final class ProviderPickerActivity extends Activity {
         ActivityResult activityResult = getIntent().getParcelableExtra(EXTRA_USER_CANCELED_RESULT);
 
         if (null != activityResult) {
+            FlowTracer.attach(activityResult.getData(), mFlowId);
             setResult(activityResult.getResultCode(), activityResult.getData());
         }
 
+        if (mFlowId != FlowTracer.NO_FLOW) {
+            List<Intent> providerIntents =
+                    getIntent().getParcelableArrayListExtra(EXTRA_PROVIDER_INTENTS);
+            if (providerIntents != null && !providerIntents.isEmpty()) {
+                tracePickerSpan(providerIntents.get(0).getAction());
+            }
+        }
+
         finish();
     }
 
+    private void tracePickerSpan(@Nullable String action) {
+        if (action != null) {
+            FlowTracer.span(
+                    action,
+                    mFlowId,
+                    CredentialClientTracer.SPAN_PROVIDER_PICKER,
+                    mShownTimeMs);
+        }
+    }
+
     /**
      * Creates an intent for the picker activity, showing the user the list of credential providers
      * that can be used for the operation identified by the specified title text.
@@ -149,8 +194,18 @@ public final class ProviderPickerActivity extends Activity {
             @StringRes int titleRes,
             @Nullable ActivityResult userCanceledResult) {
         require(context, notNullValue());
+
+        // known status is determined here, so that the picker does not need to
+        KnownProviders knownProviders = KnownProviders.getInstance(context);
+        boolean[] providerKnown = new boolean[providerIntents.size()];
+        for (int i = 0; i < providerIntents.size(); i++) {
+            providerKnown[i] = knownProviders.isKnown(
+                    providerIntents.get(i).getComponent().getPackageName());
+        }
+
         Intent intent = new Intent(context, ProviderPickerActivity.class);
         intent.putParcelableArrayListExtra(EXTRA_PROVIDER_INTENTS, providerIntents);
+        intent.putExtra(EXTRA_PROVIDER_KNOWN, providerKnown);
         intent.putExtra(EXTRA_TITLE_RES_ID, titleRes);
         intent.putExtra(EXTRA_USER_CANCELED_RESULT, userCanceledResult);
         return intent;
@@ -171,6 +226,37 @@ public final class ProviderPickerActivity extends Activity {
                 RETRIEVE_USER_CANCELED_RESULT);
     }
 
+    /**
+     * Creates an intent for displaying a single list of the accounts available across several
+     * providers, allowing the user to choose an account directly rather than first choosing a
+     * provider. Each account intent is the retrieve intent for the provider holding the
+     * corresponding account preview.
+     */
+    public static Intent createAccountChooserIntent(
+            @NonNull Context context,
+            @NonNull ArrayList<Intent> accountIntents,
+            @NonNull List<AccountPreview> accountPreviews) {
+        require(accountPreviews, notNullValue());
+        require(accountIntents.size() == accountPreviews.size(),
+                "each account preview must have an account intent");
+
+        String[] accountNames = new String[accountPreviews.size()];
+        String[] accountIdentifiers = new String[accountPreviews.size()];
+        for (int i = 0; i < accountPreviews.size(); i++) {
+            AccountPreview preview = accountPreviews.get(i);
+            accountNames[i] = preview.getDisplayName();
+            accountIdentifiers[i] = preview.getIdentifier();
+        }
+
+        return createIntent(
+                context,
+                accountIntents,
+                R.string.account_chooser_prompt,
+                RETRIEVE_USER_CANCELED_RESULT)
+                .putExtra(EXTRA_ACCOUNT_NAMES, accountNames)
+                .putExtra(EXTRA_ACCOUNT_IDENTIFIERS, accountIdentifiers);
+    }
+
     /**
      * Creates an intent for displaying a list of providers that can save a credential for the
      * user.
@@ -216,50 +302,45 @@ public final class ProviderPickerActivity extends Activity {
                 DELETE_USER_CANCELED_RESULT);
     }
 
-    private final class ProviderAdapter extends ArrayAdapter<Intent> {
+    private final class ProviderAdapter extends ArrayAdapter<Intent>
+            implements ProviderAppearanceCache.Callback {
 
-        private final List<Drawable> mProviderIcons;
-        private final List<String> mProviderNames;
-        private final List<Boolean> mProviderKnown;
+        private final ProviderAppearanceCache mAppearanceCache;
+        private final boolean[] mProviderKnown;
 
-        ProviderAdapter(List<Intent> providerIntents) {
-            super(ProviderPickerActivity.this, 0, providerIntents);
-            mProviderIcons = new ArrayList<>(providerIntents.size());
-            mProviderNames = new ArrayList<>(providerIntents.size());
-            mProviderKnown = new ArrayList<>(providerIntents.size());
-
-            KnownProviders knownProviders = KnownProviders.getInstance(
-                    ProviderPickerActivity.this.getApplicationContext());
-            PackageManager pm = getPackageManager();
-            for (Intent providerIntent : providerIntents) {
-                try {
-                    String packageName = providerIntent.getComponent().getPackageName();
-                    ApplicationInfo info = pm.getApplicationInfo(packageName, 0);
-
-                    // NOTE(dxslly): Google's provider implementation lives inside the Google Play
-                    // Services APK which has a different application label and icon than user's
-                    // expect. To avoid confusion, a special case is made to provide the correct
-                    // branding. Ideally this should be solved at the protocol level (e.g. optional
-                    // metadata specified in the manifest that can override these defaults for
-                    // trusted providers).
-                    AuthenticationDomain authDomain =
-                            AuthenticationDomain.fromPackageName(getContext(), packageName);
-                    if (KnownProviders.GOOGLE_PROVIDER.equals(authDomain)) {
-                        mProviderIcons.add(getDrawable(R.drawable.google_g_standard_color));
-                        mProviderNames.add(
-                                getString(R.string.provider_picker_google_provider_name));
-                    } else {
-                        mProviderIcons.add(info.loadIcon(pm));
-                        mProviderNames.add(pm.getApplicationLabel(info).toString());
-                    }
+        @Nullable
+        private final String[] mAccountNames;
 
-                    mProviderKnown.add(knownProviders.isKnown(packageName));
-                } catch (PackageManager.NameNotFoundException e) {
-                    Log.wtf(LOG_TAG, "Failed to retrieve package info for intent");
+        @Nullable
+        private final String[] mAccountIdentifiers;
+
+        ProviderAdapter(
+                List<Intent> providerIntents,
+                boolean[] providerKnown,
+                @Nullable String[] accountNames,
+                @Nullable String[] accountIdentifiers) {
+            super(ProviderPickerActivity.this, 0, providerIntents);
+            mProviderKnown = providerKnown;
+            mAccountNames = accountNames;
+            mAccountIdentifiers = accountIdentifiers;
+
+            // the picker is displayed immediately, with cached or placeholder appearances, while
+            // the current appearances are verified or loaded in the background
+            mAppearanceCache = ProviderAppearanceCache.getInstance(getApplicationContext());
+            for (int i = 0; i < providerIntents.size(); i++) {
+                if (!isGoogleProvider(i)) {
+                    mAppearanceCache.load(getProviderPackageName(i), this);
                 }
             }
         }
 
+        @Override
+        public void onAppearanceLoaded(
+                @NonNull String packageName,
+                @NonNull ProviderAppearanceCache.Appearance appearance) {
+            notifyDataSetChanged();
+        }
+
         @Override
         public View getView(int position, View itemView, ViewGroup parent) {
             final Intent providerIntent = getItem(position);
@@ -270,12 +351,39 @@ public final class ProviderPickerActivity extends Activity {
 
             ImageView providerIconView = itemView.findViewById(R.id.provider_icon);
             TextView providerNameView = itemView.findViewById(R.id.provider_name);
+            TextView accountIdentifierView = itemView.findViewById(R.id.account_identifier);
             View providerUnsafe = itemView.findViewById(R.id.unsafe_provider_warning);
 
-            providerIconView.setImageDrawable(mProviderIcons.get(position));
-            providerNameView.setText(mProviderNames.get(position));
+            // NOTE(dxslly): Google's provider implementation lives inside the Google Play
+            // Services APK which has a different application label and icon than user's
+            // expect. To avoid confusion, a special case is made to provide the correct
+            // branding. Ideally this should be solved at the protocol level (e.g. optional
+            // metadata specified in the manifest that can override these defaults for
+            // trusted providers).
+            if (isGoogleProvider(position)) {
+                providerIconView.setImageDrawable(getDrawable(R.drawable.google_g_standard_color));
+                providerNameView.setText(R.string.provider_picker_google_provider_name);
+            } else {
+                ProviderAppearanceCache.Appearance appearance =
+                        mAppearanceCache.getCached(getProviderPackageName(position));
+                Drawable icon = (appearance != null) ? appearance.createIcon() : null;
+                providerIconView.setImageDrawable(
+                        (icon != null) ? icon : getPackageManager().getDefaultActivityIcon());
+
+                // until the label is loaded, the package name identifies the provider
+                providerNameView.setText((appearance != null)
+                        ? appearance.getLabel()
+                        : getProviderPackageName(position));
+            }
+
+            // in account chooser mode, the provider is identified by its icon alone
+            if (mAccountNames != null && mAccountIdentifiers != null) {
+                bindAccount(position, providerNameView, accountIdentifierView);
+            } else {
+                accountIdentifierView.setVisibility(View.GONE);
+            }
 
-            if (mProviderKnown.get(position)) {
+            if (mProviderKnown[position]) {
                 providerUnsafe.setVisibility(View.GONE);
             } else {
                 providerUnsafe.setVisibility(View.VISIBLE);
@@ -286,11 +394,42 @@ public final class ProviderPickerActivity extends Activity {
                 public void onClick(View view) {
                     providerIntent.setFlags(
                             providerIntent.getFlags() | Intent.FLAG_ACTIVITY_FORWARD_RESULT);
+                    PendingProviderChoices.recordUserChoice(providerIntent);
+                    if (mFlowId != FlowTracer.NO_FLOW) {
+                        tracePickerSpan(providerIntent.getAction());
+                        FlowTracer.providerLaunched(providerIntent.getAction(), mFlowId);
+                    }
                     startActivity(providerIntent);
                     finish();
                 }
             });
             return itemView;
         }
+
+        private void bindAccount(
+                int position,
+                TextView accountNameView,
+                TextView accountIdentifierView) {
+            String accountName = mAccountNames[position];
+            String accountIdentifier = mAccountIdentifiers[position];
+            if (accountName == null || accountName.isEmpty()) {
+                accountNameView.setText(accountIdentifier);
+                accountIdentifierView.setVisibility(View.GONE);
+            } else {
+                accountNameView.setText(accountName);
+                accountIdentifierView.setText(accountIdentifier);
+                accountIdentifierView.setVisibility(View.VISIBLE);
+            }
+        }
+
+        private String getProviderPackageName(int position) {
+            return getItem(position).getComponent().getPackageName();
+        }
+
+        private boolean isGoogleProvider(int position) {
+            return mProviderKnown[position]
+                    && KnownProviders.GOOGLE_PROVIDER.getAndroidPackageName()
+                            .equals(getProviderPackageName(position));
+        }
     }
 }
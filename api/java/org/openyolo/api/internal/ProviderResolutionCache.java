@@ -0,0 +1,223 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.openyolo.protocol.ProtocolConstants.BATCH_DELETE_CREDENTIAL_ACTION;
+import static org.openyolo.protocol.ProtocolConstants.BATCH_SAVE_CREDENTIAL_ACTION;
+import static org.openyolo.protocol.ProtocolConstants.DELETE_CREDENTIAL_ACTION;
+import static org.openyolo.protocol.ProtocolConstants.HINT_CREDENTIAL_ACTION;
+import static org.openyolo.protocol.ProtocolConstants.OPENYOLO_CATEGORY;
+import static org.openyolo.protocol.ProtocolConstants.RETRIEVE_CREDENTIAL_ACTION;
+import static org.openyolo.protocol.ProtocolConstants.RETRIEVE_CREDENTIAL_OR_HINT_ACTION;
+import static org.openyolo.protocol.ProtocolConstants.SAVE_CREDENTIAL_ACTION;
+import static org.valid4j.Assertive.require;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import com.google.bbq.QueryUtil;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Caches the provider activities that handle each OpenYOLO action. Each action is resolved
+ * separately on first use, with a single package manager query, so that a flow only pays for the
+ * actions it needs, and a flow which needs the provider for an action in several packages does
+ * not query the package manager repeatedly. The packages that answer broadcast queries for a
+ * data type are cached in the same way, as they are resolved on each flow that queries
+ * providers. The cache is invalidated whenever a package is added, removed or changed.
+ */
+public final class ProviderResolutionCache {
+
+    /**
+     * The OpenYOLO actions resolved by the cache.
+     */
+    public static final List<String> PROVIDER_ACTIONS =
+            Collections.unmodifiableList(Arrays.asList(
+                    RETRIEVE_CREDENTIAL_ACTION,
+                    RETRIEVE_CREDENTIAL_OR_HINT_ACTION,
+                    HINT_CREDENTIAL_ACTION,
+                    SAVE_CREDENTIAL_ACTION,
+                    DELETE_CREDENTIAL_ACTION,
+                    BATCH_SAVE_CREDENTIAL_ACTION,
+                    BATCH_DELETE_CREDENTIAL_ACTION));
+
+    private static final AtomicReference<ProviderResolutionCache> INSTANCE_REF =
+            new AtomicReference<>();
+
+    /**
+     * Retrieves the singleton instance of the provider resolution cache.
+     */
+    @NonNull
+    public static ProviderResolutionCache getInstance(@NonNull Context context) {
+        ProviderResolutionCache cache = INSTANCE_REF.get();
+        if (cache != null) {
+            return cache;
+        }
+
+        cache = new ProviderResolutionCache(context);
+        if (INSTANCE_REF.compareAndSet(null, cache)) {
+            cache.registerPackageChangeReceiver();
+        } else {
+            cache = INSTANCE_REF.get();
+        }
+
+        return cache;
+    }
+
+    /**
+     * FOR TESTING ONLY - Clears the current instance of the cache.
+     */
+    @VisibleForTesting
+    public static void clearApplicationBoundInstance() {
+        INSTANCE_REF.set(null);
+    }
+
+    private final Context mApplicationContext;
+    private final Map<String, Map<String, ComponentName>> mProvidersByAction = new HashMap<>();
+    private final Map<String, Set<String>> mRespondersByDataType = new HashMap<>();
+
+    @VisibleForTesting
+    ProviderResolutionCache(@NonNull Context context) {
+        require(context, notNullValue());
+        mApplicationContext = context.getApplicationContext();
+    }
+
+    /**
+     * Retrieves the provider activities that handle the specified OpenYOLO action, keyed by
+     * package name, in the order returned by the package manager.
+     */
+    @NonNull
+    public Map<String, ComponentName> getProviders(@NonNull String action) {
+        require(PROVIDER_ACTIONS.contains(action), "Unsupported action: " + action);
+        synchronized (this) {
+            Map<String, ComponentName> providers = mProvidersByAction.get(action);
+            if (providers == null) {
+                providers = resolveAction(action);
+                mProvidersByAction.put(action, providers);
+            }
+
+            return providers;
+        }
+    }
+
+    /**
+     * Retrieves the provider activities that handle the specified OpenYOLO action, in the order
+     * returned by the package manager.
+     */
+    @NonNull
+    public List<ComponentName> getProviderComponents(@NonNull String action) {
+        return new ArrayList<>(getProviders(action).values());
+    }
+
+    /**
+     * Retrieves the activity in the specified provider that handles the specified OpenYOLO
+     * action, if the provider has such an activity.
+     */
+    @Nullable
+    public ComponentName getProvider(
+            @NonNull String providerPackageName,
+            @NonNull String action) {
+        return getProviders(action).get(providerPackageName);
+    }
+
+    /**
+     * Creates an explicit Intent to invoke the specified action on the specified provider,
+     * if the provider has a handler registered.
+     */
+    @Nullable
+    public Intent createIntentForAction(
+            @NonNull String providerPackageName,
+            @NonNull String action) {
+        ComponentName providerComponent = getProvider(providerPackageName, action);
+        if (providerComponent == null) {
+            return null;
+        }
+
+        Intent intent = new Intent(action);
+        intent.setComponent(providerComponent);
+        intent.addCategory(OPENYOLO_CATEGORY);
+        return intent;
+    }
+
+    /**
+     * Retrieves the packages that answer broadcast queries for the specified data type.
+     */
+    @NonNull
+    public synchronized Set<String> getQueryResponders(@NonNull String dataType) {
+        require(dataType, notNullValue());
+        Set<String> responders = mRespondersByDataType.get(dataType);
+        if (responders == null) {
+            responders = Collections.unmodifiableSet(
+                    QueryUtil.getRespondersForDataType(mApplicationContext, dataType));
+            mRespondersByDataType.put(dataType, responders);
+        }
+
+        return responders;
+    }
+
+    /**
+     * Discards all resolved providers and query responders, so that they will be resolved again
+     * on next use.
+     */
+    public synchronized void invalidate() {
+        mProvidersByAction.clear();
+        mRespondersByDataType.clear();
+    }
+
+    private Map<String, ComponentName> resolveAction(String action) {
+        LinkedHashMap<String, ComponentName> providers = new LinkedHashMap<>();
+        for (ComponentName component
+                : ProviderResolver.findProviders(mApplicationContext, action)) {
+            // where a provider declares multiple handlers, the first is used
+            if (!providers.containsKey(component.getPackageName())) {
+                providers.put(component.getPackageName(), component);
+            }
+        }
+
+        return Collections.unmodifiableMap(providers);
+    }
+
+    @VisibleForTesting
+    void registerPackageChangeReceiver() {
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme("package");
+        mApplicationContext.registerReceiver(new PackageChangeReceiver(), filter);
+    }
+
+    private final class PackageChangeReceiver extends BroadcastReceiver {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            invalidate();
+        }
+    }
+}
@@ -27,7 +27,8 @@ import java.util.List;
 
 /**
  * Utility for producing OpenYOLO resolving the activities exposed by providers to handle specific,
- * OpenYOLO actions.
+ * OpenYOLO actions. Each call queries the package manager; {@link ProviderResolutionCache}
+ * should be used where the result may be reused.
  */
 public final class ProviderResolver {
 
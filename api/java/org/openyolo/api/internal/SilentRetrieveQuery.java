@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.openyolo.protocol.ProtocolConstants.SILENT_RETRIEVE_DATA_TYPE;
+import static org.valid4j.Assertive.require;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+import com.google.bbq.BroadcastQueryClient;
+import com.google.bbq.QueryCallback;
+import com.google.bbq.QueryResponse;
+import com.google.bbq.ResponderFilter;
+import java.io.IOException;
+import java.util.List;
+import org.openyolo.protocol.AuthenticationDomain;
+import org.openyolo.protocol.Credential;
+import org.openyolo.protocol.CredentialRetrieveRequest;
+import org.openyolo.protocol.MalformedDataException;
+import org.openyolo.protocol.Protobufs.SilentRetrieveBbqRequest;
+import org.openyolo.protocol.Protobufs.SilentRetrieveBbqResponse;
+
+/**
+ * Runs a silent credential retrieve query, which obtains a credential directly from the
+ * broadcast query responses without starting any activity. A credential is only produced if
+ * exactly one provider returns one, and it is for the requesting app's own authentication
+ * domain; in all other cases, the interactive retrieve flow must be used.
+ *
+ * <p>As the credential is used without the user seeing which provider produced it, the query
+ * is only ever sent to {@link KnownProviders known providers} and to the provider the user
+ * explicitly chose for retrieval, if any. Any other app could otherwise answer with a forged
+ * credential for the requesting app's domain. The credential is not encrypted in the response,
+ * so this restriction is also its only protection.
+ */
+public final class SilentRetrieveQuery {
+
+    /**
+     * The amount of time providers are permitted to respond to a silent retrieve query. This is
+     * deliberately short: silent retrieval exists for latency, and an answer that arrives later
+     * than this is no faster than the interactive flow.
+     */
+    public static final long SILENT_RETRIEVE_TIMEOUT_MS = 1000;
+
+    private static final String LOG_TAG = "SilentRetrieveQuery";
+
+    /**
+     * Receives the outcome of a silent retrieve query.
+     */
+    public interface Callback {
+
+        /**
+         * Invoked when the query completes, with the silently retrieved credential if
+         * available. This may be invoked on any thread.
+         */
+        void onComplete(@Nullable Credential credential);
+    }
+
+    /**
+     * Starts a silent retrieve query for the specified request, directed to the
+     * {@link KnownProviders known providers} and the specified trusted provider, if any. The
+     * trusted provider must be one the user explicitly chose, whose signature has been
+     * verified. The request must not require user mediation.
+     */
+    public static void start(
+            @NonNull Context context,
+            @NonNull CredentialRetrieveRequest request,
+            @Nullable String trustedProvider,
+            @NonNull final Callback callback) {
+        require(context, notNullValue());
+        require(request, notNullValue());
+        require(!request.getRequireUserMediation(), "request must not require user mediation");
+        require(callback, notNullValue());
+
+        final Context applicationContext = context.getApplicationContext();
+        final AuthenticationDomain selfDomain =
+                AuthenticationDomain.getSelfAuthDomain(applicationContext);
+
+        ResponderFilter filter = new KnownProvidersResponderFilter(
+                KnownProviders.getInstance(applicationContext),
+                trustedProvider);
+
+        SilentRetrieveBbqRequest silentRequest = SilentRetrieveBbqRequest.newBuilder()
+                .setRequest(request.toProtocolBuffer())
+                .build();
+
+        BroadcastQueryClient.getInstance(applicationContext)
+                .queryFor(
+                        SILENT_RETRIEVE_DATA_TYPE,
+                        silentRequest,
+                        SILENT_RETRIEVE_TIMEOUT_MS,
+                        filter,
+                        new QueryCallback() {
+                            @Override
+                            public void onResponse(long queryId, List<QueryResponse> responses) {
+                                callback.onComplete(processResponses(selfDomain, responses));
+                            }
+                        });
+    }
+
+    /**
+     * Determines the silently retrieved credential, if any, from the responses received.
+     */
+    @VisibleForTesting
+    @Nullable
+    static Credential processResponses(
+            @Nullable AuthenticationDomain selfDomain,
+            @NonNull List<QueryResponse> queryResponses) {
+        if (selfDomain == null) {
+            Log.w(LOG_TAG, "Unable to determine the authentication domain of this app");
+            return null;
+        }
+
+        Credential retrievedCredential = null;
+        for (QueryResponse queryResponse : queryResponses) {
+            Credential credential;
+            try {
+                SilentRetrieveBbqResponse response =
+                        SilentRetrieveBbqResponse.parseFrom(queryResponse.responseMessage);
+                if (!response.hasCredential()) {
+                    continue;
+                }
+
+                credential = Credential.fromProtobuf(response.getCredential());
+            } catch (IOException | MalformedDataException ex) {
+                Log.w(LOG_TAG, "Discarding invalid silent retrieve response from "
+                        + queryResponse.responderPackage, ex);
+                continue;
+            }
+
+            if (!selfDomain.equals(credential.getAuthenticationDomain())) {
+                Log.w(LOG_TAG, "Discarding silently retrieved credential for another domain");
+                continue;
+            }
+
+            // credentials from several providers require the user to choose between them
+            if (retrievedCredential != null) {
+                return null;
+            }
+
+            retrievedCredential = credential;
+        }
+
+        return retrievedCredential;
+    }
+
+    private SilentRetrieveQuery() {
+        // not intended to be constructed
+    }
+}
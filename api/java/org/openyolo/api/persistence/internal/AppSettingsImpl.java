@@ -14,28 +14,68 @@
 
 package org.openyolo.api.persistence.internal;
 
-import android.content.Context;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.valid4j.Assertive.require;
 
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import java.util.concurrent.atomic.AtomicReference;
 import org.openyolo.api.persistence.AppSettings;
+import org.openyolo.protocol.AuthenticationDomain;
 
 /**
- * The default implementation of {@link AppSettings}.
+ * The default implementation of {@link AppSettings}. There is a single instance in the process,
+ * whose settings are loaded in the background on first use and then served from memory. It also
+ * holds the library's {@link RememberedProviderSettings}.
  */
-public final class AppSettingsImpl implements AppSettings {
+public final class AppSettingsImpl implements AppSettings, RememberedProviderSettings {
 
     private static final String SETTING_NAME_SPACE = "AppSettings";
     private static final String KEY_IS_AUTO_SIGN_IN_DISABLED = "is_auto_sign_in_disabled";
+    private static final String KEY_PREFIX_REMEMBERED_PROVIDER = "remembered_provider_";
+    private static final String KEY_PREFIX_REMEMBERED_PROVIDER_USER_CHOSEN =
+            "remembered_provider_user_chosen_";
 
+    private static final AtomicReference<AppSettingsImpl> INSTANCE_REF =
+            new AtomicReference<>();
+
+    private final SettingsFactory mSettingsFactory;
     private final SettingsFactory.BooleanSetting mIsAutoSignInDisabled;
 
     /**
-     * Returns a new instance of {@link AppSettingsImpl}.
+     * Returns the singleton instance of {@link AppSettingsImpl}. The first call starts loading
+     * the persisted settings in the background.
      */
     public static AppSettings getInstance(Context context) {
-        return new AppSettingsImpl(SettingsFactoryImpl.getInstance(context, SETTING_NAME_SPACE));
+        AppSettingsImpl appSettings = INSTANCE_REF.get();
+        if (appSettings != null) {
+            return appSettings;
+        }
+
+        appSettings =
+                new AppSettingsImpl(SettingsFactoryImpl.getInstance(context, SETTING_NAME_SPACE));
+        if (!INSTANCE_REF.compareAndSet(null, appSettings)) {
+            appSettings = INSTANCE_REF.get();
+        }
+
+        return appSettings;
     }
 
-    private AppSettingsImpl(SettingsFactory settingsFactory) {
+    /**
+     * FOR TESTING ONLY - Clears the current instance, so that the next call to
+     * {@link #getInstance(Context)} reloads the persisted settings.
+     */
+    @VisibleForTesting
+    public static void clearApplicationBoundInstance() {
+        INSTANCE_REF.set(null);
+        SettingsFactoryImpl.clearInstances();
+    }
+
+    @VisibleForTesting
+    AppSettingsImpl(SettingsFactory settingsFactory) {
+        mSettingsFactory = settingsFactory;
         mIsAutoSignInDisabled =
                 settingsFactory.makeBoolean(KEY_IS_AUTO_SIGN_IN_DISABLED, false /* defaultValue */);
     }
@@ -49,4 +89,56 @@ public final class AppSettingsImpl implements AppSettings {
     public void setIsAutoSignInDisabled(boolean isDisabled) {
         mIsAutoSignInDisabled.set(isDisabled);
     }
+
+    @Override
+    @Nullable
+    public AuthenticationDomain getRememberedProvider(@NonNull String action) {
+        String encodedProvider = getRememberedProviderSetting(action).get();
+        if (encodedProvider == null) {
+            return null;
+        }
+
+        try {
+            return AuthenticationDomain.of(encodedProvider);
+        } catch (IllegalArgumentException ex) {
+            // a malformed value is treated as no remembered choice
+            return null;
+        }
+    }
+
+    @Override
+    public void setRememberedProvider(
+            @NonNull String action,
+            @Nullable AuthenticationDomain provider) {
+        setRememberedProvider(action, provider, false /* userChosen */);
+    }
+
+    @Override
+    public void setRememberedProvider(
+            @NonNull String action,
+            @Nullable AuthenticationDomain provider,
+            boolean userChosen) {
+        getRememberedProviderSetting(action).set(
+                (provider != null) ? provider.toString() : null);
+        getRememberedProviderUserChosenSetting(action).set(provider != null && userChosen);
+    }
+
+    @Override
+    public boolean isRememberedProviderUserChosen(@NonNull String action) {
+        return getRememberedProviderUserChosenSetting(action).get();
+    }
+
+    private SettingsFactory.StringSetting getRememberedProviderSetting(String action) {
+        require(action, notNullValue());
+        return mSettingsFactory.makeString(
+                KEY_PREFIX_REMEMBERED_PROVIDER + action,
+                null /* defaultValue */);
+    }
+
+    private SettingsFactory.BooleanSetting getRememberedProviderUserChosenSetting(String action) {
+        require(action, notNullValue());
+        return mSettingsFactory.makeBoolean(
+                KEY_PREFIX_REMEMBERED_PROVIDER_USER_CHOSEN + action,
+                false /* defaultValue */);
+    }
 }
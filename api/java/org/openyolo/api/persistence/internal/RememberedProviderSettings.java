@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openyolo.api.persistence.internal;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import org.openyolo.api.persistence.AppSettings;
+import org.openyolo.protocol.AuthenticationDomain;
+
+/**
+ * The persisted, per-action record of the provider that last completed each OpenYOLO operation.
+ * This is held by the library's own {@link AppSettings} implementation; for app-supplied
+ * settings, which do not implement this interface, {@link #NONE} is used and no provider is
+ * ever remembered.
+ */
+public interface RememberedProviderSettings {
+
+    /**
+     * Settings that never remember a provider, and discard any that are set.
+     */
+    RememberedProviderSettings NONE = new RememberedProviderSettings() {
+        @Override
+        @Nullable
+        public AuthenticationDomain getRememberedProvider(@NonNull String action) {
+            return null;
+        }
+
+        @Override
+        public void setRememberedProvider(
+                @NonNull String action,
+                @Nullable AuthenticationDomain provider) {
+            // nothing is remembered
+        }
+
+        @Override
+        public void setRememberedProvider(
+                @NonNull String action,
+                @Nullable AuthenticationDomain provider,
+                boolean userChosen) {
+            // nothing is remembered
+        }
+
+        @Override
+        public boolean isRememberedProviderUserChosen(@NonNull String action) {
+            return false;
+        }
+    };
+
+    /**
+     * Returns the provider that previously completed the specified OpenYOLO action, if any. The
+     * returned provider has not been checked for presence on the device.
+     */
+    @Nullable
+    AuthenticationDomain getRememberedProvider(@NonNull String action);
+
+    /**
+     * Setter for {@link #getRememberedProvider(String)}. A null provider forgets any previously
+     * remembered choice for the action. The provider is recorded as not explicitly chosen by the
+     * user.
+     */
+    void setRememberedProvider(@NonNull String action, @Nullable AuthenticationDomain provider);
+
+    /**
+     * Setter for {@link #getRememberedProvider(String)} and
+     * {@link #isRememberedProviderUserChosen(String)}.
+     */
+    void setRememberedProvider(
+            @NonNull String action,
+            @Nullable AuthenticationDomain provider,
+            boolean userChosen);
+
+    /**
+     * Returns {@code true} if the user explicitly chose the remembered provider for the specified
+     * action in the provider picker, rather than it being selected automatically.
+     */
+    boolean isRememberedProviderUserChosen(@NonNull String action);
+}
@@ -14,6 +14,10 @@
 
 package org.openyolo.api.persistence.internal;
 
+import android.support.annotation.Nullable;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+
 /**
  * Factory for creating settings.
  */
@@ -26,6 +30,29 @@ interface SettingsFactory {
      */
     BooleanSetting makeBoolean(String key, boolean defaultValue);
 
+    /**
+     * Returns a new {@link StringSetting} based on the given key and default value.
+     * @param key a unique identifier that acts as the primary key of the setting.
+     * @param defaultValue the default value of the setting.
+     */
+    StringSetting makeString(String key, @Nullable String defaultValue);
+
+    /**
+     * Returns a new {@link LongSetting} based on the given key and default value.
+     * @param key a unique identifier that acts as the primary key of the setting.
+     * @param defaultValue the default value of the setting.
+     */
+    LongSetting makeLong(String key, long defaultValue);
+
+    /**
+     * Returns a new {@link ProtoSetting} based on the given key, which has no value by default.
+     * Protocol buffer settings are intended for small messages only, as they are held in memory
+     * and rewritten in full whenever they change.
+     * @param key a unique identifier that acts as the primary key of the setting.
+     * @param parser the parser for the protocol buffer type of the setting.
+     */
+    <T extends MessageLite> ProtoSetting<T> makeProto(String key, Parser<T> parser);
+
     /**
      * A boolean setting.
      */
@@ -41,4 +68,56 @@ interface SettingsFactory {
          */
         void set(boolean value);
     }
+
+    /**
+     * A string setting.
+     */
+    interface StringSetting {
+
+        /**
+         * Returns the current value if one has been set, otherwise the default value.
+         */
+        @Nullable
+        String get();
+
+        /**
+         * Sets the current value of the setting to the given value. Setting a null value
+         * restores the default value.
+         */
+        void set(@Nullable String value);
+    }
+
+    /**
+     * A long setting.
+     */
+    interface LongSetting {
+
+        /**
+         * Returns the current value if one has been set, otherwise the default value.
+         */
+        long get();
+
+        /**
+         * Sets the current value of the setting to the given value.
+         */
+        void set(long value);
+    }
+
+    /**
+     * A protocol buffer setting.
+     */
+    interface ProtoSetting<T extends MessageLite> {
+
+        /**
+         * Returns the current value if one has been set and can be parsed, otherwise null.
+         */
+        @Nullable
+        T get();
+
+        /**
+         * Sets the current value of the setting to the given value. Setting a null value
+         * clears the setting.
+         */
+        void set(@Nullable T value);
+    }
 }
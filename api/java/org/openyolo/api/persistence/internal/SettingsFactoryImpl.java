@@ -14,24 +14,116 @@
 
 package org.openyolo.api.persistence.internal;
 
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.valid4j.Assertive.require;
+
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.util.Base64;
+import android.util.Log;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
- * The default {@link SettingsFactory} implementation backed by {@link SharedPreferences}.
+ * The default {@link SettingsFactory} implementation backed by {@link SharedPreferences}. There
+ * is a single instance per namespace in the process. The persisted values are loaded once, in
+ * the background, and are then served from memory. Changes never wait for the load: they are
+ * held in an overlay of pending writes, which reads consult first, and are written back to the
+ * shared preferences in the background once the load completes; changes made while a write is
+ * pending are coalesced into that write.
+ *
+ * <p>A read of a value that has not been changed in this process must wait for the load. That
+ * wait is bounded by {@link #LOAD_TIMEOUT_MS}; if the load has not completed by then, a warning
+ * is logged and the setting's default value is returned. Loading starts when the instance for a
+ * namespace is first requested, so requesting it early (e.g. from
+ * {@code CredentialClient.preload(Context)}) keeps reads from waiting at all.
  */
 final class SettingsFactoryImpl implements SettingsFactory {
-    private final SharedPreferences mSharedPreferences;
+
+    private static final String LOG_TAG = "SettingsFactoryImpl";
+
+    /**
+     * The maximum time that a read waits for the persisted values to be loaded, before falling
+     * back to the setting's default value.
+     */
+    @VisibleForTesting
+    static final long LOAD_TIMEOUT_MS = 500;
+
+    private static final Map<String, SettingsFactoryImpl> INSTANCES = new HashMap<>();
+
+    /**
+     * Marks a pending removal in the set of changes to be written.
+     */
+    private static final Object REMOVED = new Object();
 
     /**
-     * Returns a new instance of the {@link SettingsFactoryImpl} for the given settings namespace.
+     * Returns the instance of the {@link SettingsFactoryImpl} for the given settings namespace,
+     * starting to load its persisted values if this is the first use of the namespace.
      */
     public static SettingsFactoryImpl getInstance(Context context, String namespace) {
-        return new SettingsFactoryImpl(context, namespace);
+        synchronized (INSTANCES) {
+            SettingsFactoryImpl instance = INSTANCES.get(namespace);
+            if (instance == null) {
+                instance = new SettingsFactoryImpl(
+                        context,
+                        namespace,
+                        Executors.newSingleThreadExecutor());
+                INSTANCES.put(namespace, instance);
+            }
+
+            return instance;
+        }
+    }
+
+    /**
+     * FOR TESTING ONLY - Discards the instances for all namespaces. Any pending writes will
+     * still complete.
+     */
+    @VisibleForTesting
+    static void clearInstances() {
+        synchronized (INSTANCES) {
+            INSTANCES.clear();
+        }
     }
 
-    private SettingsFactoryImpl(Context context, String namespace) {
-        mSharedPreferences = context.getSharedPreferences(namespace, Context.MODE_PRIVATE);
+    private final Context mApplicationContext;
+    private final String mNamespace;
+    private final Executor mExecutor;
+    private final CountDownLatch mLoadedLatch = new CountDownLatch(1);
+    private final Map<String, Object> mValues = new HashMap<>();
+    private final Map<String, Object> mPendingWrites = new HashMap<>();
+
+    private SharedPreferences mSharedPreferences;
+
+    @VisibleForTesting
+    SettingsFactoryImpl(
+            @NonNull Context context,
+            @NonNull String namespace,
+            @NonNull Executor executor) {
+        require(context, notNullValue());
+        require(namespace, notNullValue());
+        require(executor, notNullValue());
+        mApplicationContext = context.getApplicationContext();
+        mNamespace = namespace;
+        mExecutor = executor;
+
+        // the executor runs tasks in order, so all writes are applied after the load
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
     }
 
     /**
@@ -39,44 +131,306 @@ final class SettingsFactoryImpl implements SettingsFactory {
      * the given key and default value.
      */
     public BooleanSetting makeBoolean(String key, boolean defaultValue) {
-        return BooleanSettingImpl.make(mSharedPreferences, key, defaultValue);
+        return new BooleanSettingImpl(this, key, defaultValue);
+    }
+
+    /**
+     * Returns a new {@link SettingsFactory.StringSetting} based on
+     * the given key and default value.
+     */
+    public StringSetting makeString(String key, @Nullable String defaultValue) {
+        return new StringSettingImpl(this, key, defaultValue);
+    }
+
+    /**
+     * Returns a new {@link SettingsFactory.LongSetting} based on
+     * the given key and default value.
+     */
+    public LongSetting makeLong(String key, long defaultValue) {
+        return new LongSettingImpl(this, key, defaultValue);
+    }
+
+    /**
+     * Returns a new {@link SettingsFactory.ProtoSetting} based on
+     * the given key and parser.
+     */
+    public <T extends MessageLite> ProtoSetting<T> makeProto(String key, Parser<T> parser) {
+        return new ProtoSettingImpl<>(this, key, parser);
+    }
+
+    /**
+     * Blocks until all changes made before this call have been written to the shared
+     * preferences.
+     */
+    @VisibleForTesting
+    void awaitPendingWrites() {
+        final CountDownLatch writtenLatch = new CountDownLatch(1);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                writtenLatch.countDown();
+            }
+        });
+
+        awaitUninterruptibly(writtenLatch);
+    }
+
+    /**
+     * Returns the current value for the key, or null if it has no value or the persisted values
+     * could not be loaded in time.
+     */
+    @Nullable
+    private Object getValue(String key) {
+        Object value = getPendingValue(key);
+        if (value != null) {
+            return (value != REMOVED) ? value : null;
+        }
+
+        if (!awaitLoad()) {
+            Log.w(LOG_TAG, "Settings for namespace " + mNamespace + " not loaded within "
+                    + LOAD_TIMEOUT_MS + "ms, using the default value for " + key);
+            return null;
+        }
+
+        synchronized (mValues) {
+            value = mPendingWrites.get(key);
+            if (value == null) {
+                value = mValues.get(key);
+            }
+        }
+
+        return (value != REMOVED) ? value : null;
+    }
+
+    @Nullable
+    private Object getPendingValue(String key) {
+        synchronized (mValues) {
+            return mPendingWrites.get(key);
+        }
+    }
+
+    private void setValue(String key, @Nullable Object value) {
+        boolean writeScheduled;
+        synchronized (mValues) {
+            writeScheduled = !mPendingWrites.isEmpty();
+            mPendingWrites.put(key, (value != null) ? value : REMOVED);
+        }
+
+        // the executor runs tasks in order, so the write is applied after the load
+        if (!writeScheduled) {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    writePending();
+                }
+            });
+        }
+    }
+
+    private void load() {
+        try {
+            mSharedPreferences =
+                    mApplicationContext.getSharedPreferences(mNamespace, Context.MODE_PRIVATE);
+            synchronized (mValues) {
+                mValues.putAll(mSharedPreferences.getAll());
+            }
+        } finally {
+            mLoadedLatch.countDown();
+        }
+    }
+
+    private void writePending() {
+        Map<String, Object> writes;
+        synchronized (mValues) {
+            writes = new HashMap<>(mPendingWrites);
+            mPendingWrites.clear();
+            for (Map.Entry<String, Object> write : writes.entrySet()) {
+                if (write.getValue() == REMOVED) {
+                    mValues.remove(write.getKey());
+                } else {
+                    mValues.put(write.getKey(), write.getValue());
+                }
+            }
+        }
+
+        SharedPreferences.Editor editor = mSharedPreferences.edit();
+        for (Map.Entry<String, Object> write : writes.entrySet()) {
+            Object value = write.getValue();
+            if (value == REMOVED) {
+                editor.remove(write.getKey());
+            } else if (value instanceof Boolean) {
+                editor.putBoolean(write.getKey(), (Boolean) value);
+            } else if (value instanceof Long) {
+                editor.putLong(write.getKey(), (Long) value);
+            } else {
+                editor.putString(write.getKey(), (String) value);
+            }
+        }
+
+        if (!editor.commit()) {
+            Log.w(LOG_TAG, "Failed to write settings for namespace " + mNamespace);
+        }
+    }
+
+    private boolean awaitLoad() {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LOAD_TIMEOUT_MS);
+        boolean interrupted = false;
+        boolean loaded;
+        while (true) {
+            try {
+                loaded = mLoadedLatch.await(
+                        deadlineNanos - System.nanoTime(),
+                        TimeUnit.NANOSECONDS);
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        return loaded;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
      * The default internal implementation of a {@link SettingsFactory.BooleanSetting}.
      */
     private static final class BooleanSettingImpl implements BooleanSetting {
+        private final SettingsFactoryImpl mFactory;
         private final String mKey;
         private final boolean mDefaultValue;
-        private final SharedPreferences mSharedPreferences;
 
-        private static BooleanSetting make(
-                SharedPreferences sharedPreferences,
-                String key,
-                boolean defaultValue) {
-            return new BooleanSettingImpl(sharedPreferences, key, defaultValue);
+        private BooleanSettingImpl(SettingsFactoryImpl factory, String key, boolean defaultValue) {
+            mFactory = factory;
+            mKey = key;
+            mDefaultValue = defaultValue;
+        }
+
+        @Override
+        public boolean get() {
+            Object value = mFactory.getValue(mKey);
+            return (value instanceof Boolean) ? (Boolean) value : mDefaultValue;
         }
 
-        private BooleanSettingImpl(
-                SharedPreferences sharedPreferences,
+        @Override
+        public void set(boolean value) {
+            mFactory.setValue(mKey, value);
+        }
+    }
+
+    /**
+     * The default internal implementation of a {@link SettingsFactory.StringSetting}.
+     */
+    private static final class StringSettingImpl implements StringSetting {
+        private final SettingsFactoryImpl mFactory;
+        private final String mKey;
+        private final String mDefaultValue;
+
+        private StringSettingImpl(
+                SettingsFactoryImpl factory,
                 String key,
-                boolean defaultValue) {
+                @Nullable String defaultValue) {
+            mFactory = factory;
             mKey = key;
             mDefaultValue = defaultValue;
-            mSharedPreferences = sharedPreferences;
         }
 
         @Override
-        public boolean get() {
-            return mSharedPreferences.getBoolean(mKey, mDefaultValue);
+        @Nullable
+        public String get() {
+            Object value = mFactory.getValue(mKey);
+            return (value instanceof String) ? (String) value : mDefaultValue;
         }
 
         @Override
-        public void set(boolean value) {
-            SharedPreferences.Editor editor = mSharedPreferences.edit();
-            editor.putBoolean(mKey, value);
-            editor.apply();
+        public void set(@Nullable String value) {
+            mFactory.setValue(mKey, value);
         }
     }
 
+    /**
+     * The default internal implementation of a {@link SettingsFactory.LongSetting}.
+     */
+    private static final class LongSettingImpl implements LongSetting {
+        private final SettingsFactoryImpl mFactory;
+        private final String mKey;
+        private final long mDefaultValue;
+
+        private LongSettingImpl(SettingsFactoryImpl factory, String key, long defaultValue) {
+            mFactory = factory;
+            mKey = key;
+            mDefaultValue = defaultValue;
+        }
+
+        @Override
+        public long get() {
+            Object value = mFactory.getValue(mKey);
+            return (value instanceof Long) ? (Long) value : mDefaultValue;
+        }
+
+        @Override
+        public void set(long value) {
+            mFactory.setValue(mKey, value);
+        }
+    }
+
+    /**
+     * The default internal implementation of a {@link SettingsFactory.ProtoSetting}. The message
+     * is persisted as a base64 encoded string.
+     */
+    private static final class ProtoSettingImpl<T extends MessageLite>
+            implements ProtoSetting<T> {
+        private final SettingsFactoryImpl mFactory;
+        private final String mKey;
+        private final Parser<T> mParser;
+
+        private ProtoSettingImpl(SettingsFactoryImpl factory, String key, Parser<T> parser) {
+            mFactory = factory;
+            mKey = key;
+            mParser = parser;
+        }
+
+        @Override
+        @Nullable
+        public T get() {
+            Object value = mFactory.getValue(mKey);
+            if (!(value instanceof String)) {
+                return null;
+            }
+
+            try {
+                return mParser.parseFrom(Base64.decode((String) value, Base64.NO_WRAP));
+            } catch (IllegalArgumentException | InvalidProtocolBufferException ex) {
+                Log.w(LOG_TAG, "Unable to parse setting " + mKey, ex);
+                return null;
+            }
+        }
+
+        @Override
+        public void set(@Nullable T value) {
+            mFactory.setValue(
+                    mKey,
+                    (value != null)
+                            ? Base64.encodeToString(value.toByteArray(), Base64.NO_WRAP)
+                            : null);
+        }
+    }
 }
@@ -19,35 +19,71 @@ package org.openyolo.api;
 
 import static junit.framework.TestCase.assertNotNull;
 import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static org.openyolo.protocol.AuthenticationMethods.EMAIL;
+import static org.openyolo.protocol.ProtocolConstants.BATCH_SAVE_CREDENTIAL_ACTION;
+import static org.openyolo.protocol.ProtocolConstants.DELETE_CREDENTIAL_ACTION;
+import static org.openyolo.protocol.ProtocolConstants.HINT_CREDENTIAL_ACTION;
+import static org.openyolo.protocol.ProtocolConstants.RETRIEVE_CREDENTIAL_ACTION;
+import static org.openyolo.protocol.ProtocolConstants.SAVE_CREDENTIAL_ACTION;
 
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.ActivityInfo;
+import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
+import android.content.pm.Signature;
+import android.os.Looper;
+import android.support.annotation.NonNull;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatcher;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openyolo.api.internal.CredentialOrHintRetrieveActivity;
+import org.openyolo.api.internal.CredentialRetrievePrefetcher;
 import org.openyolo.api.internal.FinishWithResultActivity;
+import org.openyolo.api.internal.HintRetrieveActivity;
 import org.openyolo.api.internal.KnownProviders;
+import org.openyolo.api.internal.PendingProviderChoices;
+import org.openyolo.api.internal.ProviderEligibilityActivity;
+import org.openyolo.api.internal.ProviderResolutionCache;
 import org.openyolo.api.persistence.AppSettings;
+import org.openyolo.api.persistence.internal.AppSettingsImpl;
+import org.openyolo.api.persistence.internal.RememberedProviderSettings;
 import org.openyolo.protocol.AuthenticationDomain;
 import org.openyolo.protocol.AuthenticationMethods;
 import org.openyolo.protocol.Credential;
+import org.openyolo.protocol.CredentialDeleteRequest;
+import org.openyolo.protocol.CredentialDeleteResult;
+import org.openyolo.protocol.CredentialOrHintRetrieveRequest;
+import org.openyolo.protocol.CredentialOrHintRetrieveResult;
 import org.openyolo.protocol.CredentialRetrieveResult;
 import org.openyolo.protocol.CredentialSaveRequest;
 import org.openyolo.protocol.CredentialSaveResult;
+import org.openyolo.protocol.Hint;
 import org.openyolo.protocol.HintRetrieveRequest;
 import org.openyolo.protocol.HintRetrieveResult;
 import org.openyolo.protocol.ProtocolConstants;
@@ -56,6 +92,7 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.Shadows;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowActivity;
+import org.robolectric.shadows.ShadowLooper;
 
 /**
  * Units tests for {@link CredentialClient}.
@@ -96,7 +133,7 @@ public class CredentialClientTest {
     private KnownProviders mockKnownProviders;
 
     @Mock
-    private AppSettings mockDeviceState;
+    private DeviceState mockDeviceState;
 
     private CredentialClient credentialClient;
     private Credential testCredential;
@@ -122,6 +159,9 @@ public class CredentialClientTest {
                 .thenReturn(installedProviders);
 
         KnownProviders.setApplicationBoundInstance(mockKnownProviders);
+        ProviderResolutionCache.clearApplicationBoundInstance();
+        CredentialRetrievePrefetcher.clearApplicationBoundInstance();
+        PendingProviderChoices.clear();
 
         CredentialClientOptions options =
                 new CredentialClientOptions.Builder(mockDeviceState).build();
@@ -132,6 +172,11 @@ public class CredentialClientTest {
     @After
     public void tearDown() throws Exception {
         KnownProviders.clearApplicationBoundInstance();
+        ProviderResolutionCache.clearApplicationBoundInstance();
+        CredentialRetrievePrefetcher.clearApplicationBoundInstance();
+        PendingProviderChoices.clear();
+        AppSettingsImpl.clearApplicationBoundInstance();
+        CredentialClient.setTracer(null);
     }
 
     @Test
@@ -178,6 +223,41 @@ public class CredentialClientTest {
         assertThat(hintIntent.getComponent().getPackageName()).isEqualTo(DASHLANE);
     }
 
+    @SuppressWarnings("WrongConstant")
+    @Test
+    public void getHintRetrieveIntent_providerAnswersAvailabilityQueries_queriesFirst() {
+        addKnownProviders(DASHLANE);
+        when(mockPackageManager.queryBroadcastReceivers(any(Intent.class), anyInt()))
+                .thenReturn(Collections.singletonList(createResolveInfo(DASHLANE, DASHLANE)));
+
+        Intent hintIntent = credentialClient.getHintRetrieveIntent(EMAIL_HINT_REQUEST);
+
+        // the preferred provider is only invoked once it has confirmed hints are available
+        assertThat(hintIntent.getComponent().getClassName())
+                .isEqualTo(HintRetrieveActivity.class.getName());
+        assertThat(PendingProviderChoices.take(ProtocolConstants.HINT_CREDENTIAL_ACTION))
+                .isNull();
+    }
+
+    @SuppressWarnings("WrongConstant")
+    @Test
+    public void getHintRetrieveIntent_preferredProviderNotQueryable_invokesProviderDirectly() {
+        addKnownProviders(DASHLANE, GOOGLE);
+        when(mockPackageManager.queryBroadcastReceivers(any(Intent.class), anyInt()))
+                .thenReturn(Collections.singletonList(createResolveInfo(GOOGLE, GOOGLE)));
+
+        Intent hintIntent = credentialClient.getHintRetrieveIntent(EMAIL_HINT_REQUEST);
+        credentialClient.getHintRetrieveIntent(EMAIL_HINT_REQUEST);
+
+        // the preferred provider would be invoked whatever the other providers answered
+        assertThat(hintIntent.getComponent().getPackageName()).isEqualTo(DASHLANE);
+        assertThat(PendingProviderChoices.take(ProtocolConstants.HINT_CREDENTIAL_ACTION))
+                .isEqualTo(DASHLANE);
+
+        // the query responders are resolved once, and then served from the cache
+        verify(mockPackageManager).queryBroadcastReceivers(any(Intent.class), anyInt());
+    }
+
     @SuppressWarnings("WrongConstant")
     @Test
     public void testGetHintIntent_twoKnownProviders_googleAndDashlane() throws Exception {
@@ -241,6 +321,39 @@ public class CredentialClientTest {
         assertThat(saveIntent.getComponent().getPackageName()).isEqualTo(DASHLANE);
     }
 
+    @SuppressWarnings("WrongConstant")
+    @Test
+    public void getSaveIntent_providerAnswersEligibilityQueries_queriesFirst() {
+        addKnownProviders(DASHLANE);
+        when(mockPackageManager.queryBroadcastReceivers(any(Intent.class), anyInt()))
+                .thenReturn(Collections.singletonList(createResolveInfo(DASHLANE, DASHLANE)));
+
+        Intent saveIntent = credentialClient.getSaveIntent(
+                CredentialSaveRequest.fromCredential(testCredential));
+
+        // the preferred provider is only invoked once it has confirmed it would not refuse
+        assertThat(saveIntent.getComponent().getClassName())
+                .isEqualTo(ProviderEligibilityActivity.class.getName());
+        assertThat(PendingProviderChoices.take(ProtocolConstants.SAVE_CREDENTIAL_ACTION))
+                .isNull();
+    }
+
+    @SuppressWarnings("WrongConstant")
+    @Test
+    public void getSaveIntent_preferredProviderNotQueryable_invokesProviderDirectly() {
+        addKnownProviders(DASHLANE, GOOGLE);
+        when(mockPackageManager.queryBroadcastReceivers(any(Intent.class), anyInt()))
+                .thenReturn(Collections.singletonList(createResolveInfo(GOOGLE, GOOGLE)));
+
+        Intent saveIntent = credentialClient.getSaveIntent(
+                CredentialSaveRequest.fromCredential(testCredential));
+
+        // the preferred provider cannot decline, so it is invoked without an eligibility query
+        assertThat(saveIntent.getComponent().getPackageName()).isEqualTo(DASHLANE);
+        assertThat(PendingProviderChoices.take(ProtocolConstants.SAVE_CREDENTIAL_ACTION))
+                .isEqualTo(DASHLANE);
+    }
+
     @SuppressWarnings("WrongConstant")
     @Test
     public void getSaveIntent_unknownProviderPresent() throws Exception {
@@ -413,6 +526,459 @@ public class CredentialClientTest {
         assertThat(result.getAdditionalProperties()).isEmpty();
     }
 
+    @SuppressWarnings("WrongConstant")
+    @Test
+    public void getCredentialOrHintRetrieveIntent_startsCombinedQuery() throws Exception {
+        addKnownProviders(DASHLANE);
+
+        Intent intent = credentialClient.getCredentialOrHintRetrieveIntent(
+                CredentialOrHintRetrieveRequest.fromAuthMethods(EMAIL));
+
+        assertThat(intent.getComponent().getClassName())
+                .isEqualTo(CredentialOrHintRetrieveActivity.class.getName());
+    }
+
+    @Test
+    public void getCredentialOrHintRetrieveResult_withCredentialResult_returnsCredential() {
+        Intent intent = new CredentialRetrieveResult.Builder(
+                CredentialRetrieveResult.CODE_CREDENTIAL_SELECTED)
+                .setCredential(testCredential)
+                .build()
+                .toResultDataIntent();
+
+        CredentialOrHintRetrieveResult result =
+                credentialClient.getCredentialOrHintRetrieveResult(intent);
+
+        assertThat(result.isHintResult()).isFalse();
+        assertThat(result.isSuccessful()).isTrue();
+        assertThat(result.getCredential().getIdentifier())
+                .isEqualTo(testCredential.getIdentifier());
+        assertThat(result.getHint()).isNull();
+    }
+
+    @Test
+    public void getCredentialOrHintRetrieveResult_withHintResult_returnsHint() {
+        Intent intent = new HintRetrieveResult.Builder(HintRetrieveResult.CODE_HINT_SELECTED)
+                .setHint(new Hint.Builder(EMAIL_ID, EMAIL).build())
+                .build()
+                .toResultDataIntent();
+
+        CredentialOrHintRetrieveResult result =
+                credentialClient.getCredentialOrHintRetrieveResult(intent);
+
+        assertThat(result.isHintResult()).isTrue();
+        assertThat(result.isSuccessful()).isTrue();
+        assertThat(result.getHint().getIdentifier()).isEqualTo(EMAIL_ID);
+        assertThat(result.getCredential()).isNull();
+    }
+
+    @Test
+    public void getCredentialOrHintRetrieveResult_noExtra_returnsUnknown() {
+        CredentialOrHintRetrieveResult result =
+                credentialClient.getCredentialOrHintRetrieveResult(new Intent());
+
+        assertThat(result.isHintResult()).isFalse();
+        assertThat(result.getCredentialRetrieveResult().getResultCode())
+                .isEqualTo(CredentialRetrieveResult.CODE_UNKNOWN);
+    }
+
+    @SuppressWarnings("WrongConstant")
+    @Test
+    public void getHintRetrieveIntent_rememberedProvider_invokesRememberedProvider()
+            throws Exception {
+        addKnownProviders(DASHLANE, ONEPASSWORD);
+        when(mockDeviceState.getRememberedProvider(HINT_CREDENTIAL_ACTION))
+                .thenReturn(addSignedPackage(ONEPASSWORD, "1234"));
+
+        Intent hintIntent = credentialClient.getHintRetrieveIntent(EMAIL_HINT_REQUEST);
+
+        // without the remembered choice, the heuristic would display a provider picker
+        assertThat(hintIntent.getComponent().getPackageName()).isEqualTo(ONEPASSWORD);
+        verify(mockDeviceState, never()).setRememberedProvider(HINT_CREDENTIAL_ACTION, null);
+    }
+
+    @SuppressWarnings("WrongConstant")
+    @Test
+    public void getHintRetrieveIntent_rememberedProviderSignatureChanged_displaysPicker()
+            throws Exception {
+        addKnownProviders(DASHLANE, ONEPASSWORD);
+        AuthenticationDomain rememberedProvider = addSignedPackage(ONEPASSWORD, "1234");
+        addSignedPackage(ONEPASSWORD, "5678");
+        when(mockDeviceState.getRememberedProvider(HINT_CREDENTIAL_ACTION))
+                .thenReturn(rememberedProvider);
+
+        Intent hintIntent = credentialClient.getHintRetrieveIntent(EMAIL_HINT_REQUEST);
+
+        assertThat(hintIntent.getComponent().getClassName())
+                .endsWith("ProviderPickerActivity");
+        verify(mockDeviceState).setRememberedProvider(HINT_CREDENTIAL_ACTION, null);
+    }
+
+    @SuppressWarnings("WrongConstant")
+    @Test
+    public void getSaveIntent_rememberedProviderUninstalled_forgetsProvider() throws Exception {
+        addKnownProviders(DASHLANE);
+        when(mockDeviceState.getRememberedProvider(SAVE_CREDENTIAL_ACTION))
+                .thenReturn(addSignedPackage(ONEPASSWORD, "1234"));
+
+        Intent saveIntent = credentialClient.getSaveIntent(
+                CredentialSaveRequest.fromCredential(testCredential));
+
+        // the heuristic still applies when the remembered provider is not present
+        assertThat(saveIntent.getComponent().getPackageName()).isEqualTo(DASHLANE);
+        verify(mockDeviceState).setRememberedProvider(SAVE_CREDENTIAL_ACTION, null);
+    }
+
+    @SuppressWarnings("WrongConstant")
+    @Test
+    public void getCredentialSaveResult_savedAfterDirectInvocation_remembersProvider()
+            throws Exception {
+        addKnownProviders(DASHLANE);
+        AuthenticationDomain dashlane = addSignedPackage(DASHLANE, "1234");
+        credentialClient.getSaveIntent(CredentialSaveRequest.fromCredential(testCredential));
+
+        credentialClient.getCredentialSaveResult(CredentialSaveResult.SAVED.toResultDataIntent());
+
+        verify(mockDeviceState).setRememberedProvider(SAVE_CREDENTIAL_ACTION, dashlane);
+    }
+
+    @SuppressWarnings("WrongConstant")
+    @Test
+    public void getCredentialSaveResult_canceled_doesNotRememberProvider() throws Exception {
+        addKnownProviders(DASHLANE);
+        addSignedPackage(DASHLANE, "1234");
+        credentialClient.getSaveIntent(CredentialSaveRequest.fromCredential(testCredential));
+
+        credentialClient.getCredentialSaveResult(
+                CredentialSaveResult.USER_CANCELED.toResultDataIntent());
+        credentialClient.getCredentialSaveResult(CredentialSaveResult.SAVED.toResultDataIntent());
+
+        // the pending choice is consumed by the first result
+        verify(mockDeviceState, never())
+                .setRememberedProvider(eq(SAVE_CREDENTIAL_ACTION), any(AuthenticationDomain.class));
+    }
+
+    @SuppressWarnings("WrongConstant")
+    @Test
+    public void getCredentialSaveResult_appSuppliedSettings_remembersNothing() throws Exception {
+        addKnownProviders(DASHLANE);
+        addSignedPackage(DASHLANE, "1234");
+        AppSettings appSettings = mock(AppSettings.class);
+        CredentialClient client = new CredentialClient(
+                mockContext,
+                new CredentialClientOptions.Builder(appSettings).build());
+        client.getSaveIntent(CredentialSaveRequest.fromCredential(testCredential));
+
+        CredentialSaveResult result =
+                client.getCredentialSaveResult(CredentialSaveResult.SAVED.toResultDataIntent());
+
+        // app-supplied settings cannot hold remembered providers, so none is recorded
+        assertThat(result.getResultCode()).isEqualTo(CredentialSaveResult.CODE_SAVED);
+        verifyNoMoreInteractions(appSettings);
+    }
+
+    @SuppressWarnings("WrongConstant")
+    @Test
+    public void getHintRetrieveIntent_unknownRememberedProviderNotChosen_displaysPicker()
+            throws Exception {
+        addKnownProviders(DASHLANE);
+        addUnknownProviders(ONEPASSWORD);
+        when(mockDeviceState.getRememberedProvider(HINT_CREDENTIAL_ACTION))
+                .thenReturn(addSignedPackage(ONEPASSWORD, "1234"));
+
+        Intent hintIntent = credentialClient.getHintRetrieveIntent(EMAIL_HINT_REQUEST);
+
+        assertThat(hintIntent.getComponent().getClassName())
+                .endsWith("ProviderPickerActivity");
+        verify(mockDeviceState).setRememberedProvider(HINT_CREDENTIAL_ACTION, null);
+    }
+
+    @SuppressWarnings("WrongConstant")
+    @Test
+    public void getHintRetrieveIntent_unknownRememberedProviderChosenByUser_invokesProvider()
+            throws Exception {
+        addKnownProviders(DASHLANE);
+        addUnknownProviders(ONEPASSWORD);
+        when(mockDeviceState.getRememberedProvider(HINT_CREDENTIAL_ACTION))
+                .thenReturn(addSignedPackage(ONEPASSWORD, "1234"));
+        when(mockDeviceState.isRememberedProviderUserChosen(HINT_CREDENTIAL_ACTION))
+                .thenReturn(true);
+
+        Intent hintIntent = credentialClient.getHintRetrieveIntent(EMAIL_HINT_REQUEST);
+
+        assertThat(hintIntent.getComponent().getPackageName()).isEqualTo(ONEPASSWORD);
+    }
+
+    @SuppressWarnings("WrongConstant")
+    @Test
+    public void getCredentialSaveResult_unknownProviderLaunchedAutomatically_notRemembered()
+            throws Exception {
+        addUnknownProviders(ONEPASSWORD);
+        addSignedPackage(ONEPASSWORD, "1234");
+        PendingProviderChoices.record(SAVE_CREDENTIAL_ACTION, ONEPASSWORD);
+
+        credentialClient.getCredentialSaveResult(CredentialSaveResult.SAVED.toResultDataIntent());
+
+        verify(mockDeviceState, never())
+                .setRememberedProvider(eq(SAVE_CREDENTIAL_ACTION), any(AuthenticationDomain.class));
+        verify(mockDeviceState, never()).setRememberedProvider(
+                eq(SAVE_CREDENTIAL_ACTION), any(AuthenticationDomain.class), anyBoolean());
+    }
+
+    @SuppressWarnings("WrongConstant")
+    @Test
+    public void getCredentialSaveResult_unknownProviderChosenByUser_remembersUserChoice()
+            throws Exception {
+        addUnknownProviders(ONEPASSWORD);
+        AuthenticationDomain onePassword = addSignedPackage(ONEPASSWORD, "1234");
+        PendingProviderChoices.record(
+                SAVE_CREDENTIAL_ACTION,
+                new PendingProviderChoices.Choice(ONEPASSWORD, true /* userChoice */));
+
+        credentialClient.getCredentialSaveResult(CredentialSaveResult.SAVED.toResultDataIntent());
+
+        verify(mockDeviceState)
+                .setRememberedProvider(SAVE_CREDENTIAL_ACTION, onePassword, true /* userChosen */);
+    }
+
+    @SuppressWarnings("WrongConstant")
+    @Test
+    public void getCredentialSaveResult_withTracer_emitsFlowSpans() throws Exception {
+        final ArrayList<String> spans = new ArrayList<>();
+        CredentialClient.setTracer(new CredentialClientTracer() {
+            @Override
+            public void onSpan(
+                    String action,
+                    long flowId,
+                    String spanName,
+                    long startTimeMs,
+                    long durationMs) {
+                assertThat(action).isEqualTo(SAVE_CREDENTIAL_ACTION);
+                spans.add(spanName);
+            }
+        });
+
+        addKnownProviders(DASHLANE);
+        credentialClient.getSaveIntent(CredentialSaveRequest.fromCredential(testCredential));
+        credentialClient.getCredentialSaveResult(CredentialSaveResult.SAVED.toResultDataIntent());
+
+        assertThat(spans).containsExactly(
+                CredentialClientTracer.SPAN_CREATE_INTENT,
+                CredentialClientTracer.SPAN_PARSE_RESULT,
+                CredentialClientTracer.SPAN_PROVIDER_ACTIVITY,
+                CredentialClientTracer.SPAN_FLOW);
+    }
+
+    @SuppressWarnings("WrongConstant")
+    @Test
+    public void getBatchSaveIntent_singleKnownProvider_sendsAllCredentials() throws Exception {
+        addKnownProviders(DASHLANE);
+        Credential secondCredential =
+                new Credential.Builder("bob@example.com", EMAIL, AUTH_DOMAIN).build();
+
+        Intent saveIntent = credentialClient.getBatchSaveIntent(
+                Arrays.asList(testCredential, secondCredential));
+
+        assertThat(saveIntent.getComponent().getPackageName()).isEqualTo(DASHLANE);
+        assertThat(saveIntent.getAction()).isEqualTo(BATCH_SAVE_CREDENTIAL_ACTION);
+        CredentialSaveRequest request = CredentialSaveRequest.fromProtoBytes(
+                saveIntent.getByteArrayExtra(ProtocolConstants.EXTRA_SAVE_REQUEST));
+        assertThat(request.getCredentials()).hasSize(2);
+        assertThat(request.getCredentials().get(1).getIdentifier()).isEqualTo("bob@example.com");
+    }
+
+    @SuppressWarnings("WrongConstant")
+    @Test
+    public void getBatchSaveIntent_noBatchProviders_finishesWithNoProviderAvailable() {
+        addKnownProviders(DASHLANE);
+        when(mockPackageManager.queryIntentActivities(
+                argThat(new ArgumentMatcher<Intent>() {
+                    @Override
+                    public boolean matches(Intent intent) {
+                        return intent != null
+                                && BATCH_SAVE_CREDENTIAL_ACTION.equals(intent.getAction());
+                    }
+                }),
+                anyInt()))
+                .thenReturn(new ArrayList<ResolveInfo>());
+
+        Intent intent = credentialClient.getBatchSaveIntent(Arrays.asList(testCredential));
+        ShadowActivity activity = startFinishWithResultActivity(intent);
+
+        CredentialSaveResult result =
+                credentialClient.getBatchSaveResult(activity.getResultIntent());
+        assertThat(result.getResultCode())
+                .isEqualTo(CredentialSaveResult.CODE_NO_PROVIDER_AVAILABLE);
+    }
+
+    @Test
+    public void getProviderAvailability_noProviders_nothingAvailable() {
+        ProviderAvailability availability = credentialClient.getProviderAvailability();
+
+        assertThat(availability.isRetrieveAvailable()).isFalse();
+        assertThat(availability.isHintAvailable()).isFalse();
+        assertThat(availability.isSaveAvailable()).isFalse();
+        assertThat(availability.isDeleteAvailable()).isFalse();
+    }
+
+    @Test
+    public void getProviderAvailability_providerInstalled_allAvailable() {
+        addUnknownProviders(UNKNOWN_PROVIDER_1);
+
+        ProviderAvailability availability = credentialClient.getProviderAvailability();
+
+        assertThat(availability.isRetrieveAvailable()).isTrue();
+        assertThat(availability.isHintAvailable()).isTrue();
+        assertThat(availability.isSaveAvailable()).isTrue();
+        assertThat(availability.isDeleteAvailable()).isTrue();
+    }
+
+    @Test
+    public void getProviderAvailability_knownProvidersOnly_ignoresUnknownRetrieveProviders() {
+        addUnknownProviders(UNKNOWN_PROVIDER_1);
+        CredentialClient client = new CredentialClient(
+                mockContext,
+                new CredentialClientOptions.Builder(mockDeviceState)
+                        .setKnownProvidersOnly(true)
+                        .build());
+
+        ProviderAvailability availability = client.getProviderAvailability();
+
+        assertThat(availability.isRetrieveAvailable()).isFalse();
+        assertThat(availability.isHintAvailable()).isTrue();
+    }
+
+    @SuppressWarnings("WrongConstant")
+    @Test
+    public void getProviderAvailability_repeated_resolvesProvidersOnce() {
+        addKnownProviders(DASHLANE);
+
+        credentialClient.getProviderAvailability();
+        credentialClient.getProviderAvailability();
+
+        // one query for each of the retrieve, hint, save and delete actions
+        verify(mockPackageManager, times(4))
+                .queryIntentActivities(any(Intent.class), anyInt());
+    }
+
+    @Test
+    public void resetRememberedProviders_forgetsAllActions() {
+        credentialClient.resetRememberedProviders();
+
+        verify(mockDeviceState).setRememberedProvider(RETRIEVE_CREDENTIAL_ACTION, null);
+        verify(mockDeviceState).setRememberedProvider(HINT_CREDENTIAL_ACTION, null);
+        verify(mockDeviceState).setRememberedProvider(SAVE_CREDENTIAL_ACTION, null);
+        verify(mockDeviceState).setRememberedProvider(DELETE_CREDENTIAL_ACTION, null);
+    }
+
+    @Test
+    public void getSaveIntent_resolvesProvidersOnCallingThread() {
+        addKnownProviders(DASHLANE);
+        List<Boolean> resolvedOnMainThread = recordProviderResolutionThreads();
+
+        credentialClient.getSaveIntent(CredentialSaveRequest.fromCredential(testCredential));
+
+        assertThat(resolvedOnMainThread).isNotEmpty().containsOnly(true);
+    }
+
+    @Test
+    public void getSaveIntentAsync_resolvesProvidersOffMainThread() throws Exception {
+        addKnownProviders(DASHLANE);
+        List<Boolean> resolvedOnMainThread = recordProviderResolutionThreads();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CredentialClient client = new CredentialClient(
+                mockContext,
+                new CredentialClientOptions.Builder(mockDeviceState).build(),
+                executor);
+        RecordingIntentCallback callback = new RecordingIntentCallback();
+
+        client.getSaveIntentAsync(CredentialSaveRequest.fromCredential(testCredential), callback);
+        awaitBackgroundWork(executor);
+
+        assertThat(resolvedOnMainThread).isNotEmpty().containsOnly(false);
+        assertThat(callback.mIntent.getComponent().getPackageName()).isEqualTo(DASHLANE);
+        assertThat(callback.mDeliveredOnMainThread).isTrue();
+    }
+
+    @Test
+    public void getHintRetrieveIntentAsync_resolvesProvidersOffMainThread() throws Exception {
+        addKnownProviders(DASHLANE);
+        List<Boolean> resolvedOnMainThread = recordProviderResolutionThreads();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CredentialClient client = new CredentialClient(
+                mockContext,
+                new CredentialClientOptions.Builder(mockDeviceState).build(),
+                executor);
+        RecordingIntentCallback callback = new RecordingIntentCallback();
+
+        client.getHintRetrieveIntentAsync(EMAIL_HINT_REQUEST, callback);
+        awaitBackgroundWork(executor);
+
+        assertThat(resolvedOnMainThread).isNotEmpty().containsOnly(false);
+        assertThat(callback.mIntent.getComponent().getPackageName()).isEqualTo(DASHLANE);
+        assertThat(callback.mDeliveredOnMainThread).isTrue();
+    }
+
+    @Test
+    public void getDeleteIntentAsync_noProviders_deliversNoProviderAvailable() throws Exception {
+        List<Boolean> resolvedOnMainThread = recordProviderResolutionThreads();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CredentialClient client = new CredentialClient(
+                mockContext,
+                new CredentialClientOptions.Builder(mockDeviceState).build(),
+                executor);
+        RecordingIntentCallback callback = new RecordingIntentCallback();
+
+        client.getDeleteIntentAsync(
+                CredentialDeleteRequest.fromCredential(testCredential),
+                callback);
+        awaitBackgroundWork(executor);
+
+        assertThat(resolvedOnMainThread).isNotEmpty().containsOnly(false);
+        ShadowActivity activity = startFinishWithResultActivity(callback.mIntent);
+        assertThat(activity.getResultCode())
+                .isEqualTo(CredentialDeleteResult.CODE_NO_PROVIDER_AVAILABLE);
+    }
+
+    private AuthenticationDomain addSignedPackage(String packageName, String signatureHex)
+            throws Exception {
+        PackageInfo packageInfo = new PackageInfo();
+        packageInfo.packageName = packageName;
+        packageInfo.signatures = new Signature[] { new Signature(signatureHex) };
+        when(mockPackageManager.getPackageInfo(packageName, PackageManager.GET_SIGNATURES))
+                .thenReturn(packageInfo);
+
+        return AuthenticationDomain.fromPackageName(mockContext, packageName);
+    }
+
+    /**
+     * Records, for each package manager query used to resolve providers, whether it was made on
+     * the main thread. In production these queries are binder IPC, which StrictMode flags when
+     * made on the main thread; Robolectric does not emulate binder, so the thread is checked
+     * directly.
+     */
+    @SuppressWarnings("WrongConstant")
+    private List<Boolean> recordProviderResolutionThreads() {
+        final List<Boolean> resolvedOnMainThread =
+                Collections.synchronizedList(new ArrayList<Boolean>());
+        when(mockPackageManager.queryIntentActivities(any(Intent.class), anyInt()))
+                .thenAnswer(new Answer<List<ResolveInfo>>() {
+                    @Override
+                    public List<ResolveInfo> answer(InvocationOnMock invocation) {
+                        resolvedOnMainThread.add(Looper.myLooper() == Looper.getMainLooper());
+                        return installedProviders;
+                    }
+                });
+
+        return resolvedOnMainThread;
+    }
+
+    private void awaitBackgroundWork(ExecutorService executor) throws InterruptedException {
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
     private void addKnownProviders(String... packageNames) {
         for (String packageName : packageNames) {
             installedProviders.add(createResolveInfo(packageName, packageName));
@@ -441,4 +1007,22 @@ public class CredentialClientTest {
 
         return resolveInfo;
     }
+
+    /**
+     * The library's own settings, which also remember providers.
+     */
+    private interface DeviceState extends AppSettings, RememberedProviderSettings {}
+
+    private static final class RecordingIntentCallback
+            implements CredentialClient.IntentCallback {
+
+        Intent mIntent;
+        boolean mDeliveredOnMainThread;
+
+        @Override
+        public void onIntentReady(@NonNull Intent intent) {
+            mIntent = intent;
+            mDeliveredOnMainThread = Looper.myLooper() == Looper.getMainLooper();
+        }
+    }
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.openyolo.protocol.AuthenticationMethods;
+import org.openyolo.protocol.CredentialRetrieveRequest;
+import org.openyolo.protocol.CredentialRetrieveResult;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Tests for {@link CredentialRetrievePrefetcher}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CredentialRetrievePrefetcherTest {
+
+    private static final CredentialRetrieveRequest EMAIL_REQUEST =
+            CredentialRetrieveRequest.fromAuthMethods(AuthenticationMethods.EMAIL);
+
+    private static final CredentialRetrieveRequest GOOGLE_REQUEST =
+            CredentialRetrieveRequest.fromAuthMethods(AuthenticationMethods.GOOGLE);
+
+    private static final CredentialRetrieveQuery.Result NO_PROVIDER_RESULT =
+            new CredentialRetrieveQuery.Result(
+                    Collections.<Intent>emptyList(),
+                    CredentialRetrieveResult.NO_PROVIDER_AVAILABLE);
+
+    @Mock
+    private Context mockContext;
+
+    private List<CredentialRetrieveQuery.Callback> mStartedQueries;
+    private CredentialRetrievePrefetcher mPrefetcher;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mockContext.getApplicationContext()).thenReturn(mockContext);
+        mStartedQueries = new ArrayList<>();
+        mPrefetcher = new CredentialRetrievePrefetcher(
+                mockContext,
+                new CredentialRetrievePrefetcher.QueryRunner() {
+                    @Override
+                    public void run(
+                            Context context,
+                            CredentialRetrieveRequest request,
+                            boolean knownProvidersOnly,
+                            String preferredProvider,
+                            CredentialRetrieveQuery.Callback callback) {
+                        mStartedQueries.add(callback);
+                    }
+                });
+    }
+
+    @Test
+    public void takeCompleted_afterCompletion_returnsResultOnce() {
+        mPrefetcher.prefetch(EMAIL_REQUEST, false);
+        assertThat(mPrefetcher.takeCompleted(EMAIL_REQUEST, false)).isNull();
+
+        mStartedQueries.get(0).onComplete(NO_PROVIDER_RESULT);
+
+        assertThat(mPrefetcher.takeCompleted(GOOGLE_REQUEST, false)).isNull();
+        assertThat(mPrefetcher.takeCompleted(EMAIL_REQUEST, true)).isNull();
+        assertThat(mPrefetcher.takeCompleted(EMAIL_REQUEST, false)).isSameAs(NO_PROVIDER_RESULT);
+        assertThat(mPrefetcher.takeCompleted(EMAIL_REQUEST, false)).isNull();
+    }
+
+    @Test
+    public void prefetch_equalRequestPending_doesNotStartQuery() {
+        mPrefetcher.prefetch(EMAIL_REQUEST, false);
+        mPrefetcher.prefetch(
+                CredentialRetrieveRequest.fromAuthMethods(AuthenticationMethods.EMAIL),
+                false);
+        assertThat(mStartedQueries).hasSize(1);
+
+        mPrefetcher.prefetch(GOOGLE_REQUEST, false);
+        assertThat(mStartedQueries).hasSize(2);
+    }
+
+    @Test
+    public void take_pending_deliversOnCompletion() {
+        mPrefetcher.prefetch(EMAIL_REQUEST, false);
+        RecordingCallback callback = new RecordingCallback();
+
+        assertThat(mPrefetcher.take(EMAIL_REQUEST, false, callback)).isTrue();
+        assertThat(callback.mResults).isEmpty();
+
+        mStartedQueries.get(0).onComplete(NO_PROVIDER_RESULT);
+        assertThat(callback.mResults).containsExactly(NO_PROVIDER_RESULT);
+        assertThat(mPrefetcher.takeCompleted(EMAIL_REQUEST, false)).isNull();
+    }
+
+    @Test
+    public void take_noPrefetch_returnsFalse() {
+        RecordingCallback callback = new RecordingCallback();
+        assertThat(mPrefetcher.take(EMAIL_REQUEST, false, callback)).isFalse();
+        assertThat(callback.mResults).isEmpty();
+    }
+
+    @Test
+    public void takeCompleted_expired_returnsNull() {
+        mPrefetcher.prefetch(EMAIL_REQUEST, false);
+        mStartedQueries.get(0).onComplete(NO_PROVIDER_RESULT);
+
+        SystemClock.sleep(CredentialRetrievePrefetcher.PREFETCH_EXPIRY_MS);
+
+        assertThat(mPrefetcher.takeCompleted(EMAIL_REQUEST, false)).isNull();
+        mPrefetcher.prefetch(EMAIL_REQUEST, false);
+        assertThat(mStartedQueries).hasSize(2);
+    }
+
+    @Test
+    public void packageChange_discardsPrefetches() {
+        mPrefetcher.registerPackageChangeReceiver();
+        ArgumentCaptor<BroadcastReceiver> receiverCaptor =
+                ArgumentCaptor.forClass(BroadcastReceiver.class);
+        verify(mockContext).registerReceiver(receiverCaptor.capture(), any(IntentFilter.class));
+
+        mPrefetcher.prefetch(EMAIL_REQUEST, false);
+        mStartedQueries.get(0).onComplete(NO_PROVIDER_RESULT);
+        receiverCaptor.getValue().onReceive(mockContext,
+                new Intent(Intent.ACTION_PACKAGE_ADDED, Uri.parse("package:com.example")));
+
+        assertThat(mPrefetcher.takeCompleted(EMAIL_REQUEST, false)).isNull();
+    }
+
+    private static final class RecordingCallback implements CredentialRetrieveQuery.Callback {
+        final List<CredentialRetrieveQuery.Result> mResults = new ArrayList<>();
+
+        @Override
+        public void onComplete(@NonNull CredentialRetrieveQuery.Result result) {
+            mResults.add(result);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.when;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ActivityInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import com.google.bbq.QueryResponse;
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openyolo.protocol.AuthenticationMethods;
+import org.openyolo.protocol.CredentialRetrieveRequest;
+import org.openyolo.protocol.CredentialRetrieveResult;
+import org.openyolo.protocol.Protobufs;
+import org.openyolo.protocol.ProtocolConstants;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/**
+ * Tests for {@link CredentialRetrieveQuery}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CredentialRetrieveQueryTest {
+
+    private static final String PROVIDER_A = "com.example.a";
+    private static final String PROVIDER_B = "com.example.b";
+    private static final String PROVIDER_WITHOUT_ACTIVITY = "com.example.c";
+
+    private static final CredentialRetrieveRequest REQUEST =
+            CredentialRetrieveRequest.fromAuthMethods(AuthenticationMethods.EMAIL);
+
+    @Mock
+    private Context mockContext;
+
+    @Mock
+    private PackageManager mockPackageManager;
+
+    private ProviderResolutionCache mProviderCache;
+
+    @SuppressWarnings("WrongConstant")
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mockContext.getApplicationContext()).thenReturn(mockContext);
+        when(mockContext.getPackageManager()).thenReturn(mockPackageManager);
+        when(mockPackageManager.queryIntentActivities(any(Intent.class), anyInt()))
+                .thenAnswer(new Answer<List<ResolveInfo>>() {
+                    @Override
+                    public List<ResolveInfo> answer(InvocationOnMock invocation) {
+                        Intent intent = invocation.getArgument(0);
+                        if (ProtocolConstants.RETRIEVE_CREDENTIAL_ACTION
+                                .equals(intent.getAction())) {
+                            return new ArrayList<>(Arrays.asList(
+                                    createResolveInfo(PROVIDER_A),
+                                    createResolveInfo(PROVIDER_B)));
+                        }
+                        return new ArrayList<>();
+                    }
+                });
+
+        mProviderCache = new ProviderResolutionCache(mockContext);
+    }
+
+    @Test
+    public void processResponses_noResponses_providerTimeout() {
+        CredentialRetrieveQuery.Result result = CredentialRetrieveQuery.processResponses(
+                mProviderCache,
+                REQUEST,
+                Collections.<QueryResponse>emptyList());
+
+        assertThat(result.getTerminalResult())
+                .isSameAs(CredentialRetrieveResult.PROVIDER_TIMEOUT);
+        assertThat(result.getRetrieveIntents()).isEmpty();
+        assertThat(result.createContinuationIntent(RuntimeEnvironment.application)).isNull();
+    }
+
+    @Test
+    public void processResponses_noCredentialsAvailable_noProviderAvailable() {
+        CredentialRetrieveQuery.Result result = CredentialRetrieveQuery.processResponses(
+                mProviderCache,
+                REQUEST,
+                Arrays.asList(
+                        createResponse(PROVIDER_A, false),
+                        createResponse(PROVIDER_WITHOUT_ACTIVITY, true),
+                        new QueryResponse(PROVIDER_B, 1L, new byte[] { (byte) 0xFF })));
+
+        assertThat(result.getTerminalResult())
+                .isSameAs(CredentialRetrieveResult.NO_PROVIDER_AVAILABLE);
+        assertThat(result.getRetrieveIntents()).isEmpty();
+    }
+
+    @Test
+    public void processResponses_singleProvider_continuesWithProvider() {
+        CredentialRetrieveQuery.Result result = CredentialRetrieveQuery.processResponses(
+                mProviderCache,
+                REQUEST,
+                Arrays.asList(
+                        createResponse(PROVIDER_A, true),
+                        createResponse(PROVIDER_B, false)));
+
+        assertThat(result.getTerminalResult()).isNull();
+        Intent intent = result.createContinuationIntent(RuntimeEnvironment.application);
+        assertThat(intent.getComponent())
+                .isEqualTo(new ComponentName(PROVIDER_A, "RetrieveActivity"));
+        assertThat(intent.getByteArrayExtra(ProtocolConstants.EXTRA_RETRIEVE_REQUEST))
+                .isEqualTo(REQUEST.toProtocolBuffer().toByteArray());
+        assertThat(intent.getByteArrayExtra(ProtocolConstants.EXTRA_RETRIEVE_PRELOADED_DATA))
+                .isEqualTo(new byte[] { 1, 2, 3 });
+    }
+
+    @Test
+    public void processResponses_multipleProviders_continuesWithPicker() {
+        CredentialRetrieveQuery.Result result = CredentialRetrieveQuery.processResponses(
+                mProviderCache,
+                REQUEST,
+                Arrays.asList(
+                        createResponse(PROVIDER_A, true),
+                        createResponse(PROVIDER_B, true)));
+
+        assertThat(result.getTerminalResult()).isNull();
+        assertThat(result.getRetrieveIntents()).hasSize(2);
+        Intent intent = result.createContinuationIntent(RuntimeEnvironment.application);
+        assertThat(intent.getComponent().getClassName())
+                .isEqualTo(ProviderPickerActivity.class.getName());
+    }
+
+    @Test
+    public void processResponses_allProvidersPreviewAccounts_continuesWithAccountChooser() {
+        CredentialRetrieveQuery.Result result = CredentialRetrieveQuery.processResponses(
+                mProviderCache,
+                REQUEST,
+                Arrays.asList(
+                        createPreviewResponse(PROVIDER_A, "alice@example.com", (byte) 1),
+                        createPreviewResponse(PROVIDER_B, "bob@example.com", (byte) 2)));
+
+        assertThat(result.getAccountPreviews()).hasSize(2);
+        Intent intent = result.createContinuationIntent(RuntimeEnvironment.application);
+        assertThat(intent.getComponent().getClassName())
+                .isEqualTo(ProviderPickerActivity.class.getName());
+
+        // the chosen account's token is sent to its provider in place of the preloaded data
+        List<Intent> accountIntents = intent.getParcelableArrayListExtra("providerIntents");
+        assertThat(accountIntents).hasSize(2);
+        assertThat(accountIntents.get(1).getComponent().getPackageName()).isEqualTo(PROVIDER_B);
+        assertThat(accountIntents.get(1)
+                .getByteArrayExtra(ProtocolConstants.EXTRA_RETRIEVE_PRELOADED_DATA))
+                .isEqualTo(new byte[] { 2 });
+        assertThat(intent.getStringArrayExtra("accountIdentifiers"))
+                .containsExactly("alice@example.com", "bob@example.com");
+    }
+
+    @Test
+    public void processResponses_someProvidersWithoutPreviews_continuesWithProviderPicker() {
+        CredentialRetrieveQuery.Result result = CredentialRetrieveQuery.processResponses(
+                mProviderCache,
+                REQUEST,
+                Arrays.asList(
+                        createPreviewResponse(PROVIDER_A, "alice@example.com", (byte) 1),
+                        createResponse(PROVIDER_B, true)));
+
+        assertThat(result.getAccountPreviews()).isEmpty();
+        Intent intent = result.createContinuationIntent(RuntimeEnvironment.application);
+        assertThat(intent.getComponent().getClassName())
+                .isEqualTo(ProviderPickerActivity.class.getName());
+        assertThat(intent.hasExtra("accountIdentifiers")).isFalse();
+    }
+
+    private static QueryResponse createResponse(String provider, boolean credentialsAvailable) {
+        Protobufs.CredentialRetrieveBbqResponse.Builder response =
+                Protobufs.CredentialRetrieveBbqResponse.newBuilder()
+                        .setCredentialsAvailable(credentialsAvailable);
+        if (credentialsAvailable) {
+            response.setPreloadedData(ByteString.copyFrom(new byte[] { 1, 2, 3 }));
+        }
+
+        return new QueryResponse(provider, 1L, response.build().toByteArray());
+    }
+
+    private static QueryResponse createPreviewResponse(
+            String provider,
+            String identifier,
+            byte token) {
+        Protobufs.CredentialRetrieveBbqResponse response =
+                Protobufs.CredentialRetrieveBbqResponse.newBuilder()
+                        .setCredentialsAvailable(true)
+                        .addAccountPreviews(Protobufs.AccountPreview.newBuilder()
+                                .setIdentifier(identifier)
+                                .setToken(ByteString.copyFrom(new byte[] { token })))
+                        .build();
+
+        return new QueryResponse(provider, 1L, response.toByteArray());
+    }
+
+    private static ResolveInfo createResolveInfo(String packageName) {
+        ResolveInfo resolveInfo = new ResolveInfo();
+        resolveInfo.activityInfo = new ActivityInfo();
+        resolveInfo.activityInfo.packageName = packageName;
+        resolveInfo.activityInfo.name = "RetrieveActivity";
+        return resolveInfo;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.openyolo.protocol.ProtocolConstants.SAVE_CREDENTIAL_ACTION;
+
+import android.content.Intent;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openyolo.api.CredentialClientTracer;
+import org.openyolo.protocol.CredentialSaveResult;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Tests for {@link FlowTracer}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class FlowTracerTest {
+
+    private RecordingTracer mTracer;
+
+    @Before
+    public void setUp() {
+        FlowTracer.setTracer(null);
+        mTracer = new RecordingTracer();
+    }
+
+    @After
+    public void tearDown() {
+        FlowTracer.setTracer(null);
+    }
+
+    @Test
+    public void startFlow_disabled_returnsNoFlow() {
+        assertThat(FlowTracer.isEnabled()).isFalse();
+        assertThat(FlowTracer.startFlow(SAVE_CREDENTIAL_ACTION)).isEqualTo(FlowTracer.NO_FLOW);
+        assertThat(FlowTracer.now()).isEqualTo(0);
+    }
+
+    @Test
+    public void attach_noFlow_doesNotAddExtra() {
+        Intent intent = FlowTracer.attach(new Intent(), FlowTracer.NO_FLOW);
+        assertThat(intent.getExtras()).isNull();
+    }
+
+    @Test
+    public void getFlowId_attachedIntent_returnsFlowId() {
+        FlowTracer.setTracer(mTracer);
+        long flowId = FlowTracer.startFlow(SAVE_CREDENTIAL_ACTION);
+        assertThat(flowId).isNotEqualTo(FlowTracer.NO_FLOW);
+
+        Intent intent = FlowTracer.attach(new Intent(), flowId);
+        assertThat(FlowTracer.getFlowId(intent)).isEqualTo(flowId);
+    }
+
+    @Test
+    public void span_disabled_emitsNothing() {
+        FlowTracer.span(SAVE_CREDENTIAL_ACTION, 1, CredentialClientTracer.SPAN_CREATE_INTENT, 0);
+        FlowTracer.setTracer(mTracer);
+        FlowTracer.span(
+                SAVE_CREDENTIAL_ACTION,
+                FlowTracer.NO_FLOW,
+                CredentialClientTracer.SPAN_CREATE_INTENT,
+                0);
+        assertThat(mTracer.mSpans).isEmpty();
+    }
+
+    @Test
+    public void beginSection_reportsWhetherSectionBegun() {
+        assertThat(FlowTracer.beginSection("disabled")).isFalse();
+        FlowTracer.endSection(false);
+
+        FlowTracer.setTracer(mTracer);
+        boolean sectionBegun = FlowTracer.beginSection("enabled");
+        assertThat(sectionBegun).isTrue();
+
+        // the section begun is still ended after tracing is disabled
+        FlowTracer.setTracer(null);
+        FlowTracer.endSection(sectionBegun);
+    }
+
+    @Test
+    public void finishFlow_afterProviderLaunch_emitsAllSpans() {
+        FlowTracer.setTracer(mTracer);
+        long flowId = FlowTracer.startFlow(SAVE_CREDENTIAL_ACTION);
+        FlowTracer.providerLaunched(SAVE_CREDENTIAL_ACTION, flowId);
+
+        FlowTracer.finishFlow(
+                SAVE_CREDENTIAL_ACTION,
+                CredentialSaveResult.SAVED.toResultDataIntent(),
+                FlowTracer.now());
+
+        assertThat(mTracer.mSpans).containsExactly(
+                CredentialClientTracer.SPAN_PARSE_RESULT,
+                CredentialClientTracer.SPAN_PROVIDER_ACTIVITY,
+                CredentialClientTracer.SPAN_FLOW);
+        assertThat(mTracer.mFlowIds).containsOnly(flowId);
+    }
+
+    @Test
+    public void finishFlow_mismatchedFlowId_retainsPendingFlow() {
+        FlowTracer.setTracer(mTracer);
+        long flowId = FlowTracer.startFlow(SAVE_CREDENTIAL_ACTION);
+        Intent staleResult = FlowTracer.attach(
+                CredentialSaveResult.SAVED.toResultDataIntent(),
+                flowId + 1);
+
+        FlowTracer.finishFlow(SAVE_CREDENTIAL_ACTION, staleResult, FlowTracer.now());
+        assertThat(mTracer.mSpans).containsExactly(CredentialClientTracer.SPAN_PARSE_RESULT);
+
+        FlowTracer.finishFlow(
+                SAVE_CREDENTIAL_ACTION,
+                FlowTracer.attach(CredentialSaveResult.SAVED.toResultDataIntent(), flowId),
+                FlowTracer.now());
+        assertThat(mTracer.mSpans).endsWith(CredentialClientTracer.SPAN_FLOW);
+    }
+
+    private static final class RecordingTracer implements CredentialClientTracer {
+        final List<String> mSpans = new ArrayList<>();
+        final List<Long> mFlowIds = new ArrayList<>();
+
+        @Override
+        public void onSpan(
+                String action,
+                long flowId,
+                String spanName,
+                long startTimeMs,
+                long durationMs) {
+            mSpans.add(spanName);
+            mFlowIds.add(flowId);
+        }
+    }
+}
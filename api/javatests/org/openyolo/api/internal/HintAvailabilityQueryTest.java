@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import android.content.Intent;
+import com.google.bbq.QueryResponse;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openyolo.protocol.Protobufs.HintAvailabilityBbqResponse;
+import org.openyolo.protocol.ProtocolConstants;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/**
+ * Tests for {@link HintAvailabilityQuery}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class HintAvailabilityQueryTest {
+
+    private static final String PROVIDER_A = "com.example.a";
+    private static final String PROVIDER_B = "com.example.b";
+    private static final String PROVIDER_C = "com.example.c";
+    private static final String PROVIDER_WITHOUT_QUERY_SUPPORT = "com.example.d";
+
+    private static final Set<String> QUERIED_PROVIDERS =
+            new HashSet<>(Arrays.asList(PROVIDER_A, PROVIDER_B, PROVIDER_C));
+
+    private static final List<Intent> HINT_INTENTS = Arrays.asList(
+            createHintIntent(PROVIDER_A),
+            createHintIntent(PROVIDER_B),
+            createHintIntent(PROVIDER_C),
+            createHintIntent(PROVIDER_WITHOUT_QUERY_SUPPORT));
+
+    @After
+    public void tearDown() {
+        PendingProviderChoices.clear();
+    }
+
+    @Test
+    public void processResponses_noResponses_excludesAllQueriedProviders() {
+        HintAvailabilityQuery.Result result = HintAvailabilityQuery.processResponses(
+                QUERIED_PROVIDERS,
+                Collections.<QueryResponse>emptyList());
+
+        assertThat(result.getExcludedProviders()).isEqualTo(QUERIED_PROVIDERS);
+        assertThat(result.filterHintIntents(HINT_INTENTS))
+                .containsExactly(HINT_INTENTS.get(3));
+    }
+
+    @Test
+    public void processResponses_mixedResponses_excludesProvidersWithoutHints() {
+        HintAvailabilityQuery.Result result = HintAvailabilityQuery.processResponses(
+                QUERIED_PROVIDERS,
+                Arrays.asList(
+                        createResponse(PROVIDER_A, true),
+                        createResponse(PROVIDER_B, false),
+                        new QueryResponse(PROVIDER_C, 1L, new byte[] { (byte) 0xFF })));
+
+        assertThat(result.getExcludedProviders()).containsOnly(PROVIDER_B, PROVIDER_C);
+        assertThat(result.filterHintIntents(HINT_INTENTS))
+                .containsExactly(HINT_INTENTS.get(0), HINT_INTENTS.get(3));
+    }
+
+    @Test
+    public void createContinuationIntent_noProvidersWithHints_returnsNull() {
+        HintAvailabilityQuery.Result result = HintAvailabilityQuery.processResponses(
+                QUERIED_PROVIDERS,
+                Arrays.asList(
+                        createResponse(PROVIDER_A, false),
+                        createResponse(PROVIDER_B, false)));
+
+        Intent intent = result.createContinuationIntent(
+                RuntimeEnvironment.application,
+                HINT_INTENTS.subList(0, 3),
+                PROVIDER_A,
+                FlowTracer.NO_FLOW);
+
+        assertThat(intent).isNull();
+        assertThat(PendingProviderChoices.take(ProtocolConstants.HINT_CREDENTIAL_ACTION))
+                .isNull();
+    }
+
+    @Test
+    public void createContinuationIntent_preferredProviderHasHints_continuesWithProvider() {
+        HintAvailabilityQuery.Result result = HintAvailabilityQuery.processResponses(
+                QUERIED_PROVIDERS,
+                Arrays.asList(
+                        createResponse(PROVIDER_A, true),
+                        createResponse(PROVIDER_B, true)));
+
+        Intent intent = result.createContinuationIntent(
+                RuntimeEnvironment.application,
+                HINT_INTENTS,
+                PROVIDER_B,
+                FlowTracer.NO_FLOW);
+
+        assertThat(intent.getComponent().getPackageName()).isEqualTo(PROVIDER_B);
+        assertThat(intent).isNotSameAs(HINT_INTENTS.get(1));
+        assertThat(PendingProviderChoices.take(ProtocolConstants.HINT_CREDENTIAL_ACTION))
+                .isEqualTo(PROVIDER_B);
+    }
+
+    @Test
+    public void createContinuationIntent_preferredProviderWithoutHints_continuesWithPicker() {
+        HintAvailabilityQuery.Result result = HintAvailabilityQuery.processResponses(
+                QUERIED_PROVIDERS,
+                Collections.singletonList(createResponse(PROVIDER_A, true)));
+
+        Intent intent = result.createContinuationIntent(
+                RuntimeEnvironment.application,
+                HINT_INTENTS,
+                PROVIDER_B,
+                FlowTracer.NO_FLOW);
+
+        assertThat(intent.getComponent().getClassName())
+                .isEqualTo(ProviderPickerActivity.class.getName());
+        assertThat(PendingProviderChoices.take(ProtocolConstants.HINT_CREDENTIAL_ACTION))
+                .isNull();
+    }
+
+    private static QueryResponse createResponse(String provider, boolean hintsAvailable) {
+        return new QueryResponse(
+                provider,
+                1L,
+                HintAvailabilityBbqResponse.newBuilder()
+                        .setHintsAvailable(hintsAvailable)
+                        .build()
+                        .toByteArray());
+    }
+
+    private static Intent createHintIntent(String provider) {
+        return new Intent(ProtocolConstants.HINT_CREDENTIAL_ACTION)
+                .setClassName(provider, "HintActivity");
+    }
+}
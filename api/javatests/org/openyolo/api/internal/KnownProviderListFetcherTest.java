@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Tests for {@link KnownProviderListFetcher}, against a local HTTP stand-in for the list host.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class KnownProviderListFetcherTest {
+
+    private static final byte[] DOCUMENT = new byte[] { 1, 2, 3, 4 };
+
+    private LocalHttpServer mServer;
+    private KnownProviderListFetcher mFetcher;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new LocalHttpServer();
+        mFetcher = new KnownProviderListFetcher(mServer.getUrl("/known-providers"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.close();
+    }
+
+    @Test
+    public void fetch_ok_returnsDocumentAndMetadata() throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("ETag", "\"v1\"");
+        headers.put("Cache-Control", "public, max-age=600");
+        mServer.setResponse(200, headers, DOCUMENT);
+
+        KnownProviderListFetcher.Result result = mFetcher.fetch(null);
+
+        assertThat(result.isNotModified()).isFalse();
+        assertThat(result.getDocument()).isEqualTo(DOCUMENT);
+        assertThat(result.getEtag()).isEqualTo("\"v1\"");
+        assertThat(result.getMaxAgeMs()).isEqualTo(TimeUnit.MINUTES.toMillis(10));
+        assertThat(mServer.getLastRequestHeader("If-None-Match")).isNull();
+    }
+
+    @Test
+    public void fetch_withEtag_sendsConditionalRequest() throws Exception {
+        mServer.setResponse(304, Collections.singletonMap("Cache-Control", "max-age=60"),
+                new byte[0]);
+
+        KnownProviderListFetcher.Result result = mFetcher.fetch("\"v1\"");
+
+        assertThat(mServer.getLastRequestHeader("If-None-Match")).isEqualTo("\"v1\"");
+        assertThat(result.isNotModified()).isTrue();
+        assertThat(result.getDocument()).isNull();
+        assertThat(result.getEtag()).isEqualTo("\"v1\"");
+        assertThat(result.getMaxAgeMs()).isEqualTo(TimeUnit.MINUTES.toMillis(1));
+    }
+
+    @Test(expected = IOException.class)
+    public void fetch_serverError_throwsIOException() throws Exception {
+        mServer.setResponse(500, Collections.<String, String>emptyMap(), new byte[0]);
+        mFetcher.fetch(null);
+    }
+
+    @Test(expected = IOException.class)
+    public void fetch_oversizedDocument_throwsIOException() throws Exception {
+        mServer.setResponse(200, Collections.<String, String>emptyMap(),
+                new byte[KnownProviderListFetcher.MAX_DOCUMENT_SIZE + 1]);
+        mFetcher.fetch(null);
+    }
+
+    @Test
+    public void parseMaxAge() {
+        assertThat(KnownProviderListFetcher.parseMaxAge(null))
+                .isEqualTo(KnownProviderListFetcher.DEFAULT_MAX_AGE_MS);
+        assertThat(KnownProviderListFetcher.parseMaxAge("no-cache"))
+                .isEqualTo(KnownProviderListFetcher.DEFAULT_MAX_AGE_MS);
+        assertThat(KnownProviderListFetcher.parseMaxAge("Max-Age=30, private"))
+                .isEqualTo(TimeUnit.SECONDS.toMillis(30));
+        assertThat(KnownProviderListFetcher.parseMaxAge("max-age=-1"))
+                .isEqualTo(KnownProviderListFetcher.DEFAULT_MAX_AGE_MS);
+        assertThat(KnownProviderListFetcher.parseMaxAge("max-age=soon"))
+                .isEqualTo(KnownProviderListFetcher.DEFAULT_MAX_AGE_MS);
+    }
+}
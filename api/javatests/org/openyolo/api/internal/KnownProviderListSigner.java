@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import android.util.Base64;
+import java.nio.charset.Charset;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.Signature;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Produces signed known provider list documents for tests, using a freshly generated key.
+ */
+final class KnownProviderListSigner {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final KeyPair mKeyPair;
+
+    KnownProviderListSigner() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance(KnownProviderList.KEY_ALGORITHM);
+        generator.initialize(256);
+        mKeyPair = generator.generateKeyPair();
+    }
+
+    PublicKey getPublicKey() {
+        return mKeyPair.getPublic();
+    }
+
+    String getEncodedPublicKey() {
+        return Base64.encodeToString(mKeyPair.getPublic().getEncoded(), Base64.NO_WRAP);
+    }
+
+    byte[] sign(String... providers) throws Exception {
+        return sign(1L, providers);
+    }
+
+    byte[] sign(long version, String... providers) throws Exception {
+        JSONArray providerArray = new JSONArray();
+        for (String provider : providers) {
+            providerArray.put(provider);
+        }
+
+        byte[] payload = new JSONObject()
+                .put("version", version)
+                .put("providers", providerArray)
+                .toString()
+                .getBytes(UTF_8);
+        return envelope(payload, signPayload(payload));
+    }
+
+    byte[] signPayload(byte[] payload) throws Exception {
+        Signature signer = Signature.getInstance(KnownProviderList.SIGNATURE_ALGORITHM);
+        signer.initSign(mKeyPair.getPrivate());
+        signer.update(payload);
+        return signer.sign();
+    }
+
+    static byte[] envelope(byte[] payload, byte[] signature) throws Exception {
+        return new JSONObject()
+                .put("payload", Base64.encodeToString(payload, Base64.NO_WRAP))
+                .put("signature", Base64.encodeToString(signature, Base64.NO_WRAP))
+                .toString()
+                .getBytes(UTF_8);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import java.nio.charset.Charset;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openyolo.protocol.MalformedDataException;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Tests for {@link KnownProviderList}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class KnownProviderListTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private KnownProviderListSigner mSigner;
+
+    @Before
+    public void setUp() throws Exception {
+        mSigner = new KnownProviderListSigner();
+    }
+
+    @Test
+    public void parse_validSignature_returnsProviders() throws Exception {
+        byte[] document = mSigner.sign(
+                KnownProviders.DASHLANE_PROVIDER.toString(),
+                KnownProviders.GOOGLE_PROVIDER.toString());
+
+        KnownProviderList list = KnownProviderList.parse(document, mSigner.getPublicKey());
+
+        assertThat(list.getProviders()).containsOnly(
+                KnownProviders.DASHLANE_PROVIDER,
+                KnownProviders.GOOGLE_PROVIDER);
+    }
+
+    @Test
+    public void parse_encodedSigningKey_verifies() throws Exception {
+        byte[] document = mSigner.sign(KnownProviders.KEEPER_PROVIDER.toString());
+
+        KnownProviderList list = KnownProviderList.parse(
+                document,
+                KnownProviderList.decodeSigningKey(mSigner.getEncodedPublicKey()));
+
+        assertThat(list.getProviders()).containsOnly(KnownProviders.KEEPER_PROVIDER);
+    }
+
+    @Test(expected = MalformedDataException.class)
+    public void parse_otherSigningKey_throwsMalformedDataException() throws Exception {
+        byte[] document = mSigner.sign(KnownProviders.DASHLANE_PROVIDER.toString());
+        KnownProviderList.parse(document, new KnownProviderListSigner().getPublicKey());
+    }
+
+    @Test(expected = MalformedDataException.class)
+    public void parse_tamperedPayload_throwsMalformedDataException() throws Exception {
+        byte[] payload = "{\"version\":1,\"providers\":[]}".getBytes(UTF_8);
+        byte[] signature = mSigner.signPayload(payload);
+        byte[] tamperedPayload = ("{\"version\":1,\"providers\":[\""
+                + KnownProviders.LASTPASS_PROVIDER
+                + "\"]}").getBytes(UTF_8);
+
+        KnownProviderList.parse(
+                KnownProviderListSigner.envelope(tamperedPayload, signature),
+                mSigner.getPublicKey());
+    }
+
+    @Test
+    public void parse_validSignature_returnsVersion() throws Exception {
+        byte[] document = mSigner.sign(7L, KnownProviders.DASHLANE_PROVIDER.toString());
+        assertThat(KnownProviderList.parse(document, mSigner.getPublicKey()).getVersion())
+                .isEqualTo(7L);
+    }
+
+    @Test(expected = MalformedDataException.class)
+    public void parse_missingVersion_throwsMalformedDataException() throws Exception {
+        byte[] payload = "{\"providers\":[]}".getBytes(UTF_8);
+        KnownProviderList.parse(
+                KnownProviderListSigner.envelope(payload, mSigner.signPayload(payload)),
+                mSigner.getPublicKey());
+    }
+
+    @Test(expected = MalformedDataException.class)
+    public void parse_nonPositiveVersion_throwsMalformedDataException() throws Exception {
+        byte[] document = mSigner.sign(0L, KnownProviders.DASHLANE_PROVIDER.toString());
+        KnownProviderList.parse(document, mSigner.getPublicKey());
+    }
+
+    @Test(expected = MalformedDataException.class)
+    public void parse_webAuthDomain_throwsMalformedDataException() throws Exception {
+        byte[] document = mSigner.sign("https://www.example.com");
+        KnownProviderList.parse(document, mSigner.getPublicKey());
+    }
+
+    @Test(expected = MalformedDataException.class)
+    public void parse_notJson_throwsMalformedDataException() throws Exception {
+        KnownProviderList.parse("not a list".getBytes(UTF_8), mSigner.getPublicKey());
+    }
+
+    @Test(expected = MalformedDataException.class)
+    public void decodeSigningKey_invalidKey_throwsMalformedDataException() throws Exception {
+        KnownProviderList.decodeSigningKey("AAAA");
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openyolo.api.internal;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Tests for {@link KnownProvidersResponderFilter}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class KnownProvidersResponderFilterTest {
+
+    private static final String DATA_TYPE = "com.example.data";
+    private static final String KNOWN_PROVIDER = "com.example.known";
+    private static final String CHOSEN_PROVIDER = "com.example.chosen";
+    private static final String OTHER_PROVIDER = "com.example.other";
+
+    private static final List<String> RESPONDERS =
+            Arrays.asList(OTHER_PROVIDER, CHOSEN_PROVIDER, KNOWN_PROVIDER);
+
+    @Mock
+    private KnownProviders mockKnownProviders;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mockKnownProviders.isKnown(KNOWN_PROVIDER)).thenReturn(true);
+    }
+
+    @Test
+    public void filter_permitsOnlyKnownProviders() {
+        KnownProvidersResponderFilter filter =
+                new KnownProvidersResponderFilter(mockKnownProviders);
+
+        assertThat(filter.filter(DATA_TYPE, RESPONDERS)).containsExactly(KNOWN_PROVIDER);
+    }
+
+    @Test
+    public void filter_withChosenProvider_alsoPermitsChosenProvider() {
+        KnownProvidersResponderFilter filter =
+                new KnownProvidersResponderFilter(mockKnownProviders, CHOSEN_PROVIDER);
+
+        assertThat(filter.filter(DATA_TYPE, RESPONDERS))
+                .containsExactly(CHOSEN_PROVIDER, KNOWN_PROVIDER);
+    }
+}
@@ -19,24 +19,40 @@ package org.openyolo.api.internal;
 
 import static junit.framework.TestCase.assertFalse;
 import static junit.framework.TestCase.assertTrue;
+import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.Signature;
+import android.net.Uri;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.openyolo.protocol.AuthenticationDomain;
@@ -51,12 +67,27 @@ import org.robolectric.annotation.Config;
 @Config(manifest = Config.NONE)
 public class KnownProvidersTest {
 
+    private static final String INSTALLED_PROVIDER = "com.example.provider";
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Mock
     private Context mockContext;
     @Mock
     private PackageManager mockPackageManager;
 
     private KnownProviders underTest;
+    private LocalHttpServer mServer;
+    private KnownProviderListSigner mSigner;
+    private KnownProviderListStore mStore;
 
     @Before
     public void setUp() throws Exception {
@@ -70,6 +101,15 @@ public class KnownProvidersTest {
         mockPackageInfo.signatures = signatures;
         when(mockPackageManager.getPackageInfo(anyString(), anyInt())).thenReturn(mockPackageInfo);
         underTest = KnownProviders.getInstance(mockContext);
+
+        mServer = new LocalHttpServer();
+        mSigner = new KnownProviderListSigner();
+        mStore = new KnownProviderListStore(temporaryFolder.newFile());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.close();
     }
 
     /**
@@ -124,6 +164,167 @@ public class KnownProvidersTest {
         assertEquals(newsize, originalSize+1);
     }
 
+    @Test
+    public void testIsKnown_listedInstalledPackage_usesIndex() throws Exception {
+        KnownProviders providers = new KnownProviders(mockContext, null, null, null, null);
+        AuthenticationDomain installedDomain =
+                AuthenticationDomain.fromPackageName(mockContext, INSTALLED_PROVIDER);
+        providers.addKnownProvider(installedDomain);
+
+        assertTrue(providers.isKnown(INSTALLED_PROVIDER));
+        assertThat(providers.getKnownAuthenticationDomain(INSTALLED_PROVIDER))
+                .isEqualTo(installedDomain);
+
+        clearInvocations(mockPackageManager);
+        assertTrue(providers.isKnown(INSTALLED_PROVIDER));
+        assertFalse(providers.isKnown("bogus.tld"));
+        verifyZeroInteractions(mockPackageManager);
+    }
+
+    @Test
+    public void testIsKnown_listedPackageChanged_rebuildsIndex() throws Exception {
+        KnownProviders providers = new KnownProviders(mockContext, null, null, null, null);
+        providers.addKnownProvider(
+                AuthenticationDomain.fromPackageName(mockContext, INSTALLED_PROVIDER));
+        providers.registerPackageChangeReceiver();
+        ArgumentCaptor<BroadcastReceiver> receiverCaptor =
+                ArgumentCaptor.forClass(BroadcastReceiver.class);
+        verify(mockContext, atLeastOnce())
+                .registerReceiver(receiverCaptor.capture(), any(IntentFilter.class));
+        assertTrue(providers.isKnown(INSTALLED_PROVIDER));
+
+        clearInvocations(mockPackageManager);
+        receiverCaptor.getValue().onReceive(mockContext,
+                new Intent(Intent.ACTION_PACKAGE_ADDED, Uri.parse("package:bogus.tld")));
+        assertTrue(providers.isKnown(INSTALLED_PROVIDER));
+        verifyZeroInteractions(mockPackageManager);
+
+        when(mockPackageManager.getPackageInfo(eq(INSTALLED_PROVIDER), anyInt()))
+                .thenThrow(new PackageManager.NameNotFoundException());
+        receiverCaptor.getValue().onReceive(mockContext,
+                new Intent(Intent.ACTION_PACKAGE_REMOVED,
+                        Uri.parse("package:" + INSTALLED_PROVIDER)));
+        assertFalse(providers.isKnown(INSTALLED_PROVIDER));
+    }
+
+    @Test
+    public void testDynamicList_retrievedAndPersisted() throws Exception {
+        mServer.setResponse(200, Collections.singletonMap("ETag", "\"v1\""),
+                mSigner.sign(LASTPASS_PROVIDER.toString()));
+
+        KnownProviders providers = createDynamicProviders();
+
+        assertThat(providers.getKnownProviders()).containsOnly(LASTPASS_PROVIDER);
+        KnownProviderListStore.Entry entry = mStore.read();
+        assertThat(entry).isNotNull();
+        assertThat(entry.getEtag()).isEqualTo("\"v1\"");
+        assertThat(entry.isExpired(System.currentTimeMillis())).isFalse();
+
+        // the list is fresh, so no further requests are made
+        providers.getKnownProviders();
+        assertThat(mServer.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDynamicList_freshStoredList_notRetrieved() throws Exception {
+        mStore.write(new KnownProviderListStore.Entry(
+                mSigner.sign(KEEPER_PROVIDER.toString()),
+                "\"v1\"",
+                System.currentTimeMillis() + 60000));
+
+        KnownProviders providers = createDynamicProviders();
+
+        assertThat(providers.getKnownProviders()).containsOnly(KEEPER_PROVIDER);
+        assertThat(mServer.getRequestCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testDynamicList_expiredStoredList_revalidated() throws Exception {
+        mStore.write(new KnownProviderListStore.Entry(
+                mSigner.sign(KEEPER_PROVIDER.toString()),
+                "\"v1\"",
+                System.currentTimeMillis() - 1));
+        mServer.setResponse(304, Collections.singletonMap("Cache-Control", "max-age=600"),
+                new byte[0]);
+
+        KnownProviders providers = createDynamicProviders();
+
+        assertThat(providers.getKnownProviders()).containsOnly(KEEPER_PROVIDER);
+        assertThat(mServer.getLastRequestHeader("If-None-Match")).isEqualTo("\"v1\"");
+        assertThat(mStore.read().isExpired(System.currentTimeMillis() + 300000)).isFalse();
+    }
+
+    @Test
+    public void testDynamicList_invalidSignature_defaultListRetained() throws Exception {
+        mServer.setResponse(200, Collections.<String, String>emptyMap(),
+                new KnownProviderListSigner().sign(LASTPASS_PROVIDER.toString()));
+
+        KnownProviders providers = createDynamicProviders();
+
+        assertThat(providers.getKnownProviders()).isEqualTo(DEFAULT_KNOWN_PROVIDERS);
+        assertThat(mStore.read()).isNull();
+
+        // retrieval is not retried until the retry delay has elapsed
+        providers.getKnownProviders();
+        assertThat(mServer.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDynamicList_tamperedStoredList_discarded() throws Exception {
+        mStore.write(new KnownProviderListStore.Entry(
+                new KnownProviderListSigner().sign(KEEPER_PROVIDER.toString()),
+                null,
+                System.currentTimeMillis() + 60000));
+        mServer.setResponse(200, Collections.<String, String>emptyMap(),
+                mSigner.sign(LASTPASS_PROVIDER.toString()));
+
+        KnownProviders providers = createDynamicProviders();
+
+        assertThat(providers.getKnownProviders()).containsOnly(LASTPASS_PROVIDER);
+        assertThat(mServer.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDynamicList_olderVersion_rejected() throws Exception {
+        byte[] storedDocument = mSigner.sign(2L, KEEPER_PROVIDER.toString());
+        mStore.write(new KnownProviderListStore.Entry(
+                storedDocument,
+                "\"v2\"",
+                System.currentTimeMillis() - 1));
+        mServer.setResponse(200, Collections.singletonMap("ETag", "\"v1\""),
+                mSigner.sign(1L, LASTPASS_PROVIDER.toString()));
+
+        KnownProviders providers = createDynamicProviders();
+
+        assertThat(providers.getKnownProviders()).containsOnly(KEEPER_PROVIDER);
+        assertThat(mStore.read().getDocument()).isEqualTo(storedDocument);
+        assertThat(mServer.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDynamicList_newerVersion_accepted() throws Exception {
+        mStore.write(new KnownProviderListStore.Entry(
+                mSigner.sign(2L, KEEPER_PROVIDER.toString()),
+                "\"v2\"",
+                System.currentTimeMillis() - 1));
+        mServer.setResponse(200, Collections.singletonMap("ETag", "\"v3\""),
+                mSigner.sign(3L, LASTPASS_PROVIDER.toString()));
+
+        KnownProviders providers = createDynamicProviders();
+
+        assertThat(providers.getKnownProviders()).containsOnly(LASTPASS_PROVIDER);
+        assertThat(mStore.read().getEtag()).isEqualTo("\"v3\"");
+    }
+
+    private KnownProviders createDynamicProviders() throws Exception {
+        return new KnownProviders(
+                mockContext,
+                new KnownProviderListFetcher(mServer.getUrl("/known-providers")),
+                mStore,
+                mSigner.getPublicKey(),
+                DIRECT_EXECUTOR);
+    }
+
     /**
      * The known package name and certificate hash for
      * <a href="https://www.dashlane.com">Dashlane</a>.
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A minimal HTTP server bound to the loopback interface, standing in for the known provider
+ * list host in tests. Every request receives the currently configured response, and the
+ * headers of each request are recorded for inspection.
+ */
+final class LocalHttpServer implements Closeable {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ServerSocket mServerSocket;
+    private final List<Map<String, String>> mRequestHeaders =
+            Collections.synchronizedList(new ArrayList<Map<String, String>>());
+
+    private volatile int mResponseCode = 404;
+    private volatile Map<String, String> mResponseHeaders = Collections.emptyMap();
+    private volatile byte[] mResponseBody = new byte[0];
+
+    LocalHttpServer() throws IOException {
+        mServerSocket = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1"));
+        Thread acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }, "LocalHttpServer");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    URL getUrl(String path) throws IOException {
+        return new URL("http", "127.0.0.1", mServerSocket.getLocalPort(), path);
+    }
+
+    void setResponse(int responseCode, Map<String, String> headers, byte[] body) {
+        mResponseCode = responseCode;
+        mResponseHeaders = new LinkedHashMap<>(headers);
+        mResponseBody = body;
+    }
+
+    int getRequestCount() {
+        return mRequestHeaders.size();
+    }
+
+    /**
+     * Retrieves a header of the most recent request, by case-insensitive name.
+     */
+    String getLastRequestHeader(String name) {
+        synchronized (mRequestHeaders) {
+            if (mRequestHeaders.isEmpty()) {
+                return null;
+            }
+            return mRequestHeaders.get(mRequestHeaders.size() - 1)
+                    .get(name.toLowerCase(Locale.US));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        mServerSocket.close();
+    }
+
+    private void acceptConnections() {
+        while (!mServerSocket.isClosed()) {
+            try {
+                Socket socket = mServerSocket.accept();
+                try {
+                    handle(socket);
+                } finally {
+                    socket.close();
+                }
+            } catch (IOException ex) {
+                // the server was closed, or the client disconnected
+            }
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        BufferedReader reader =
+                new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+        if (reader.readLine() == null) {
+            return;
+        }
+
+        HashMap<String, String> headers = new HashMap<>();
+        String line;
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            int separator = line.indexOf(':');
+            if (separator > 0) {
+                headers.put(
+                        line.substring(0, separator).trim().toLowerCase(Locale.US),
+                        line.substring(separator + 1).trim());
+            }
+        }
+        mRequestHeaders.add(headers);
+
+        int responseCode = mResponseCode;
+        byte[] body = (responseCode == 304) ? new byte[0] : mResponseBody;
+        StringBuilder response = new StringBuilder()
+                .append("HTTP/1.1 ").append(responseCode).append(" Test\r\n");
+        for (Map.Entry<String, String> header : mResponseHeaders.entrySet()) {
+            response.append(header.getKey()).append(": ").append(header.getValue())
+                    .append("\r\n");
+        }
+        response.append("Content-Length: ").append(body.length).append("\r\n")
+                .append("Connection: close\r\n\r\n");
+
+        OutputStream out = socket.getOutputStream();
+        out.write(response.toString().getBytes(UTF_8));
+        out.write(body);
+        out.flush();
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Tests for {@link ProviderAppearanceCache}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ProviderAppearanceCacheTest {
+
+    private static final String PROVIDER_A = "com.example.a";
+    private static final String PROVIDER_B = "com.example.b";
+    private static final String PROVIDER_C = "com.example.c";
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Mock
+    private Context mockContext;
+
+    @Mock
+    private PackageManager mockPackageManager;
+
+    private List<String> mLoadedPackages;
+    private ProviderAppearanceCache.Callback mCallback;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(mockContext.getApplicationContext()).thenReturn(mockContext);
+        when(mockContext.getPackageManager()).thenReturn(mockPackageManager);
+        when(mockPackageManager.getApplicationLabel(any(ApplicationInfo.class)))
+                .thenReturn("Provider");
+        installPackage(PROVIDER_A, 1);
+        installPackage(PROVIDER_B, 1);
+        installPackage(PROVIDER_C, 1);
+
+        mLoadedPackages = new ArrayList<>();
+        mCallback = new ProviderAppearanceCache.Callback() {
+            @Override
+            public void onAppearanceLoaded(
+                    @NonNull String packageName,
+                    @NonNull ProviderAppearanceCache.Appearance appearance) {
+                mLoadedPackages.add(packageName);
+            }
+        };
+    }
+
+    @Test
+    public void load_notCached_loadsAndCaches() {
+        ProviderAppearanceCache cache = createCache(Integer.MAX_VALUE);
+        assertThat(cache.getCached(PROVIDER_A)).isNull();
+
+        cache.load(PROVIDER_A, mCallback);
+
+        assertThat(mLoadedPackages).containsExactly(PROVIDER_A);
+        assertThat(cache.getCached(PROVIDER_A).getLabel()).isEqualTo("Provider");
+    }
+
+    @Test
+    public void load_sameVersion_doesNotReload() {
+        ProviderAppearanceCache cache = createCache(Integer.MAX_VALUE);
+        cache.load(PROVIDER_A, mCallback);
+        cache.load(PROVIDER_A, mCallback);
+
+        assertThat(mLoadedPackages).containsExactly(PROVIDER_A);
+        verify(mockPackageManager, times(1)).getApplicationLabel(any(ApplicationInfo.class));
+    }
+
+    @Test
+    public void load_versionChanged_reloads() throws Exception {
+        ProviderAppearanceCache cache = createCache(Integer.MAX_VALUE);
+        cache.load(PROVIDER_A, mCallback);
+
+        installPackage(PROVIDER_A, 2);
+        cache.load(PROVIDER_A, mCallback);
+
+        assertThat(mLoadedPackages).containsExactly(PROVIDER_A, PROVIDER_A);
+    }
+
+    @Test
+    public void load_uninstalled_evicts() throws Exception {
+        ProviderAppearanceCache cache = createCache(Integer.MAX_VALUE);
+        cache.load(PROVIDER_A, mCallback);
+
+        when(mockPackageManager.getPackageInfo(eq(PROVIDER_A), anyInt()))
+                .thenThrow(new PackageManager.NameNotFoundException());
+        cache.load(PROVIDER_A, mCallback);
+
+        assertThat(cache.getCached(PROVIDER_A)).isNull();
+        assertThat(mLoadedPackages).containsExactly(PROVIDER_A);
+    }
+
+    @Test
+    public void load_exceedsMaxSize_evictsLeastRecentlyUsed() {
+        ProviderAppearanceCache probe = createCache(Integer.MAX_VALUE);
+        probe.load(PROVIDER_A, mCallback);
+        int entrySize = probe.size();
+
+        ProviderAppearanceCache cache = createCache(2 * entrySize);
+        cache.load(PROVIDER_A, mCallback);
+        cache.load(PROVIDER_B, mCallback);
+        cache.getCached(PROVIDER_A);
+        cache.load(PROVIDER_C, mCallback);
+
+        assertThat(cache.getCached(PROVIDER_A)).isNotNull();
+        assertThat(cache.getCached(PROVIDER_B)).isNull();
+        assertThat(cache.getCached(PROVIDER_C)).isNotNull();
+        assertThat(cache.size()).isEqualTo(2 * entrySize);
+    }
+
+    @Test
+    public void createIcon_createsNewInstanceFromProviderState() {
+        ColorDrawable icon = new ColorDrawable(Color.RED);
+        ProviderAppearanceCache.Appearance appearance =
+                new ProviderAppearanceCache.Appearance(icon.getConstantState(), "Provider");
+
+        Drawable createdIcon = appearance.createIcon();
+
+        assertThat(createdIcon).isInstanceOf(ColorDrawable.class).isNotSameAs(icon);
+        assertThat(((ColorDrawable) createdIcon).getColor()).isEqualTo(Color.RED);
+        assertThat(new ProviderAppearanceCache.Appearance(null, "Provider").createIcon())
+                .isNull();
+    }
+
+    private ProviderAppearanceCache createCache(int maxSizeBytes) {
+        return new ProviderAppearanceCache(mockContext, maxSizeBytes, DIRECT_EXECUTOR);
+    }
+
+    private void installPackage(String packageName, int versionCode) throws Exception {
+        PackageInfo packageInfo = new PackageInfo();
+        packageInfo.packageName = packageName;
+        packageInfo.versionCode = versionCode;
+        packageInfo.applicationInfo = new ApplicationInfo();
+        packageInfo.applicationInfo.packageName = packageName;
+        when(mockPackageManager.getPackageInfo(eq(packageName), anyInt()))
+                .thenReturn(packageInfo);
+    }
+}
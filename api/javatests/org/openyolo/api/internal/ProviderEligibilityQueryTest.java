@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import android.content.Intent;
+import com.google.bbq.QueryResponse;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openyolo.protocol.Protobufs.CredentialDeleteMatchBbqResponse;
+import org.openyolo.protocol.Protobufs.CredentialSaveEligibilityBbqResponse;
+import org.openyolo.protocol.ProtocolConstants;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/**
+ * Tests for {@link ProviderEligibilityQuery}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ProviderEligibilityQueryTest {
+
+    private static final String PROVIDER_A = "com.example.a";
+    private static final String PROVIDER_B = "com.example.b";
+    private static final String PROVIDER_C = "com.example.c";
+
+    private static final List<Intent> SAVE_INTENTS = Arrays.asList(
+            createProviderIntent(ProtocolConstants.SAVE_CREDENTIAL_ACTION, PROVIDER_A),
+            createProviderIntent(ProtocolConstants.SAVE_CREDENTIAL_ACTION, PROVIDER_B),
+            createProviderIntent(ProtocolConstants.SAVE_CREDENTIAL_ACTION, PROVIDER_C));
+
+    @After
+    public void tearDown() {
+        PendingProviderChoices.clear();
+    }
+
+    @Test
+    public void getDataTypeForAction() {
+        assertThat(ProviderEligibilityQuery.getDataTypeForAction(
+                ProtocolConstants.BATCH_SAVE_CREDENTIAL_ACTION))
+                .isEqualTo(ProtocolConstants.SAVE_ELIGIBILITY_DATA_TYPE);
+        assertThat(ProviderEligibilityQuery.getDataTypeForAction(
+                ProtocolConstants.DELETE_CREDENTIAL_ACTION))
+                .isEqualTo(ProtocolConstants.DELETE_MATCH_DATA_TYPE);
+        assertThat(ProviderEligibilityQuery.getDataTypeForAction(
+                ProtocolConstants.HINT_CREDENTIAL_ACTION))
+                .isNull();
+    }
+
+    @Test
+    public void processResponses_noResponses_retainsAllProviders() {
+        ProviderEligibilityQuery.Result result = ProviderEligibilityQuery.processResponses(
+                ProtocolConstants.SAVE_ELIGIBILITY_DATA_TYPE,
+                Collections.<QueryResponse>emptyList());
+
+        assertThat(result.getExcludedProviders()).isEmpty();
+        assertThat(result.filterProviderIntents(SAVE_INTENTS)).isEqualTo(SAVE_INTENTS);
+    }
+
+    @Test
+    public void processResponses_saveEligibility_excludesRefusingProviders() {
+        ProviderEligibilityQuery.Result result = ProviderEligibilityQuery.processResponses(
+                ProtocolConstants.SAVE_ELIGIBILITY_DATA_TYPE,
+                Arrays.asList(
+                        createSaveResponse(PROVIDER_A, true),
+                        createSaveResponse(PROVIDER_B, false),
+                        new QueryResponse(PROVIDER_C, 1L, new byte[] { (byte) 0xFF })));
+
+        assertThat(result.getExcludedProviders()).containsOnly(PROVIDER_B);
+        assertThat(result.filterProviderIntents(SAVE_INTENTS))
+                .containsExactly(SAVE_INTENTS.get(0), SAVE_INTENTS.get(2));
+    }
+
+    @Test
+    public void processResponses_deleteMatch_excludesProvidersWithoutMatch() {
+        ProviderEligibilityQuery.Result result = ProviderEligibilityQuery.processResponses(
+                ProtocolConstants.DELETE_MATCH_DATA_TYPE,
+                Arrays.asList(
+                        createDeleteResponse(PROVIDER_A, false),
+                        createDeleteResponse(PROVIDER_B, true)));
+
+        assertThat(result.getExcludedProviders()).containsOnly(PROVIDER_A);
+    }
+
+    @Test
+    public void createContinuationIntent_allProvidersDecline_returnsNull() {
+        ProviderEligibilityQuery.Result result = ProviderEligibilityQuery.processResponses(
+                ProtocolConstants.SAVE_ELIGIBILITY_DATA_TYPE,
+                Arrays.asList(
+                        createSaveResponse(PROVIDER_A, false),
+                        createSaveResponse(PROVIDER_B, false)));
+
+        Intent intent = result.createContinuationIntent(
+                RuntimeEnvironment.application,
+                ProtocolConstants.SAVE_CREDENTIAL_ACTION,
+                SAVE_INTENTS.subList(0, 2),
+                PROVIDER_A,
+                FlowTracer.NO_FLOW);
+
+        assertThat(intent).isNull();
+        assertThat(PendingProviderChoices.take(ProtocolConstants.SAVE_CREDENTIAL_ACTION))
+                .isNull();
+    }
+
+    @Test
+    public void createContinuationIntent_preferredProviderEligible_continuesWithProvider() {
+        ProviderEligibilityQuery.Result result = ProviderEligibilityQuery.processResponses(
+                ProtocolConstants.SAVE_ELIGIBILITY_DATA_TYPE,
+                Collections.singletonList(createSaveResponse(PROVIDER_A, false)));
+
+        Intent intent = result.createContinuationIntent(
+                RuntimeEnvironment.application,
+                ProtocolConstants.SAVE_CREDENTIAL_ACTION,
+                SAVE_INTENTS,
+                PROVIDER_B,
+                FlowTracer.NO_FLOW);
+
+        assertThat(intent.getComponent().getPackageName()).isEqualTo(PROVIDER_B);
+        assertThat(PendingProviderChoices.take(ProtocolConstants.SAVE_CREDENTIAL_ACTION))
+                .isEqualTo(PROVIDER_B);
+    }
+
+    @Test
+    public void createContinuationIntent_preferredProviderDeclines_continuesWithPicker() {
+        ProviderEligibilityQuery.Result result = ProviderEligibilityQuery.processResponses(
+                ProtocolConstants.SAVE_ELIGIBILITY_DATA_TYPE,
+                Collections.singletonList(createSaveResponse(PROVIDER_A, false)));
+
+        Intent intent = result.createContinuationIntent(
+                RuntimeEnvironment.application,
+                ProtocolConstants.SAVE_CREDENTIAL_ACTION,
+                SAVE_INTENTS,
+                PROVIDER_A,
+                FlowTracer.NO_FLOW);
+
+        assertThat(intent.getComponent().getClassName())
+                .isEqualTo(ProviderPickerActivity.class.getName());
+        assertThat(PendingProviderChoices.take(ProtocolConstants.SAVE_CREDENTIAL_ACTION))
+                .isNull();
+    }
+
+    private static QueryResponse createSaveResponse(String provider, boolean eligible) {
+        return new QueryResponse(
+                provider,
+                1L,
+                CredentialSaveEligibilityBbqResponse.newBuilder()
+                        .setSaveEligible(eligible)
+                        .build()
+                        .toByteArray());
+    }
+
+    private static QueryResponse createDeleteResponse(String provider, boolean matchFound) {
+        return new QueryResponse(
+                provider,
+                1L,
+                CredentialDeleteMatchBbqResponse.newBuilder()
+                        .setMatchingCredentialAvailable(matchFound)
+                        .build()
+                        .toByteArray());
+    }
+
+    private static Intent createProviderIntent(String action, String provider) {
+        return new Intent(action).setClassName(provider, "ProviderActivity");
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ActivityInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openyolo.protocol.ProtocolConstants;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Tests for {@link ProviderResolutionCache}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ProviderResolutionCacheTest {
+
+    private static final String PROVIDER_A = "com.example.a";
+    private static final String PROVIDER_B = "com.example.b";
+    private static final String DATA_TYPE = "com.example.data";
+
+    @Mock
+    private Context mockContext;
+
+    @Mock
+    private PackageManager mockPackageManager;
+
+    private List<ResolveInfo> mRetrieveProviders;
+    private List<ResolveInfo> mSaveProviders;
+    private ProviderResolutionCache mCache;
+
+    @SuppressWarnings("WrongConstant")
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mRetrieveProviders = new ArrayList<>();
+        mSaveProviders = new ArrayList<>();
+
+        when(mockContext.getApplicationContext()).thenReturn(mockContext);
+        when(mockContext.getPackageManager()).thenReturn(mockPackageManager);
+        when(mockPackageManager.queryIntentActivities(any(Intent.class), anyInt()))
+                .thenAnswer(new Answer<List<ResolveInfo>>() {
+                    @Override
+                    public List<ResolveInfo> answer(InvocationOnMock invocation) {
+                        Intent intent = invocation.getArgument(0);
+                        if (ProtocolConstants.RETRIEVE_CREDENTIAL_ACTION
+                                .equals(intent.getAction())) {
+                            return new ArrayList<>(mRetrieveProviders);
+                        } else if (ProtocolConstants.SAVE_CREDENTIAL_ACTION
+                                .equals(intent.getAction())) {
+                            return new ArrayList<>(mSaveProviders);
+                        }
+                        return new ArrayList<>();
+                    }
+                });
+
+        mCache = new ProviderResolutionCache(mockContext);
+    }
+
+    @Test
+    public void getProviders_resolvesEachActionOnce() {
+        mRetrieveProviders.add(createResolveInfo(PROVIDER_A, "RetrieveActivity"));
+        mSaveProviders.add(createResolveInfo(PROVIDER_B, "SaveActivity"));
+
+        assertThat(mCache.getProviders(ProtocolConstants.RETRIEVE_CREDENTIAL_ACTION))
+                .containsOnlyKeys(PROVIDER_A);
+        assertThat(mCache.getProviders(ProtocolConstants.SAVE_CREDENTIAL_ACTION))
+                .containsOnlyKeys(PROVIDER_B);
+        assertThat(mCache.getProviders(ProtocolConstants.HINT_CREDENTIAL_ACTION)).isEmpty();
+        assertThat(mCache.getProvider(PROVIDER_A, ProtocolConstants.RETRIEVE_CREDENTIAL_ACTION))
+                .isEqualTo(new ComponentName(PROVIDER_A, "RetrieveActivity"));
+        assertThat(mCache.getProviders(ProtocolConstants.SAVE_CREDENTIAL_ACTION))
+                .containsOnlyKeys(PROVIDER_B);
+
+        verifyQueryCount(3);
+    }
+
+    @Test
+    public void getProviders_singleAction_queriesPackageManagerOnce() {
+        mRetrieveProviders.add(createResolveInfo(PROVIDER_A, "RetrieveActivity"));
+
+        mCache.getProviderComponents(ProtocolConstants.RETRIEVE_CREDENTIAL_ACTION);
+        mCache.getProvider(PROVIDER_A, ProtocolConstants.RETRIEVE_CREDENTIAL_ACTION);
+        mCache.createIntentForAction(PROVIDER_A, ProtocolConstants.RETRIEVE_CREDENTIAL_ACTION);
+
+        verifyQueryCount(1);
+    }
+
+    @Test
+    public void getProviders_duplicateHandlers_firstIsUsed() {
+        mRetrieveProviders.add(createResolveInfo(PROVIDER_A, "FirstActivity"));
+        mRetrieveProviders.add(createResolveInfo(PROVIDER_A, "SecondActivity"));
+
+        assertThat(mCache.getProviderComponents(ProtocolConstants.RETRIEVE_CREDENTIAL_ACTION))
+                .containsExactly(new ComponentName(PROVIDER_A, "FirstActivity"));
+    }
+
+    @Test
+    public void createIntentForAction_matchingPackage() {
+        mRetrieveProviders.add(createResolveInfo(PROVIDER_A, "RetrieveActivity"));
+
+        Intent intent = mCache.createIntentForAction(
+                PROVIDER_A,
+                ProtocolConstants.RETRIEVE_CREDENTIAL_ACTION);
+
+        assertThat(intent).isNotNull();
+        assertThat(intent.getAction()).isEqualTo(ProtocolConstants.RETRIEVE_CREDENTIAL_ACTION);
+        assertThat(intent.getCategories()).containsExactly(ProtocolConstants.OPENYOLO_CATEGORY);
+        assertThat(intent.getComponent())
+                .isEqualTo(new ComponentName(PROVIDER_A, "RetrieveActivity"));
+    }
+
+    @Test
+    public void createIntentForAction_nonMatchingPackage() {
+        mRetrieveProviders.add(createResolveInfo(PROVIDER_A, "RetrieveActivity"));
+
+        assertThat(mCache.createIntentForAction(
+                PROVIDER_B,
+                ProtocolConstants.RETRIEVE_CREDENTIAL_ACTION)).isNull();
+    }
+
+    @Test
+    public void packageChange_invalidatesCache() {
+        mCache.registerPackageChangeReceiver();
+        ArgumentCaptor<BroadcastReceiver> receiverCaptor =
+                ArgumentCaptor.forClass(BroadcastReceiver.class);
+        ArgumentCaptor<IntentFilter> filterCaptor = ArgumentCaptor.forClass(IntentFilter.class);
+        verify(mockContext).registerReceiver(receiverCaptor.capture(), filterCaptor.capture());
+        assertThat(filterCaptor.getValue().hasAction(Intent.ACTION_PACKAGE_ADDED)).isTrue();
+        assertThat(filterCaptor.getValue().hasAction(Intent.ACTION_PACKAGE_REMOVED)).isTrue();
+
+        assertThat(mCache.getProviders(ProtocolConstants.RETRIEVE_CREDENTIAL_ACTION)).isEmpty();
+
+        mRetrieveProviders.add(createResolveInfo(PROVIDER_A, "RetrieveActivity"));
+        receiverCaptor.getValue().onReceive(mockContext, new Intent(Intent.ACTION_PACKAGE_ADDED));
+
+        assertThat(mCache.getProviders(ProtocolConstants.RETRIEVE_CREDENTIAL_ACTION))
+                .containsOnlyKeys(PROVIDER_A);
+        verifyQueryCount(2);
+    }
+
+    @SuppressWarnings("WrongConstant")
+    @Test
+    public void getQueryResponders_resolvedOnceUntilInvalidated() {
+        ResolveInfo responder = createResolveInfo(PROVIDER_A, "QueryReceiver");
+        when(mockPackageManager.queryBroadcastReceivers(any(Intent.class), anyInt()))
+                .thenReturn(Collections.singletonList(responder));
+
+        assertThat(mCache.getQueryResponders(DATA_TYPE)).containsOnly(PROVIDER_A);
+        assertThat(mCache.getQueryResponders(DATA_TYPE)).containsOnly(PROVIDER_A);
+        verify(mockPackageManager).queryBroadcastReceivers(any(Intent.class), anyInt());
+
+        mCache.invalidate();
+        assertThat(mCache.getQueryResponders(DATA_TYPE)).containsOnly(PROVIDER_A);
+        verify(mockPackageManager, times(2)).queryBroadcastReceivers(any(Intent.class), anyInt());
+    }
+
+    @SuppressWarnings("WrongConstant")
+    private void verifyQueryCount(int expectedQueries) {
+        verify(mockPackageManager, times(expectedQueries))
+                .queryIntentActivities(any(Intent.class), anyInt());
+    }
+
+    private ResolveInfo createResolveInfo(String packageName, String activityClass) {
+        ResolveInfo resolveInfo = new ResolveInfo();
+        resolveInfo.activityInfo = new ActivityInfo();
+        resolveInfo.activityInfo.packageName = packageName;
+        resolveInfo.activityInfo.name = activityClass;
+        return resolveInfo;
+    }
+}
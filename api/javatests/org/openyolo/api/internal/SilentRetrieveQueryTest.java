@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.internal;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import com.google.bbq.QueryResponse;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openyolo.protocol.AuthenticationDomain;
+import org.openyolo.protocol.AuthenticationMethods;
+import org.openyolo.protocol.Credential;
+import org.openyolo.protocol.Protobufs;
+import org.openyolo.protocol.Protobufs.SilentRetrieveBbqResponse;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Tests for {@link SilentRetrieveQuery}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class SilentRetrieveQueryTest {
+
+    private static final String PROVIDER_A = "com.example.a";
+    private static final String PROVIDER_B = "com.example.b";
+
+    private static final AuthenticationDomain SELF_DOMAIN =
+            new AuthenticationDomain("android://hash@com.example.app");
+    private static final AuthenticationDomain OTHER_DOMAIN =
+            new AuthenticationDomain("android://hash@com.example.other");
+
+    @Test
+    public void processResponses_singleCredential_returnsCredential() {
+        Credential result = SilentRetrieveQuery.processResponses(
+                SELF_DOMAIN,
+                Arrays.asList(
+                        createResponse(PROVIDER_A, createCredential("alice", SELF_DOMAIN)),
+                        createEmptyResponse(PROVIDER_B)));
+
+        assertThat(result).isNotNull();
+        assertThat(result.getIdentifier()).isEqualTo("alice");
+    }
+
+    @Test
+    public void processResponses_multipleCredentials_returnsNull() {
+        assertThat(SilentRetrieveQuery.processResponses(
+                SELF_DOMAIN,
+                Arrays.asList(
+                        createResponse(PROVIDER_A, createCredential("alice", SELF_DOMAIN)),
+                        createResponse(PROVIDER_B, createCredential("bob", SELF_DOMAIN)))))
+                .isNull();
+    }
+
+    @Test
+    public void processResponses_otherDomain_discarded() {
+        assertThat(SilentRetrieveQuery.processResponses(
+                SELF_DOMAIN,
+                Collections.singletonList(
+                        createResponse(PROVIDER_A, createCredential("alice", OTHER_DOMAIN)))))
+                .isNull();
+    }
+
+    @Test
+    public void processResponses_malformedCredential_discarded() {
+        SilentRetrieveBbqResponse response = SilentRetrieveBbqResponse.newBuilder()
+                .setCredential(Protobufs.Credential.getDefaultInstance())
+                .build();
+
+        assertThat(SilentRetrieveQuery.processResponses(
+                SELF_DOMAIN,
+                Collections.singletonList(
+                        new QueryResponse(PROVIDER_A, 0L, response.toByteArray()))))
+                .isNull();
+    }
+
+    private Credential createCredential(String identifier, AuthenticationDomain domain) {
+        return new Credential.Builder(identifier, AuthenticationMethods.EMAIL, domain)
+                .setPassword("password")
+                .build();
+    }
+
+    private QueryResponse createResponse(String provider, Credential credential) {
+        SilentRetrieveBbqResponse response = SilentRetrieveBbqResponse.newBuilder()
+                .setCredential(credential.toProtobuf())
+                .build();
+        return new QueryResponse(provider, 0L, response.toByteArray());
+    }
+
+    private QueryResponse createEmptyResponse(String provider) {
+        return new QueryResponse(
+                provider,
+                0L,
+                SilentRetrieveBbqResponse.getDefaultInstance().toByteArray());
+    }
+}
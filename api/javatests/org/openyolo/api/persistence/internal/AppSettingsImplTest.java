@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.api.persistence.internal;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.openyolo.protocol.ProtocolConstants.HINT_CREDENTIAL_ACTION;
+import static org.openyolo.protocol.ProtocolConstants.SAVE_CREDENTIAL_ACTION;
+
+import java.util.concurrent.Executor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openyolo.api.internal.KnownProviders;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/**
+ * Unit tests for {@link AppSettingsImpl}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public final class AppSettingsImplTest {
+
+    private static final String NAMESPACE = "AppSettingsImplTest";
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private AppSettingsImpl mAppSettings;
+
+    @Before
+    public void setUp() {
+        AppSettingsImpl.clearApplicationBoundInstance();
+        mAppSettings = createAppSettings();
+    }
+
+    @After
+    public void tearDown() {
+        AppSettingsImpl.clearApplicationBoundInstance();
+    }
+
+    @Test
+    public void getInstance_returnsSameInstance() {
+        assertThat(AppSettingsImpl.getInstance(RuntimeEnvironment.application))
+                .isSameAs(AppSettingsImpl.getInstance(RuntimeEnvironment.application));
+    }
+
+    @Test
+    public void getRememberedProvider_notSet_returnsNull() {
+        assertThat(mAppSettings.getRememberedProvider(HINT_CREDENTIAL_ACTION)).isNull();
+    }
+
+    @Test
+    public void setRememberedProvider_persistsPerAction() {
+        mAppSettings.setRememberedProvider(
+                HINT_CREDENTIAL_ACTION,
+                KnownProviders.DASHLANE_PROVIDER);
+
+        AppSettingsImpl reloaded = createAppSettings();
+        assertThat(reloaded.getRememberedProvider(HINT_CREDENTIAL_ACTION))
+                .isEqualTo(KnownProviders.DASHLANE_PROVIDER);
+        assertThat(reloaded.getRememberedProvider(SAVE_CREDENTIAL_ACTION)).isNull();
+    }
+
+    @Test
+    public void setRememberedProvider_null_forgetsProvider() {
+        mAppSettings.setRememberedProvider(
+                HINT_CREDENTIAL_ACTION,
+                KnownProviders.DASHLANE_PROVIDER);
+        mAppSettings.setRememberedProvider(HINT_CREDENTIAL_ACTION, null);
+
+        assertThat(mAppSettings.getRememberedProvider(HINT_CREDENTIAL_ACTION)).isNull();
+    }
+
+    @Test
+    public void setRememberedProvider_userChosen_persistsFlag() {
+        mAppSettings.setRememberedProvider(
+                HINT_CREDENTIAL_ACTION,
+                KnownProviders.DASHLANE_PROVIDER,
+                true /* userChosen */);
+
+        AppSettingsImpl reloaded = createAppSettings();
+        assertThat(reloaded.isRememberedProviderUserChosen(HINT_CREDENTIAL_ACTION)).isTrue();
+        assertThat(reloaded.isRememberedProviderUserChosen(SAVE_CREDENTIAL_ACTION)).isFalse();
+    }
+
+    @Test
+    public void setRememberedProvider_notUserChosen_clearsFlag() {
+        mAppSettings.setRememberedProvider(
+                HINT_CREDENTIAL_ACTION,
+                KnownProviders.DASHLANE_PROVIDER,
+                true /* userChosen */);
+        mAppSettings.setRememberedProvider(
+                HINT_CREDENTIAL_ACTION,
+                KnownProviders.DASHLANE_PROVIDER);
+
+        assertThat(mAppSettings.isRememberedProviderUserChosen(HINT_CREDENTIAL_ACTION)).isFalse();
+    }
+
+    private static AppSettingsImpl createAppSettings() {
+        return new AppSettingsImpl(new SettingsFactoryImpl(
+                RuntimeEnvironment.application,
+                NAMESPACE,
+                DIRECT_EXECUTOR));
+    }
+}
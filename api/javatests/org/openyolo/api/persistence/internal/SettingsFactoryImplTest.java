@@ -16,10 +16,18 @@ package org.openyolo.api.persistence.internal;
 
 import android.content.Context;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.openyolo.api.persistence.internal.SettingsFactory.BooleanSetting;
+import org.openyolo.api.persistence.internal.SettingsFactory.LongSetting;
+import org.openyolo.api.persistence.internal.SettingsFactory.ProtoSetting;
+import org.openyolo.api.persistence.internal.SettingsFactory.StringSetting;
+import org.openyolo.protocol.Protobufs;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
@@ -41,10 +49,22 @@ public final class SettingsFactoryImplTest {
 
     @Before
     public void setup() {
+        SettingsFactoryImpl.clearInstances();
         mSettingsFactoryA = SettingsFactoryImpl.getInstance(CONTEXT, NAMESPACE_A);
         mSettingsFactoryB = SettingsFactoryImpl.getInstance(CONTEXT, NAMESPACE_B);
     }
 
+    @After
+    public void tearDown() {
+        SettingsFactoryImpl.clearInstances();
+    }
+
+    @Test
+    public void getInstance_sameNamespace_returnsSameInstance() {
+        assertThat(SettingsFactoryImpl.getInstance(CONTEXT, NAMESPACE_A))
+                .isSameAs(mSettingsFactoryA);
+    }
+
     @Test
     public void makeBooleanSetting_defaultValueFalse_returnsFalse() {
         boolean value = mSettingsFactoryA.makeBoolean(BOOLEAN_KEY, false /* defaultValue */).get();
@@ -82,4 +102,164 @@ public final class SettingsFactoryImplTest {
         assertThat(settingA.get()).isTrue();
         assertThat(settingB.get()).isFalse();
     }
+
+    @Test
+    public void makeStringSetting_noValueSet_returnsDefault() {
+        StringSetting setting = mSettingsFactoryA.makeString("stringKey", "default");
+        assertThat(setting.get()).isEqualTo("default");
+    }
+
+    @Test
+    public void makeStringSetting_valueSet_returnsValue() {
+        StringSetting setting = mSettingsFactoryA.makeString("stringKey", null);
+        setting.set("value");
+
+        assertThat(setting.get()).isEqualTo("value");
+        assertThat(mSettingsFactoryA.makeString("stringKey", null).get()).isEqualTo("value");
+    }
+
+    @Test
+    public void makeStringSetting_setNull_restoresDefault() {
+        StringSetting setting = mSettingsFactoryA.makeString("stringKey", "default");
+        setting.set("value");
+        setting.set(null);
+
+        assertThat(setting.get()).isEqualTo("default");
+    }
+
+    @Test
+    public void makeLongSetting_noValueSet_returnsDefault() {
+        assertThat(mSettingsFactoryA.makeLong("longKey", 42L).get()).isEqualTo(42L);
+    }
+
+    @Test
+    public void makeLongSetting_valueSet_returnsValue() {
+        LongSetting setting = mSettingsFactoryA.makeLong("longKey", 0L);
+        setting.set(Long.MAX_VALUE);
+
+        assertThat(setting.get()).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void makeProtoSetting_noValueSet_returnsNull() {
+        ProtoSetting<Protobufs.AuthenticationDomain> setting = mSettingsFactoryA.makeProto(
+                "protoKey",
+                Protobufs.AuthenticationDomain.parser());
+
+        assertThat(setting.get()).isNull();
+    }
+
+    @Test
+    public void makeProtoSetting_valueSet_returnsEqualValue() {
+        Protobufs.AuthenticationDomain value = Protobufs.AuthenticationDomain.newBuilder()
+                .setUri("https://www.example.com")
+                .build();
+        ProtoSetting<Protobufs.AuthenticationDomain> setting = mSettingsFactoryA.makeProto(
+                "protoKey",
+                Protobufs.AuthenticationDomain.parser());
+        setting.set(value);
+
+        assertThat(setting.get()).isEqualTo(value);
+
+        setting.set(null);
+        assertThat(setting.get()).isNull();
+    }
+
+    @Test
+    public void setValues_newInstance_loadsPersistedValues() {
+        SettingsFactoryImpl factory =
+                new SettingsFactoryImpl(CONTEXT, NAMESPACE_A, new DirectExecutor());
+        factory.makeBoolean(BOOLEAN_KEY, false).set(true);
+        factory.makeLong("longKey", 0L).set(7L);
+        factory.makeString("stringKey", null).set("value");
+
+        SettingsFactoryImpl reloaded =
+                new SettingsFactoryImpl(CONTEXT, NAMESPACE_A, new DirectExecutor());
+        assertThat(reloaded.makeBoolean(BOOLEAN_KEY, false).get()).isTrue();
+        assertThat(reloaded.makeLong("longKey", 0L).get()).isEqualTo(7L);
+        assertThat(reloaded.makeString("stringKey", null).get()).isEqualTo("value");
+    }
+
+    @Test
+    public void setValues_beforeWriteRuns_coalescedIntoSingleWrite() {
+        QueuedExecutor executor = new QueuedExecutor();
+        SettingsFactoryImpl factory = new SettingsFactoryImpl(CONTEXT, NAMESPACE_A, executor);
+        executor.runAll();
+
+        StringSetting setting = factory.makeString("stringKey", null);
+        setting.set("first");
+        setting.set("second");
+        factory.makeLong("longKey", 0L).set(7L);
+
+        // the changes are visible immediately, but only one write is scheduled
+        assertThat(setting.get()).isEqualTo("second");
+        assertThat(executor.mTasks).hasSize(1);
+
+        executor.runAll();
+        SettingsFactoryImpl reloaded =
+                new SettingsFactoryImpl(CONTEXT, NAMESPACE_A, new DirectExecutor());
+        assertThat(reloaded.makeString("stringKey", null).get()).isEqualTo("second");
+        assertThat(reloaded.makeLong("longKey", 0L).get()).isEqualTo(7L);
+    }
+
+    @Test
+    public void setValue_beforeLoad_visibleWithoutWaiting() {
+        QueuedExecutor executor = new QueuedExecutor();
+        SettingsFactoryImpl factory = new SettingsFactoryImpl(CONTEXT, NAMESPACE_A, executor);
+
+        StringSetting setting = factory.makeString("stringKey", null);
+        setting.set("value");
+
+        // the load has not run, but the change is served from the pending writes
+        assertThat(setting.get()).isEqualTo("value");
+
+        executor.runAll();
+        assertThat(setting.get()).isEqualTo("value");
+        SettingsFactoryImpl reloaded =
+                new SettingsFactoryImpl(CONTEXT, NAMESPACE_A, new DirectExecutor());
+        assertThat(reloaded.makeString("stringKey", null).get()).isEqualTo("value");
+    }
+
+    @Test
+    public void getValue_loadNotCompleted_returnsDefaultAfterTimeout() {
+        SettingsFactoryImpl factory =
+                new SettingsFactoryImpl(CONTEXT, NAMESPACE_A, new QueuedExecutor());
+
+        long startTimeMs = System.currentTimeMillis();
+        assertThat(factory.makeBoolean(BOOLEAN_KEY, true).get()).isTrue();
+        assertThat(System.currentTimeMillis() - startTimeMs)
+                .isGreaterThanOrEqualTo(SettingsFactoryImpl.LOAD_TIMEOUT_MS);
+    }
+
+    @Test
+    public void awaitPendingWrites_persistsChanges() {
+        mSettingsFactoryB.makeString("stringKey", null).set("value");
+        ((SettingsFactoryImpl) mSettingsFactoryB).awaitPendingWrites();
+
+        assertThat(CONTEXT.getSharedPreferences(NAMESPACE_B, Context.MODE_PRIVATE)
+                .getString("stringKey", null))
+                .isEqualTo("value");
+    }
+
+    private static final class DirectExecutor implements Executor {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    }
+
+    private static final class QueuedExecutor implements Executor {
+        final List<Runnable> mTasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+        }
+
+        void runAll() {
+            while (!mTasks.isEmpty()) {
+                mTasks.remove(0).run();
+            }
+        }
+    }
 }
@@ -23,17 +23,21 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 import android.text.TextUtils;
 import android.util.Log;
 import com.google.bbq.Protobufs.BroadcastQuery;
 import com.google.bbq.Protobufs.BroadcastQueryResponse;
 import com.google.bbq.internal.ClientVersionUtil;
+import com.google.bbq.internal.ResponderHistory;
+import com.google.bbq.internal.ValidatedResponseCache;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.MessageLite;
 import java.io.IOException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -47,7 +51,10 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Dispatches broadcast queries to available data providers.
+ * Dispatches broadcast queries to available data providers. Where a provider attaches a validator
+ * to its response, the response is retained and the validator is sent back with the next
+ * identical query, allowing the provider to reply that its response is unchanged rather than
+ * sending it again.
  */
 public class BroadcastQueryClient {
 
@@ -77,6 +84,12 @@ public class BroadcastQueryClient {
     @NonNull
     private final AtomicBoolean mDisposed;
 
+    @NonNull
+    private final ValidatedResponseCache mResponseCache;
+
+    @NonNull
+    private final ResponderHistory mResponderHistory;
+
     /**
      * Retrieves the global instance of the broadcast query client for the application
      * associated to the provided context.
@@ -94,11 +107,20 @@ public class BroadcastQueryClient {
     }
 
     BroadcastQueryClient(@NonNull Context context) {
+        this(context, Executors.newSingleThreadScheduledExecutor());
+    }
+
+    @VisibleForTesting
+    BroadcastQueryClient(
+            @NonNull Context context,
+            @NonNull ScheduledExecutorService executorService) {
         mContext = context;
         mSecureRandom = new SecureRandom();
         mPendingQueries = new ConcurrentHashMap<>();
-        mExecutorService = Executors.newSingleThreadScheduledExecutor();
+        mExecutorService = executorService;
         mDisposed = new AtomicBoolean(false);
+        mResponseCache = new ValidatedResponseCache();
+        mResponderHistory = new ResponderHistory();
     }
 
     /**
@@ -131,6 +153,24 @@ public class BroadcastQueryClient {
                 callback);
     }
 
+    /**
+     * Dispatches a query for the specified data type, carrying the specified protocol buffer
+     * message (if required), to the responders permitted by the specified filter. The response
+     * to this query will be provided to the specified callback.
+     */
+    public void queryFor(
+            @NonNull String dataType,
+            @Nullable MessageLite queryMessage,
+            long timeoutInMs,
+            @NonNull ResponderFilter responderFilter,
+            @NonNull QueryCallback callback) {
+        queryFor(dataType,
+                queryMessage != null ? queryMessage.toByteArray() : null,
+                timeoutInMs,
+                responderFilter,
+                callback);
+    }
+
     /**
      * Dispatches a query for the specified data type, carrying the specified message (if required).
      * The response to this query will be provided to the specified callback.
@@ -140,8 +180,27 @@ public class BroadcastQueryClient {
             @Nullable byte[] queryMessage,
             long timeoutInMs,
             @NonNull QueryCallback callback) {
+        queryFor(dataType,
+                queryMessage,
+                timeoutInMs,
+                ResponderFilters.acceptAll(),
+                callback);
+    }
+
+    /**
+     * Dispatches a query for the specified data type, carrying the specified message (if required),
+     * to the responders permitted by the specified filter. Responders are pruned before any
+     * broadcast is sent. The response to this query will be provided to the specified callback.
+     */
+    public void queryFor(
+            @NonNull String dataType,
+            @Nullable byte[] queryMessage,
+            long timeoutInMs,
+            @NonNull ResponderFilter responderFilter,
+            @NonNull QueryCallback callback) {
         require(!TextUtils.isEmpty(dataType), "dataType must not be null or empty");
         require(timeoutInMs > 0, "Timeout must be greater than zero");
+        require(responderFilter, notNullValue());
         require(callback, notNullValue());
         require(!isDisposed(), "BroadcastQueryClient has been disposed");
 
@@ -149,6 +208,7 @@ public class BroadcastQueryClient {
                 dataType,
                 queryMessage,
                 timeoutInMs,
+                responderFilter,
                 callback);
 
         long queryId;
@@ -158,6 +218,14 @@ public class BroadcastQueryClient {
         pq.dispatch(queryId);
     }
 
+    /**
+     * The number of queries that are awaiting responses or a timeout.
+     */
+    @VisibleForTesting
+    int getPendingQueryCount() {
+        return mPendingQueries.size();
+    }
+
     /**
      * Disposes all leakable resources associated with this client.
      */
@@ -183,23 +251,75 @@ public class BroadcastQueryClient {
             PendingQuery pendingQuery,
             String responderPackage,
             long responseId) {
+        BroadcastQuery.Builder queryBuilder = BroadcastQuery.newBuilder()
+                .setClientVersion(ClientVersionUtil.getClientVersion())
+                .setRequestingApp(mContext.getPackageName())
+                .setDataType(pendingQuery.mDataType)
+                .setRequestId(pendingQuery.mQueryId)
+                .setResponseId(responseId)
+                .setQueryMessage(pendingQuery.mQueryMessage != null
+                        ? ByteString.copyFrom(pendingQuery.mQueryMessage)
+                        : null);
+
+        // if the responder previously supplied a validator for an identical query, send it back
+        // so that the responder may indicate that its response is unchanged.
+        byte[] validator = mResponseCache.getValidator(
+                pendingQuery.mDataType,
+                responderPackage,
+                pendingQuery.mQueryMessage);
+        if (validator != null) {
+            queryBuilder.setValidator(ByteString.copyFrom(validator));
+        }
+
         Intent queryIntent = QueryUtil.createEmptyQueryIntent(pendingQuery.mDataType);
         queryIntent.setPackage(responderPackage);
-        queryIntent.putExtra(QueryUtil.EXTRA_QUERY_MESSAGE,
-                BroadcastQuery.newBuilder()
-                        .setClientVersion(ClientVersionUtil.getClientVersion())
-                        .setRequestingApp(mContext.getPackageName())
-                        .setDataType(pendingQuery.mDataType)
-                        .setRequestId(pendingQuery.mQueryId)
-                        .setResponseId(responseId)
-                        .setQueryMessage(pendingQuery.mQueryMessage != null
-                                ? ByteString.copyFrom(pendingQuery.mQueryMessage)
-                                : null)
-                        .build()
-                        .toByteArray());
+        queryIntent.putExtra(QueryUtil.EXTRA_QUERY_MESSAGE, queryBuilder.build().toByteArray());
         return queryIntent;
     }
 
+    /**
+     * Determines the effective response message for a received response. A "not modified"
+     * response is resolved to the response message previously retained for the responder, while
+     * a full response replaces any retained response message.
+     */
+    @Nullable
+    private byte[] resolveResponseMessage(
+            PendingQuery pendingQuery,
+            String responderPackage,
+            BroadcastQueryResponse response) {
+        if (response.getNotModified()) {
+            byte[] storedMessage = mResponseCache.getResponseMessage(
+                    pendingQuery.mDataType,
+                    responderPackage,
+                    pendingQuery.mQueryMessage,
+                    response.getValidator().toByteArray());
+
+            if (storedMessage == null) {
+                Log.w(LOG_TAG, "Received not modified response without a matching stored "
+                        + "response; ignoring");
+            }
+
+            return storedMessage;
+        }
+
+        byte[] responseMessage = response.getResponseMessage().toByteArray();
+        if (response.getValidator().isEmpty()) {
+            mResponseCache.remove(
+                    pendingQuery.mDataType,
+                    responderPackage,
+                    pendingQuery.mQueryMessage);
+        } else {
+            mResponseCache.put(
+                    pendingQuery.mDataType,
+                    responderPackage,
+                    pendingQuery.mQueryMessage,
+                    response.getValidator().toByteArray(),
+                    responseMessage);
+        }
+
+        return responseMessage;
+    }
+
     private final class PendingQuery {
         final String mDataType;
         final byte[] mQueryMessage;
@@ -217,12 +337,13 @@ public class BroadcastQueryClient {
                 String dataType,
                 byte[] queryMessage,
                 long timeoutInMs,
+                ResponderFilter responderFilter,
                 QueryCallback queryCallback) {
             mDataType = dataType;
             mQueryMessage = queryMessage;
             mTimeoutInMs = timeoutInMs;
 
-            mRespondersById = buildRespondersById();
+            mRespondersById = buildRespondersById(responderFilter);
             mPendingResponses = new CopyOnWriteArraySet<>();
             for (long responderId : mRespondersById.keySet()) {
                 mPendingResponses.add(responderId);
@@ -231,8 +352,12 @@ public class BroadcastQueryClient {
             mQueryCallback = queryCallback;
         }
 
-        Map<Long, String> buildRespondersById() {
-            Set<String> responders = QueryUtil.getRespondersForDataType(mContext, mDataType);
+        Map<Long, String> buildRespondersById(ResponderFilter responderFilter) {
+            Set<String> candidates = QueryUtil.getRespondersForDataType(mContext, mDataType);
+            List<String> responders = responderFilter.filter(
+                    mDataType,
+                    mResponderHistory.orderByUsefulness(mDataType, candidates));
+
             HashMap<Long, String> tempRespondersById = new HashMap<>();
             for (String responderPackage : responders) {
                 long responderId;
@@ -259,6 +384,7 @@ public class BroadcastQueryClient {
             for (Map.Entry<Long, String> responderEntry : mRespondersById.entrySet()) {
                 long responseId = responderEntry.getKey();
                 String responderPackage = responderEntry.getValue();
+                mResponderHistory.recordQuery(mDataType, responderPackage);
                 mContext.sendBroadcast(createQueryIntent(this, responderPackage, responseId));
             }
 
@@ -349,11 +475,16 @@ public class BroadcastQueryClient {
                 return;
             }
 
-            if (response.getResponseMessage() != null) {
+            byte[] responseMessage = resolveResponseMessage(mPendingQuery, responder, response);
+            if (responseMessage != null) {
+                if (responseMessage.length > 0) {
+                    mResponderHistory.recordUsefulResponse(mPendingQuery.mDataType, responder);
+                }
+
                 QueryResponse queryResponse = new QueryResponse(
                         responder,
                         response.getResponseId(),
-                        response.getResponseMessage().toByteArray());
+                        responseMessage);
                 mPendingQuery.mResponses.put(responder, queryResponse);
             }
 
@@ -62,6 +62,54 @@ public class QueryResponseSender {
         mContext.sendBroadcast(responseBroadcast);
     }
 
+    /**
+     * Dispatches a query response message for the specified query, identified by the specified
+     * validator. If the query carries the same validator, indicating that the client already
+     * holds this response message, a "not modified" response is sent instead.
+     *
+     * @see QueryUtil#hasMatchingValidator(BroadcastQuery, byte[])
+     */
+    public void sendResponse(
+            @NonNull BroadcastQuery query,
+            @Nullable byte[] responseMessage,
+            @Nullable byte[] validator) {
+        validate(query, notNullValue(), NullPointerException.class);
+
+        if (validator == null || validator.length == 0) {
+            sendResponse(query, responseMessage);
+            return;
+        }
+
+        if (QueryUtil.hasMatchingValidator(query, validator)) {
+            sendNotModifiedResponse(query);
+            return;
+        }
+
+        BroadcastQueryResponse.Builder responseBuilder = createResponseBuilder(query)
+                .setValidator(ByteString.copyFrom(validator));
+        if (responseMessage != null) {
+            responseBuilder.setResponseMessage(ByteString.copyFrom(responseMessage));
+        }
+
+        mContext.sendBroadcast(getIntentForQuery(query, responseBuilder));
+    }
+
+    /**
+     * Dispatches a "not modified" response for the specified query, indicating that the response
+     * message identified by the query's validator is still current. This should only be used
+     * when {@link QueryUtil#hasMatchingValidator(BroadcastQuery, byte[])} is true for the
+     * provider's current validator, so that the response message need not be recomputed.
+     */
+    public void sendNotModifiedResponse(@NonNull BroadcastQuery query) {
+        validate(query, notNullValue(), NullPointerException.class);
+
+        BroadcastQueryResponse.Builder responseBuilder = createResponseBuilder(query)
+                .setValidator(query.getValidator())
+                .setNotModified(true);
+
+        mContext.sendBroadcast(getIntentForQuery(query, responseBuilder));
+    }
+
     @VisibleForTesting
     @NonNull
     Intent getIntentForQuery(@NonNull BroadcastQuery query,
@@ -22,8 +22,11 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 import android.text.TextUtils;
+import com.google.bbq.Protobufs.BroadcastQuery;
+import com.google.protobuf.ByteString;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -100,6 +103,21 @@ public final class QueryUtil {
         return responders;
     }
 
+    /**
+     * Determines whether the specified query carries the specified validator, indicating that
+     * the client already holds the response message identified by that validator.
+     */
+    public static boolean hasMatchingValidator(
+            @NonNull BroadcastQuery query,
+            @Nullable byte[] validator) {
+        require(query, notNullValue());
+        if (validator == null || validator.length == 0 || query.getValidator().isEmpty()) {
+            return false;
+        }
+
+        return query.getValidator().equals(ByteString.copyFrom(validator));
+    }
+
     @VisibleForTesting
     static String longAsHex(long val) {
         char[] result = new char[Long.SIZE / Byte.SIZE * 2];
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.bbq;
+
+import android.support.annotation.NonNull;
+import java.util.List;
+
+/**
+ * Restricts the set of responders to which a query is broadcast. Filters are applied before any
+ * broadcast is sent, so pruned responders are never woken up to process the query.
+ *
+ * @see ResponderFilters
+ * @see BroadcastQueryClient#queryFor(String, byte[], long, ResponderFilter, QueryCallback)
+ */
+public interface ResponderFilter {
+
+    /**
+     * Determines the responders to which a query for the specified data type should be sent.
+     * The candidate responders are provided in descending order of historical usefulness, and
+     * implementations should preserve this order in the returned list.
+     */
+    @NonNull
+    List<String> filter(@NonNull String dataType, @NonNull List<String> responders);
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.bbq;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.valid4j.Assertive.require;
+
+import android.support.annotation.NonNull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Standard {@link ResponderFilter} implementations.
+ */
+public final class ResponderFilters {
+
+    private static final ResponderFilter ACCEPT_ALL = new ResponderFilter() {
+        @NonNull
+        @Override
+        public List<String> filter(@NonNull String dataType, @NonNull List<String> responders) {
+            return responders;
+        }
+    };
+
+    private ResponderFilters() {
+        throw new IllegalStateException("not intended to be constructed");
+    }
+
+    /**
+     * A filter which permits all responders.
+     */
+    @NonNull
+    public static ResponderFilter acceptAll() {
+        return ACCEPT_ALL;
+    }
+
+    /**
+     * A filter which permits only the responders with the specified package names.
+     */
+    @NonNull
+    public static ResponderFilter allowOnly(@NonNull Collection<String> packageNames) {
+        require(packageNames, notNullValue());
+        return new PackageSetFilter(packageNames, true /* allow */);
+    }
+
+    /**
+     * A filter which permits only the responders with the specified package names.
+     */
+    @NonNull
+    public static ResponderFilter allowOnly(@NonNull String... packageNames) {
+        return allowOnly(Arrays.asList(packageNames));
+    }
+
+    /**
+     * A filter which permits all responders other than those with the specified package names.
+     */
+    @NonNull
+    public static ResponderFilter deny(@NonNull Collection<String> packageNames) {
+        require(packageNames, notNullValue());
+        return new PackageSetFilter(packageNames, false /* allow */);
+    }
+
+    /**
+     * A filter which permits all responders other than those with the specified package names.
+     */
+    @NonNull
+    public static ResponderFilter deny(@NonNull String... packageNames) {
+        return deny(Arrays.asList(packageNames));
+    }
+
+    /**
+     * A filter which permits at most the specified number of responders. As candidate responders
+     * are ordered by historical usefulness, the most useful responders are retained.
+     */
+    @NonNull
+    public static ResponderFilter maxFanOut(int maxResponders) {
+        require(maxResponders > 0, "maxResponders must be greater than zero");
+        return new MaxFanOutFilter(maxResponders);
+    }
+
+    /**
+     * A filter which applies each of the specified filters in turn.
+     */
+    @NonNull
+    public static ResponderFilter allOf(@NonNull ResponderFilter... filters) {
+        require(filters, notNullValue());
+        return new CompositeFilter(Arrays.asList(filters));
+    }
+
+    private static final class PackageSetFilter implements ResponderFilter {
+
+        private final Set<String> mPackageNames;
+        private final boolean mAllow;
+
+        PackageSetFilter(Collection<String> packageNames, boolean allow) {
+            mPackageNames = Collections.unmodifiableSet(new HashSet<>(packageNames));
+            mAllow = allow;
+        }
+
+        @NonNull
+        @Override
+        public List<String> filter(@NonNull String dataType, @NonNull List<String> responders) {
+            ArrayList<String> filtered = new ArrayList<>(responders.size());
+            for (String responder : responders) {
+                if (mPackageNames.contains(responder) == mAllow) {
+                    filtered.add(responder);
+                }
+            }
+            return filtered;
+        }
+    }
+
+    private static final class MaxFanOutFilter implements ResponderFilter {
+
+        private final int mMaxResponders;
+
+        MaxFanOutFilter(int maxResponders) {
+            mMaxResponders = maxResponders;
+        }
+
+        @NonNull
+        @Override
+        public List<String> filter(@NonNull String dataType, @NonNull List<String> responders) {
+            if (responders.size() <= mMaxResponders) {
+                return responders;
+            }
+
+            return new ArrayList<>(responders.subList(0, mMaxResponders));
+        }
+    }
+
+    private static final class CompositeFilter implements ResponderFilter {
+
+        private final List<ResponderFilter> mFilters;
+
+        CompositeFilter(List<ResponderFilter> filters) {
+            for (ResponderFilter filter : filters) {
+                require(filter, notNullValue());
+            }
+            mFilters = filters;
+        }
+
+        @NonNull
+        @Override
+        public List<String> filter(@NonNull String dataType, @NonNull List<String> responders) {
+            List<String> filtered = responders;
+            for (ResponderFilter filter : mFilters) {
+                filtered = filter.filter(dataType, filtered);
+            }
+            return filtered;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.bbq.internal;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.valid4j.Assertive.require;
+
+import android.support.annotation.NonNull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks, per data type, how often each responder has been queried and how often it provided a
+ * non-empty response. This is used to order responders by historical usefulness, so that fan-out
+ * limits retain the responders most likely to answer.
+ */
+public final class ResponderHistory {
+
+    private final Map<String, Map<String, Stats>> mStatsByDataType = new HashMap<>();
+
+    /**
+     * Records that a query for the specified data type was sent to the specified responder.
+     */
+    public synchronized void recordQuery(
+            @NonNull String dataType,
+            @NonNull String responderPackage) {
+        getStats(dataType, responderPackage).mQueries++;
+    }
+
+    /**
+     * Records that the specified responder provided a non-empty response to a query for the
+     * specified data type.
+     */
+    public synchronized void recordUsefulResponse(
+            @NonNull String dataType,
+            @NonNull String responderPackage) {
+        getStats(dataType, responderPackage).mUsefulResponses++;
+    }
+
+    /**
+     * Returns the usefulness score for the specified responder, in the range (0, 1). Responders
+     * with no history have a neutral score of one half.
+     */
+    public synchronized double getUsefulness(
+            @NonNull String dataType,
+            @NonNull String responderPackage) {
+        Map<String, Stats> statsByResponder = mStatsByDataType.get(dataType);
+        Stats stats = (statsByResponder != null) ? statsByResponder.get(responderPackage) : null;
+        if (stats == null) {
+            return 0.5;
+        }
+
+        // Laplace smoothing, so that a single response does not dominate the ordering
+        return (stats.mUsefulResponses + 1.0) / (stats.mQueries + 2.0);
+    }
+
+    /**
+     * Orders the specified responders by descending historical usefulness for the specified
+     * data type. Responders with equal usefulness are ordered by package name, so that the
+     * ordering is deterministic.
+     */
+    @NonNull
+    public List<String> orderByUsefulness(
+            @NonNull final String dataType,
+            @NonNull Collection<String> responders) {
+        require(responders, notNullValue());
+        final Map<String, Double> scores = new HashMap<>();
+        for (String responder : responders) {
+            scores.put(responder, getUsefulness(dataType, responder));
+        }
+
+        ArrayList<String> ordered = new ArrayList<>(responders);
+        Collections.sort(ordered, new Comparator<String>() {
+            @Override
+            public int compare(String first, String second) {
+                int scoreComparison = Double.compare(scores.get(second), scores.get(first));
+                if (scoreComparison != 0) {
+                    return scoreComparison;
+                }
+
+                return first.compareTo(second);
+            }
+        });
+
+        return ordered;
+    }
+
+    private Stats getStats(String dataType, String responderPackage) {
+        require(dataType, notNullValue());
+        require(responderPackage, notNullValue());
+
+        Map<String, Stats> statsByResponder = mStatsByDataType.get(dataType);
+        if (statsByResponder == null) {
+            statsByResponder = new HashMap<>();
+            mStatsByDataType.put(dataType, statsByResponder);
+        }
+
+        Stats stats = statsByResponder.get(responderPackage);
+        if (stats == null) {
+            stats = new Stats();
+            statsByResponder.put(responderPackage, stats);
+        }
+
+        return stats;
+    }
+
+    private static final class Stats {
+        int mQueries;
+        int mUsefulResponses;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.bbq.internal;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.valid4j.Assertive.require;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Retains the most recent validated response message from each responder, for each distinct
+ * query, so that a "not modified" response can be resolved back to the full response message.
+ * The cache is bounded, evicting the least recently used entries first.
+ */
+public final class ValidatedResponseCache {
+
+    /**
+     * The default maximum number of responses retained by the cache.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 32;
+
+    private final int mMaxEntries;
+    private final LinkedHashMap<Key, Entry> mEntries;
+
+    /**
+     * Creates a cache retaining at most {@link #DEFAULT_MAX_ENTRIES} responses.
+     */
+    public ValidatedResponseCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Creates a cache retaining at most the specified number of responses.
+     */
+    public ValidatedResponseCache(int maxEntries) {
+        require(maxEntries > 0, "maxEntries must be greater than zero");
+        mMaxEntries = maxEntries;
+        mEntries = new LinkedHashMap<Key, Entry>(maxEntries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > mMaxEntries;
+            }
+        };
+    }
+
+    /**
+     * Retrieves the validator of the retained response for the specified query and responder,
+     * if available.
+     */
+    @Nullable
+    public synchronized byte[] getValidator(
+            @NonNull String dataType,
+            @NonNull String responderPackage,
+            @Nullable byte[] queryMessage) {
+        Entry entry = mEntries.get(new Key(dataType, responderPackage, queryMessage));
+        return (entry != null) ? entry.mValidator : null;
+    }
+
+    /**
+     * Retrieves the retained response message for the specified query and responder, provided
+     * that it was stored with the specified validator.
+     */
+    @Nullable
+    public synchronized byte[] getResponseMessage(
+            @NonNull String dataType,
+            @NonNull String responderPackage,
+            @Nullable byte[] queryMessage,
+            @NonNull byte[] validator) {
+        require(validator, notNullValue());
+        Entry entry = mEntries.get(new Key(dataType, responderPackage, queryMessage));
+        if (entry == null || !Arrays.equals(entry.mValidator, validator)) {
+            return null;
+        }
+
+        return entry.mResponseMessage;
+    }
+
+    /**
+     * Retains the response message for the specified query and responder, identified by the
+     * provided validator. Any previously retained response for the same query and responder is
+     * replaced.
+     */
+    public synchronized void put(
+            @NonNull String dataType,
+            @NonNull String responderPackage,
+            @Nullable byte[] queryMessage,
+            @NonNull byte[] validator,
+            @NonNull byte[] responseMessage) {
+        require(validator, notNullValue());
+        require(responseMessage, notNullValue());
+        mEntries.put(
+                new Key(dataType, responderPackage, queryMessage),
+                new Entry(validator, responseMessage));
+    }
+
+    /**
+     * Discards the retained response for the specified query and responder, if present.
+     */
+    public synchronized void remove(
+            @NonNull String dataType,
+            @NonNull String responderPackage,
+            @Nullable byte[] queryMessage) {
+        mEntries.remove(new Key(dataType, responderPackage, queryMessage));
+    }
+
+    /**
+     * Discards all retained responses.
+     */
+    public synchronized void clear() {
+        mEntries.clear();
+    }
+
+    /**
+     * The number of responses currently retained.
+     */
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    private static final class Key {
+        final String mDataType;
+        final String mResponderPackage;
+        final byte[] mQueryMessage;
+        final int mHashCode;
+
+        Key(@NonNull String dataType,
+            @NonNull String responderPackage,
+            @Nullable byte[] queryMessage) {
+            require(dataType, notNullValue());
+            require(responderPackage, notNullValue());
+            mDataType = dataType;
+            mResponderPackage = responderPackage;
+            mQueryMessage = (queryMessage != null) ? queryMessage : new byte[0];
+            mHashCode = 31 * (31 * dataType.hashCode() + responderPackage.hashCode())
+                    + Arrays.hashCode(mQueryMessage);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) obj;
+            return mHashCode == other.mHashCode
+                    && mDataType.equals(other.mDataType)
+                    && mResponderPackage.equals(other.mResponderPackage)
+                    && Arrays.equals(mQueryMessage, other.mQueryMessage);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+
+    private static final class Entry {
+        final byte[] mValidator;
+        final byte[] mResponseMessage;
+
+        Entry(byte[] validator, byte[] responseMessage) {
+            mValidator = validator;
+            mResponseMessage = responseMessage;
+        }
+    }
+}
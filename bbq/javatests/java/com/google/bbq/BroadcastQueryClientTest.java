@@ -34,6 +34,7 @@ import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 
 import com.google.bbq.internal.ClientVersionUtil;
+import com.google.protobuf.ByteString;
 
 import java.security.SecureRandom;
 import java.util.ArrayList;
@@ -148,6 +149,101 @@ public class BroadcastQueryClientTest {
         assertThat(queryProto.getQueryMessage().toByteArray()).isEqualTo(queryMessage);
     }
 
+    @Test
+    public void queryFor_repeatedQuery_resolvesNotModifiedResponses() throws Exception {
+        final List<List<QueryResponse>> results = new ArrayList<>();
+        QueryCallback callback = new QueryCallback() {
+            @Override
+            public void onResponse(long queryId, List<QueryResponse> responses) {
+                results.add(responses);
+            }
+        };
+
+        byte[] queryMessage = new byte[] { 1, 2, 3 };
+        byte[] responseMessage = new byte[] { 7, 7, 7 };
+        ByteString validator = ByteString.copyFrom(new byte[] { 42 });
+
+        // first query: no validators are known, so full responses are returned
+        underTest.queryFor("datatype", queryMessage, 500L, callback);
+        BroadcastReceiver receiver = captureResponseReceiver(1);
+        for (Protobufs.BroadcastQuery query : captureQueries(2)) {
+            assertThat(query.getValidator().isEmpty()).isTrue();
+            deliverResponse(receiver, Protobufs.BroadcastQueryResponse.newBuilder()
+                    .setRequestId(query.getRequestId())
+                    .setResponseId(query.getResponseId())
+                    .setResponseMessage(ByteString.copyFrom(responseMessage))
+                    .setValidator(validator)
+                    .build());
+        }
+
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0)).hasSize(2);
+
+        // second query: validators are sent back, and "not modified" responses are resolved
+        // to the stored response messages
+        underTest.queryFor("datatype", queryMessage, 500L, callback);
+        receiver = captureResponseReceiver(2);
+        List<Protobufs.BroadcastQuery> queries = captureQueries(4);
+        for (Protobufs.BroadcastQuery query : queries.subList(2, 4)) {
+            assertThat(query.getValidator()).isEqualTo(validator);
+            deliverResponse(receiver, Protobufs.BroadcastQueryResponse.newBuilder()
+                    .setRequestId(query.getRequestId())
+                    .setResponseId(query.getResponseId())
+                    .setValidator(validator)
+                    .setNotModified(true)
+                    .build());
+        }
+
+        assertThat(results).hasSize(2);
+        assertThat(results.get(1)).hasSize(2);
+        for (QueryResponse response : results.get(1)) {
+            assertThat(response.responseMessage).isEqualTo(responseMessage);
+        }
+    }
+
+    @Test
+    public void queryFor_withFilter_prunesRespondersBeforeBroadcast() throws Exception {
+        QueryCallback callback = new QueryCallback() {
+            @Override
+            public void onResponse(long queryId, List<QueryResponse> responses) {
+                fail();
+            }
+        };
+
+        underTest.queryFor(
+                "datatype",
+                new byte[] { 1 },
+                500L,
+                ResponderFilters.deny("com.google"),
+                callback);
+
+        ArgumentCaptor<Intent> intentCaptor = ArgumentCaptor.forClass(Intent.class);
+        verify(mockContext, times(1)).sendBroadcast(intentCaptor.capture());
+        assertThat(intentCaptor.getValue().getPackage()).isEqualTo("com.openyolo");
+    }
+
+    @Test
+    public void queryFor_allRespondersFiltered_completesImmediately() throws Exception {
+        final List<List<QueryResponse>> results = new ArrayList<>();
+        QueryCallback callback = new QueryCallback() {
+            @Override
+            public void onResponse(long queryId, List<QueryResponse> responses) {
+                results.add(responses);
+            }
+        };
+
+        underTest.queryFor(
+                "datatype",
+                new byte[] { 1 },
+                500L,
+                ResponderFilters.allowOnly("com.example.absent"),
+                callback);
+
+        verify(mockContext, times(0)).sendBroadcast(any(Intent.class));
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0)).isEmpty();
+    }
+
     @Test(expected = RequireViolation.class)
     public void queryFor_negative_timestamp() throws Exception {
         String dataType = "datatype";
@@ -194,4 +290,32 @@ public class BroadcastQueryClientTest {
 
     }
 
-}
\ No newline at end of file
+    private BroadcastReceiver captureResponseReceiver(int expectedRegistrations) {
+        ArgumentCaptor<BroadcastReceiver> receiverCaptor =
+                ArgumentCaptor.forClass(BroadcastReceiver.class);
+        verify(mockContext, times(expectedRegistrations))
+                .registerReceiver(receiverCaptor.capture(), any(IntentFilter.class));
+        return receiverCaptor.getValue();
+    }
+
+    private List<Protobufs.BroadcastQuery> captureQueries(int expectedBroadcasts)
+            throws Exception {
+        ArgumentCaptor<Intent> intentCaptor = ArgumentCaptor.forClass(Intent.class);
+        verify(mockContext, times(expectedBroadcasts)).sendBroadcast(intentCaptor.capture());
+
+        List<Protobufs.BroadcastQuery> queries = new ArrayList<>();
+        for (Intent intent : intentCaptor.getAllValues()) {
+            queries.add(Protobufs.BroadcastQuery.parseFrom(
+                    intent.getByteArrayExtra(QueryUtil.EXTRA_QUERY_MESSAGE)));
+        }
+        return queries;
+    }
+
+    private void deliverResponse(
+            BroadcastReceiver receiver,
+            Protobufs.BroadcastQueryResponse response) {
+        Intent responseIntent = new Intent();
+        responseIntent.putExtra(QueryUtil.EXTRA_RESPONSE_MESSAGE, response.toByteArray());
+        receiver.onReceive(mockContext, responseIntent);
+    }
+}
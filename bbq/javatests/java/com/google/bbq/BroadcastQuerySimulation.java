@@ -0,0 +1,213 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.bbq;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs a stream of queries through a real {@link BroadcastQueryClient} against a set of
+ * simulated responders, on a virtual clock. Given the same seed and configuration, a simulation
+ * always produces the same latencies, timeouts and peak pending-query measurements, so these
+ * can be compared against stored baselines on any machine.
+ */
+final class BroadcastQuerySimulation {
+
+    static final String DATA_TYPE = "com.google.bbq.simulation";
+
+    private final long mSeed;
+    private final int mQueryCount;
+    private final long mQueryIntervalMs;
+    private final long mTimeoutMs;
+    private final byte[] mQueryMessage;
+    private final List<SimulatedResponder> mResponders;
+
+    private BroadcastQuerySimulation(Builder builder) {
+        mSeed = builder.mSeed;
+        mQueryCount = builder.mQueryCount;
+        mQueryIntervalMs = builder.mQueryIntervalMs;
+        mTimeoutMs = builder.mTimeoutMs;
+        mQueryMessage = new byte[builder.mQueryMessageSize];
+
+        mResponders = new ArrayList<>();
+        for (ResponderSpec spec : builder.mResponderSpecs) {
+            mResponders.add(new SimulatedResponder(
+                    spec.mPackageName,
+                    spec.mLatency,
+                    spec.mDropRate,
+                    spec.mPayloadSize,
+                    mSeed));
+        }
+    }
+
+    /**
+     * Dispatches all queries, with a fixed interval between them, then runs the virtual clock
+     * until every query has completed.
+     */
+    SimulationReport run() {
+        final VirtualScheduledExecutor clock = new VirtualScheduledExecutor();
+        final SimulatedContext context = new SimulatedContext(clock, mResponders);
+        BroadcastQueryClient client = new BroadcastQueryClient(context, clock);
+
+        final long[] latenciesMs = new long[mQueryCount];
+        Arrays.fill(latenciesMs, -1L);
+        final long[] totalResponses = new long[1];
+        int peakPendingQueries = 0;
+
+        long allocatedBefore = getAllocatedBytes();
+        for (int i = 0; i < mQueryCount; i++) {
+            clock.advanceTo(i * mQueryIntervalMs);
+            final int queryIndex = i;
+            final long startTimeMs = clock.now();
+            client.queryFor(DATA_TYPE, mQueryMessage, mTimeoutMs, new QueryCallback() {
+                @Override
+                public void onResponse(long queryId, List<QueryResponse> responses) {
+                    latenciesMs[queryIndex] = clock.now() - startTimeMs;
+                    totalResponses[0] += responses.size();
+                    context.onQueryCompleted(queryId);
+                }
+            });
+            peakPendingQueries = Math.max(peakPendingQueries, client.getPendingQueryCount());
+        }
+
+        clock.runUntilIdle();
+        long allocatedAfter = getAllocatedBytes();
+
+        int incompleteQueries = 0;
+        int timedOutQueries = 0;
+        for (long latencyMs : latenciesMs) {
+            if (latencyMs < 0) {
+                incompleteQueries++;
+            } else if (latencyMs >= mTimeoutMs) {
+                timedOutQueries++;
+            }
+        }
+
+        if (context.getRegisteredReceiverCount() != 0) {
+            throw new IllegalStateException("Response receivers leaked after all queries "
+                    + "completed: " + context.getRegisteredReceiverCount());
+        }
+
+        return new SimulationReport(
+                mQueryCount,
+                incompleteQueries,
+                timedOutQueries,
+                totalResponses[0],
+                context.getDroppedQueries(),
+                context.getLateResponses(),
+                latenciesMs,
+                (allocatedBefore == SimulationReport.ALLOCATIONS_UNAVAILABLE)
+                        ? SimulationReport.ALLOCATIONS_UNAVAILABLE
+                        : allocatedAfter - allocatedBefore,
+                peakPendingQueries,
+                context.getPeakInFlightBytes());
+    }
+
+    private static long getAllocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+            return SimulationReport.ALLOCATIONS_UNAVAILABLE;
+        }
+
+        com.sun.management.ThreadMXBean allocationBean =
+                (com.sun.management.ThreadMXBean) threadBean;
+        if (!allocationBean.isThreadAllocatedMemorySupported()
+                || !allocationBean.isThreadAllocatedMemoryEnabled()) {
+            return SimulationReport.ALLOCATIONS_UNAVAILABLE;
+        }
+
+        return allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Configures a {@link BroadcastQuerySimulation}.
+     */
+    static final class Builder {
+
+        private long mSeed = 1L;
+        private int mQueryCount = 1000;
+        private long mQueryIntervalMs = 10L;
+        private long mTimeoutMs = BroadcastQueryClient.DEFAULT_TIMEOUT_MS;
+        private int mQueryMessageSize = 64;
+        private final List<ResponderSpec> mResponderSpecs = new ArrayList<>();
+
+        Builder setSeed(long seed) {
+            mSeed = seed;
+            return this;
+        }
+
+        Builder setQueryCount(int queryCount) {
+            if (queryCount <= 0) {
+                throw new IllegalArgumentException("queryCount must be positive");
+            }
+            mQueryCount = queryCount;
+            return this;
+        }
+
+        Builder setQueryIntervalMs(long queryIntervalMs) {
+            if (queryIntervalMs < 0) {
+                throw new IllegalArgumentException("queryIntervalMs must not be negative");
+            }
+            mQueryIntervalMs = queryIntervalMs;
+            return this;
+        }
+
+        Builder setTimeoutMs(long timeoutMs) {
+            mTimeoutMs = timeoutMs;
+            return this;
+        }
+
+        Builder setQueryMessageSize(int queryMessageSize) {
+            mQueryMessageSize = queryMessageSize;
+            return this;
+        }
+
+        Builder addResponder(
+                String packageName,
+                LatencyDistribution latency,
+                double dropRate,
+                int payloadSize) {
+            mResponderSpecs.add(new ResponderSpec(packageName, latency, dropRate, payloadSize));
+            return this;
+        }
+
+        BroadcastQuerySimulation build() {
+            return new BroadcastQuerySimulation(this);
+        }
+    }
+
+    private static final class ResponderSpec {
+        final String mPackageName;
+        final LatencyDistribution mLatency;
+        final double mDropRate;
+        final int mPayloadSize;
+
+        ResponderSpec(
+                String packageName,
+                LatencyDistribution latency,
+                double dropRate,
+                int payloadSize) {
+            mPackageName = packageName;
+            mLatency = latency;
+            mDropRate = dropRate;
+            mPayloadSize = payloadSize;
+        }
+    }
+}
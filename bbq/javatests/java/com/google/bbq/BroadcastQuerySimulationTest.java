@@ -0,0 +1,169 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.bbq;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import com.google.bbq.internal.ClientVersionUtil;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Load and latency simulations of {@link BroadcastQueryClient}, run on a virtual clock. The
+ * scenarios with stored baselines fail if any measured metric regresses beyond its budget in
+ * {@code simulation_baselines.properties}. The failure message includes the scenario's full
+ * measured report, so after an intentional change the affected budgets are refreshed by copying
+ * the new measurements from that message into the properties file.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class BroadcastQuerySimulationTest {
+
+    private static final long TIMEOUT_MS = 500L;
+
+    private SimulationBaselines mBaselines;
+
+    @Before
+    public void setUp() throws Exception {
+        ClientVersionUtil.setClientVersion(Protobufs.ClientVersion.newBuilder()
+                .setVendor("simulation")
+                .build());
+        mBaselines = SimulationBaselines.load();
+    }
+
+    @After
+    public void tearDown() {
+        ClientVersionUtil.setClientVersion(null);
+    }
+
+    @Test
+    public void fixedLatencies_completeWhenSlowestResponderAnswers() {
+        SimulationReport report = new BroadcastQuerySimulation.Builder()
+                .setQueryCount(1000)
+                .setQueryIntervalMs(10L)
+                .setTimeoutMs(TIMEOUT_MS)
+                .addResponder("com.example.a", LatencyDistribution.fixed(10L), 0.0, 128)
+                .addResponder("com.example.b", LatencyDistribution.fixed(20L), 0.0, 128)
+                .addResponder("com.example.c", LatencyDistribution.fixed(30L), 0.0, 128)
+                .build()
+                .run();
+
+        assertThat(report.mIncompleteQueries).isZero();
+        assertThat(report.mTimedOutQueries).isZero();
+        assertThat(report.mTotalResponses).isEqualTo(3000L);
+        assertThat(report.getLatencyPercentileMs(50)).isEqualTo(30L);
+        assertThat(report.getLatencyPercentileMs(100)).isEqualTo(30L);
+
+        // a query completes at the moment the query three intervals later is dispatched, so at
+        // most three queries are ever pending. At that moment the completing query holds all
+        // three responses, and the following query holds one.
+        assertThat(report.mPeakPendingQueries).isEqualTo(3);
+        assertThat(report.mPeakInFlightBytes).isEqualTo(4 * 128);
+    }
+
+    @Test
+    public void unresponsiveResponder_allQueriesTimeOut() {
+        SimulationReport report = new BroadcastQuerySimulation.Builder()
+                .setQueryCount(500)
+                .setQueryIntervalMs(20L)
+                .setTimeoutMs(TIMEOUT_MS)
+                .addResponder("com.example.silent", LatencyDistribution.fixed(10L), 1.0, 128)
+                .build()
+                .run();
+
+        assertThat(report.mIncompleteQueries).isZero();
+        assertThat(report.mTimedOutQueries).isEqualTo(500);
+        assertThat(report.mDroppedQueries).isEqualTo(500);
+        assertThat(report.mTotalResponses).isZero();
+        assertThat(report.getLatencyPercentileMs(50)).isEqualTo(TIMEOUT_MS);
+        assertThat(report.mPeakPendingQueries).isEqualTo((int) (TIMEOUT_MS / 20L));
+    }
+
+    @Test
+    public void slowResponder_responsesAfterTimeoutAreDiscarded() {
+        SimulationReport report = new BroadcastQuerySimulation.Builder()
+                .setQueryCount(200)
+                .setQueryIntervalMs(50L)
+                .setTimeoutMs(TIMEOUT_MS)
+                .addResponder("com.example.fast", LatencyDistribution.fixed(10L), 0.0, 128)
+                .addResponder("com.example.slow", LatencyDistribution.fixed(800L), 0.0, 128)
+                .build()
+                .run();
+
+        assertThat(report.mIncompleteQueries).isZero();
+        assertThat(report.mTimedOutQueries).isEqualTo(200);
+        assertThat(report.mLateResponses).isEqualTo(200);
+        assertThat(report.mTotalResponses).isEqualTo(200L);
+    }
+
+    @Test
+    public void sameSeed_producesIdenticalLatencies() {
+        SimulationReport first = createMixedPopulation(1000).build().run();
+        SimulationReport second = createMixedPopulation(1000).build().run();
+
+        assertThat(second.mSortedLatenciesMs).isEqualTo(first.mSortedLatenciesMs);
+        assertThat(second.mTimedOutQueries).isEqualTo(first.mTimedOutQueries);
+        assertThat(second.mPeakPendingQueries).isEqualTo(first.mPeakPendingQueries);
+    }
+
+    @Test
+    public void mixedPopulation_withinBaselines() {
+        checkBaselines("mixedPopulation", createMixedPopulation(5000).build().run());
+    }
+
+    @Test
+    public void burstOfQueries_withinBaselines() {
+        SimulationReport report = new BroadcastQuerySimulation.Builder()
+                .setSeed(7L)
+                .setQueryCount(2000)
+                .setQueryIntervalMs(0L)
+                .setTimeoutMs(TIMEOUT_MS)
+                .addResponder("com.example.a", LatencyDistribution.uniform(5L, 40L), 0.0, 512)
+                .addResponder("com.example.b", LatencyDistribution.uniform(10L, 80L), 0.0, 2048)
+                .build()
+                .run();
+
+        assertThat(report.mTimedOutQueries).isZero();
+        checkBaselines("burstOfQueries", report);
+    }
+
+    private BroadcastQuerySimulation.Builder createMixedPopulation(int queryCount) {
+        return new BroadcastQuerySimulation.Builder()
+                .setSeed(42L)
+                .setQueryCount(queryCount)
+                .setQueryIntervalMs(3L)
+                .setTimeoutMs(TIMEOUT_MS)
+                .addResponder("com.example.a", LatencyDistribution.uniform(5L, 40L), 0.0, 256)
+                .addResponder("com.example.b", LatencyDistribution.uniform(10L, 80L), 0.0, 1024)
+                .addResponder("com.example.c", LatencyDistribution.exponential(5L, 25L), 0.0, 512)
+                .addResponder("com.example.d", LatencyDistribution.uniform(5L, 60L), 0.02, 256)
+                .addResponder("com.example.e", LatencyDistribution.fixed(15L), 0.0, 64);
+    }
+
+    private void checkBaselines(String scenario, SimulationReport report) {
+        String description = scenario + ":\n" + report;
+        assertThat(report.mIncompleteQueries).as(description).isZero();
+
+        List<String> regressions = mBaselines.findRegressions(scenario, report);
+        assertThat(regressions).as("regressions for " + description).isEmpty();
+    }
+}
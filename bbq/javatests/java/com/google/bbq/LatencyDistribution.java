@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.bbq;
+
+import java.util.Random;
+
+/**
+ * A distribution of simulated response latencies, in milliseconds.
+ */
+abstract class LatencyDistribution {
+
+    /**
+     * A distribution that always produces the specified latency.
+     */
+    static LatencyDistribution fixed(final long latencyMs) {
+        return new LatencyDistribution() {
+            @Override
+            long sample(Random random) {
+                return latencyMs;
+            }
+        };
+    }
+
+    /**
+     * A distribution producing latencies uniformly between the specified bounds, inclusive.
+     */
+    static LatencyDistribution uniform(final long minMs, final long maxMs) {
+        if (minMs < 0 || maxMs < minMs) {
+            throw new IllegalArgumentException("Invalid latency bounds");
+        }
+
+        return new LatencyDistribution() {
+            @Override
+            long sample(Random random) {
+                return minMs + (long) (random.nextDouble() * (maxMs - minMs + 1));
+            }
+        };
+    }
+
+    /**
+     * A long-tailed distribution producing the specified minimum latency plus an exponentially
+     * distributed delay with the specified mean.
+     */
+    static LatencyDistribution exponential(final long minMs, final long meanDelayMs) {
+        if (minMs < 0 || meanDelayMs <= 0) {
+            throw new IllegalArgumentException("Invalid latency parameters");
+        }
+
+        return new LatencyDistribution() {
+            @Override
+            long sample(Random random) {
+                return minMs + Math.round(-meanDelayMs * Math.log(1.0 - random.nextDouble()));
+            }
+        };
+    }
+
+    /**
+     * Produces a latency from this distribution, using the provided source of randomness.
+     */
+    abstract long sample(Random random);
+}
@@ -73,7 +73,46 @@ public class QueryResponseSenderTest {
         checkBroadcastResponse(ByteString.EMPTY);
     }
 
-    private void checkBroadcastResponse(ByteString expectedResponseBytes)
+    @Test
+    public void sendResponse_withValidator_attachesValidator() throws Exception {
+        byte[] responseMessageBytes = new byte[] { 0, 1, 2 };
+        byte[] validator = new byte[] { 9, 9 };
+        mResponseSender.sendResponse(mQuery, responseMessageBytes, validator);
+
+        BroadcastQueryResponse response =
+                checkBroadcastResponse(ByteString.copyFrom(responseMessageBytes));
+        assertThat(response.getValidator()).isEqualTo(ByteString.copyFrom(validator));
+        assertThat(response.getNotModified()).isFalse();
+    }
+
+    @Test
+    public void sendResponse_withMatchingValidator_sendsNotModified() throws Exception {
+        byte[] validator = new byte[] { 9, 9 };
+        BroadcastQuery query = mQuery.toBuilder()
+                .setValidator(ByteString.copyFrom(validator))
+                .build();
+        mResponseSender.sendResponse(query, new byte[] { 0, 1, 2 }, validator);
+
+        BroadcastQueryResponse response = checkBroadcastResponse(ByteString.EMPTY);
+        assertThat(response.getValidator()).isEqualTo(ByteString.copyFrom(validator));
+        assertThat(response.getNotModified()).isTrue();
+    }
+
+    @Test
+    public void sendResponse_withChangedValidator_sendsFullResponse() throws Exception {
+        byte[] responseMessageBytes = new byte[] { 0, 1, 2 };
+        BroadcastQuery query = mQuery.toBuilder()
+                .setValidator(ByteString.copyFrom(new byte[] { 1 }))
+                .build();
+        mResponseSender.sendResponse(query, responseMessageBytes, new byte[] { 2 });
+
+        BroadcastQueryResponse response =
+                checkBroadcastResponse(ByteString.copyFrom(responseMessageBytes));
+        assertThat(response.getValidator()).isEqualTo(ByteString.copyFrom(new byte[] { 2 }));
+        assertThat(response.getNotModified()).isFalse();
+    }
+
+    private BroadcastQueryResponse checkBroadcastResponse(ByteString expectedResponseBytes)
             throws InvalidProtocolBufferException {
         List<Intent> broadcasts =
                 Shadows.shadowOf(RuntimeEnvironment.application).getBroadcastIntents();
@@ -93,6 +132,7 @@ public class QueryResponseSenderTest {
         assertThat(response.getRequestId()).isEqualTo(mQuery.getRequestId());
         assertThat(response.getResponseId()).isEqualTo(mQuery.getResponseId());
         assertThat(response.getResponseMessage()).isEqualTo(expectedResponseBytes);
+        return response;
     }
 
     @SuppressWarnings("ConstantConditions")
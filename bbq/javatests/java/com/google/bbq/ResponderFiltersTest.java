@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.bbq;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.valid4j.errors.RequireViolation;
+
+/**
+ * Tests for {@link ResponderFilters}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ResponderFiltersTest {
+
+    private static final String DATA_TYPE = "example";
+
+    private static final List<String> RESPONDERS =
+            Arrays.asList("com.example.a", "com.example.b", "com.example.c");
+
+    @Test
+    public void acceptAll_returnsAllResponders() {
+        assertThat(ResponderFilters.acceptAll().filter(DATA_TYPE, RESPONDERS))
+                .containsExactlyElementsOf(RESPONDERS);
+    }
+
+    @Test
+    public void allowOnly_retainsListedResponders() {
+        ResponderFilter filter = ResponderFilters.allowOnly("com.example.c", "com.example.a");
+        assertThat(filter.filter(DATA_TYPE, RESPONDERS))
+                .containsExactly("com.example.a", "com.example.c");
+    }
+
+    @Test
+    public void deny_removesListedResponders() {
+        ResponderFilter filter = ResponderFilters.deny("com.example.b");
+        assertThat(filter.filter(DATA_TYPE, RESPONDERS))
+                .containsExactly("com.example.a", "com.example.c");
+    }
+
+    @Test
+    public void maxFanOut_retainsFirstResponders() {
+        assertThat(ResponderFilters.maxFanOut(2).filter(DATA_TYPE, RESPONDERS))
+                .containsExactly("com.example.a", "com.example.b");
+    }
+
+    @Test
+    public void maxFanOut_fewerResponders_returnsAll() {
+        assertThat(ResponderFilters.maxFanOut(5).filter(DATA_TYPE, RESPONDERS))
+                .containsExactlyElementsOf(RESPONDERS);
+    }
+
+    @Test(expected = RequireViolation.class)
+    public void maxFanOut_zero_throws() {
+        ResponderFilters.maxFanOut(0);
+    }
+
+    @Test
+    public void allOf_appliesFiltersInOrder() {
+        ResponderFilter filter = ResponderFilters.allOf(
+                ResponderFilters.deny("com.example.a"),
+                ResponderFilters.maxFanOut(1));
+        assertThat(filter.filter(DATA_TYPE, RESPONDERS)).containsExactly("com.example.b");
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.bbq;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ActivityInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import com.google.bbq.Protobufs.BroadcastQuery;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fake context that delivers BBQ broadcasts between a querying app and a set of simulated
+ * responders, with responses delayed on a virtual clock. Query broadcasts are routed to the
+ * responder named by the intent's package, and response broadcasts are routed to the
+ * registered receivers whose filter matches the intent's action.
+ */
+final class SimulatedContext extends ContextWrapper {
+
+    static final String REQUESTING_APP = "com.example.requester";
+
+    private final VirtualScheduledExecutor mClock;
+    private final Map<String, SimulatedResponder> mResponders;
+    private final PackageManager mPackageManager;
+    private final QueryResponseSender mResponseSender;
+    private final LinkedHashMap<BroadcastReceiver, IntentFilter> mReceivers;
+    private final HashMap<Long, Long> mInFlightBytesByQuery;
+
+    private long mInFlightBytes;
+    private long mPeakInFlightBytes;
+    private int mPeakRegisteredReceivers;
+    private int mDroppedQueries;
+    private int mLateResponses;
+
+    SimulatedContext(VirtualScheduledExecutor clock, List<SimulatedResponder> responders) {
+        super(null);
+        mClock = clock;
+        mResponders = new HashMap<>();
+        List<ResolveInfo> resolveInfos = new ArrayList<>();
+        for (SimulatedResponder responder : responders) {
+            mResponders.put(responder.getPackageName(), responder);
+            ResolveInfo resolveInfo = new ResolveInfo();
+            resolveInfo.activityInfo = new ActivityInfo();
+            resolveInfo.activityInfo.packageName = responder.getPackageName();
+            resolveInfos.add(resolveInfo);
+        }
+
+        // stub-only, so that invocations are not recorded over thousands of queries
+        mPackageManager = mock(PackageManager.class, withSettings().stubOnly());
+        when(mPackageManager.queryBroadcastReceivers(any(Intent.class), anyInt()))
+                .thenReturn(resolveInfos);
+
+        mResponseSender = new QueryResponseSender(this);
+        mReceivers = new LinkedHashMap<>();
+        mInFlightBytesByQuery = new HashMap<>();
+    }
+
+    @Override
+    public String getPackageName() {
+        return REQUESTING_APP;
+    }
+
+    @Override
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    @Override
+    public PackageManager getPackageManager() {
+        return mPackageManager;
+    }
+
+    @Override
+    public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+        mReceivers.put(receiver, filter);
+        mPeakRegisteredReceivers = Math.max(mPeakRegisteredReceivers, mReceivers.size());
+        return null;
+    }
+
+    @Override
+    public void unregisterReceiver(BroadcastReceiver receiver) {
+        if (mReceivers.remove(receiver) == null) {
+            throw new IllegalArgumentException("Receiver not registered: " + receiver);
+        }
+    }
+
+    @Override
+    public void sendBroadcast(Intent intent) {
+        if (REQUESTING_APP.equals(intent.getPackage())) {
+            deliverResponse(intent);
+        } else {
+            deliverQuery(intent);
+        }
+    }
+
+    /**
+     * Releases the response bytes retained for the specified completed query.
+     */
+    void onQueryCompleted(long queryId) {
+        Long bytes = mInFlightBytesByQuery.remove(queryId);
+        if (bytes != null) {
+            mInFlightBytes -= bytes;
+        }
+    }
+
+    /**
+     * The greatest total size of response messages held by incomplete queries.
+     */
+    long getPeakInFlightBytes() {
+        return mPeakInFlightBytes;
+    }
+
+    /**
+     * The greatest number of response receivers registered at once.
+     */
+    int getPeakRegisteredReceivers() {
+        return mPeakRegisteredReceivers;
+    }
+
+    /**
+     * The number of registered receivers, which should be zero once all queries complete.
+     */
+    int getRegisteredReceiverCount() {
+        return mReceivers.size();
+    }
+
+    /**
+     * The number of queries that responders chose not to answer.
+     */
+    int getDroppedQueries() {
+        return mDroppedQueries;
+    }
+
+    /**
+     * The number of responses that were ready after their query had completed.
+     */
+    int getLateResponses() {
+        return mLateResponses;
+    }
+
+    private void deliverQuery(Intent intent) {
+        final SimulatedResponder responder = mResponders.get(intent.getPackage());
+        if (responder == null) {
+            throw new IllegalStateException("Query sent to unknown responder");
+        }
+
+        final BroadcastQuery query;
+        try {
+            query = BroadcastQuery.parseFrom(
+                    intent.getByteArrayExtra(QueryUtil.EXTRA_QUERY_MESSAGE));
+        } catch (InvalidProtocolBufferException ex) {
+            throw new IllegalStateException("Unable to parse query", ex);
+        }
+
+        long delayMs = responder.sampleResponseDelay();
+        if (delayMs < 0) {
+            mDroppedQueries++;
+            return;
+        }
+
+        mClock.schedule(new Runnable() {
+            @Override
+            public void run() {
+                String responseAction = QueryUtil.createResponseAction(
+                        query.getDataType(),
+                        query.getRequestId());
+                if (findReceivers(responseAction).isEmpty()) {
+                    // the query has already completed, so the response would not be delivered
+                    mLateResponses++;
+                    return;
+                }
+
+                recordInFlightBytes(query.getRequestId(), responder.getPayload().length);
+                mResponseSender.sendResponse(query, responder.getPayload());
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void deliverResponse(Intent intent) {
+        for (BroadcastReceiver receiver : findReceivers(intent.getAction())) {
+            receiver.onReceive(this, intent);
+        }
+    }
+
+    private List<BroadcastReceiver> findReceivers(String action) {
+        List<BroadcastReceiver> matchingReceivers = new ArrayList<>();
+        for (Map.Entry<BroadcastReceiver, IntentFilter> entry : mReceivers.entrySet()) {
+            if (entry.getValue().matchAction(action)) {
+                matchingReceivers.add(entry.getKey());
+            }
+        }
+
+        return matchingReceivers;
+    }
+
+    private void recordInFlightBytes(long queryId, long bytes) {
+        Long existing = mInFlightBytesByQuery.get(queryId);
+        mInFlightBytesByQuery.put(queryId, (existing != null ? existing : 0L) + bytes);
+        mInFlightBytes += bytes;
+        mPeakInFlightBytes = Math.max(mPeakInFlightBytes, mInFlightBytes);
+    }
+}
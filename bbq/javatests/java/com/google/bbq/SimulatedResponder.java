@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.bbq;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The behavior of a simulated BBQ responder: how long it takes to respond, how often it fails
+ * to respond at all, and how large its responses are. Each responder has its own source of
+ * randomness, so its behavior does not depend on the order in which queries are dispatched to
+ * the set of responders.
+ */
+final class SimulatedResponder {
+
+    private final String mPackageName;
+    private final LatencyDistribution mLatency;
+    private final double mDropRate;
+    private final byte[] mPayload;
+    private final Random mRandom;
+
+    SimulatedResponder(
+            String packageName,
+            LatencyDistribution latency,
+            double dropRate,
+            int payloadSize,
+            long seed) {
+        if (dropRate < 0.0 || dropRate > 1.0) {
+            throw new IllegalArgumentException("dropRate must be between 0 and 1");
+        }
+
+        mPackageName = packageName;
+        mLatency = latency;
+        mDropRate = dropRate;
+        mPayload = new byte[payloadSize];
+        Arrays.fill(mPayload, (byte) 0x5A);
+        mRandom = new Random(seed ^ packageName.hashCode());
+    }
+
+    String getPackageName() {
+        return mPackageName;
+    }
+
+    /**
+     * Determines the delay before this responder answers the next query, or -1 if it will
+     * not answer.
+     */
+    long sampleResponseDelay() {
+        // always consume the same amount of randomness, so that drops do not shift the latencies
+        // of subsequent responses
+        boolean dropped = mRandom.nextDouble() < mDropRate;
+        long latency = mLatency.sample(mRandom);
+        return dropped ? -1 : latency;
+    }
+
+    /**
+     * The response message returned by this responder.
+     */
+    byte[] getPayload() {
+        return mPayload;
+    }
+}
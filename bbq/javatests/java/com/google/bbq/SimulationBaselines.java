@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.bbq;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Stored performance budgets for simulation scenarios, loaded from
+ * {@code simulation_baselines.properties}. Each entry is the greatest acceptable value of a
+ * metric for a scenario, keyed as {@code <scenario>.<metric>}; a measurement regresses when it
+ * exceeds its baseline by more than the configured {@code tolerance} fraction. Metrics without
+ * a baseline are not checked.
+ */
+final class SimulationBaselines {
+
+    private static final String RESOURCE_NAME = "simulation_baselines.properties";
+    private static final String TOLERANCE_KEY = "tolerance";
+
+    private final Properties mBaselines;
+    private final double mTolerance;
+
+    private SimulationBaselines(Properties baselines) {
+        mBaselines = baselines;
+        mTolerance = Double.parseDouble(baselines.getProperty(TOLERANCE_KEY, "0"));
+    }
+
+    /**
+     * Loads the stored baselines from the test resources.
+     */
+    static SimulationBaselines load() throws IOException {
+        InputStream stream = SimulationBaselines.class.getResourceAsStream(RESOURCE_NAME);
+        if (stream == null) {
+            throw new IOException("Missing simulation baselines resource " + RESOURCE_NAME);
+        }
+
+        Properties baselines = new Properties();
+        try {
+            baselines.load(stream);
+        } finally {
+            stream.close();
+        }
+
+        return new SimulationBaselines(baselines);
+    }
+
+    /**
+     * Compares the report for the specified scenario against its baselines, returning a
+     * description of each regression found.
+     */
+    List<String> findRegressions(String scenario, SimulationReport report) {
+        List<String> regressions = new ArrayList<>();
+        check(regressions, scenario, "p50LatencyMs", report.getLatencyPercentileMs(50));
+        check(regressions, scenario, "p90LatencyMs", report.getLatencyPercentileMs(90));
+        check(regressions, scenario, "p99LatencyMs", report.getLatencyPercentileMs(99));
+        check(regressions, scenario, "timeoutRate", report.getTimeoutRate());
+        check(regressions, scenario, "peakPendingQueries", report.mPeakPendingQueries);
+        check(regressions, scenario, "peakInFlightBytes", report.mPeakInFlightBytes);
+        if (report.getAllocatedBytesPerQuery() != SimulationReport.ALLOCATIONS_UNAVAILABLE) {
+            check(regressions,
+                    scenario,
+                    "allocatedBytesPerQuery",
+                    report.getAllocatedBytesPerQuery());
+        }
+
+        return regressions;
+    }
+
+    private void check(List<String> regressions, String scenario, String metric, double value) {
+        String baseline = mBaselines.getProperty(scenario + "." + metric);
+        if (baseline == null) {
+            return;
+        }
+
+        double limit = Double.parseDouble(baseline) * (1.0 + mTolerance);
+        if (value > limit) {
+            regressions.add(String.format(Locale.US,
+                    "%s.%s: measured %s, baseline %s (limit %.2f)",
+                    scenario, metric, value, baseline, limit));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.bbq;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The measured outcome of a {@link BroadcastQuerySimulation}.
+ */
+final class SimulationReport {
+
+    /**
+     * Reported in place of the allocation measurement when the JVM cannot measure per-thread
+     * allocation.
+     */
+    static final long ALLOCATIONS_UNAVAILABLE = -1;
+
+    final int mQueryCount;
+    final int mIncompleteQueries;
+    final int mTimedOutQueries;
+    final long mTotalResponses;
+    final int mDroppedQueries;
+    final int mLateResponses;
+    final long[] mSortedLatenciesMs;
+    final long mAllocatedBytes;
+    final int mPeakPendingQueries;
+    final long mPeakInFlightBytes;
+
+    SimulationReport(
+            int queryCount,
+            int incompleteQueries,
+            int timedOutQueries,
+            long totalResponses,
+            int droppedQueries,
+            int lateResponses,
+            long[] latenciesMs,
+            long allocatedBytes,
+            int peakPendingQueries,
+            long peakInFlightBytes) {
+        mQueryCount = queryCount;
+        mIncompleteQueries = incompleteQueries;
+        mTimedOutQueries = timedOutQueries;
+        mTotalResponses = totalResponses;
+        mDroppedQueries = droppedQueries;
+        mLateResponses = lateResponses;
+        mSortedLatenciesMs = Arrays.copyOf(latenciesMs, latenciesMs.length);
+        Arrays.sort(mSortedLatenciesMs);
+        mAllocatedBytes = allocatedBytes;
+        mPeakPendingQueries = peakPendingQueries;
+        mPeakInFlightBytes = peakInFlightBytes;
+    }
+
+    /**
+     * The completion latency at the specified percentile, using the nearest-rank method.
+     */
+    long getLatencyPercentileMs(double percentile) {
+        if (percentile <= 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("percentile must be in (0, 100]");
+        }
+
+        int rank = (int) Math.ceil(percentile / 100.0 * mSortedLatenciesMs.length);
+        return mSortedLatenciesMs[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * The proportion of queries that were completed by their timeout.
+     */
+    double getTimeoutRate() {
+        return (double) mTimedOutQueries / mQueryCount;
+    }
+
+    /**
+     * The average number of bytes allocated per query, or {@link #ALLOCATIONS_UNAVAILABLE}.
+     */
+    long getAllocatedBytesPerQuery() {
+        if (mAllocatedBytes == ALLOCATIONS_UNAVAILABLE) {
+            return ALLOCATIONS_UNAVAILABLE;
+        }
+
+        return mAllocatedBytes / mQueryCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "queries=%d incomplete=%d timedOut=%d (%.4f) responses=%d dropped=%d late=%d%n"
+                        + "latency p50=%dms p90=%dms p99=%dms max=%dms%n"
+                        + "allocatedBytesPerQuery=%d peakPendingQueries=%d peakInFlightBytes=%d",
+                mQueryCount,
+                mIncompleteQueries,
+                mTimedOutQueries,
+                getTimeoutRate(),
+                mTotalResponses,
+                mDroppedQueries,
+                mLateResponses,
+                getLatencyPercentileMs(50),
+                getLatencyPercentileMs(90),
+                getLatencyPercentileMs(99),
+                getLatencyPercentileMs(100),
+                getAllocatedBytesPerQuery(),
+                mPeakPendingQueries,
+                mPeakInFlightBytes);
+    }
+}
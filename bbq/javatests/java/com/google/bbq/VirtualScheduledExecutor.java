@@ -0,0 +1,239 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.bbq;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single-threaded scheduled executor driven by a virtual clock. Tasks only run when the clock
+ * is explicitly advanced, in order of their scheduled time and then in order of submission, so
+ * that simulations are deterministic and do not depend on wall-clock time.
+ */
+final class VirtualScheduledExecutor extends AbstractExecutorService
+        implements ScheduledExecutorService {
+
+    private final PriorityQueue<VirtualTask<?>> mTasks =
+            new PriorityQueue<>(16, new Comparator<VirtualTask<?>>() {
+                @Override
+                public int compare(VirtualTask<?> first, VirtualTask<?> second) {
+                    if (first.mTimeMs != second.mTimeMs) {
+                        return first.mTimeMs < second.mTimeMs ? -1 : 1;
+                    }
+
+                    return first.mSequence < second.mSequence ? -1 : 1;
+                }
+            });
+
+    private long mNowMs;
+    private long mNextSequence;
+    private boolean mShutdown;
+
+    /**
+     * The current virtual time, in milliseconds.
+     */
+    long now() {
+        return mNowMs;
+    }
+
+    /**
+     * Runs all tasks scheduled at or before the specified virtual time, then sets the clock to
+     * that time.
+     */
+    void advanceTo(long timeMs) {
+        if (timeMs < mNowMs) {
+            throw new IllegalArgumentException("The virtual clock cannot move backwards");
+        }
+
+        while (!mTasks.isEmpty() && mTasks.peek().mTimeMs <= timeMs) {
+            runNextTask();
+        }
+
+        mNowMs = timeMs;
+    }
+
+    /**
+     * Runs tasks, advancing the clock as necessary, until no tasks remain.
+     */
+    void runUntilIdle() {
+        while (!mTasks.isEmpty()) {
+            runNextTask();
+        }
+    }
+
+    private void runNextTask() {
+        VirtualTask<?> task = mTasks.poll();
+        mNowMs = Math.max(mNowMs, task.mTimeMs);
+        task.run();
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return schedule(Executors.callable(command), delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        if (mShutdown) {
+            throw new IllegalStateException("Executor has been shut down");
+        }
+
+        VirtualTask<V> task = new VirtualTask<>(
+                callable,
+                mNowMs + Math.max(0, unit.toMillis(delay)),
+                mNextSequence++);
+        mTasks.add(task);
+        return task;
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(
+            Runnable command,
+            long initialDelay,
+            long period,
+            TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(
+            Runnable command,
+            long initialDelay,
+            long delay,
+            TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void shutdown() {
+        mShutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        mShutdown = true;
+        mTasks.clear();
+        return new ArrayList<>();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return mShutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return mShutdown && mTasks.isEmpty();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        return isTerminated();
+    }
+
+    private final class VirtualTask<V> implements ScheduledFuture<V> {
+
+        final Callable<V> mCallable;
+        final long mTimeMs;
+        final long mSequence;
+
+        boolean mCancelled;
+        boolean mDone;
+        V mResult;
+
+        VirtualTask(Callable<V> callable, long timeMs, long sequence) {
+            mCallable = callable;
+            mTimeMs = timeMs;
+            mSequence = sequence;
+        }
+
+        void run() {
+            if (mCancelled) {
+                return;
+            }
+
+            try {
+                mResult = mCallable.call();
+            } catch (Exception ex) {
+                throw new IllegalStateException("Scheduled task failed", ex);
+            } finally {
+                mDone = true;
+            }
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(mTimeMs - mNowMs, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            long difference = getDelay(TimeUnit.MILLISECONDS)
+                    - other.getDelay(TimeUnit.MILLISECONDS);
+            return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (mDone || mCancelled) {
+                return false;
+            }
+
+            mCancelled = true;
+            mTasks.remove(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return mDone || mCancelled;
+        }
+
+        @Override
+        public V get() {
+            if (!mDone) {
+                throw new IllegalStateException("Task has not run in virtual time");
+            }
+
+            return mResult;
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit) {
+            return get();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.bbq.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Tests for {@link ResponderHistory}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ResponderHistoryTest {
+
+    private static final String DATA_TYPE = "example";
+
+    private ResponderHistory mHistory;
+
+    @Before
+    public void setUp() {
+        mHistory = new ResponderHistory();
+    }
+
+    @Test
+    public void getUsefulness_noHistory_isNeutral() {
+        assertThat(mHistory.getUsefulness(DATA_TYPE, "com.example.a")).isEqualTo(0.5);
+    }
+
+    @Test
+    public void orderByUsefulness_noHistory_ordersByPackageName() {
+        assertThat(mHistory.orderByUsefulness(DATA_TYPE, Arrays.asList("c", "a", "b")))
+                .containsExactly("a", "b", "c");
+    }
+
+    @Test
+    public void orderByUsefulness_prefersUsefulResponders() {
+        for (int i = 0; i < 3; i++) {
+            mHistory.recordQuery(DATA_TYPE, "a");
+            mHistory.recordQuery(DATA_TYPE, "c");
+            mHistory.recordUsefulResponse(DATA_TYPE, "c");
+        }
+
+        // "a" never answers, "b" has no history, "c" always answers
+        assertThat(mHistory.orderByUsefulness(DATA_TYPE, Arrays.asList("a", "b", "c")))
+                .containsExactly("c", "b", "a");
+    }
+
+    @Test
+    public void orderByUsefulness_historyIsPerDataType() {
+        mHistory.recordQuery(DATA_TYPE, "a");
+        mHistory.recordQuery("other", "b");
+        mHistory.recordUsefulResponse("other", "b");
+
+        assertThat(mHistory.orderByUsefulness(DATA_TYPE, Arrays.asList("a", "b")))
+                .containsExactly("b", "a");
+        assertThat(mHistory.orderByUsefulness("other", Arrays.asList("a", "b")))
+                .containsExactly("b", "a");
+    }
+}
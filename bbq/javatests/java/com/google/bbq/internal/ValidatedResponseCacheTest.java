@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.bbq.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.valid4j.errors.RequireViolation;
+
+/**
+ * Tests for {@link ValidatedResponseCache}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ValidatedResponseCacheTest {
+
+    private static final String DATA_TYPE = "example";
+    private static final String RESPONDER = "com.example.provider";
+    private static final String OTHER_RESPONDER = "com.example.other";
+    private static final byte[] QUERY = new byte[] { 1, 2, 3 };
+    private static final byte[] VALIDATOR = new byte[] { 4, 5 };
+    private static final byte[] RESPONSE = new byte[] { 6, 7, 8, 9 };
+
+    private ValidatedResponseCache mCache;
+
+    @Before
+    public void setUp() {
+        mCache = new ValidatedResponseCache();
+    }
+
+    @Test
+    public void getValidator_empty_returnsNull() {
+        assertThat(mCache.getValidator(DATA_TYPE, RESPONDER, QUERY)).isNull();
+    }
+
+    @Test
+    public void put_thenGet_returnsStoredValues() {
+        mCache.put(DATA_TYPE, RESPONDER, QUERY, VALIDATOR, RESPONSE);
+
+        assertThat(mCache.getValidator(DATA_TYPE, RESPONDER, QUERY)).isEqualTo(VALIDATOR);
+        assertThat(mCache.getResponseMessage(DATA_TYPE, RESPONDER, QUERY, VALIDATOR))
+                .isEqualTo(RESPONSE);
+    }
+
+    @Test
+    public void getResponseMessage_differentValidator_returnsNull() {
+        mCache.put(DATA_TYPE, RESPONDER, QUERY, VALIDATOR, RESPONSE);
+
+        assertThat(mCache.getResponseMessage(DATA_TYPE, RESPONDER, QUERY, new byte[] { 4 }))
+                .isNull();
+    }
+
+    @Test
+    public void get_equalQueryContent_matches() {
+        mCache.put(DATA_TYPE, RESPONDER, QUERY, VALIDATOR, RESPONSE);
+
+        assertThat(mCache.getValidator(DATA_TYPE, RESPONDER, new byte[] { 1, 2, 3 }))
+                .isEqualTo(VALIDATOR);
+    }
+
+    @Test
+    public void get_differentQueryOrResponder_returnsNull() {
+        mCache.put(DATA_TYPE, RESPONDER, QUERY, VALIDATOR, RESPONSE);
+
+        assertThat(mCache.getValidator(DATA_TYPE, RESPONDER, new byte[] { 1, 2 })).isNull();
+        assertThat(mCache.getValidator(DATA_TYPE, OTHER_RESPONDER, QUERY)).isNull();
+        assertThat(mCache.getValidator("other", RESPONDER, QUERY)).isNull();
+    }
+
+    @Test
+    public void get_nullQueryMessage_matchesNullQueryMessage() {
+        mCache.put(DATA_TYPE, RESPONDER, null, VALIDATOR, RESPONSE);
+
+        assertThat(mCache.getValidator(DATA_TYPE, RESPONDER, null)).isEqualTo(VALIDATOR);
+    }
+
+    @Test
+    public void remove_discardsEntry() {
+        mCache.put(DATA_TYPE, RESPONDER, QUERY, VALIDATOR, RESPONSE);
+        mCache.remove(DATA_TYPE, RESPONDER, QUERY);
+
+        assertThat(mCache.getValidator(DATA_TYPE, RESPONDER, QUERY)).isNull();
+        assertThat(mCache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void put_beyondCapacity_evictsLeastRecentlyUsed() {
+        ValidatedResponseCache cache = new ValidatedResponseCache(2);
+        cache.put(DATA_TYPE, "a", QUERY, VALIDATOR, RESPONSE);
+        cache.put(DATA_TYPE, "b", QUERY, VALIDATOR, RESPONSE);
+
+        // touch "a", so that "b" becomes the least recently used
+        cache.getValidator(DATA_TYPE, "a", QUERY);
+        cache.put(DATA_TYPE, "c", QUERY, VALIDATOR, RESPONSE);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getValidator(DATA_TYPE, "a", QUERY)).isNotNull();
+        assertThat(cache.getValidator(DATA_TYPE, "b", QUERY)).isNull();
+        assertThat(cache.getValidator(DATA_TYPE, "c", QUERY)).isNotNull();
+    }
+
+    @Test(expected = RequireViolation.class)
+    public void create_zeroCapacity_throws() {
+        new ValidatedResponseCache(0);
+    }
+}
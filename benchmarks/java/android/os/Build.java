@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.os;
+
+/**
+ * A JVM replacement for the framework's Build class, which cannot be initialized outside of a
+ * device as it reads system properties through native methods. This takes precedence over the
+ * android-all implementation on the benchmark classpath. Only the fields read by the
+ * benchmarked code paths are provided.
+ */
+public final class Build {
+
+    /**
+     * Version information for the simulated platform.
+     */
+    public static final class VERSION {
+
+        /**
+         * The simulated platform API level, matching the compile SDK version.
+         */
+        public static final int SDK_INT = 26;
+
+        private VERSION() {}
+    }
+
+    /**
+     * Platform API levels.
+     */
+    public static final class VERSION_CODES {
+        public static final int KITKAT = 19;
+        public static final int LOLLIPOP = 21;
+        public static final int M = 23;
+        public static final int O = 26;
+
+        private VERSION_CODES() {}
+    }
+
+    private Build() {}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.bbq;
+
+import com.google.bbq.Protobufs.BroadcastQuery;
+import com.google.bbq.Protobufs.BroadcastQueryResponse;
+import com.google.bbq.Protobufs.ClientVersion;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.Random;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks the encoding and decoding of BBQ query and response messages, for a range of
+ * carried payload sizes.
+ */
+@State(Scope.Benchmark)
+public class BbqCodecBenchmark {
+
+    private static final String DATA_TYPE = "org.openyolo.credential";
+
+    @Param({"0", "256", "4096", "65536"})
+    public int payloadSize;
+
+    private BroadcastQuery mQuery;
+    private byte[] mQueryBytes;
+    private BroadcastQueryResponse mResponse;
+    private byte[] mResponseBytes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(payloadSize);
+        byte[] payload = new byte[payloadSize];
+        random.nextBytes(payload);
+
+        mQuery = BroadcastQuery.newBuilder()
+                .setClientVersion(ClientVersion.newBuilder()
+                        .setVendor("benchmark")
+                        .setMajor(1)
+                        .setMinor(0)
+                        .setPatch(0))
+                .setRequestingApp("com.example.app")
+                .setDataType(DATA_TYPE)
+                .setRequestId(random.nextLong())
+                .setResponseId(random.nextLong())
+                .setQueryMessage(ByteString.copyFrom(payload))
+                .build();
+        mQueryBytes = mQuery.toByteArray();
+
+        mResponse = BroadcastQueryResponse.newBuilder()
+                .setRequestId(mQuery.getRequestId())
+                .setResponseId(mQuery.getResponseId())
+                .setResponseMessage(ByteString.copyFrom(payload))
+                .build();
+        mResponseBytes = mResponse.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodeQuery() {
+        return mQuery.toByteArray();
+    }
+
+    @Benchmark
+    public BroadcastQuery decodeQuery() throws InvalidProtocolBufferException {
+        return BroadcastQuery.parseFrom(mQueryBytes);
+    }
+
+    @Benchmark
+    public byte[] encodeResponse() {
+        return mResponse.toByteArray();
+    }
+
+    @Benchmark
+    public BroadcastQueryResponse decodeResponse() throws InvalidProtocolBufferException {
+        return BroadcastQueryResponse.parseFrom(mResponseBytes);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.bbq;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks the formatting of request identifiers and response actions, which occurs for every
+ * dispatched query. This benchmark resides in the bbq package in order to access
+ * {@link QueryUtil#longAsHex(long)}.
+ */
+@State(Scope.Benchmark)
+public class QueryUtilBenchmark {
+
+    private static final String DATA_TYPE = "org.openyolo.credential";
+
+    private long mRequestId;
+
+    @Setup
+    public void setUp() {
+        mRequestId = 0x8BADF00DDEADBEEFL;
+    }
+
+    @Benchmark
+    public String longAsHex() {
+        return QueryUtil.longAsHex(mRequestId);
+    }
+
+    @Benchmark
+    public String createResponseAction() {
+        return QueryUtil.createResponseAction(DATA_TYPE, mRequestId);
+    }
+}
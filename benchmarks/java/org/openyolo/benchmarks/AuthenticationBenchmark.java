@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openyolo.protocol.AuthenticationDomain;
+import org.openyolo.protocol.AuthenticationMethod;
+import org.openyolo.protocol.MalformedDataException;
+
+/**
+ * Benchmarks the validation performed when constructing authentication domains and methods,
+ * which occurs for every credential, hint and request decoded from its protocol buffer form.
+ */
+@State(Scope.Benchmark)
+public class AuthenticationBenchmark {
+
+    private static final String WEB_DOMAIN = "https://www.example.com";
+    private static final String ANDROID_DOMAIN =
+            "android://VG9tIHdhcyBoZXJl_T3BlbllPTE8gcm9ja3M=@com.example.app";
+    private static final String AUTH_METHOD = "openyolo://email";
+
+    private AuthenticationDomain mWebDomain;
+    private AuthenticationDomain mAndroidDomain;
+    private AuthenticationDomain mEqualAndroidDomain;
+    private AuthenticationDomain mInternedAndroidDomain;
+    private byte[] mDomainBytes;
+    private byte[] mMethodBytes;
+
+    @Setup
+    public void setUp() {
+        mWebDomain = new AuthenticationDomain(WEB_DOMAIN);
+        mAndroidDomain = new AuthenticationDomain(ANDROID_DOMAIN);
+        mEqualAndroidDomain = new AuthenticationDomain(new String(ANDROID_DOMAIN));
+        mInternedAndroidDomain = AuthenticationDomain.of(ANDROID_DOMAIN);
+        mDomainBytes = new AuthenticationDomain(ANDROID_DOMAIN).toProtobuf().toByteArray();
+        mMethodBytes = new AuthenticationMethod(AUTH_METHOD).toProtobuf().toByteArray();
+    }
+
+    @Benchmark
+    public AuthenticationDomain createWebDomain() {
+        return new AuthenticationDomain(WEB_DOMAIN);
+    }
+
+    @Benchmark
+    public AuthenticationDomain createAndroidDomain() {
+        return new AuthenticationDomain(ANDROID_DOMAIN);
+    }
+
+    @Benchmark
+    public AuthenticationDomain internAndroidDomain() {
+        return AuthenticationDomain.of(ANDROID_DOMAIN);
+    }
+
+    @Benchmark
+    public boolean equalDistinctDomains() {
+        return mAndroidDomain.equals(mEqualAndroidDomain);
+    }
+
+    @Benchmark
+    public boolean equalInternedDomains() {
+        return mInternedAndroidDomain.equals(AuthenticationDomain.of(ANDROID_DOMAIN));
+    }
+
+    @Benchmark
+    public String androidDomainPackageName() {
+        return new AuthenticationDomain(ANDROID_DOMAIN).getAndroidPackageName();
+    }
+
+    @Benchmark
+    public boolean webDomainIsWebAuthDomain() {
+        return mWebDomain.isWebAuthDomain();
+    }
+
+    @Benchmark
+    public AuthenticationDomain decodeDomain() throws MalformedDataException {
+        return AuthenticationDomain.fromProtobufBytes(mDomainBytes);
+    }
+
+    @Benchmark
+    public AuthenticationMethod createMethod() {
+        return new AuthenticationMethod(AUTH_METHOD);
+    }
+
+    @Benchmark
+    public AuthenticationMethod internMethod() {
+        return AuthenticationMethod.of(AUTH_METHOD);
+    }
+
+    @Benchmark
+    public AuthenticationMethod decodeMethod() throws MalformedDataException {
+        return AuthenticationMethod.fromProtobufBytes(mMethodBytes);
+    }
+}
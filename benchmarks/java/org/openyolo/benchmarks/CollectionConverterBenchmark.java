@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.benchmarks;
+
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openyolo.protocol.AuthenticationMethod;
+import org.openyolo.protocol.Protobufs;
+import org.openyolo.protocol.internal.AuthenticationMethodConverters;
+import org.openyolo.protocol.internal.ByteStringConverters;
+import org.openyolo.protocol.internal.CollectionConverter;
+
+/**
+ * Benchmarks the collection transforms used when converting protocol value objects to and from
+ * their protocol buffer equivalents, for a range of collection sizes.
+ */
+@State(Scope.Benchmark)
+public class CollectionConverterBenchmark {
+
+    @Param({"1", "16", "256"})
+    public int collectionSize;
+
+    private List<AuthenticationMethod> mAuthMethods;
+    private List<Protobufs.AuthenticationMethod> mAuthMethodProtos;
+    private Map<String, byte[]> mAdditionalProperties;
+
+    @Setup
+    public void setUp() {
+        mAuthMethods = new ArrayList<>(collectionSize);
+        mAuthMethodProtos = new ArrayList<>(collectionSize);
+        mAdditionalProperties = new HashMap<>();
+        for (int i = 0; i < collectionSize; i++) {
+            AuthenticationMethod authMethod = new AuthenticationMethod("https://idp" + i + ".com");
+            mAuthMethods.add(authMethod);
+            mAuthMethodProtos.add(authMethod.toProtobuf());
+            mAdditionalProperties.put("com.example.property" + i, new byte[] { (byte) i });
+        }
+    }
+
+    @Benchmark
+    public List<Protobufs.AuthenticationMethod> authMethodsToProtobufList() {
+        return CollectionConverter.toList(
+                mAuthMethods,
+                AuthenticationMethodConverters.OBJECT_TO_PROTOBUF);
+    }
+
+    @Benchmark
+    public Set<AuthenticationMethod> authMethodProtobufsToSet() {
+        return CollectionConverter.toSet(
+                mAuthMethodProtos,
+                AuthenticationMethodConverters.PROTOBUF_TO_OBJECT);
+    }
+
+    @Benchmark
+    public Map<String, ByteString> convertAdditionalProperties() {
+        return CollectionConverter.convertMapValues(
+                mAdditionalProperties,
+                ByteStringConverters.BYTE_ARRAY_TO_BYTE_STRING);
+    }
+}
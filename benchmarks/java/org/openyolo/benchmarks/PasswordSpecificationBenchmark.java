@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openyolo.protocol.PasswordSpecification;
+
+/**
+ * Benchmarks password generation and conformance checking, for a range of password lengths.
+ */
+@State(Scope.Benchmark)
+public class PasswordSpecificationBenchmark {
+
+    @Param({"12", "32", "128"})
+    public int passwordLength;
+
+    private PasswordSpecification mSpecification;
+    private String mConformingPassword;
+    private String mNonConformingPassword;
+
+    @Setup
+    public void setUp() {
+        mSpecification = new PasswordSpecification.Builder()
+                .ofLength(passwordLength, passwordLength)
+                .allow(PasswordSpecification.ALPHANUMERIC_DISTINGUISHABLE)
+                .require(PasswordSpecification.UPPER_ALPHA_DISTINGUISHABLE, 1)
+                .require(PasswordSpecification.NUMERALS_DISTINGUISHABLE, 1)
+                .build();
+        mConformingPassword = mSpecification.generate();
+
+        // a disallowed character at the end, so that the whole password is scanned
+        mNonConformingPassword = mConformingPassword.substring(0, passwordLength - 1) + "!";
+    }
+
+    @Benchmark
+    public String generate() {
+        return mSpecification.generate();
+    }
+
+    @Benchmark
+    public int checkConformingPassword() {
+        return mSpecification.checkConformance(mConformingPassword);
+    }
+
+    @Benchmark
+    public int checkNonConformingPassword() {
+        return mSpecification.checkConformance(mNonConformingPassword);
+    }
+}
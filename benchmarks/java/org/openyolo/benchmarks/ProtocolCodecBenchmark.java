@@ -0,0 +1,214 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.benchmarks;
+
+import java.util.Random;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openyolo.protocol.AuthenticationDomain;
+import org.openyolo.protocol.AuthenticationMethods;
+import org.openyolo.protocol.Credential;
+import org.openyolo.protocol.CredentialRetrieveRequest;
+import org.openyolo.protocol.CredentialRetrieveResult;
+import org.openyolo.protocol.Hint;
+import org.openyolo.protocol.HintRetrieveRequest;
+import org.openyolo.protocol.HintRetrieveResult;
+import org.openyolo.protocol.MalformedDataException;
+
+/**
+ * Benchmarks the conversion of protocol value objects to and from their protocol buffer byte
+ * form, as happens whenever they cross a process boundary. The size of an attached additional
+ * property is varied to model extension data. Decoded credentials and hints are backed by their
+ * protocol buffer, so the "decode" benchmarks measure the cost of a provider listing stored
+ * credentials, while the "decodeAndRead" benchmarks include materializing every property.
+ */
+@State(Scope.Benchmark)
+public class ProtocolCodecBenchmark {
+
+    private static final String ADDITIONAL_PROPERTY_KEY = "com.example.extension";
+
+    @Param({"0", "256", "4096"})
+    public int additionalPropertySize;
+
+    private Credential mCredential;
+    private byte[] mCredentialBytes;
+    private Hint mHint;
+    private byte[] mHintBytes;
+    private CredentialRetrieveRequest mRetrieveRequest;
+    private byte[] mRetrieveRequestBytes;
+    private HintRetrieveRequest mHintRequest;
+    private byte[] mHintRequestBytes;
+    private byte[] mRetrieveResultBytes;
+    private byte[] mHintResultBytes;
+
+    @Setup
+    public void setUp() {
+        byte[] additionalProperty = new byte[additionalPropertySize];
+        new Random(additionalPropertySize).nextBytes(additionalProperty);
+
+        mCredential = new Credential.Builder(
+                "alice@example.com",
+                AuthenticationMethods.EMAIL,
+                new AuthenticationDomain("https://www.example.com"))
+                .setDisplayName("Alice McTest")
+                .setDisplayPicture("https://www.example.com/alice.png")
+                .setPassword("correcthorsebatterystaple")
+                .setAdditionalProperty(ADDITIONAL_PROPERTY_KEY, additionalProperty)
+                .build();
+        mCredentialBytes = mCredential.toProtobuf().toByteArray();
+
+        mHint = new Hint.Builder("alice@example.com", AuthenticationMethods.EMAIL)
+                .setDisplayName("Alice McTest")
+                .setDisplayPictureUri("https://www.example.com/alice.png")
+                .setAdditionalProperty(ADDITIONAL_PROPERTY_KEY, additionalProperty)
+                .build();
+        mHintBytes = mHint.toProtobuf().toByteArray();
+
+        mRetrieveRequest = new CredentialRetrieveRequest.Builder(
+                AuthenticationMethods.EMAIL,
+                AuthenticationMethods.GOOGLE)
+                .setAdditionalProperty(ADDITIONAL_PROPERTY_KEY, additionalProperty)
+                .build();
+        mRetrieveRequestBytes = mRetrieveRequest.toProtocolBuffer().toByteArray();
+
+        mHintRequest = new HintRetrieveRequest.Builder(
+                AuthenticationMethods.EMAIL,
+                AuthenticationMethods.GOOGLE)
+                .setAdditionalProperty(ADDITIONAL_PROPERTY_KEY, additionalProperty)
+                .build();
+        mHintRequestBytes = mHintRequest.toProtocolBuffer().toByteArray();
+
+        mRetrieveResultBytes = new CredentialRetrieveResult.Builder(
+                CredentialRetrieveResult.CODE_CREDENTIAL_SELECTED)
+                .setCredential(mCredential)
+                .build()
+                .toProtobuf()
+                .toByteArray();
+
+        mHintResultBytes = new HintRetrieveResult.Builder(HintRetrieveResult.CODE_HINT_SELECTED)
+                .setHint(mHint)
+                .build()
+                .toProtobuf()
+                .toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodeCredential() {
+        return mCredential.toProtobuf().toByteArray();
+    }
+
+    @Benchmark
+    public Credential decodeCredential() throws MalformedDataException {
+        return Credential.fromProtoBytes(mCredentialBytes);
+    }
+
+    @Benchmark
+    public void decodeAndReadCredential(Blackhole blackhole) throws MalformedDataException {
+        Credential credential = Credential.fromProtoBytes(mCredentialBytes);
+        blackhole.consume(credential.getIdentifier());
+        blackhole.consume(credential.getAuthenticationMethod());
+        blackhole.consume(credential.getAuthenticationDomain());
+        blackhole.consume(credential.getDisplayName());
+        blackhole.consume(credential.getDisplayPicture());
+        blackhole.consume(credential.getPassword());
+        blackhole.consume(credential.getIdToken());
+        blackhole.consume(credential.getAdditionalProperties());
+    }
+
+    @Benchmark
+    public byte[] decodeAndReencodeCredential() throws MalformedDataException {
+        return Credential.fromProtoBytes(mCredentialBytes).toProtobufBytes();
+    }
+
+    @Benchmark
+    public Credential roundTripCredential() throws MalformedDataException {
+        return Credential.fromProtoBytes(mCredential.toProtobuf().toByteArray());
+    }
+
+    @Benchmark
+    public byte[] encodeHint() {
+        return mHint.toProtobuf().toByteArray();
+    }
+
+    @Benchmark
+    public Hint decodeHint() throws MalformedDataException {
+        return Hint.fromProtobufBytes(mHintBytes);
+    }
+
+    @Benchmark
+    public void decodeAndReadHint(Blackhole blackhole) throws MalformedDataException {
+        Hint hint = Hint.fromProtobufBytes(mHintBytes);
+        blackhole.consume(hint.getIdentifier());
+        blackhole.consume(hint.getAuthenticationMethod());
+        blackhole.consume(hint.getDisplayName());
+        blackhole.consume(hint.getDisplayPicture());
+        blackhole.consume(hint.getGeneratedPassword());
+        blackhole.consume(hint.getIdToken());
+        blackhole.consume(hint.getAdditionalProperties());
+    }
+
+    @Benchmark
+    public Hint roundTripHint() throws MalformedDataException {
+        return Hint.fromProtobufBytes(mHint.toProtobuf().toByteArray());
+    }
+
+    @Benchmark
+    public byte[] encodeCredentialRetrieveRequest() {
+        return mRetrieveRequest.toProtocolBuffer().toByteArray();
+    }
+
+    @Benchmark
+    public CredentialRetrieveRequest decodeCredentialRetrieveRequest()
+            throws MalformedDataException {
+        return CredentialRetrieveRequest.fromProtobufBytes(mRetrieveRequestBytes);
+    }
+
+    @Benchmark
+    public CredentialRetrieveRequest roundTripCredentialRetrieveRequest()
+            throws MalformedDataException {
+        return CredentialRetrieveRequest.fromProtobufBytes(
+                mRetrieveRequest.toProtocolBuffer().toByteArray());
+    }
+
+    @Benchmark
+    public byte[] encodeHintRetrieveRequest() {
+        return mHintRequest.toProtocolBuffer().toByteArray();
+    }
+
+    @Benchmark
+    public HintRetrieveRequest decodeHintRetrieveRequest() throws MalformedDataException {
+        return HintRetrieveRequest.fromProtoBytes(mHintRequestBytes);
+    }
+
+    @Benchmark
+    public HintRetrieveRequest roundTripHintRetrieveRequest() throws MalformedDataException {
+        return HintRetrieveRequest.fromProtoBytes(mHintRequest.toProtocolBuffer().toByteArray());
+    }
+
+    @Benchmark
+    public CredentialRetrieveResult decodeCredentialRetrieveResult()
+            throws MalformedDataException {
+        return CredentialRetrieveResult.fromProtobufBytes(mRetrieveResultBytes);
+    }
+
+    @Benchmark
+    public HintRetrieveResult decodeHintRetrieveResult() throws MalformedDataException {
+        return HintRetrieveResult.fromProtobufBytes(mHintResultBytes);
+    }
+}
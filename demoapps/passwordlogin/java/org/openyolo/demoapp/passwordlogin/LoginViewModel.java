@@ -44,7 +44,8 @@ import org.openyolo.demoapp.passwordlogin.userdata.UserDataSource;
 import org.openyolo.protocol.AuthenticationDomain;
 import org.openyolo.protocol.AuthenticationMethods;
 import org.openyolo.protocol.Credential;
-import org.openyolo.protocol.CredentialRetrieveRequest;
+import org.openyolo.protocol.CredentialOrHintRetrieveRequest;
+import org.openyolo.protocol.CredentialOrHintRetrieveResult;
 import org.openyolo.protocol.CredentialRetrieveResult;
 import org.openyolo.protocol.CredentialSaveRequest;
 import org.openyolo.protocol.CredentialSaveResult;
@@ -170,13 +171,15 @@ public final class LoginViewModel extends ObservableViewModel {
     }
 
     /**
-     * Initiates an OpenYOLO credential retrieval request.
+     * Initiates an OpenYOLO credential retrieval request, which falls back to requesting an
+     * account hint if no credential is available.
      */
     private void tryRetrieveExistingCredential() {
         setShowLoading(R.string.existing_account_search_prompt);
         Intent intent =
-                mCredentialClient.getCredentialRetrieveIntent(
-                        CredentialRetrieveRequest.fromAuthMethods(AuthenticationMethods.EMAIL));
+                mCredentialClient.getCredentialOrHintRetrieveIntent(
+                        CredentialOrHintRetrieveRequest.fromAuthMethods(
+                                AuthenticationMethods.EMAIL));
         mNavigator.get().startOpenYoloRetrieve(intent);
     }
 
@@ -187,11 +190,18 @@ public final class LoginViewModel extends ObservableViewModel {
      * If a credential is returned, an authentication attempt is made using it. If this fails, the
      * user is prompted to manually authenticate.
      *
-     * If no credential is returned, an attempt is made to source an account hint instead.
+     * If no credential is available, the flow falls back to sourcing an account hint instead,
+     * which is handled as for {@link #handleHintResult(Intent)}.
      */
     public void handleRetrieveResult(Intent data) {
-        CredentialRetrieveResult result = mCredentialClient.getCredentialRetrieveResult(data);
+        CredentialOrHintRetrieveResult combinedResult =
+                mCredentialClient.getCredentialOrHintRetrieveResult(data);
+        if (combinedResult.isHintResult()) {
+            handleHintResult(combinedResult.getHintRetrieveResult());
+            return;
+        }
 
+        CredentialRetrieveResult result = combinedResult.getCredentialRetrieveResult();
         switch (result.getResultCode()) {
             case CredentialRetrieveResult.CODE_CREDENTIAL_SELECTED:
                 Log.i(TAG, "Credential was returned by OpenYOLO provider");
@@ -272,8 +282,10 @@ public final class LoginViewModel extends ObservableViewModel {
      * If no hint is returned, the user is prompted to manually authenticate.
      */
     public void handleHintResult(Intent data) {
-        HintRetrieveResult result = mCredentialClient.getHintRetrieveResult(data);
+        handleHintResult(mCredentialClient.getHintRetrieveResult(data));
+    }
 
+    private void handleHintResult(HintRetrieveResult result) {
         switch (result.getResultCode()) {
             case HintRetrieveResult.CODE_HINT_SELECTED:
                 Log.i(TAG, "User selected a hint from the OpenYOLO provider");
@@ -48,7 +48,7 @@ public class CredentialQualityScore {
     public static int getScore(AccountHint hint) {
         return getQualityScore(
                 hint.getIdentifier(),
-                new AuthenticationMethod(hint.getAuthMethod()),
+                AuthenticationMethod.of(hint.getAuthMethod()),
                 hint.getName(),
                 hint.getPictureUri());
     }
@@ -59,7 +59,7 @@ public class CredentialQualityScore {
     public static int getScore(Protobufs.Credential credential) {
         return getQualityScore(
                 credential.getId(),
-                new AuthenticationMethod(credential.getAuthMethod().getUri()),
+                AuthenticationMethod.of(credential.getAuthMethod().getUri()),
                 credential.getDisplayName(),
                 credential.getDisplayPictureUri());
     }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.demoprovider.barbican.provider;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.util.Log;
+import com.google.bbq.Protobufs.BroadcastQuery;
+import java.io.IOException;
+import org.openyolo.demoprovider.barbican.storage.CredentialStorage;
+import org.openyolo.protocol.AuthenticationDomain;
+import org.openyolo.protocol.Credential;
+import org.openyolo.protocol.CredentialDeleteRequest;
+import org.openyolo.spi.BaseDeleteMatchQueryReceiver;
+
+/**
+ * Implements the OpenYOLO delete match query receiver. Barbican stores each credential in a
+ * file named by its identifying fields, so the presence of a matching credential can be
+ * checked without unlocking the password store.
+ */
+public class DeleteMatchQueryReceiver extends BaseDeleteMatchQueryReceiver {
+
+    private static final String LOG_TAG = "DeleteMatchReceiver";
+
+    /**
+     * Creates the query receiver.
+     */
+    public DeleteMatchQueryReceiver() {
+        super(LOG_TAG);
+    }
+
+    @Override
+    protected boolean hasMatchingCredential(
+            @NonNull Context context,
+            @NonNull BroadcastQuery query,
+            @NonNull CredentialDeleteRequest request,
+            @NonNull AuthenticationDomain requestorDomain) {
+        Log.i(LOG_TAG, "Processing delete match query for " + query.getRequestingApp());
+
+        CredentialStorage storage;
+        try {
+            storage = new CredentialStorage(context);
+        } catch (IOException ex) {
+            // a match cannot be ruled out; let the delete activity report the failure
+            Log.w(LOG_TAG, "Failed to open credential storage", ex);
+            return true;
+        }
+
+        for (Credential credential : request.getCredentials()) {
+            if (storage.hasCredential(credential.toProtobuf())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -111,7 +111,7 @@ public class HintPickerActivity
         // they contain (so more complete items are displayed first), and then alphabetically.
         ArrayList<Hint> filteredHints = new ArrayList<>();
         for (AccountHint hint : hints) {
-            AuthenticationMethod hintAuthMethod = new AuthenticationMethod(hint.getAuthMethod());
+            AuthenticationMethod hintAuthMethod = AuthenticationMethod.of(hint.getAuthMethod());
             Set<AuthenticationMethod> authMethods = mRequest.getAuthenticationMethods();
             if (!authMethods.contains(hintAuthMethod)) {
                 continue;
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.demoprovider.barbican.provider;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.util.Log;
+import com.google.bbq.Protobufs.BroadcastQuery;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import org.openyolo.demoprovider.barbican.Protobufs.AccountHint;
+import org.openyolo.demoprovider.barbican.storage.CredentialStorage;
+import org.openyolo.protocol.AuthenticationDomain;
+import org.openyolo.protocol.AuthenticationMethod;
+import org.openyolo.protocol.HintRetrieveRequest;
+import org.openyolo.spi.BaseHintQueryReceiver;
+
+/**
+ * Implements the OpenYOLO hint availability query receiver. The hints held by Barbican are
+ * stored in plain text, so their availability can be determined without unlocking the
+ * password store.
+ */
+public class HintQueryReceiver extends BaseHintQueryReceiver {
+
+    private static final String LOG_TAG = "HintQueryReceiver";
+
+    /**
+     * Creates the query receiver.
+     */
+    public HintQueryReceiver() {
+        super(LOG_TAG);
+    }
+
+    @Override
+    protected boolean hasHintsAvailable(
+            @NonNull Context context,
+            @NonNull BroadcastQuery query,
+            @NonNull HintRetrieveRequest request,
+            @NonNull AuthenticationDomain requestorDomain) {
+        Log.i(LOG_TAG, "Processing hint query for " + query.getRequestingApp());
+
+        List<AccountHint> hints;
+        try {
+            hints = new CredentialStorage(context).getHints();
+        } catch (IOException ex) {
+            // availability cannot be determined; let the hint picker report the failure
+            Log.w(LOG_TAG, "Failed to read hints from the credential store", ex);
+            return true;
+        }
+
+        Set<AuthenticationMethod> authMethods = request.getAuthenticationMethods();
+        for (AccountHint hint : hints) {
+            if (authMethods.contains(AuthenticationMethod.of(hint.getAuthMethod()))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -27,6 +27,7 @@ import org.openyolo.demoprovider.barbican.UnlockActivity;
 import org.openyolo.demoprovider.barbican.storage.CredentialStorageClient;
 import org.openyolo.protocol.AuthenticationDomain;
 import org.openyolo.protocol.Credential;
+import org.openyolo.protocol.CredentialOrHintRetrieveRequest;
 import org.openyolo.protocol.CredentialRetrieveRequest;
 import org.openyolo.protocol.CredentialRetrieveResult;
 import org.openyolo.protocol.MalformedDataException;
@@ -36,7 +37,8 @@ import org.openyolo.protocol.ProtocolConstants;
  * A UI-less activity that determines how to retrieve a requested credential. If the credential
  * store is locked, an unlock activity is started before proceeding. If the store is unlocked
  * and a single credential exists for the request, an auto sign-in activity is displayed.
- * If more than one credential exists, a picker is displayed.
+ * If more than one credential exists, a picker is displayed. For a combined credential or hint
+ * request, the hint picker is displayed if no credential exists.
  */
 public class RetrieveCredentialActivity
         extends AppCompatActivity
@@ -46,6 +48,9 @@ public class RetrieveCredentialActivity
     private CredentialStorageClient mClient;
     private CredentialRetrieveRequest mRequest;
 
+    @Nullable
+    private CredentialOrHintRetrieveRequest mCombinedRequest;
+
     /**
      * Creates the intent to handle releasing a credential to the calling app.
      */
@@ -71,7 +76,12 @@ public class RetrieveCredentialActivity
         }
 
         try {
-            mRequest = CredentialRetrieveRequest.fromRequestIntent(getIntent());
+            if (getIntent().hasExtra(ProtocolConstants.EXTRA_RETRIEVE_OR_HINT_REQUEST)) {
+                mCombinedRequest = CredentialOrHintRetrieveRequest.fromRequestIntent(getIntent());
+                mRequest = mCombinedRequest.getCredentialRetrieveRequest();
+            } else {
+                mRequest = CredentialRetrieveRequest.fromRequestIntent(getIntent());
+            }
         } catch (MalformedDataException ex) {
             setResultAndFinish(CredentialRetrieveResult.BAD_REQUEST);
         }
@@ -89,6 +99,11 @@ public class RetrieveCredentialActivity
         if (!client.isUnlocked()) {
             Intent retrieveAfterUnlockIntent =
                     RetrieveCredentialActivity.createIntent(this, mRequest);
+            if (mCombinedRequest != null) {
+                retrieveAfterUnlockIntent.putExtra(
+                        ProtocolConstants.EXTRA_RETRIEVE_OR_HINT_REQUEST,
+                        mCombinedRequest.toProtocolBufferBytes());
+            }
             retrieveAfterUnlockIntent.setFlags(Intent.FLAG_ACTIVITY_FORWARD_RESULT);
 
             Intent unlockIntent =
@@ -123,7 +138,14 @@ public class RetrieveCredentialActivity
                 return;
             }
 
-            if (!mRequest.getRequireUserMediation() && credentials.size() == 1) {
+            if (credentials.isEmpty() && mCombinedRequest != null) {
+                Intent hintIntent = new Intent(this, HintPickerActivity.class);
+                hintIntent.putExtra(
+                        ProtocolConstants.EXTRA_HINT_REQUEST,
+                        mCombinedRequest.getHintRetrieveRequest().toProtocolBufferBytes());
+                hintIntent.setFlags(Intent.FLAG_ACTIVITY_FORWARD_RESULT);
+                startActivity(hintIntent);
+            } else if (!mRequest.getRequireUserMediation() && credentials.size() == 1) {
                 Intent autoSignInIntent =
                         AutoSignInActivity.createIntent(this, credentials.get(0));
                 autoSignInIntent.setFlags(Intent.FLAG_ACTIVITY_FORWARD_RESULT);
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.demoprovider.barbican.provider;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.util.Log;
+import com.google.bbq.Protobufs.BroadcastQuery;
+import java.io.IOException;
+import java.util.Collections;
+import org.openyolo.demoprovider.barbican.storage.CredentialStorage;
+import org.openyolo.protocol.AuthenticationDomain;
+import org.openyolo.protocol.CredentialSaveRequest;
+import org.openyolo.spi.BaseSaveEligibilityQueryReceiver;
+
+/**
+ * Implements the OpenYOLO save eligibility query receiver. Barbican refuses to save credentials
+ * for apps on its "never save" list, which can be checked without unlocking the password store.
+ */
+public class SaveEligibilityQueryReceiver extends BaseSaveEligibilityQueryReceiver {
+
+    private static final String LOG_TAG = "SaveEligibilityReceiver";
+
+    /**
+     * Creates the query receiver.
+     */
+    public SaveEligibilityQueryReceiver() {
+        super(LOG_TAG);
+    }
+
+    @Override
+    protected boolean isSaveEligible(
+            @NonNull Context context,
+            @NonNull BroadcastQuery query,
+            @NonNull CredentialSaveRequest request,
+            @NonNull AuthenticationDomain requestorDomain) {
+        Log.i(LOG_TAG, "Processing save eligibility query for " + query.getRequestingApp());
+
+        try {
+            return !new CredentialStorage(context)
+                    .isOnNeverSaveList(Collections.singletonList(requestorDomain));
+        } catch (IOException ex) {
+            // eligibility cannot be determined; let the save activity report the failure
+            Log.w(LOG_TAG, "Failed to read the never save list", ex);
+            return true;
+        }
+    }
+}
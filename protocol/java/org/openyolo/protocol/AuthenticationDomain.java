@@ -15,23 +15,20 @@
 package org.openyolo.protocol;
 
 import static org.hamcrest.CoreMatchers.notNullValue;
-import static org.openyolo.protocol.internal.CustomMatchers.isValidAuthenticationDomain;
 import static org.openyolo.protocol.internal.CustomMatchers.notNullOrEmptyString;
 import static org.valid4j.Validation.validate;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
-import android.content.pm.PackageInfo;
-import android.content.pm.PackageManager;
 import android.content.pm.Signature;
 import android.net.Uri;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Base64;
-import android.util.Log;
 import java.io.IOException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import org.openyolo.protocol.internal.UriValidator;
+import org.openyolo.protocol.internal.WeakInternPool;
 
 
 /**
@@ -51,22 +48,47 @@ import java.security.NoSuchAlgorithmException;
  * @see <a href="http://spec.openyolo.org/openyolo-android-spec.html#authentication-domains">
  *     OpenYOLO Specification: Authentication Domain</a>
  */
-@SuppressLint("PackageManagerGetSignatures")
 public final class AuthenticationDomain implements Comparable<AuthenticationDomain> {
 
-    private static final String TAG = "AuthenticationDomain";
-
     private static final String DIGEST_SHA_512 = "SHA-512";
     private static final String SCHEME_ANDROID = "android";
     private static final String SCHEME_HTTP = "http";
     private static final String SCHEME_HTTPS = "https";
 
+    private static final WeakInternPool<AuthenticationDomain> POOL = new WeakInternPool<>();
+
     private final String mUriStr;
 
     /**
-     * Initially null, created on-demand for each thread from mUriStr.
+     * The index of the scheme separator in mUriStr. The authority follows the separator and
+     * extends to the end of the string.
+     */
+    private final int mSchemeEnd;
+
+    /**
+     * The bounds of the host within mUriStr, excluding any user information and port.
+     */
+    private final int mHostStart;
+    private final int mHostEnd;
+
+    /**
+     * Returns the canonical authentication domain for the provided URI string. Equivalent
+     * authentication domains that are in use at the same time are represented by the same
+     * instance, which reduces memory use and makes equality checks between them trivial.
+     * @throws IllegalArgumentException if the string is not a valid authentication domain.
      */
-    private final ThreadLocal<Uri> mParsedUri = new ThreadLocal<>();
+    @NonNull
+    public static AuthenticationDomain of(@NonNull String authDomainString) {
+        if (authDomainString != null) {
+            AuthenticationDomain authDomain = POOL.get(authDomainString);
+            if (authDomain != null) {
+                return authDomain;
+            }
+        }
+
+        AuthenticationDomain authDomain = new AuthenticationDomain(authDomainString);
+        return POOL.intern(authDomain.mUriStr, authDomain);
+    }
 
     /**
      * Creates an authentication domain that represents the current package, as identified
@@ -87,7 +109,9 @@ public final class AuthenticationDomain implements Comparable<AuthenticationDoma
 
     /**
      * Returns the {@link AuthenticationDomain} for the application installed on the current device
-     * associated with the given package name otherwise {@code null}.
+     * associated with the given package name otherwise {@code null}. The result is retained by
+     * the {@link PackageIdentityCache}, so that the package signature is only hashed again if the
+     * package changes.
      */
     @Nullable
     public static AuthenticationDomain fromPackageName(
@@ -96,23 +120,8 @@ public final class AuthenticationDomain implements Comparable<AuthenticationDoma
         validate(context, notNullValue(), IllegalArgumentException.class);
         validate(packageName, notNullOrEmptyString(), IllegalArgumentException.class);
 
-        PackageManager pm = context.getPackageManager();
-        PackageInfo packageInfo;
-        try {
-            packageInfo = pm.getPackageInfo(packageName, PackageManager.GET_SIGNATURES);
-        } catch (PackageManager.NameNotFoundException ex) {
-            return null;
-        }
-
-        if (1 != packageInfo.signatures.length) {
-            Log.w(TAG,
-                    String.format(
-                            "application (%s) did not have exactly one signature",
-                            packageName));
-            return null;
-        }
-
-        return createAndroidAuthDomain(packageName, packageInfo.signatures[0]);
+        return PackageIdentityCache.getInstance(context)
+                .getAuthenticationDomain(context, packageName);
     }
 
     /**
@@ -126,7 +135,7 @@ public final class AuthenticationDomain implements Comparable<AuthenticationDoma
         validate(packageName, notNullOrEmptyString(), IllegalArgumentException.class);
         validate(signature, notNullValue(), IllegalArgumentException.class);
 
-        return new AuthenticationDomain(
+        return of(
                 new Uri.Builder()
                         .scheme(SCHEME_ANDROID)
                         .encodedAuthority(generateSignatureHash(signature) + "@" + packageName)
@@ -160,7 +169,7 @@ public final class AuthenticationDomain implements Comparable<AuthenticationDoma
         validate(authDomain, notNullValue(), MalformedDataException.class);
 
         try {
-            return new AuthenticationDomain(authDomain.getUri());
+            return of(authDomain.getUri());
         } catch (IllegalArgumentException ex) {
             throw new MalformedDataException(ex);
         }
@@ -181,29 +190,37 @@ public final class AuthenticationDomain implements Comparable<AuthenticationDoma
     /**
      * Creates an authentication domain from the provided String representation. If the string
      * provided is not a valid authentication domain, an {@link IllegalArgumentException}
-     * will be thrown.
+     * will be thrown. Where instances are long-lived or numerous, {@link #of(String)} should be
+     * preferred.
      */
     public AuthenticationDomain(@NonNull String authDomainString) {
-        mUriStr = validate(
-                authDomainString,
-                isValidAuthenticationDomain(),
-                IllegalArgumentException.class);
+        mSchemeEnd = UriValidator.validateAuthorityUri(authDomainString);
+        if (mSchemeEnd == UriValidator.INVALID) {
+            throw new IllegalArgumentException(
+                    "Not a valid authentication domain: " + authDomainString);
+        }
+
+        mUriStr = authDomainString;
+
+        int authorityStart = UriValidator.getAuthorityStart(mSchemeEnd);
+        int authorityEnd = mUriStr.length();
+        mHostStart = UriValidator.findHostStart(mUriStr, authorityStart, authorityEnd);
+        mHostEnd = UriValidator.findHostEnd(mUriStr, mHostStart, authorityEnd);
     }
 
     /**
      * Determines whether the authentication domain refers to an Android application.
      */
     public boolean isAndroidAuthDomain() {
-        return SCHEME_ANDROID.equals(getParsedUri().getScheme());
+        return UriValidator.hasScheme(mUriStr, mSchemeEnd, SCHEME_ANDROID);
     }
 
     /**
      * Determines whether the authentication domain refers to a Web domain.
      */
     public boolean isWebAuthDomain() {
-        Uri parsedUri = getParsedUri();
-        return SCHEME_HTTP.equals(parsedUri.getScheme())
-                || SCHEME_HTTPS.equals(parsedUri.getScheme());
+        return UriValidator.hasScheme(mUriStr, mSchemeEnd, SCHEME_HTTP)
+                || UriValidator.hasScheme(mUriStr, mSchemeEnd, SCHEME_HTTPS);
     }
 
     /**
@@ -216,7 +233,7 @@ public final class AuthenticationDomain implements Comparable<AuthenticationDoma
         if (!isAndroidAuthDomain()) {
             throw new IllegalStateException("Authentication domain is not an Android domain");
         }
-        return getParsedUri().getHost();
+        return Uri.decode(mUriStr.substring(mHostStart, mHostEnd));
     }
 
     /**
@@ -259,14 +276,4 @@ public final class AuthenticationDomain implements Comparable<AuthenticationDoma
     public int compareTo(@NonNull AuthenticationDomain authenticationDomain) {
         return mUriStr.compareTo(authenticationDomain.mUriStr);
     }
-
-    private Uri getParsedUri() {
-        Uri parsedUri = mParsedUri.get();
-        if (parsedUri == null) {
-            parsedUri = Uri.parse(mUriStr);
-            mParsedUri.set(parsedUri);
-        }
-
-        return parsedUri;
-    }
 }
@@ -19,7 +19,8 @@ import static org.valid4j.Validation.validate;
 
 import android.support.annotation.NonNull;
 import java.io.IOException;
-import org.openyolo.protocol.internal.CustomMatchers;
+import org.openyolo.protocol.internal.UriValidator;
+import org.openyolo.protocol.internal.WeakInternPool;
 
 
 /**
@@ -31,6 +32,27 @@ import org.openyolo.protocol.internal.CustomMatchers;
  */
 public final class AuthenticationMethod implements Comparable<AuthenticationMethod> {
 
+    private static final WeakInternPool<AuthenticationMethod> POOL = new WeakInternPool<>();
+
+    /**
+     * Returns the canonical authentication method for the provided URI string. Equivalent
+     * authentication methods that are in use at the same time are represented by the same
+     * instance, which reduces memory use and makes equality checks between them trivial.
+     * @throws IllegalArgumentException if the string is not a valid authentication method.
+     */
+    @NonNull
+    public static AuthenticationMethod of(@NonNull String authMethodUriStr) {
+        if (authMethodUriStr != null) {
+            AuthenticationMethod authMethod = POOL.get(authMethodUriStr);
+            if (authMethod != null) {
+                return authMethod;
+            }
+        }
+
+        AuthenticationMethod authMethod = new AuthenticationMethod(authMethodUriStr);
+        return POOL.intern(authMethod.mUri, authMethod);
+    }
+
     /**
      * Creates an authentication method from its protocol buffer equivalent, in byte form.
      * @throws MalformedDataException if the given protocol buffer byte array is null or the parsed
@@ -57,7 +79,7 @@ public final class AuthenticationMethod implements Comparable<AuthenticationMeth
         validate(authMethod, notNullValue(), MalformedDataException.class);
 
         try {
-            return new AuthenticationMethod(authMethod.getUri());
+            return of(authMethod.getUri());
         } catch (IllegalArgumentException ex) {
             throw new MalformedDataException(ex);
         }
@@ -66,13 +88,16 @@ public final class AuthenticationMethod implements Comparable<AuthenticationMeth
     private final String mUri;
 
     /**
-     * Creates an authentication method from a URI string.
+     * Creates an authentication method from a URI string. Where instances are long-lived or
+     * numerous, {@link #of(String)} should be preferred.
      */
     public AuthenticationMethod(@NonNull String authMethodUriStr) {
-        mUri = validate(
-                authMethodUriStr,
-                CustomMatchers.isValidAuthenticationMethod(),
-                IllegalArgumentException.class);
+        if (UriValidator.validateAuthorityUri(authMethodUriStr) == UriValidator.INVALID) {
+            throw new IllegalArgumentException(
+                    "Not a valid authentication method: " + authMethodUriStr);
+        }
+
+        mUri = authMethodUriStr;
     }
 
     /**
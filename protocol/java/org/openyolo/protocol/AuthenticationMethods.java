@@ -31,7 +31,7 @@ public final class AuthenticationMethods {
      * identifier. Authentication typically occurs using the email address and a password, but
      * is also possible using the email address as a recovery method.
      */
-    public static final AuthenticationMethod EMAIL = new AuthenticationMethod("openyolo://email");
+    public static final AuthenticationMethod EMAIL = AuthenticationMethod.of("openyolo://email");
 
     /**
      * Phone number based authentication, optionally with a password. This authentication type
@@ -42,14 +42,14 @@ public final class AuthenticationMethods {
      * <p>When used to request a hint, OpenYOLO providers _MUST_ return the selected phone number
      * in E.164 format.
      */
-    public static final AuthenticationMethod PHONE = new AuthenticationMethod("openyolo://phone");
+    public static final AuthenticationMethod PHONE = AuthenticationMethod.of("openyolo://phone");
 
     /**
      * User name and password based authentication. This authentication type requires the entry
      * of a unicode identifier string and a password.
      */
     public static final AuthenticationMethod USER_NAME =
-            new AuthenticationMethod("openyolo://username");
+            AuthenticationMethod.of("openyolo://username");
 
     /**
      * Google Sign-in authentication.
@@ -58,7 +58,7 @@ public final class AuthenticationMethods {
      *     Android</a>.
      */
     public static final AuthenticationMethod GOOGLE =
-            new AuthenticationMethod("https://accounts.google.com");
+            AuthenticationMethod.of("https://accounts.google.com");
 
     /**
      * Facebook Login authentication.
@@ -67,7 +67,7 @@ public final class AuthenticationMethods {
      *     for Android</a>.
      */
     public static final AuthenticationMethod FACEBOOK =
-            new AuthenticationMethod("https://www.facebook.com");
+            AuthenticationMethod.of("https://www.facebook.com");
 
     private AuthenticationMethods() {
         throw new IllegalStateException("not intended to be constructed");
@@ -32,8 +32,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import org.openyolo.protocol.internal.AdditionalPropertiesUtil;
-import org.openyolo.protocol.internal.ByteStringConverters;
-import org.openyolo.protocol.internal.CollectionConverter;
 
 /**
  * A representation of a credential for use in sign-in. This provides a higher-level,
@@ -71,12 +69,15 @@ public final class Credential implements Parcelable, AdditionalPropertiesContain
     }
 
     /**
-     * Creates a credential from its protocol buffer equivalent.
+     * Creates a credential from its protocol buffer equivalent. The required properties of the
+     * credential are validated immediately, while the display picture URI and additional
+     * property values are only decoded from the protocol buffer when first accessed.
      * @throws MalformedDataException if the given protocol buffer is invalid.
      */
     public static Credential fromProtobuf(Protobufs.Credential credential)
             throws MalformedDataException {
-        return new Credential.Builder(credential).build();
+        validate(credential, notNullValue(), MalformedDataException.class);
+        return new Credential(credential);
     }
 
     @NonNull
@@ -92,7 +93,9 @@ public final class Credential implements Parcelable, AdditionalPropertiesContain
     private final String mDisplayName;
 
     @Nullable
-    private final Uri mDisplayPicture;
+    private volatile Uri mDisplayPicture;
+
+    private volatile boolean mDisplayPictureDecoded;
 
     @Nullable
     private final String mPassword;
@@ -103,22 +106,97 @@ public final class Credential implements Parcelable, AdditionalPropertiesContain
     @NonNull
     private final Map<String, ByteString> mAdditionalProps;
 
+    @Nullable
+    private volatile Protobufs.Credential mProto;
+
+    @Nullable
+    private volatile byte[] mEncoding;
+
     private Credential(Builder builder) {
         mId = builder.mId;
         mAuthDomain = builder.mAuthDomain;
         mAuthMethod = builder.mAuthMethod;
         mDisplayName = builder.mDisplayName;
         mDisplayPicture = builder.mDisplayPicture;
+        mDisplayPictureDecoded = true;
         mPassword = builder.mPassword;
         mIdToken = builder.mIdToken;
         mAdditionalProps = Collections.unmodifiableMap(builder.mAdditionalProps);
     }
 
+    private Credential(@NonNull Protobufs.Credential proto) throws MalformedDataException {
+        try {
+            mId = validate(proto.getId(), notNullOrEmptyString(), IllegalArgumentException.class);
+
+            // the protocol buffer map is already immutable, and its values are only copied to
+            // byte arrays when requested.
+            mAdditionalProps = AdditionalPropertiesUtil.validateAdditionalPropertiesFromProto(
+                    proto.getAdditionalPropsMap());
+        } catch (IllegalArgumentException ex) {
+            throw new MalformedDataException(ex);
+        }
+
+        mAuthMethod = AuthenticationMethod.fromProtobuf(proto.getAuthMethod());
+        mAuthDomain = AuthenticationDomain.fromProtobuf(proto.getAuthDomain());
+        mDisplayName = nullifyEmptyString(proto.getDisplayName());
+        mPassword = nullifyEmptyString(proto.getPassword());
+        mIdToken = nullifyEmptyString(proto.getIdToken());
+
+        // the credential is already in its protocol buffer form, so it can be returned as-is
+        mProto = proto;
+    }
+
     /**
      * Creates a protocol buffer representation of the credential, for transmission or storage.
+     * The protocol buffer is created once, and the same instance is returned on subsequent
+     * calls.
      */
     @NonNull
     public Protobufs.Credential toProtobuf() {
+        Protobufs.Credential proto = mProto;
+        if (proto == null) {
+            proto = createProtobuf();
+            mProto = proto;
+        }
+
+        return proto;
+    }
+
+    /**
+     * Returns the encoded form of {@link #toProtobuf()}. The encoding is computed once, and a new
+     * copy of it is returned on each call.
+     */
+    @NonNull
+    public byte[] toProtobufBytes() {
+        return getEncoding().clone();
+    }
+
+    private byte[] getEncoding() {
+        byte[] encoding = mEncoding;
+        if (encoding == null) {
+            encoding = toProtobuf().toByteArray();
+            mEncoding = encoding;
+        }
+
+        return encoding;
+    }
+
+    /**
+     * Decodes a display picture URI from its protocol buffer form. As the display picture is
+     * optional, a value that is not a valid HTTP or HTTPS URI is treated as absent rather than
+     * invalidating the whole credential.
+     */
+    @Nullable
+    private static Uri decodeDisplayPicture(@NonNull String displayPictureStr) {
+        if (nullifyEmptyString(displayPictureStr) == null) {
+            return null;
+        }
+
+        Uri displayPicture = Uri.parse(displayPictureStr);
+        return isWebUri().matches(displayPicture) ? displayPicture : null;
+    }
+
+    private Protobufs.Credential createProtobuf() {
         Protobufs.Credential.Builder builder = Protobufs.Credential.newBuilder()
                 .setId(mId)
                 .setAuthMethod(mAuthMethod.toProtobuf())
@@ -188,6 +266,11 @@ public final class Credential implements Parcelable, AdditionalPropertiesContain
      */
     @Nullable
     public Uri getDisplayPicture() {
+        if (!mDisplayPictureDecoded) {
+            mDisplayPicture = decodeDisplayPicture(toProtobuf().getDisplayPictureUri());
+            mDisplayPictureDecoded = true;
+        }
+
         return mDisplayPicture;
     }
 
@@ -234,7 +317,7 @@ public final class Credential implements Parcelable, AdditionalPropertiesContain
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
-        byte[] encoded = toProtobuf().toByteArray();
+        byte[] encoded = getEncoding();
         dest.writeInt(encoded.length);
         dest.writeByteArray(encoded);
     }
@@ -253,34 +336,6 @@ public final class Credential implements Parcelable, AdditionalPropertiesContain
         private String mIdToken;
         private Map<String, ByteString> mAdditionalProps = new HashMap<>();
 
-        /**
-         * Starts the process of creating a credential, based on the properties of the
-         * provided protocol buffer representation of the credential. The protocol buffer
-         * must contain valid data for a credential.
-         * @throws MalformedDataException if the given protocol buffer is invalid.
-         */
-        private Builder(@NonNull Protobufs.Credential proto) throws MalformedDataException {
-            try {
-                // required properties
-                setIdentifier(proto.getId());
-                setAuthenticationMethod(AuthenticationMethod.fromProtobuf(proto.getAuthMethod()));
-                setAuthenticationDomain(AuthenticationDomain.fromProtobuf(proto.getAuthDomain()));
-
-                // optional properties
-
-                setIdToken(proto.getIdToken());
-                setDisplayName(proto.getDisplayName());
-                setDisplayPicture(proto.getDisplayPictureUri());
-                setPassword(proto.getPassword());
-                setAdditionalProperties(
-                        CollectionConverter.convertMapValues(
-                                proto.getAdditionalPropsMap(),
-                                ByteStringConverters.BYTE_STRING_TO_BYTE_ARRAY));
-            } catch (IllegalArgumentException ex) {
-                throw new MalformedDataException(ex);
-            }
-        }
-
         /**
          * Starts the process of creating a credential, with the mandatory identifier,
          * authentication method and authentication domain. To create a credential for your
@@ -318,8 +373,8 @@ public final class Credential implements Parcelable, AdditionalPropertiesContain
                 @NonNull String authenticationMethod,
                 @NonNull String authenticationDomain) {
             this(identifier,
-                    new AuthenticationMethod(authenticationMethod),
-                    new AuthenticationDomain(authenticationDomain));
+                    AuthenticationMethod.of(authenticationMethod),
+                    AuthenticationDomain.of(authenticationDomain));
         }
 
         /**
@@ -14,7 +14,12 @@
 
 package org.openyolo.protocol;
 
+import static java.util.Collections.EMPTY_LIST;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.openyolo.protocol.internal.AdditionalPropertiesUtil.validateAdditionalProperties;
 import static org.openyolo.protocol.internal.AdditionalPropertiesUtil.validateAdditionalPropertiesFromProto;
 import static org.valid4j.Validation.validate;
@@ -24,8 +29,10 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.openyolo.protocol.internal.AdditionalPropertiesUtil;
 import org.openyolo.protocol.internal.ClientVersionUtil;
@@ -34,6 +41,11 @@ import org.openyolo.protocol.internal.IntentProtocolBufferExtractor;
 /**
  * A request to delete a credential, to be sent to a credential provider on the device.
  *
+ * <p>A batch request carries multiple credentials, to be confirmed and deleted together. Batch
+ * requests are only sent to providers that declare support for
+ * {@link ProtocolConstants#BATCH_DELETE_CREDENTIAL_ACTION}, which report the outcome for each
+ * credential via {@link CredentialDeleteResult#getItemResultCodes()}.
+ *
  * @see <a href="http://spec.openyolo.org/openyolo-android-spec.html#credential-deletion">
  *     OpenYOLO Specification: Credential Deletion</a>
  */
@@ -46,6 +58,13 @@ public final class CredentialDeleteRequest implements AdditionalPropertiesContai
         return new Builder(credential).build();
     }
 
+    /**
+     * Returns a batch deletion request for the given credentials, which must be non-empty.
+     */
+    public static CredentialDeleteRequest fromCredentials(List<Credential> credentials) {
+        return new Builder(credentials).build();
+    }
+
     /**
      * Creates a credential deletion request from its protocol buffer equivalent, in byte array
      * form.
@@ -92,22 +111,44 @@ public final class CredentialDeleteRequest implements AdditionalPropertiesContai
     }
 
     @NonNull
-    private final Credential mCredential;
+    private final List<Credential> mCredentials;
 
     @NonNull
     private final Map<String, ByteString> mAdditionalProps;
 
+    @Nullable
+    private volatile Protobufs.CredentialDeleteRequest mProto;
+
+    @Nullable
+    private volatile byte[] mEncoding;
+
     private CredentialDeleteRequest(Builder builder) {
-        mCredential = builder.mCredential;
+        mCredentials = Collections.unmodifiableList(new ArrayList<>(builder.mCredentials));
         mAdditionalProps = Collections.unmodifiableMap(builder.mAdditionalProps);
     }
 
     /**
-     * The credential to be deleted.
+     * The credential to be deleted. For batch requests, this is the first of the credentials.
      */
     @NonNull
     public Credential getCredential() {
-        return mCredential;
+        return mCredentials.get(0);
+    }
+
+    /**
+     * The credentials to be deleted, in request order. Contains a single credential unless this
+     * is a batch request.
+     */
+    @NonNull
+    public List<Credential> getCredentials() {
+        return mCredentials;
+    }
+
+    /**
+     * Returns {@code true} if this request carries more than one credential.
+     */
+    public boolean isBatch() {
+        return mCredentials.size() > 1;
     }
 
     @Override
@@ -130,13 +171,51 @@ public final class CredentialDeleteRequest implements AdditionalPropertiesContai
 
     /**
      * Converts the request to its protocol buffer equivalent.
+     * The protocol buffer is created once, and the same instance is returned on subsequent
+     * calls.
      */
+    @NonNull
     public Protobufs.CredentialDeleteRequest toProtobuf() {
-        return Protobufs.CredentialDeleteRequest.newBuilder()
-                .setClientVersion(ClientVersionUtil.getClientVersion())
-                .setCredential(mCredential.toProtobuf())
-                .putAllAdditionalProps(mAdditionalProps)
-                .build();
+        Protobufs.CredentialDeleteRequest proto = mProto;
+        if (proto == null) {
+            proto = createProtobuf();
+            mProto = proto;
+        }
+
+        return proto;
+    }
+
+    /**
+     * Returns the encoded form of {@link #toProtobuf()}. The encoding is computed once, and a new
+     * copy of it is returned on each call.
+     */
+    @NonNull
+    public byte[] toProtobufBytes() {
+        return getEncoding().clone();
+    }
+
+    private byte[] getEncoding() {
+        byte[] encoding = mEncoding;
+        if (encoding == null) {
+            encoding = toProtobuf().toByteArray();
+            mEncoding = encoding;
+        }
+
+        return encoding;
+    }
+
+    private Protobufs.CredentialDeleteRequest createProtobuf() {
+        Protobufs.CredentialDeleteRequest.Builder builder =
+                Protobufs.CredentialDeleteRequest.newBuilder()
+                        .setClientVersion(ClientVersionUtil.getClientVersion())
+                        .setCredential(getCredential().toProtobuf())
+                        .putAllAdditionalProps(mAdditionalProps);
+
+        for (int i = 1; i < mCredentials.size(); i++) {
+            builder.addAdditionalCredentials(mCredentials.get(i).toProtobuf());
+        }
+
+        return builder.build();
     }
 
     /**
@@ -146,7 +225,7 @@ public final class CredentialDeleteRequest implements AdditionalPropertiesContai
             implements AdditionalPropertiesBuilder<CredentialDeleteRequest, Builder> {
 
         @NonNull
-        private Credential mCredential;
+        private List<Credential> mCredentials;
 
         @NonNull
         private Map<String, ByteString> mAdditionalProps = new HashMap<>();
@@ -157,7 +236,14 @@ public final class CredentialDeleteRequest implements AdditionalPropertiesContai
          */
         private Builder(Protobufs.CredentialDeleteRequest proto) throws MalformedDataException {
             try {
-                setCredential(Credential.fromProtobuf(proto.getCredential()));
+                List<Credential> credentials =
+                        new ArrayList<>(1 + proto.getAdditionalCredentialsCount());
+                credentials.add(Credential.fromProtobuf(proto.getCredential()));
+                for (Protobufs.Credential credential : proto.getAdditionalCredentialsList()) {
+                    credentials.add(Credential.fromProtobuf(credential));
+                }
+
+                setCredentials(credentials);
                 setAdditionalPropertiesFromProto(proto.getAdditionalPropsMap());
             } catch (IllegalArgumentException ex) {
                 throw new MalformedDataException(ex);
@@ -173,12 +259,33 @@ public final class CredentialDeleteRequest implements AdditionalPropertiesContai
         }
 
         /**
-         * Specifies the credential to be deleted. Must not be null.
+         * Starts the process of describing a batch request, specifying the credentials.
+         */
+        private Builder(@NonNull List<Credential> credentials) {
+            setCredentials(credentials);
+        }
+
+        /**
+         * Specifies the credential to be deleted, replacing any previously specified credentials.
+         * Must not be null.
          */
         public Builder setCredential(@NonNull Credential credential) {
             validate(credential, notNullValue(), IllegalArgumentException.class);
 
-            mCredential = credential;
+            mCredentials = Collections.singletonList(credential);
+            return this;
+        }
+
+        /**
+         * Specifies the credentials to be deleted, in order. Must be non-empty, and must not
+         * contain null credentials.
+         */
+        public Builder setCredentials(@NonNull List<Credential> credentials) {
+            validate(credentials, notNullValue(), IllegalArgumentException.class);
+            validate(credentials, not(hasItem(nullValue())), IllegalArgumentException.class);
+            validate(credentials, not(equalTo(EMPTY_LIST)), IllegalArgumentException.class);
+
+            mCredentials = new ArrayList<>(credentials);
             return this;
         }
 
@@ -14,6 +14,9 @@
 
 package org.openyolo.protocol;
 
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.core.IsNull.notNullValue;
 import static org.valid4j.Validation.validate;
 
@@ -22,8 +25,10 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.openyolo.protocol.internal.AdditionalPropertiesUtil;
 import org.openyolo.protocol.internal.IntentProtocolBufferExtractor;
@@ -190,11 +195,15 @@ public final class CredentialDeleteResult implements AdditionalPropertiesContain
 
     private final int mResultCode;
 
+    @NonNull
+    private final List<Integer> mItemResultCodes;
+
     @NonNull
     private final Map<String, ByteString> mAdditionalProps;
 
     private CredentialDeleteResult(Builder builder) {
         mResultCode = builder.mResultCode;
+        mItemResultCodes = Collections.unmodifiableList(builder.mItemResultCodes);
         mAdditionalProps = Collections.unmodifiableMap(builder.mAdditionalProps);
     }
 
@@ -212,6 +221,17 @@ public final class CredentialDeleteResult implements AdditionalPropertiesContain
         return mResultCode;
     }
 
+    /**
+     * The outcome for each credential of a batch deletion request, in request order. Each code is
+     * one of the result codes defined by this class. Empty if the provider did not report
+     * outcomes per credential, in which case only the overall {@link #getResultCode() result
+     * code} is available.
+     */
+    @NonNull
+    public List<Integer> getItemResultCodes() {
+        return mItemResultCodes;
+    }
+
     @Override
     @NonNull
     public Map<String, byte[]> getAdditionalProperties() {
@@ -243,6 +263,7 @@ public final class CredentialDeleteResult implements AdditionalPropertiesContain
     public Protobufs.CredentialDeleteResult toProtobuf() {
         return Protobufs.CredentialDeleteResult.newBuilder()
                 .setResultCodeValue(mResultCode)
+                .addAllItemResultCodesValue(mItemResultCodes)
                 .putAllAdditionalProps(mAdditionalProps)
                 .build();
     }
@@ -266,6 +287,9 @@ public final class CredentialDeleteResult implements AdditionalPropertiesContain
 
         private int mResultCode;
 
+        @NonNull
+        private List<Integer> mItemResultCodes = Collections.emptyList();
+
         @NonNull
         private Map<String, ByteString> mAdditionalProps = new HashMap<>();
 
@@ -278,6 +302,7 @@ public final class CredentialDeleteResult implements AdditionalPropertiesContain
         private Builder(Protobufs.CredentialDeleteResult proto) throws MalformedDataException {
             try {
                 setResultCode(proto.getResultCodeValue());
+                setItemResultCodes(proto.getItemResultCodesValueList());
                 setAdditionalPropertiesFromProto(proto.getAdditionalPropsMap());
             } catch (IllegalArgumentException ex) {
                 throw new MalformedDataException(ex);
@@ -300,6 +325,22 @@ public final class CredentialDeleteResult implements AdditionalPropertiesContain
             return this;
         }
 
+        /**
+         * Specifies the outcome for each credential of a batch deletion request, in request order.
+         * The list must not contain null values.
+         */
+        @NonNull
+        public Builder setItemResultCodes(@Nullable List<Integer> itemResultCodes) {
+            if (itemResultCodes == null) {
+                mItemResultCodes = Collections.emptyList();
+                return this;
+            }
+
+            validate(itemResultCodes, not(hasItem(nullValue())), IllegalArgumentException.class);
+            mItemResultCodes = new ArrayList<>(itemResultCodes);
+            return this;
+        }
+
         @Override
         @NonNull
         public Builder setAdditionalProperties(@Nullable Map<String, byte[]> additionalProperties) {
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.protocol;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.valid4j.Validation.validate;
+
+import android.content.Intent;
+import android.support.annotation.NonNull;
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * A request for a credential which, if no credential is available, falls back to a request for
+ * a login hint within the same flow. This avoids the separate provider query and activity
+ * transitions that would be incurred by issuing a hint request after a credential request has
+ * failed.
+ *
+ * @see CredentialOrHintRetrieveResult
+ */
+public final class CredentialOrHintRetrieveRequest {
+
+    @NonNull
+    private final CredentialRetrieveRequest mCredentialRequest;
+
+    @NonNull
+    private final HintRetrieveRequest mHintRequest;
+
+    /**
+     * Creates a combined request, where both the credential and hint requests are for the
+     * given set of authentication methods.
+     */
+    @NonNull
+    public static CredentialOrHintRetrieveRequest fromAuthMethods(
+            AuthenticationMethod... authenticationMethods) {
+        return fromRequests(
+                CredentialRetrieveRequest.fromAuthMethods(authenticationMethods),
+                HintRetrieveRequest.fromAuthMethods(authenticationMethods));
+    }
+
+    /**
+     * Creates a combined request, where both the credential and hint requests are for the
+     * given set of authentication methods.
+     */
+    @NonNull
+    public static CredentialOrHintRetrieveRequest fromAuthMethods(
+            Set<AuthenticationMethod> authenticationMethods) {
+        return fromRequests(
+                CredentialRetrieveRequest.fromAuthMethods(authenticationMethods),
+                HintRetrieveRequest.fromAuthMethods(authenticationMethods));
+    }
+
+    /**
+     * Creates a combined request from the given credential request, and the hint request that
+     * is used if no credential is available.
+     */
+    @NonNull
+    public static CredentialOrHintRetrieveRequest fromRequests(
+            @NonNull CredentialRetrieveRequest credentialRequest,
+            @NonNull HintRetrieveRequest hintRequest) {
+        return new CredentialOrHintRetrieveRequest(credentialRequest, hintRequest);
+    }
+
+    /**
+     * Reads a combined request from its protocol buffer form.
+     * @throws MalformedDataException if the given protocol buffer was not valid.
+     */
+    @NonNull
+    public static CredentialOrHintRetrieveRequest fromProtobuf(
+            Protobufs.CredentialOrHintRetrieveRequest proto)
+            throws MalformedDataException {
+        validate(proto, notNullValue(), MalformedDataException.class);
+        if (!proto.hasCredentialRequest() || !proto.hasHintRequest()) {
+            throw new MalformedDataException("credential and hint requests are both required");
+        }
+
+        return fromRequests(
+                CredentialRetrieveRequest.fromProtobuf(proto.getCredentialRequest()),
+                HintRetrieveRequest.fromProtobuf(proto.getHintRequest()));
+    }
+
+    /**
+     * Reads a combined request from its protocol buffer byte array form.
+     * @throws MalformedDataException if the given protocol buffer was not valid.
+     */
+    @NonNull
+    public static CredentialOrHintRetrieveRequest fromProtobufBytes(byte[] protobufBytes)
+            throws MalformedDataException {
+        validate(protobufBytes, notNullValue(), MalformedDataException.class);
+
+        try {
+            return fromProtobuf(
+                    Protobufs.CredentialOrHintRetrieveRequest.parseFrom(protobufBytes));
+        } catch (IOException ex) {
+            throw new MalformedDataException(ex);
+        }
+    }
+
+    /**
+     * Extracts a combined request from the extras of the given request intent.
+     * @throws MalformedDataException if the intent does not contain a valid combined request.
+     */
+    @NonNull
+    public static CredentialOrHintRetrieveRequest fromRequestIntent(
+            @NonNull Intent requestIntent)
+            throws MalformedDataException {
+        validate(requestIntent, notNullValue(), MalformedDataException.class);
+        if (!requestIntent.hasExtra(ProtocolConstants.EXTRA_RETRIEVE_OR_HINT_REQUEST)) {
+            throw new MalformedDataException(
+                    "credential or hint retrieve request missing in intent data");
+        }
+
+        return fromProtobufBytes(requestIntent.getByteArrayExtra(
+                ProtocolConstants.EXTRA_RETRIEVE_OR_HINT_REQUEST));
+    }
+
+    private CredentialOrHintRetrieveRequest(
+            @NonNull CredentialRetrieveRequest credentialRequest,
+            @NonNull HintRetrieveRequest hintRequest) {
+        validate(credentialRequest, notNullValue(), NullPointerException.class);
+        validate(hintRequest, notNullValue(), NullPointerException.class);
+        mCredentialRequest = credentialRequest;
+        mHintRequest = hintRequest;
+    }
+
+    /**
+     * The request for a credential, which is attempted first.
+     */
+    @NonNull
+    public CredentialRetrieveRequest getCredentialRetrieveRequest() {
+        return mCredentialRequest;
+    }
+
+    /**
+     * The request for a hint, which is used if no credential is available.
+     */
+    @NonNull
+    public HintRetrieveRequest getHintRetrieveRequest() {
+        return mHintRequest;
+    }
+
+    /**
+     * Creates a protocol buffer representation of the combined request, for transmission or
+     * storage.
+     */
+    @NonNull
+    public Protobufs.CredentialOrHintRetrieveRequest toProtocolBuffer() {
+        return Protobufs.CredentialOrHintRetrieveRequest.newBuilder()
+                .setCredentialRequest(mCredentialRequest.toProtocolBuffer())
+                .setHintRequest(mHintRequest.toProtocolBuffer())
+                .build();
+    }
+
+    /**
+     * Returns the encoded form of {@link #toProtocolBuffer()}.
+     */
+    @NonNull
+    public byte[] toProtocolBufferBytes() {
+        return toProtocolBuffer().toByteArray();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.protocol;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.valid4j.Validation.validate;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * The result of a {@link CredentialOrHintRetrieveRequest combined credential or hint request}.
+ * Exactly one of a credential retrieve result or a hint retrieve result is carried, depending
+ * on whether the flow fell back to retrieving a hint.
+ */
+public final class CredentialOrHintRetrieveResult {
+
+    /**
+     * Pre-built result that indicates that the provider returned a response that could not be
+     * interpreted.
+     */
+    public static final CredentialOrHintRetrieveResult UNKNOWN =
+            fromCredentialRetrieveResult(CredentialRetrieveResult.UNKNOWN);
+
+    @Nullable
+    private final CredentialRetrieveResult mCredentialResult;
+
+    @Nullable
+    private final HintRetrieveResult mHintResult;
+
+    /**
+     * Creates a combined result for a flow that completed with a credential retrieve result.
+     */
+    @NonNull
+    public static CredentialOrHintRetrieveResult fromCredentialRetrieveResult(
+            @NonNull CredentialRetrieveResult credentialResult) {
+        validate(credentialResult, notNullValue(), NullPointerException.class);
+        return new CredentialOrHintRetrieveResult(credentialResult, null);
+    }
+
+    /**
+     * Creates a combined result for a flow that fell back to retrieving a hint.
+     */
+    @NonNull
+    public static CredentialOrHintRetrieveResult fromHintRetrieveResult(
+            @NonNull HintRetrieveResult hintResult) {
+        validate(hintResult, notNullValue(), NullPointerException.class);
+        return new CredentialOrHintRetrieveResult(null, hintResult);
+    }
+
+    private CredentialOrHintRetrieveResult(
+            @Nullable CredentialRetrieveResult credentialResult,
+            @Nullable HintRetrieveResult hintResult) {
+        mCredentialResult = credentialResult;
+        mHintResult = hintResult;
+    }
+
+    /**
+     * Returns {@code true} if either a credential or a hint was selected.
+     */
+    public boolean isSuccessful() {
+        return (mCredentialResult != null)
+                ? mCredentialResult.isSuccessful()
+                : mHintResult.isSuccessful();
+    }
+
+    /**
+     * Returns {@code true} if the flow fell back to retrieving a hint, in which case
+     * {@link #getHintRetrieveResult()} is available.
+     */
+    public boolean isHintResult() {
+        return mHintResult != null;
+    }
+
+    /**
+     * The credential retrieve result, if the flow did not fall back to retrieving a hint.
+     */
+    @Nullable
+    public CredentialRetrieveResult getCredentialRetrieveResult() {
+        return mCredentialResult;
+    }
+
+    /**
+     * The hint retrieve result, if the flow fell back to retrieving a hint.
+     */
+    @Nullable
+    public HintRetrieveResult getHintRetrieveResult() {
+        return mHintResult;
+    }
+
+    /**
+     * The selected credential, if available.
+     */
+    @Nullable
+    public Credential getCredential() {
+        return (mCredentialResult != null) ? mCredentialResult.getCredential() : null;
+    }
+
+    /**
+     * The selected hint, if available.
+     */
+    @Nullable
+    public Hint getHint() {
+        return (mHintResult != null) ? mHintResult.getHint() : null;
+    }
+}
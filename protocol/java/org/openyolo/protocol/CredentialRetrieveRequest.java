@@ -142,6 +142,12 @@ public class CredentialRetrieveRequest implements Parcelable, AdditionalProperti
     @NonNull
     private final boolean mRequireUserMediation;
 
+    @Nullable
+    private volatile Protobufs.CredentialRetrieveRequest mProto;
+
+    @Nullable
+    private volatile byte[] mEncoding;
+
     private CredentialRetrieveRequest(Builder builder) {
         mAuthMethods = Collections.unmodifiableSet(builder.mAuthMethods);
         mTokenProviders = Collections.unmodifiableMap(builder.mTokenProviders);
@@ -203,15 +209,47 @@ public class CredentialRetrieveRequest implements Parcelable, AdditionalProperti
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
-        byte[] protoBytes = toProtocolBuffer().toByteArray();
+        byte[] protoBytes = getEncoding();
         dest.writeInt(protoBytes.length);
         dest.writeByteArray(protoBytes);
     }
 
     /**
      * Converts the request into a protocol buffer, for storage or transmission.
+     * The protocol buffer is created once, and the same instance is returned on subsequent
+     * calls.
      */
+    @NonNull
     public Protobufs.CredentialRetrieveRequest toProtocolBuffer() {
+        Protobufs.CredentialRetrieveRequest proto = mProto;
+        if (proto == null) {
+            proto = createProtocolBuffer();
+            mProto = proto;
+        }
+
+        return proto;
+    }
+
+    /**
+     * Returns the encoded form of {@link #toProtocolBuffer()}. The encoding is computed once,
+     * and a new copy of it is returned on each call.
+     */
+    @NonNull
+    public byte[] toProtocolBufferBytes() {
+        return getEncoding().clone();
+    }
+
+    private byte[] getEncoding() {
+        byte[] encoding = mEncoding;
+        if (encoding == null) {
+            encoding = toProtocolBuffer().toByteArray();
+            mEncoding = encoding;
+        }
+
+        return encoding;
+    }
+
+    private Protobufs.CredentialRetrieveRequest createProtocolBuffer() {
         return Protobufs.CredentialRetrieveRequest.newBuilder()
                 .setClientVersion(ClientVersionUtil.getClientVersion())
                 .addAllAuthMethods(
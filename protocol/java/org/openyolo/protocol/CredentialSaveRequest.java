@@ -14,6 +14,11 @@
 
 package org.openyolo.protocol;
 
+import static java.util.Collections.EMPTY_LIST;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.core.IsNull.notNullValue;
 import static org.valid4j.Validation.validate;
 
@@ -23,8 +28,10 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import com.google.protobuf.ByteString;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.openyolo.protocol.internal.AdditionalPropertiesUtil;
 import org.openyolo.protocol.internal.ByteStringConverters;
@@ -36,6 +43,11 @@ import org.openyolo.protocol.internal.CollectionConverter;
  * encodes it in its associated protocol buffer byte array form in an activity intent
  * via the {@link ProtocolConstants#EXTRA_SAVE_REQUEST} extra.
  *
+ * <p>A batch request carries multiple credentials, to be confirmed and saved together. Batch
+ * requests are only sent to providers that declare support for
+ * {@link ProtocolConstants#BATCH_SAVE_CREDENTIAL_ACTION}, which report the outcome for each
+ * credential via {@link CredentialSaveResult#getItemResultCodes()}.
+ *
  * @see <a href="https://spec.openyolo.org/openyolo-android-spec.html#saving-credentials">
  *     OpenYOLO specification: Saving Credentials</a>
  */
@@ -48,11 +60,17 @@ public final class CredentialSaveRequest implements Parcelable, AdditionalProper
     public static final Creator<CredentialSaveRequest> CREATOR = new CredentialSaveRequestCreator();
 
     @NonNull
-    private final Credential mCredential;
+    private final List<Credential> mCredentials;
 
     @NonNull
     private final Map<String, ByteString> mAdditionalProperties;
 
+    @Nullable
+    private volatile Protobufs.CredentialSaveRequest mProto;
+
+    @Nullable
+    private volatile byte[] mEncoding;
+
     /**
      * Creates a credential save request from its protocol buffer byte array form.
      * @throws MalformedDataException if the given protocol buffer was invalid.
@@ -92,17 +110,41 @@ public final class CredentialSaveRequest implements Parcelable, AdditionalProper
         return new Builder(credential).build();
     }
 
+    /**
+     * Creates a batch {@link CredentialSaveRequest} from the given credentials, which must be
+     * non-empty.
+     */
+    public static CredentialSaveRequest fromCredentials(List<Credential> credentials) {
+        return new Builder(credentials).build();
+    }
+
     private CredentialSaveRequest(Builder builder) {
-        mCredential = builder.mCredential;
+        mCredentials = Collections.unmodifiableList(new ArrayList<>(builder.mCredentials));
         mAdditionalProperties = Collections.unmodifiableMap(builder.mAdditionalProps);
     }
 
     /**
-     * The credential to be saved.
+     * The credential to be saved. For batch requests, this is the first of the credentials.
      */
     @NonNull
     public Credential getCredential() {
-        return mCredential;
+        return mCredentials.get(0);
+    }
+
+    /**
+     * The credentials to be saved, in request order. Contains a single credential unless this
+     * is a batch request.
+     */
+    @NonNull
+    public List<Credential> getCredentials() {
+        return mCredentials;
+    }
+
+    /**
+     * Returns {@code true} if this request carries more than one credential.
+     */
+    public boolean isBatch() {
+        return mCredentials.size() > 1;
     }
 
     @Override
@@ -130,20 +172,58 @@ public final class CredentialSaveRequest implements Parcelable, AdditionalProper
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
-        byte[] protoBytes = toProtocolBuffer().toByteArray();
+        byte[] protoBytes = getEncoding();
         dest.writeInt(protoBytes.length);
         dest.writeByteArray(protoBytes);
     }
 
     /**
      * Converts the request into a protocol buffer, for storage or transmission.
+     * The protocol buffer is created once, and the same instance is returned on subsequent
+     * calls.
      */
+    @NonNull
     public Protobufs.CredentialSaveRequest toProtocolBuffer() {
-        return Protobufs.CredentialSaveRequest.newBuilder()
-                .setClientVersion(ClientVersionUtil.getClientVersion())
-                .setCredential(mCredential.toProtobuf())
-                .putAllAdditionalProps(mAdditionalProperties)
-                .build();
+        Protobufs.CredentialSaveRequest proto = mProto;
+        if (proto == null) {
+            proto = createProtocolBuffer();
+            mProto = proto;
+        }
+
+        return proto;
+    }
+
+    /**
+     * Returns the encoded form of {@link #toProtocolBuffer()}. The encoding is computed once,
+     * and a new copy of it is returned on each call.
+     */
+    @NonNull
+    public byte[] toProtocolBufferBytes() {
+        return getEncoding().clone();
+    }
+
+    private byte[] getEncoding() {
+        byte[] encoding = mEncoding;
+        if (encoding == null) {
+            encoding = toProtocolBuffer().toByteArray();
+            mEncoding = encoding;
+        }
+
+        return encoding;
+    }
+
+    private Protobufs.CredentialSaveRequest createProtocolBuffer() {
+        Protobufs.CredentialSaveRequest.Builder builder =
+                Protobufs.CredentialSaveRequest.newBuilder()
+                        .setClientVersion(ClientVersionUtil.getClientVersion())
+                        .setCredential(getCredential().toProtobuf())
+                        .putAllAdditionalProps(mAdditionalProperties);
+
+        for (int i = 1; i < mCredentials.size(); i++) {
+            builder.addAdditionalCredentials(mCredentials.get(i).toProtobuf());
+        }
+
+        return builder.build();
     }
 
     /**
@@ -152,7 +232,7 @@ public final class CredentialSaveRequest implements Parcelable, AdditionalProper
     public static final class Builder
             implements AdditionalPropertiesBuilder<CredentialSaveRequest, Builder> {
 
-        private Credential mCredential;
+        private List<Credential> mCredentials;
         private Map<String, ByteString> mAdditionalProps = new HashMap<>();
 
         /**
@@ -165,7 +245,14 @@ public final class CredentialSaveRequest implements Parcelable, AdditionalProper
             validate(request, notNullValue(), MalformedDataException.class);
 
             try {
-                setCredential(Credential.fromProtobuf(request.getCredential()));
+                List<Credential> credentials =
+                        new ArrayList<>(1 + request.getAdditionalCredentialsCount());
+                credentials.add(Credential.fromProtobuf(request.getCredential()));
+                for (Protobufs.Credential credential : request.getAdditionalCredentialsList()) {
+                    credentials.add(Credential.fromProtobuf(credential));
+                }
+
+                setCredentials(credentials);
                 setAdditionalProperties(
                         CollectionConverter.convertMapValues(
                                 request.getAdditionalPropsMap(),
@@ -185,14 +272,37 @@ public final class CredentialSaveRequest implements Parcelable, AdditionalProper
         }
 
         /**
-         * Specifies the credential to be saved. The provided credential must be non-null.
+         * Starts the process of describing a batch request, specifying the credentials.
+         */
+        private Builder(@NonNull List<Credential> credentials) {
+            setCredentials(credentials);
+        }
+
+        /**
+         * Specifies the credential to be saved, replacing any previously specified credentials.
+         * The provided credential must be non-null.
          *
          * @see Credential
          */
         public Builder setCredential(@NonNull Credential credential) {
             validate(credential, notNullValue(), IllegalArgumentException.class);
 
-            mCredential = credential;
+            mCredentials = Collections.singletonList(credential);
+            return this;
+        }
+
+        /**
+         * Specifies the credentials to be saved, in order. The provided list must be non-empty,
+         * and must not contain null credentials.
+         *
+         * @see Credential
+         */
+        public Builder setCredentials(@NonNull List<Credential> credentials) {
+            validate(credentials, notNullValue(), IllegalArgumentException.class);
+            validate(credentials, not(hasItem(nullValue())), IllegalArgumentException.class);
+            validate(credentials, not(equalTo(EMPTY_LIST)), IllegalArgumentException.class);
+
+            mCredentials = new ArrayList<>(credentials);
             return this;
         }
 
@@ -14,6 +14,9 @@
 
 package org.openyolo.protocol;
 
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.core.IsNull.notNullValue;
 import static org.valid4j.Validation.validate;
 
@@ -22,7 +25,10 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import com.google.protobuf.ByteString;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.openyolo.protocol.internal.AdditionalPropertiesUtil;
 import org.openyolo.protocol.internal.ByteStringConverters;
@@ -138,6 +144,9 @@ public final class CredentialSaveResult implements AdditionalPropertiesContainer
 
     private final int mResultCode;
 
+    @NonNull
+    private final List<Integer> mItemResultCodes;
+
     @NonNull
     private Map<String, ByteString> mAdditionalProperties;
 
@@ -175,6 +184,7 @@ public final class CredentialSaveResult implements AdditionalPropertiesContainer
         Protobufs.CredentialSaveResult.Builder builder =
                 Protobufs.CredentialSaveResult.newBuilder()
                         .setResultCodeValue(mResultCode)
+                        .addAllItemResultCodesValue(mItemResultCodes)
                         .putAllAdditionalProps(mAdditionalProperties);
 
         return builder.build();
@@ -194,6 +204,7 @@ public final class CredentialSaveResult implements AdditionalPropertiesContainer
 
     private CredentialSaveResult(Builder builder) {
         mResultCode = builder.mResultCode;
+        mItemResultCodes = Collections.unmodifiableList(builder.mItemResultCodes);
         mAdditionalProperties = builder.mAdditionalProps;
     }
 
@@ -212,6 +223,17 @@ public final class CredentialSaveResult implements AdditionalPropertiesContainer
         return mResultCode;
     }
 
+    /**
+     * The outcome for each credential of a batch save request, in request order. Each code is
+     * one of the result codes defined by this class. Empty if the provider did not report
+     * outcomes per credential, in which case only the overall {@link #getResultCode() result
+     * code} is available.
+     */
+    @NonNull
+    public List<Integer> getItemResultCodes() {
+        return mItemResultCodes;
+    }
+
     @Override
     @NonNull
     public Map<String, byte[]> getAdditionalProperties() {
@@ -236,6 +258,7 @@ public final class CredentialSaveResult implements AdditionalPropertiesContainer
     public static final class Builder
             implements AdditionalPropertiesBuilder<CredentialSaveResult, Builder> {
         private int mResultCode = CODE_UNKNOWN;
+        private List<Integer> mItemResultCodes = Collections.emptyList();
         private Map<String, ByteString> mAdditionalProps = new HashMap<>();
 
         /**
@@ -248,6 +271,7 @@ public final class CredentialSaveResult implements AdditionalPropertiesContainer
 
             try {
                 setResultCode(proto.getResultCodeValue());
+                setItemResultCodes(proto.getItemResultCodesValueList());
                 setAdditionalProperties(
                         CollectionConverter.convertMapValues(
                                 proto.getAdditionalPropsMap(),
@@ -274,6 +298,22 @@ public final class CredentialSaveResult implements AdditionalPropertiesContainer
             return this;
         }
 
+        /**
+         * Specifies the outcome for each credential of a batch save request, in request order.
+         * The list must not contain null values.
+         */
+        @NonNull
+        public Builder setItemResultCodes(@Nullable List<Integer> itemResultCodes) {
+            if (itemResultCodes == null) {
+                mItemResultCodes = Collections.emptyList();
+                return this;
+            }
+
+            validate(itemResultCodes, not(hasItem(nullValue())), IllegalArgumentException.class);
+            mItemResultCodes = new ArrayList<>(itemResultCodes);
+            return this;
+        }
+
         @Override
         @NonNull
         public Builder setAdditionalProperties(@Nullable Map<String, byte[]> additionalProps) {
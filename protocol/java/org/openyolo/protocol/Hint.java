@@ -15,7 +15,6 @@
 package org.openyolo.protocol;
 
 import static org.hamcrest.CoreMatchers.notNullValue;
-import static org.openyolo.protocol.internal.CustomMatchers.isValidAuthenticationMethod;
 import static org.openyolo.protocol.internal.CustomMatchers.isWebUri;
 import static org.openyolo.protocol.internal.CustomMatchers.notNullOrEmptyString;
 import static org.openyolo.protocol.internal.CustomMatchers.nullOr;
@@ -56,11 +55,14 @@ public final class Hint implements Parcelable, AdditionalPropertiesContainer {
     public static final Creator<Hint> CREATOR = new HintCreator();
 
     /**
-     * Creates a hint from its protocol buffer equivalent.
+     * Creates a hint from its protocol buffer equivalent. The required properties of the hint
+     * are validated immediately, while the display picture URI and additional property values
+     * are only decoded from the protocol buffer when first accessed.
      * @throws MalformedDataException if the given protocol buffer is not valid.
      */
     public static Hint fromProtobuf(Protobufs.Hint proto) throws MalformedDataException {
-        return new Hint.Builder(proto).build();
+        validate(proto, notNullValue(), MalformedDataException.class);
+        return new Hint(proto);
     }
 
     /**
@@ -86,7 +88,9 @@ public final class Hint implements Parcelable, AdditionalPropertiesContainer {
     private final String mDisplayName;
 
     @Nullable
-    private final Uri mDisplayPictureUri;
+    private volatile Uri mDisplayPictureUri;
+
+    private volatile boolean mDisplayPictureUriDecoded;
 
     @Nullable
     private final String mGeneratedPassword;
@@ -97,20 +101,92 @@ public final class Hint implements Parcelable, AdditionalPropertiesContainer {
     @NonNull
     private final Map<String, ByteString> mAdditionalProps;
 
+    @Nullable
+    private volatile Protobufs.Hint mProto;
+
+    @Nullable
+    private volatile byte[] mEncoding;
+
     private Hint(Hint.Builder builder) {
         mId = builder.mId;
         mAuthMethod = builder.mAuthMethod;
         mDisplayName = builder.mDisplayName;
         mDisplayPictureUri = builder.mDisplayPictureUri;
+        mDisplayPictureUriDecoded = true;
         mGeneratedPassword = builder.mGeneratedPassword;
         mIdToken = builder.mIdToken;
         mAdditionalProps = Collections.unmodifiableMap(builder.mAdditionalProps);
     }
 
+    private Hint(@NonNull Protobufs.Hint proto) throws MalformedDataException {
+        try {
+            mId = validate(proto.getId(), notNullOrEmptyString(), IllegalArgumentException.class);
+            mAdditionalProps = AdditionalPropertiesUtil.validateAdditionalPropertiesFromProto(
+                    proto.getAdditionalPropsMap());
+        } catch (IllegalArgumentException ex) {
+            throw new MalformedDataException(ex);
+        }
+
+        mAuthMethod = AuthenticationMethod.fromProtobuf(proto.getAuthMethod());
+        mDisplayName = nullifyEmptyString(proto.getDisplayName());
+        mGeneratedPassword = nullifyEmptyString(proto.getGeneratedPassword());
+        mIdToken = nullifyEmptyString(proto.getIdToken());
+
+        // the hint is already in its protocol buffer form, so it can be returned as-is
+        mProto = proto;
+    }
+
     /**
      * Creates a protocol buffer representation of the hint, for transmission or storage.
+     * The protocol buffer is created once, and the same instance is returned on subsequent
+     * calls.
      */
+    @NonNull
     public Protobufs.Hint toProtobuf() {
+        Protobufs.Hint proto = mProto;
+        if (proto == null) {
+            proto = createProtobuf();
+            mProto = proto;
+        }
+
+        return proto;
+    }
+
+    /**
+     * Returns the encoded form of {@link #toProtobuf()}. The encoding is computed once, and a new
+     * copy of it is returned on each call.
+     */
+    @NonNull
+    public byte[] toProtobufBytes() {
+        return getEncoding().clone();
+    }
+
+    private byte[] getEncoding() {
+        byte[] encoding = mEncoding;
+        if (encoding == null) {
+            encoding = toProtobuf().toByteArray();
+            mEncoding = encoding;
+        }
+
+        return encoding;
+    }
+
+    /**
+     * Decodes a display picture URI from its protocol buffer form. As the display picture is
+     * optional, a value that is not a valid HTTP or HTTPS URI is treated as absent rather than
+     * invalidating the whole hint.
+     */
+    @Nullable
+    private static Uri decodeDisplayPicture(@NonNull String displayPictureStr) {
+        if (nullifyEmptyString(displayPictureStr) == null) {
+            return null;
+        }
+
+        Uri displayPicture = Uri.parse(displayPictureStr);
+        return isWebUri().matches(displayPicture) ? displayPicture : null;
+    }
+
+    private Protobufs.Hint createProtobuf() {
         Protobufs.Hint.Builder builder = Protobufs.Hint.newBuilder()
                 .setId(mId)
                 .setAuthMethod(mAuthMethod.toProtobuf())
@@ -142,7 +218,7 @@ public final class Hint implements Parcelable, AdditionalPropertiesContainer {
         AuthenticationDomain authDomain = AuthenticationDomain.getSelfAuthDomain(context);
         return new Credential.Builder(mId, mAuthMethod, authDomain)
                 .setDisplayName(mDisplayName)
-                .setDisplayPicture(mDisplayPictureUri)
+                .setDisplayPicture(getDisplayPicture())
                 .setPassword(mGeneratedPassword)
                 .setIdToken(mIdToken)
                 .setAdditionalProperties(getAdditionalProperties());
@@ -179,6 +255,11 @@ public final class Hint implements Parcelable, AdditionalPropertiesContainer {
      */
     @Nullable
     public Uri getDisplayPicture() {
+        if (!mDisplayPictureUriDecoded) {
+            mDisplayPictureUri = decodeDisplayPicture(toProtobuf().getDisplayPictureUri());
+            mDisplayPictureUriDecoded = true;
+        }
+
         return mDisplayPictureUri;
     }
 
@@ -226,7 +307,7 @@ public final class Hint implements Parcelable, AdditionalPropertiesContainer {
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
-        byte[] hintBytes = toProtobuf().toByteArray();
+        byte[] hintBytes = getEncoding();
         dest.writeInt(hintBytes.length);
         dest.writeByteArray(hintBytes);
     }
@@ -273,7 +354,7 @@ public final class Hint implements Parcelable, AdditionalPropertiesContainer {
         public Builder(
                 @NonNull String id,
                 @NonNull String authMethod) {
-            this(id, new AuthenticationMethod(authMethod));
+            this(id, AuthenticationMethod.of(authMethod));
         }
 
         /**
@@ -283,31 +364,10 @@ public final class Hint implements Parcelable, AdditionalPropertiesContainer {
             setIdentifier(hint.mId);
             setAuthMethod(hint.mAuthMethod);
             setDisplayName(hint.mDisplayName);
-            setDisplayPictureUri(hint.mDisplayPictureUri);
+            setDisplayPictureUri(hint.getDisplayPicture());
             setGeneratedPassword(hint.mGeneratedPassword);
             setIdToken(hint.mIdToken);
-            setAdditionalPropertiesFromProto(hint.mAdditionalProps);
-        }
-
-        /**
-         * Starts the process of creating a hint, based on the properties of the provided
-         * protocol buffer representation of the credential. The protocol buffer must contain
-         * valid data for a hint.
-         */
-        private Builder(@NonNull Protobufs.Hint proto) throws MalformedDataException {
-            validate(proto, notNullValue(), MalformedDataException.class);
-
-            try {
-                setIdentifier(proto.getId());
-                setAuthMethod(proto.getAuthMethod().getUri());
-                setDisplayName(proto.getDisplayName());
-                setDisplayPictureUri(proto.getDisplayPictureUri());
-                setGeneratedPassword(proto.getGeneratedPassword());
-                setIdToken(proto.getIdToken());
-                setAdditionalPropertiesFromProto(proto.getAdditionalPropsMap());
-            } catch (IllegalArgumentException ex) {
-                throw new MalformedDataException(ex);
-            }
+            setAdditionalPropertiesFromProto(new HashMap<>(hint.mAdditionalProps));
         }
 
         /**
@@ -326,8 +386,7 @@ public final class Hint implements Parcelable, AdditionalPropertiesContainer {
          * @see AuthenticationMethod
          */
         public Builder setAuthMethod(@NonNull String authMethod) {
-            validate(authMethod, isValidAuthenticationMethod(), IllegalArgumentException.class);
-            mAuthMethod = new AuthenticationMethod(authMethod);
+            mAuthMethod = AuthenticationMethod.of(authMethod);
             return this;
         }
 
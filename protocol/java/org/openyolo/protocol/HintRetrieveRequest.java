@@ -70,6 +70,12 @@ public class HintRetrieveRequest implements Parcelable, AdditionalPropertiesCont
     @NonNull
     private final Map<String, ByteString> mAdditionalProperties;
 
+    @Nullable
+    private volatile Protobufs.HintRetrieveRequest mProto;
+
+    @Nullable
+    private volatile byte[] mEncoding;
+
     /**
      * Creates a hint request from the given set of authentication methods.
      */
@@ -178,16 +184,47 @@ public class HintRetrieveRequest implements Parcelable, AdditionalPropertiesCont
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
-        byte[] protoBytes = toProtocolBuffer().toByteArray();
+        byte[] protoBytes = getEncoding();
         dest.writeInt(protoBytes.length);
         dest.writeByteArray(protoBytes);
     }
 
     /**
      * Converts the request into a protocol buffer, for storage or transmission.
+     * The protocol buffer is created once, and the same instance is returned on subsequent
+     * calls.
      */
     @NonNull
     public Protobufs.HintRetrieveRequest toProtocolBuffer() {
+        Protobufs.HintRetrieveRequest proto = mProto;
+        if (proto == null) {
+            proto = createProtocolBuffer();
+            mProto = proto;
+        }
+
+        return proto;
+    }
+
+    /**
+     * Returns the encoded form of {@link #toProtocolBuffer()}. The encoding is computed once,
+     * and a new copy of it is returned on each call.
+     */
+    @NonNull
+    public byte[] toProtocolBufferBytes() {
+        return getEncoding().clone();
+    }
+
+    private byte[] getEncoding() {
+        byte[] encoding = mEncoding;
+        if (encoding == null) {
+            encoding = toProtocolBuffer().toByteArray();
+            mEncoding = encoding;
+        }
+
+        return encoding;
+    }
+
+    private Protobufs.HintRetrieveRequest createProtocolBuffer() {
         return Protobufs.HintRetrieveRequest.newBuilder()
                 .setClientVersion(ClientVersionUtil.getClientVersion())
                 .addAllAuthMethods(
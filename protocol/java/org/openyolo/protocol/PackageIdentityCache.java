@@ -0,0 +1,220 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.protocol;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.openyolo.protocol.internal.CustomMatchers.notNullOrEmptyString;
+import static org.valid4j.Assertive.require;
+import static org.valid4j.Validation.validate;
+
+import android.annotation.SuppressLint;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.Signature;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A process-wide cache of the {@link AuthenticationDomain authentication domains} of installed
+ * packages. Deriving an Android authentication domain requires hashing the package's signing
+ * certificate; the cache retains the result for each package, identified by the package's
+ * last update time, version code and signature, so that it is only recomputed when the package
+ * changes. The cache is bounded, evicting the least recently used entries first, and entries are
+ * discarded when package change broadcasts are received.
+ *
+ * <p>{@link AuthenticationDomain#fromPackageName(Context, String)} is served from this cache.
+ */
+@SuppressLint("PackageManagerGetSignatures")
+public final class PackageIdentityCache {
+
+    /**
+     * The default maximum number of packages retained by the cache.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 32;
+
+    private static final String LOG_TAG = "PackageIdentityCache";
+
+    private static final AtomicReference<PackageIdentityCache> INSTANCE_REF =
+            new AtomicReference<>();
+
+    /**
+     * Retrieves the process-wide cache. On first use, the cache registers for package change
+     * broadcasts with the application context associated with the provided context.
+     */
+    @NonNull
+    public static PackageIdentityCache getInstance(@NonNull Context context) {
+        validate(context, notNullValue(), IllegalArgumentException.class);
+
+        PackageIdentityCache cache = INSTANCE_REF.get();
+        if (cache != null) {
+            return cache;
+        }
+
+        cache = new PackageIdentityCache(DEFAULT_MAX_ENTRIES);
+        if (INSTANCE_REF.compareAndSet(null, cache)) {
+            Context applicationContext = context.getApplicationContext();
+            cache.registerPackageChangeReceiver(
+                    applicationContext != null ? applicationContext : context);
+        } else {
+            cache = INSTANCE_REF.get();
+        }
+
+        return cache;
+    }
+
+    private final int mMaxEntries;
+    private final LinkedHashMap<String, Entry> mEntries;
+
+    @VisibleForTesting
+    PackageIdentityCache(int maxEntries) {
+        require(maxEntries > 0, "maxEntries must be greater than zero");
+        mMaxEntries = maxEntries;
+        mEntries = new LinkedHashMap<String, Entry>(maxEntries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > mMaxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the {@link AuthenticationDomain} for the application installed on the current
+     * device with the given package name, otherwise {@code null}. The package is looked up using
+     * the provided context's package manager, but the signature hash is only computed if the
+     * package has changed since it was last seen.
+     */
+    @Nullable
+    public AuthenticationDomain getAuthenticationDomain(
+            @NonNull Context context,
+            @NonNull String packageName) {
+        validate(context, notNullValue(), IllegalArgumentException.class);
+        validate(packageName, notNullOrEmptyString(), IllegalArgumentException.class);
+
+        PackageInfo packageInfo;
+        try {
+            packageInfo = context.getPackageManager()
+                    .getPackageInfo(packageName, PackageManager.GET_SIGNATURES);
+        } catch (PackageManager.NameNotFoundException ex) {
+            invalidate(packageName);
+            return null;
+        }
+
+        if (packageInfo.signatures == null || 1 != packageInfo.signatures.length) {
+            Log.w(LOG_TAG,
+                    String.format(
+                            "application (%s) did not have exactly one signature",
+                            packageName));
+            return null;
+        }
+
+        Signature signature = packageInfo.signatures[0];
+        synchronized (mEntries) {
+            Entry entry = mEntries.get(packageName);
+            if (entry != null && entry.matches(packageInfo, signature)) {
+                return entry.mAuthenticationDomain;
+            }
+        }
+
+        AuthenticationDomain authDomain =
+                AuthenticationDomain.createAndroidAuthDomain(packageName, signature);
+        synchronized (mEntries) {
+            mEntries.put(packageName, new Entry(packageInfo, signature, authDomain));
+        }
+
+        return authDomain;
+    }
+
+    /**
+     * Discards the retained authentication domain for the specified package, if present.
+     */
+    public void invalidate(@NonNull String packageName) {
+        synchronized (mEntries) {
+            mEntries.remove(packageName);
+        }
+    }
+
+    /**
+     * Discards all retained authentication domains.
+     */
+    public void clear() {
+        synchronized (mEntries) {
+            mEntries.clear();
+        }
+    }
+
+    /**
+     * The number of packages currently retained.
+     */
+    public int size() {
+        synchronized (mEntries) {
+            return mEntries.size();
+        }
+    }
+
+    @VisibleForTesting
+    void registerPackageChangeReceiver(@NonNull Context context) {
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme("package");
+        context.registerReceiver(new PackageChangeReceiver(), filter);
+    }
+
+    private final class PackageChangeReceiver extends BroadcastReceiver {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            if (data == null) {
+                return;
+            }
+
+            invalidate(data.getSchemeSpecificPart());
+        }
+    }
+
+    private static final class Entry {
+        final long mLastUpdateTime;
+        final int mVersionCode;
+        final Signature mSignature;
+        final AuthenticationDomain mAuthenticationDomain;
+
+        Entry(PackageInfo packageInfo,
+              Signature signature,
+              AuthenticationDomain authenticationDomain) {
+            mLastUpdateTime = packageInfo.lastUpdateTime;
+            mVersionCode = packageInfo.versionCode;
+            mSignature = signature;
+            mAuthenticationDomain = authenticationDomain;
+        }
+
+        boolean matches(PackageInfo packageInfo, Signature signature) {
+            // the signature comparison is a byte comparison, which is far cheaper than hashing
+            return mLastUpdateTime == packageInfo.lastUpdateTime
+                    && mVersionCode == packageInfo.versionCode
+                    && mSignature.equals(signature);
+        }
+    }
+}
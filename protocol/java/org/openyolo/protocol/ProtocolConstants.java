@@ -24,6 +24,31 @@ public final class ProtocolConstants {
      */
     public static final String CREDENTIAL_DATA_TYPE = "org.openyolo.credential";
 
+    /**
+     * The data type used for silent credential retrieve queries using the BBQ protocol. The query
+     * message is a silent retrieve request, and the response message a silent retrieve response.
+     */
+    public static final String SILENT_RETRIEVE_DATA_TYPE = "org.openyolo.credential.silent";
+
+    /**
+     * The data type used for hint availability queries using the BBQ protocol. The query message
+     * is a hint retrieve request, and the response message a hint availability response.
+     */
+    public static final String HINT_AVAILABILITY_DATA_TYPE = "org.openyolo.hint.availability";
+
+    /**
+     * The data type used for save eligibility queries using the BBQ protocol. The query message
+     * is a credential save request, and the response message a save eligibility response.
+     */
+    public static final String SAVE_ELIGIBILITY_DATA_TYPE =
+            "org.openyolo.credential.save.eligibility";
+
+    /**
+     * The data type used for delete match queries using the BBQ protocol. The query message is a
+     * credential delete request, and the response message a delete match response.
+     */
+    public static final String DELETE_MATCH_DATA_TYPE = "org.openyolo.credential.delete.match";
+
     /**
      * The extra value key used to carry a credential retrieve request.
      */
@@ -53,6 +78,12 @@ public final class ProtocolConstants {
      */
     public static final String EXTRA_HINT_RESULT = "org.openyolo.hint.result";
 
+    /**
+     * The extra key value used to carry a combined credential or hint retrieve request.
+     */
+    public static final String EXTRA_RETRIEVE_OR_HINT_REQUEST =
+            "org.openyolo.credential.retrieve_or_hint.request";
+
     /**
      * The extra key value used to carry a credential save request.
      */
@@ -78,6 +109,14 @@ public final class ProtocolConstants {
      */
     public static final String HINT_CREDENTIAL_ACTION = "org.openyolo.hint";
 
+    /**
+     * The action used for combined credential or hint intents. A provider handling this action
+     * returns a credential retrieve result if it has credentials for the caller, and otherwise
+     * falls back to returning a hint retrieve result.
+     */
+    public static final String RETRIEVE_CREDENTIAL_OR_HINT_ACTION =
+            "org.openyolo.credential.retrieve_or_hint";
+
     /**
      * The action used for save intents.
      */
@@ -88,6 +127,20 @@ public final class ProtocolConstants {
      */
     public static final String DELETE_CREDENTIAL_ACTION = "org.openyolo.credential.delete";
 
+    /**
+     * The action used for batch save intents. Providers that declare this action accept save
+     * requests carrying multiple credentials, and report the outcome for each credential.
+     */
+    public static final String BATCH_SAVE_CREDENTIAL_ACTION =
+            "org.openyolo.credential.save.batch";
+
+    /**
+     * The action used for batch delete intents. Providers that declare this action accept delete
+     * requests carrying multiple credentials, and report the outcome for each credential.
+     */
+    public static final String BATCH_DELETE_CREDENTIAL_ACTION =
+            "org.openyolo.credential.delete.batch";
+
     /**
      * The extra key value used to carry a credential deletion request.
      */
@@ -48,7 +48,7 @@ public final class AuthenticationMethodConverters {
 
         @Override
         public AuthenticationMethod convert(Protobufs.AuthenticationMethod value) {
-            return new AuthenticationMethod(value.getUri());
+            return AuthenticationMethod.of(value.getUri());
         }
     }
 }
@@ -156,8 +156,25 @@ public final class CustomMatchers {
 
         @Override
         protected boolean matchesSafely(String item) {
-            Uri uri = Uri.parse(item);
-            return mUriMatcher.matchesSafely(uri);
+            int schemeEnd = mUriMatcher.mAllowPathQueryOrFragment
+                    ? UriValidator.validateHierarchicalUri(item)
+                    : UriValidator.validateAuthorityUri(item);
+
+            if (schemeEnd == UriValidator.INVALID) {
+                return false;
+            }
+
+            if (mUriMatcher.mPermittedSchemes.isEmpty()) {
+                return true;
+            }
+
+            for (String scheme : mUriMatcher.mPermittedSchemes) {
+                if (UriValidator.hasScheme(item, schemeEnd, scheme)) {
+                    return true;
+                }
+            }
+
+            return false;
         }
     }
 
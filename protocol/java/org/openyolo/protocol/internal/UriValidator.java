@@ -0,0 +1,147 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.protocol.internal;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Allocation-free validation of the URI forms used by the OpenYOLO protocol. The accepted
+ * strings are exactly those for which {@link android.net.Uri#parse(String) Uri.parse} produces
+ * an absolute, hierarchical URI with a non-empty scheme and authority, but the string is
+ * examined in a single pass without constructing a {@link android.net.Uri}.
+ *
+ * <p>Only {@code /}, {@code ?} and {@code #} terminate the authority; backslashes are not treated
+ * as delimiters, so the result does not depend on the platform's patch level.
+ *
+ * <p>Successful validation returns the index of the scheme separator, from which the offsets
+ * of the other components can be derived without parsing the string again.
+ */
+public final class UriValidator {
+
+    /**
+     * Returned by the validation methods when the string is not of the required form.
+     */
+    public static final int INVALID = -1;
+
+    private static final int AUTHORITY_PREFIX_LENGTH = "://".length();
+
+    /**
+     * Validates that the provided string is of form {@code scheme://authority}, with a non-empty
+     * scheme and authority, and no path, query or fragment. This is the form required of
+     * authentication domains and authentication methods.
+     * @return the index of the scheme separator, or {@link #INVALID}.
+     */
+    public static int validateAuthorityUri(@Nullable String uriStr) {
+        return validate(uriStr, false);
+    }
+
+    /**
+     * Validates that the provided string is of form {@code scheme://authority}, with a non-empty
+     * scheme and authority, optionally followed by a path, query or fragment.
+     * @return the index of the scheme separator, or {@link #INVALID}.
+     */
+    public static int validateHierarchicalUri(@Nullable String uriStr) {
+        return validate(uriStr, true);
+    }
+
+    /**
+     * Determines whether the scheme of a validated URI string, which ends at the provided scheme
+     * separator index, is exactly the specified scheme.
+     */
+    public static boolean hasScheme(
+            @NonNull String uriStr,
+            int schemeEnd,
+            @NonNull String scheme) {
+        return schemeEnd == scheme.length() && uriStr.startsWith(scheme);
+    }
+
+    /**
+     * Returns the index at which the authority of a validated URI string starts, given the index
+     * of its scheme separator.
+     */
+    public static int getAuthorityStart(int schemeEnd) {
+        return schemeEnd + AUTHORITY_PREFIX_LENGTH;
+    }
+
+    /**
+     * Returns the index at which the host starts within the authority of a URI string, skipping
+     * any user information.
+     */
+    public static int findHostStart(@NonNull String uriStr, int authorityStart, int authorityEnd) {
+        for (int i = authorityEnd - 1; i >= authorityStart; i--) {
+            if (uriStr.charAt(i) == '@') {
+                return i + 1;
+            }
+        }
+
+        return authorityStart;
+    }
+
+    /**
+     * Returns the index at which the host ends within the authority of a URI string, excluding
+     * any port. As with {@link android.net.Uri#getHost()}, a port is only recognized when the
+     * authority ends with a colon followed by ASCII digits.
+     */
+    public static int findHostEnd(@NonNull String uriStr, int authorityStart, int authorityEnd) {
+        for (int i = authorityEnd - 1; i >= authorityStart; i--) {
+            char ch = uriStr.charAt(i);
+            if (ch == ':') {
+                return i;
+            }
+
+            if (ch < '0' || ch > '9') {
+                break;
+            }
+        }
+
+        return authorityEnd;
+    }
+
+    private static int validate(@Nullable String uriStr, boolean allowPathQueryOrFragment) {
+        if (uriStr == null) {
+            return INVALID;
+        }
+
+        // As with Uri.parse, the scheme extends to the first colon, wherever it occurs.
+        int schemeEnd = uriStr.indexOf(':');
+        int authorityStart = getAuthorityStart(schemeEnd);
+        int length = uriStr.length();
+        if (schemeEnd < 1
+                || length <= authorityStart
+                || uriStr.charAt(schemeEnd + 1) != '/'
+                || uriStr.charAt(schemeEnd + 2) != '/') {
+            return INVALID;
+        }
+
+        for (int i = authorityStart; i < length; i++) {
+            char ch = uriStr.charAt(i);
+            if (ch == '/' || ch == '?' || ch == '#') {
+                // the authority ends here, and must be non-empty
+                if (i == authorityStart || !allowPathQueryOrFragment) {
+                    return INVALID;
+                }
+
+                return schemeEnd;
+            }
+        }
+
+        return schemeEnd;
+    }
+
+    private UriValidator() {
+        throw new IllegalStateException("not intended to be constructed");
+    }
+}
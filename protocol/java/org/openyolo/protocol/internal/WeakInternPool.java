@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.protocol.internal;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.valid4j.Assertive.require;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A pool of canonical instances of an immutable value type, keyed by their string form. Pooled
+ * instances are only weakly referenced, so an instance that is no longer in use elsewhere is
+ * eventually discarded from the pool.
+ *
+ * @param <T> the pooled value type.
+ */
+public final class WeakInternPool<T> {
+
+    private final Map<String, KeyedReference<T>> mReferences = new HashMap<>();
+    private final ReferenceQueue<T> mQueue = new ReferenceQueue<>();
+
+    /**
+     * Retrieves the canonical instance for the specified key, if one is currently pooled.
+     */
+    @Nullable
+    public synchronized T get(@NonNull String key) {
+        require(key, notNullValue());
+        expungeStaleReferences();
+
+        KeyedReference<T> reference = mReferences.get(key);
+        return (reference != null) ? reference.get() : null;
+    }
+
+    /**
+     * Returns the canonical instance for the specified key. If no instance is currently pooled,
+     * the provided instance becomes the canonical instance.
+     */
+    @NonNull
+    public synchronized T intern(@NonNull String key, @NonNull T value) {
+        require(key, notNullValue());
+        require(value, notNullValue());
+        expungeStaleReferences();
+
+        KeyedReference<T> reference = mReferences.get(key);
+        T canonical = (reference != null) ? reference.get() : null;
+        if (canonical != null) {
+            return canonical;
+        }
+
+        mReferences.put(key, new KeyedReference<>(key, value, mQueue));
+        return value;
+    }
+
+    /**
+     * The number of instances currently pooled, which may include instances that are
+     * pending collection.
+     */
+    public synchronized int size() {
+        expungeStaleReferences();
+        return mReferences.size();
+    }
+
+    private void expungeStaleReferences() {
+        Reference<? extends T> reference;
+        while ((reference = mQueue.poll()) != null) {
+            String key = ((KeyedReference<?>) reference).mKey;
+
+            // the key may since have been re-interned with a new instance
+            if (mReferences.get(key) == reference) {
+                mReferences.remove(key);
+            }
+        }
+    }
+
+    private static final class KeyedReference<T> extends WeakReference<T> {
+        final String mKey;
+
+        KeyedReference(String key, T value, ReferenceQueue<T> queue) {
+            super(value, queue);
+            mKey = key;
+        }
+    }
+}
@@ -168,4 +168,23 @@ public class AuthenticationDomainTest {
         assertThat(authDomainA.hashCode()).isEqualTo(authDomainB.hashCode());
     }
 
+    @Test
+    public void of_withEquivalentStrings_returnsSameInstance() throws Exception {
+        AuthenticationDomain authDomain = AuthenticationDomain.of(WEB_AUTH_DOMAIN_STR);
+
+        assertThat(AuthenticationDomain.of(new String(WEB_AUTH_DOMAIN_STR))).isSameAs(authDomain);
+        assertThat(AuthenticationDomain.fromProtobuf(authDomain.toProtobuf())).isSameAs(authDomain);
+        assertThat(authDomain).isEqualTo(new AuthenticationDomain(WEB_AUTH_DOMAIN_STR));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void of_withInvalidString_throwsIllegalArgumentException() throws Exception {
+        AuthenticationDomain.of("https://www.example.com/path");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    @SuppressWarnings("ConstantConditions")
+    public void of_withNull_throwsIllegalArgumentException() throws Exception {
+        AuthenticationDomain.of(null);
+    }
 }
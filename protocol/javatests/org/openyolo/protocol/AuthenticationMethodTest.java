@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.protocol;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Unit tests for {@link AuthenticationMethod}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class AuthenticationMethodTest {
+
+    private static final String CUSTOM_AUTH_METHOD_STR = "https://auth.example.com";
+
+    @Test
+    public void of_withStandardMethod_returnsConstant() throws Exception {
+        assertThat(AuthenticationMethod.of("openyolo://email"))
+                .isSameAs(AuthenticationMethods.EMAIL);
+        assertThat(AuthenticationMethod.fromProtobuf(AuthenticationMethods.GOOGLE.toProtobuf()))
+                .isSameAs(AuthenticationMethods.GOOGLE);
+    }
+
+    @Test
+    public void of_withEquivalentStrings_returnsSameInstance() throws Exception {
+        AuthenticationMethod authMethod = AuthenticationMethod.of(CUSTOM_AUTH_METHOD_STR);
+
+        assertThat(AuthenticationMethod.of(new String(CUSTOM_AUTH_METHOD_STR)))
+                .isSameAs(authMethod);
+        assertThat(authMethod).isEqualTo(new AuthenticationMethod(CUSTOM_AUTH_METHOD_STR));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void of_withInvalidString_throwsIllegalArgumentException() throws Exception {
+        AuthenticationMethod.of("openyolo:email");
+    }
+
+    @Test(expected = MalformedDataException.class)
+    public void fromProtobuf_withInvalidUri_throwsMalformedDataException() throws Exception {
+        AuthenticationMethod.fromProtobuf(
+                Protobufs.AuthenticationMethod.newBuilder().setUri("openyolo://").build());
+    }
+}
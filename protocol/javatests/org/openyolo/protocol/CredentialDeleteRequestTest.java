@@ -14,10 +14,13 @@
 
 package org.openyolo.protocol;
 
+import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.openyolo.protocol.TestConstants.INVALID_PROTO_BYTES;
 
 import android.content.Intent;
 import com.google.protobuf.ByteString;
+import java.util.Arrays;
+import java.util.Collections;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.openyolo.protocol.TestConstants.ValidAdditionalProperties;
@@ -149,4 +152,46 @@ public class CredentialDeleteRequestTest {
         intent.putExtra(ProtocolConstants.EXTRA_DELETE_REQUEST, INVALID_PROTO.toByteArray());
         CredentialDeleteRequest.fromRequestIntent(intent);
     }
+
+    @Test
+    public void toProtobufBytes_repeatedCalls_areByteForByteStable() throws Exception {
+        CredentialDeleteRequest request = ValidDeleteRequest.make();
+        byte[] encoded = request.toProtobufBytes();
+
+        assertThat(request.toProtobuf()).isSameAs(request.toProtobuf());
+        assertThat(encoded).isEqualTo(request.toProtobuf().toByteArray());
+
+        // each call returns a copy, so that the memoized encoding cannot be modified
+        encoded[0] ^= 1;
+        byte[] reencoded = request.toProtobufBytes();
+        assertThat(reencoded).isNotSameAs(encoded);
+        encoded[0] ^= 1;
+        assertThat(reencoded).isEqualTo(encoded);
+
+        CredentialDeleteRequest decoded = CredentialDeleteRequest.fromProtobufBytes(encoded);
+        assertThat(decoded.toProtobufBytes()).isEqualTo(encoded);
+    }
+
+    @Test
+    public void fromCredentials_roundTrip_preservesCredentialOrder() throws Exception {
+        Credential second = new Credential.Builder(
+                "bob@example.com",
+                AuthenticationMethods.EMAIL,
+                ValidFacebookCredential.AUTHENTICATION_DOMAIN).build();
+        CredentialDeleteRequest request = CredentialDeleteRequest.fromCredentials(
+                Arrays.asList(ValidFacebookCredential.make(), second));
+
+        CredentialDeleteRequest decoded =
+                CredentialDeleteRequest.fromProtobufBytes(request.toProtobufBytes());
+
+        assertThat(decoded.isBatch()).isTrue();
+        assertThat(decoded.getCredentials()).hasSize(2);
+        ValidFacebookCredential.assertEqualTo(decoded.getCredential());
+        assertThat(decoded.getCredentials().get(1).getIdentifier()).isEqualTo("bob@example.com");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromCredentials_withEmptyList_throwsIllegalArgumentException() {
+        CredentialDeleteRequest.fromCredentials(Collections.<Credential>emptyList());
+    }
 }
@@ -19,6 +19,7 @@ import static org.openyolo.protocol.TestConstants.INVALID_PROTO_BYTES;
 
 import android.content.Intent;
 import com.google.protobuf.ByteString;
+import java.util.Arrays;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
@@ -134,4 +135,23 @@ public class CredentialDeleteResultTest {
     public void fromProtobufBytes_invalidProto_throwsException() throws Exception {
         CredentialDeleteResult.fromProtobufBytes(INVALID_PROTO.toByteArray());
     }
+
+    @Test
+    public void fromResultIntentData_withItemResultCodes_preservesItemResultCodes()
+            throws Exception {
+        CredentialDeleteResult result =
+                new CredentialDeleteResult.Builder(CredentialDeleteResult.CODE_DELETED)
+                        .setItemResultCodes(Arrays.asList(
+                                CredentialDeleteResult.CODE_DELETED,
+                                CredentialDeleteResult.CODE_NO_MATCHING_CREDENTIAL))
+                        .build();
+
+        CredentialDeleteResult decoded =
+                CredentialDeleteResult.fromResultIntentData(result.toResultDataIntent());
+
+        assertThat(decoded.getItemResultCodes()).containsExactly(
+                CredentialDeleteResult.CODE_DELETED,
+                CredentialDeleteResult.CODE_NO_MATCHING_CREDENTIAL);
+        assertThat(ValidDeleteResult.make().getItemResultCodes()).isEmpty();
+    }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.protocol;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import android.content.Intent;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Tests for {@link CredentialOrHintRetrieveRequest}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CredentialOrHintRetrieveRequestTest {
+
+    @Test
+    public void fromAuthMethods_createsBothRequests() {
+        CredentialOrHintRetrieveRequest request =
+                CredentialOrHintRetrieveRequest.fromAuthMethods(AuthenticationMethods.EMAIL);
+
+        assertThat(request.getCredentialRetrieveRequest().getAuthenticationMethods())
+                .containsExactly(AuthenticationMethods.EMAIL);
+        assertThat(request.getHintRetrieveRequest().getAuthenticationMethods())
+                .containsExactly(AuthenticationMethods.EMAIL);
+    }
+
+    @Test
+    public void fromProtobufBytes_roundTrips() throws Exception {
+        CredentialOrHintRetrieveRequest request = CredentialOrHintRetrieveRequest.fromRequests(
+                new CredentialRetrieveRequest.Builder(AuthenticationMethods.EMAIL)
+                        .setRequireUserMediation(true)
+                        .build(),
+                HintRetrieveRequest.fromAuthMethods(AuthenticationMethods.GOOGLE));
+
+        CredentialOrHintRetrieveRequest readRequest =
+                CredentialOrHintRetrieveRequest.fromProtobufBytes(
+                        request.toProtocolBufferBytes());
+
+        assertThat(readRequest.getCredentialRetrieveRequest().getRequireUserMediation())
+                .isTrue();
+        assertThat(readRequest.getHintRetrieveRequest().getAuthenticationMethods())
+                .containsExactly(AuthenticationMethods.GOOGLE);
+    }
+
+    @Test(expected = MalformedDataException.class)
+    public void fromProtobuf_missingHintRequest_throwsMalformedDataException()
+            throws Exception {
+        CredentialOrHintRetrieveRequest.fromProtobuf(
+                Protobufs.CredentialOrHintRetrieveRequest.newBuilder()
+                        .setCredentialRequest(CredentialRetrieveRequest
+                                .fromAuthMethods(AuthenticationMethods.EMAIL)
+                                .toProtocolBuffer())
+                        .build());
+    }
+
+    @Test(expected = MalformedDataException.class)
+    public void fromRequestIntent_missingExtra_throwsMalformedDataException() throws Exception {
+        CredentialOrHintRetrieveRequest.fromRequestIntent(new Intent());
+    }
+}
@@ -20,6 +20,8 @@ package org.openyolo.protocol;
 import static org.assertj.core.api.Java6Assertions.assertThat;
 
 import android.os.Parcel;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
 import org.junit.Before;
 import org.junit.Test;
@@ -151,4 +153,66 @@ public final class CredentialSaveRequestTest {
     public void builder_withNullCredential_throwsIllegalArgumentException() {
         new CredentialSaveRequest.Builder((Credential) null);
     }
+
+    @Test
+    public void toProtocolBufferBytes_repeatedCalls_areByteForByteStable() throws Exception {
+        CredentialSaveRequest request = ValidRequest.INSTANCE;
+        byte[] encoded = request.toProtocolBufferBytes();
+
+        assertThat(request.toProtocolBuffer()).isSameAs(request.toProtocolBuffer());
+        assertThat(encoded).isEqualTo(request.toProtocolBuffer().toByteArray());
+
+        // each call returns a copy, so that the memoized encoding cannot be modified
+        encoded[0] ^= 1;
+        byte[] reencoded = request.toProtocolBufferBytes();
+        assertThat(reencoded).isNotSameAs(encoded);
+        encoded[0] ^= 1;
+        assertThat(reencoded).isEqualTo(encoded);
+
+        Parcel parcel = Parcel.obtain();
+        try {
+            request.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            byte[] parceled = new byte[parcel.readInt()];
+            parcel.readByteArray(parceled);
+            assertThat(parceled).isEqualTo(encoded);
+        } finally {
+            parcel.recycle();
+        }
+
+        CredentialSaveRequest decoded = CredentialSaveRequest.fromProtoBytes(encoded);
+        assertThat(decoded.toProtocolBufferBytes()).isEqualTo(encoded);
+    }
+
+    @Test
+    public void fromCredentials_roundTrip_preservesCredentialOrder() throws Exception {
+        Credential second = new Credential.Builder(
+                "bob@example.com",
+                AuthenticationMethods.EMAIL,
+                ValidFacebookCredential.AUTHENTICATION_DOMAIN).build();
+        CredentialSaveRequest request = CredentialSaveRequest.fromCredentials(
+                Arrays.asList(ValidRequest.CREDENTIAL, second));
+
+        assertThat(request.isBatch()).isTrue();
+        assertThat(request.toProtocolBuffer().getAdditionalCredentialsCount()).isEqualTo(1);
+
+        CredentialSaveRequest decoded =
+                CredentialSaveRequest.fromProtoBytes(request.toProtocolBufferBytes());
+        assertThat(decoded.getCredentials()).hasSize(2);
+        ValidFacebookCredential.assertEqualTo(decoded.getCredential());
+        assertThat(decoded.getCredentials().get(1).getIdentifier()).isEqualTo("bob@example.com");
+    }
+
+    @Test
+    public void toProtocolBuffer_singleCredential_hasNoAdditionalCredentials() {
+        assertThat(ValidRequest.INSTANCE.isBatch()).isFalse();
+        assertThat(ValidRequest.INSTANCE.getCredentials()).containsExactly(ValidRequest.CREDENTIAL);
+        assertThat(ValidRequest.INSTANCE.toProtocolBuffer().getAdditionalCredentialsCount())
+                .isZero();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromCredentials_withEmptyList_throwsIllegalArgumentException() {
+        CredentialSaveRequest.fromCredentials(Collections.<Credential>emptyList());
+    }
 }
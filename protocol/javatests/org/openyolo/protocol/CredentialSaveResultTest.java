@@ -20,6 +20,7 @@ package org.openyolo.protocol;
 import static org.assertj.core.api.Java6Assertions.assertThat;
 
 import android.content.Intent;
+import java.util.Arrays;
 import java.util.Map;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -95,4 +96,22 @@ public final class CredentialSaveResultTest {
     public void fromProto_withNullProto_throwsMalformedDataException() throws Exception {
         CredentialSaveResult.fromProtobuf(null);
     }
+
+    @Test
+    public void fromProtobufBytes_withItemResultCodes_preservesItemResultCodes() throws Exception {
+        CredentialSaveResult result =
+                new CredentialSaveResult.Builder(CredentialSaveResult.CODE_SAVED)
+                        .setItemResultCodes(Arrays.asList(
+                                CredentialSaveResult.CODE_SAVED,
+                                CredentialSaveResult.CODE_PROVIDER_REFUSED))
+                        .build();
+
+        CredentialSaveResult decoded =
+                CredentialSaveResult.fromProtobufBytes(result.toProtobuf().toByteArray());
+
+        assertThat(decoded.getItemResultCodes()).containsExactly(
+                CredentialSaveResult.CODE_SAVED,
+                CredentialSaveResult.CODE_PROVIDER_REFUSED);
+        assertThat(ValidResult.INSTANCE.getItemResultCodes()).isEmpty();
+    }
 }
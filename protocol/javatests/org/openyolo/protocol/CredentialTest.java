@@ -315,4 +315,92 @@ public class CredentialTest {
         assertThat(readCredential.getPassword())
                 .isEqualTo(cr.getPassword());
     }
+
+    @Test
+    public void toProtobufBytes_repeatedCalls_areByteForByteStable() throws Exception {
+        Credential credential = ValidFacebookCredential.make();
+        byte[] encoded = credential.toProtobufBytes();
+
+        assertThat(credential.toProtobuf()).isSameAs(credential.toProtobuf());
+        assertThat(encoded).isEqualTo(credential.toProtobuf().toByteArray());
+
+        // each call returns a copy, so that the memoized encoding cannot be modified
+        encoded[0] ^= 1;
+        byte[] reencoded = credential.toProtobufBytes();
+        assertThat(reencoded).isNotSameAs(encoded);
+        encoded[0] ^= 1;
+        assertThat(reencoded).isEqualTo(encoded);
+
+        Parcel parcel = Parcel.obtain();
+        try {
+            credential.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            byte[] parceled = new byte[parcel.readInt()];
+            parcel.readByteArray(parceled);
+            assertThat(parceled).isEqualTo(encoded);
+        } finally {
+            parcel.recycle();
+        }
+
+        Credential decoded = Credential.fromProtoBytes(encoded);
+        assertThat(decoded.toProtobufBytes()).isEqualTo(encoded);
+    }
+
+    @Test
+    public void fromProtobuf_retainsProtobuf() throws Exception {
+        Protobufs.Credential proto = ValidFacebookCredential.make().toProtobuf();
+        Credential credential = Credential.fromProtobuf(proto);
+
+        assertThat(credential.toProtobuf()).isSameAs(proto);
+    }
+
+    @Test
+    public void fromProtobuf_withAdditionalProperties_decodesOnAccess() throws Exception {
+        Protobufs.Credential proto = new Credential.Builder(EMAIL_ID, EMAIL, AUTH_DOMAIN)
+                .setAdditionalPropertyAsString("a", "alpha")
+                .build()
+                .toProtobuf();
+
+        Credential credential = Credential.fromProtobuf(proto);
+        assertThat(credential.getAdditionalPropertyAsString("a")).isEqualTo("alpha");
+        assertThat(credential.getAdditionalProperty("b")).isNull();
+        assertThat(credential.getAdditionalProperties()).containsOnlyKeys("a");
+    }
+
+    @Test
+    public void fromProtobuf_withDisplayPicture_decodesOnAccess() throws Exception {
+        Protobufs.Credential proto = ValidFacebookCredential.make().toProtobuf().toBuilder()
+                .setDisplayPictureUri("https://www.robohash.org/alice")
+                .build();
+
+        Credential credential = Credential.fromProtobuf(proto);
+        assertThat(credential.getDisplayPicture())
+                .isEqualTo(Uri.parse("https://www.robohash.org/alice"));
+        assertThat(credential.getDisplayPicture()).isSameAs(credential.getDisplayPicture());
+    }
+
+    @Test
+    public void fromProtobuf_withInvalidDisplayPicture_treatsPictureAsAbsent() throws Exception {
+        Protobufs.Credential proto = ValidFacebookCredential.make().toProtobuf().toBuilder()
+                .setDisplayPictureUri("ftp://www.robohash.org/alice")
+                .build();
+
+        assertThat(Credential.fromProtobuf(proto).getDisplayPicture()).isNull();
+    }
+
+    @Test(expected = MalformedDataException.class)
+    public void fromProtobuf_withMissingIdentifier_throwsMalformedDataException()
+            throws Exception {
+        Credential.fromProtobuf(ValidFacebookCredential.make().toProtobuf().toBuilder()
+                .clearId()
+                .build());
+    }
+
+    @Test(expected = MalformedDataException.class)
+    public void fromProtobuf_withInvalidAuthDomain_throwsMalformedDataException()
+            throws Exception {
+        Credential.fromProtobuf(ValidFacebookCredential.make().toProtobuf().toBuilder()
+                .setAuthDomain(Protobufs.AuthenticationDomain.newBuilder().setUri("notauri"))
+                .build());
+    }
 }
@@ -311,4 +311,37 @@ public class HintRetrieveRequestTest {
                 .setPasswordSpecification(null)
                 .build();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void toProtocolBufferBytes_repeatedCalls_areByteForByteStable() throws Exception {
+        HintRetrieveRequest request = new HintRetrieveRequest.Builder(AuthenticationMethods.EMAIL)
+                .setTokenProviders(ValidTokenProviderMap.make())
+                .setAdditionalProperties(ValidAdditionalProperties.make())
+                .build();
+        byte[] encoded = request.toProtocolBufferBytes();
+
+        assertThat(request.toProtocolBuffer()).isSameAs(request.toProtocolBuffer());
+        assertThat(encoded).isEqualTo(request.toProtocolBuffer().toByteArray());
+
+        // each call returns a copy, so that the memoized encoding cannot be modified
+        encoded[0] ^= 1;
+        byte[] reencoded = request.toProtocolBufferBytes();
+        assertThat(reencoded).isNotSameAs(encoded);
+        encoded[0] ^= 1;
+        assertThat(reencoded).isEqualTo(encoded);
+
+        Parcel parcel = Parcel.obtain();
+        try {
+            request.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            byte[] parceled = new byte[parcel.readInt()];
+            parcel.readByteArray(parceled);
+            assertThat(parceled).isEqualTo(encoded);
+        } finally {
+            parcel.recycle();
+        }
+
+        HintRetrieveRequest decoded = HintRetrieveRequest.fromProtoBytes(encoded);
+        assertThat(decoded.toProtocolBufferBytes()).isEqualTo(encoded);
+    }
+}
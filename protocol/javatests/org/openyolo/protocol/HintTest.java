@@ -157,4 +157,69 @@ public final class HintTest {
         Hint hint = ValidEmailHint.make();
         assertThat(hint.describeContents()).isEqualTo(0);
     }
+
+    @Test
+    public void toProtobufBytes_repeatedCalls_areByteForByteStable() throws Exception {
+        Hint hint = ValidEmailHint.make();
+        byte[] encoded = hint.toProtobufBytes();
+
+        assertThat(hint.toProtobuf()).isSameAs(hint.toProtobuf());
+        assertThat(encoded).isEqualTo(hint.toProtobuf().toByteArray());
+
+        // each call returns a copy, so that the memoized encoding cannot be modified
+        encoded[0] ^= 1;
+        byte[] reencoded = hint.toProtobufBytes();
+        assertThat(reencoded).isNotSameAs(encoded);
+        encoded[0] ^= 1;
+        assertThat(reencoded).isEqualTo(encoded);
+
+        Parcel parcel = Parcel.obtain();
+        try {
+            hint.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            byte[] parceled = new byte[parcel.readInt()];
+            parcel.readByteArray(parceled);
+            assertThat(parceled).isEqualTo(encoded);
+        } finally {
+            parcel.recycle();
+        }
+
+        Hint decoded = Hint.fromProtobufBytes(encoded);
+        assertThat(decoded.toProtobufBytes()).isEqualTo(encoded);
+    }
+
+    @Test
+    public void fromProtobuf_retainsProtobuf() throws Exception {
+        Protobufs.Hint proto = ValidEmailHint.make().toProtobuf();
+        Hint hint = Hint.fromProtobuf(proto);
+
+        assertThat(hint.toProtobuf()).isSameAs(proto);
+        assertThat(hint.getIdentifier()).isEqualTo(proto.getId());
+    }
+
+    @Test
+    public void fromProtobuf_withInvalidDisplayPicture_treatsPictureAsAbsent() throws Exception {
+        Protobufs.Hint proto = ValidEmailHint.make().toProtobuf().toBuilder()
+                .setDisplayPictureUri("ftp://www.robohash.org/alice")
+                .build();
+
+        assertThat(Hint.fromProtobuf(proto).getDisplayPicture()).isNull();
+    }
+
+    @Test(expected = MalformedDataException.class)
+    public void fromProtobuf_withMissingIdentifier_throwsMalformedDataException()
+            throws Exception {
+        Hint.fromProtobuf(ValidEmailHint.make().toProtobuf().toBuilder().clearId().build());
+    }
+
+    @Test
+    public void builderFromDecodedHint_canAddAdditionalProperties() throws Exception {
+        Hint decoded = Hint.fromProtobuf(ValidEmailHint.make().toProtobuf());
+        Hint hint = new Hint.Builder(decoded)
+                .setAdditionalPropertyAsString("a", "alpha")
+                .build();
+
+        assertThat(hint.getAdditionalPropertyAsString("a")).isEqualTo("alpha");
+        assertThat(hint.getDisplayPicture()).isEqualTo(decoded.getDisplayPicture());
+    }
 }
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.protocol;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.when;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.Signature;
+import android.net.Uri;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Unit tests for {@link PackageIdentityCache}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class PackageIdentityCacheTest {
+
+    private static final String PACKAGE_A = "com.example.a";
+    private static final String PACKAGE_B = "com.example.b";
+    private static final String PACKAGE_C = "com.example.c";
+
+    @Mock
+    private Context mockContext;
+
+    @Mock
+    private PackageManager mockPackageManager;
+
+    private PackageIdentityCache mCache;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(mockContext.getPackageManager()).thenReturn(mockPackageManager);
+        when(mockPackageManager.getPackageInfo(anyString(), anyInt()))
+                .thenThrow(new PackageManager.NameNotFoundException());
+        mCache = new PackageIdentityCache(2);
+    }
+
+    @Test
+    public void getAuthenticationDomain_unchangedPackage_reusesDomain() throws Exception {
+        install(PACKAGE_A, 1L, 1, new byte[] { 1, 2, 3 });
+
+        AuthenticationDomain first = mCache.getAuthenticationDomain(mockContext, PACKAGE_A);
+        AuthenticationDomain second = mCache.getAuthenticationDomain(mockContext, PACKAGE_A);
+
+        assertThat(first).isNotNull();
+        assertThat(first.getAndroidPackageName()).isEqualTo(PACKAGE_A);
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    public void getAuthenticationDomain_matchesUncachedDerivation() throws Exception {
+        byte[] signatureBytes = new byte[] { 1, 2, 3 };
+        install(PACKAGE_A, 1L, 1, signatureBytes);
+
+        assertThat(mCache.getAuthenticationDomain(mockContext, PACKAGE_A))
+                .isEqualTo(AuthenticationDomain.createAndroidAuthDomain(
+                        PACKAGE_A,
+                        new Signature(signatureBytes)));
+    }
+
+    @Test
+    public void getAuthenticationDomain_updatedPackage_recomputesDomain() throws Exception {
+        install(PACKAGE_A, 1L, 1, new byte[] { 1, 2, 3 });
+        AuthenticationDomain original = mCache.getAuthenticationDomain(mockContext, PACKAGE_A);
+
+        install(PACKAGE_A, 2L, 2, new byte[] { 1, 2, 3 });
+        AuthenticationDomain updated = mCache.getAuthenticationDomain(mockContext, PACKAGE_A);
+
+        assertThat(updated).isNotSameAs(original);
+        assertThat(updated).isEqualTo(original);
+    }
+
+    @Test
+    public void getAuthenticationDomain_changedSignature_recomputesDomain() throws Exception {
+        install(PACKAGE_A, 1L, 1, new byte[] { 1, 2, 3 });
+        AuthenticationDomain original = mCache.getAuthenticationDomain(mockContext, PACKAGE_A);
+
+        install(PACKAGE_A, 1L, 1, new byte[] { 4, 5, 6 });
+        AuthenticationDomain resigned = mCache.getAuthenticationDomain(mockContext, PACKAGE_A);
+
+        assertThat(resigned).isNotEqualTo(original);
+    }
+
+    @Test
+    public void getAuthenticationDomain_uninstalledPackage_returnsNullAndEvicts() throws Exception {
+        install(PACKAGE_A, 1L, 1, new byte[] { 1, 2, 3 });
+        mCache.getAuthenticationDomain(mockContext, PACKAGE_A);
+        assertThat(mCache.size()).isEqualTo(1);
+
+        Mockito.doThrow(new PackageManager.NameNotFoundException())
+                .when(mockPackageManager).getPackageInfo(eq(PACKAGE_A), anyInt());
+
+        assertThat(mCache.getAuthenticationDomain(mockContext, PACKAGE_A)).isNull();
+        assertThat(mCache.size()).isZero();
+    }
+
+    @Test
+    public void getAuthenticationDomain_exceedsCapacity_evictsLeastRecentlyUsed()
+            throws Exception {
+        install(PACKAGE_A, 1L, 1, new byte[] { 1 });
+        install(PACKAGE_B, 1L, 1, new byte[] { 2 });
+        install(PACKAGE_C, 1L, 1, new byte[] { 3 });
+
+        AuthenticationDomain domainA = mCache.getAuthenticationDomain(mockContext, PACKAGE_A);
+        AuthenticationDomain domainB = mCache.getAuthenticationDomain(mockContext, PACKAGE_B);
+        mCache.getAuthenticationDomain(mockContext, PACKAGE_A);
+        mCache.getAuthenticationDomain(mockContext, PACKAGE_C);
+
+        assertThat(mCache.size()).isEqualTo(2);
+        assertThat(mCache.getAuthenticationDomain(mockContext, PACKAGE_A)).isSameAs(domainA);
+        assertThat(mCache.getAuthenticationDomain(mockContext, PACKAGE_B)).isNotSameAs(domainB);
+    }
+
+    @Test
+    public void packageBroadcast_invalidatesPackage() throws Exception {
+        mCache.registerPackageChangeReceiver(mockContext);
+        ArgumentCaptor<BroadcastReceiver> receiverCaptor =
+                ArgumentCaptor.forClass(BroadcastReceiver.class);
+        Mockito.verify(mockContext).registerReceiver(
+                receiverCaptor.capture(),
+                Mockito.any(IntentFilter.class));
+
+        install(PACKAGE_A, 1L, 1, new byte[] { 1, 2, 3 });
+        install(PACKAGE_B, 1L, 1, new byte[] { 4, 5, 6 });
+        mCache.getAuthenticationDomain(mockContext, PACKAGE_A);
+        mCache.getAuthenticationDomain(mockContext, PACKAGE_B);
+
+        Intent removed = new Intent(Intent.ACTION_PACKAGE_REMOVED);
+        removed.setData(Uri.parse("package:" + PACKAGE_A));
+        receiverCaptor.getValue().onReceive(mockContext, removed);
+
+        assertThat(mCache.size()).isEqualTo(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getAuthenticationDomain_emptyPackageName_throws() {
+        mCache.getAuthenticationDomain(mockContext, "");
+    }
+
+    private void install(
+            String packageName,
+            long lastUpdateTime,
+            int versionCode,
+            byte[] signatureBytes) throws Exception {
+        PackageInfo packageInfo = new PackageInfo();
+        packageInfo.packageName = packageName;
+        packageInfo.lastUpdateTime = lastUpdateTime;
+        packageInfo.versionCode = versionCode;
+        packageInfo.signatures = new Signature[] { new Signature(signatureBytes) };
+
+        Mockito.doReturn(packageInfo)
+                .when(mockPackageManager)
+                .getPackageInfo(eq(packageName), eq(PackageManager.GET_SIGNATURES));
+    }
+}
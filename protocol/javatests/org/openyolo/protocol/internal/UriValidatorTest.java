@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.protocol.internal;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import android.net.Uri;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Property-based tests for {@link UriValidator}, which check that it accepts exactly the same
+ * strings as the {@link Uri}-based matchers in {@link CustomMatchers}, over a large set of
+ * randomly generated strings that are biased towards the URI delimiter characters.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class UriValidatorTest {
+
+    private static final int ITERATIONS = 20000;
+
+    private static final String ALPHABET = "abhpst019.-_%@:/?#";
+    private static final String HOST_ALPHABET = "abcxyz019.-_";
+    private static final String[] SCHEMES =
+            { "", "http", "https", "android", "HTTPS", "a#b", "a?b", "a/b" };
+    private static final String[] SEPARATORS = { "://", ":/", ":", "//", ":///", "" };
+    private static final String[] SUFFIXES = { "", "/", "/path", "?", "?q=1", "#", "#f", "?q#f" };
+
+    private final Random mRandom = new Random(0x0e9e9010L);
+
+    @Test
+    public void validateAuthorityUri_withRandomStrings_agreesWithUriMatcher() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            String uriStr = (i % 2 == 0) ? randomString() : randomStructuredUri();
+            assertThat(UriValidator.validateAuthorityUri(uriStr) != UriValidator.INVALID)
+                    .as(uriStr)
+                    .isEqualTo(CustomMatchers.isValidAuthenticationDomainUri()
+                            .matches(Uri.parse(uriStr)));
+        }
+    }
+
+    @Test
+    public void validateHierarchicalUri_withRandomStrings_agreesWithUriMatcher() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            String uriStr = (i % 2 == 0) ? randomString() : randomStructuredUri();
+            assertThat(CustomMatchers.isHttpsUriStr().matches(uriStr))
+                    .as(uriStr)
+                    .isEqualTo(CustomMatchers.isHttpsUri().matches(Uri.parse(uriStr)));
+        }
+    }
+
+    @Test
+    public void validate_returnsSchemeSeparator() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            String uriStr = randomStructuredUri();
+            int schemeEnd = UriValidator.validateHierarchicalUri(uriStr);
+            if (schemeEnd != UriValidator.INVALID) {
+                assertThat(uriStr.substring(0, schemeEnd))
+                        .as(uriStr)
+                        .isEqualTo(Uri.parse(uriStr).getScheme());
+            }
+        }
+    }
+
+    @Test
+    public void findHost_withRandomAuthorities_agreesWithUri() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            StringBuilder uriStr = new StringBuilder("android://");
+            if (mRandom.nextBoolean()) {
+                uriStr.append(randomString(HOST_ALPHABET + "@:", 8)).append('@');
+            }
+
+            uriStr.append(randomString(HOST_ALPHABET, 12));
+            if (mRandom.nextBoolean()) {
+                uriStr.append(':').append(randomString("0123456789", 5));
+            }
+
+            String str = uriStr.toString();
+            int schemeEnd = UriValidator.validateAuthorityUri(str);
+            if (schemeEnd == UriValidator.INVALID) {
+                continue;
+            }
+
+            int authorityStart = UriValidator.getAuthorityStart(schemeEnd);
+            int hostStart = UriValidator.findHostStart(str, authorityStart, str.length());
+            int hostEnd = UriValidator.findHostEnd(str, hostStart, str.length());
+            assertThat(str.substring(hostStart, hostEnd))
+                    .as(str)
+                    .isEqualTo(Uri.parse(str).getHost());
+        }
+    }
+
+    @Test
+    public void validateAuthorityUri_withNull_isInvalid() {
+        assertThat(UriValidator.validateAuthorityUri(null)).isEqualTo(UriValidator.INVALID);
+        assertThat(UriValidator.validateHierarchicalUri(null)).isEqualTo(UriValidator.INVALID);
+    }
+
+    @Test
+    public void hasScheme_matchesExactScheme() {
+        String uriStr = "https://www.example.com";
+        int schemeEnd = UriValidator.validateAuthorityUri(uriStr);
+
+        assertThat(UriValidator.hasScheme(uriStr, schemeEnd, "https")).isTrue();
+        assertThat(UriValidator.hasScheme(uriStr, schemeEnd, "http")).isFalse();
+        assertThat(UriValidator.hasScheme(uriStr, schemeEnd, "httpss")).isFalse();
+    }
+
+    private String randomStructuredUri() {
+        return SCHEMES[mRandom.nextInt(SCHEMES.length)]
+                + SEPARATORS[mRandom.nextInt(SEPARATORS.length)]
+                + randomString(ALPHABET, 6)
+                + SUFFIXES[mRandom.nextInt(SUFFIXES.length)];
+    }
+
+    private String randomString() {
+        return randomString(ALPHABET, 16);
+    }
+
+    private String randomString(String alphabet, int maxLength) {
+        int length = mRandom.nextInt(maxLength + 1);
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(mRandom.nextInt(alphabet.length())));
+        }
+
+        return builder.toString();
+    }
+}
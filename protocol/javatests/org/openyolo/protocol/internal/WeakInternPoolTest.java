@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.protocol.internal;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Unit tests for {@link WeakInternPool}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class WeakInternPoolTest {
+
+    @Test
+    public void get_withUnknownKey_returnsNull() {
+        WeakInternPool<Object> pool = new WeakInternPool<>();
+        assertThat(pool.get("a")).isNull();
+    }
+
+    @Test
+    public void intern_withUnknownKey_returnsProvidedInstance() {
+        WeakInternPool<Object> pool = new WeakInternPool<>();
+        Object value = new Object();
+
+        assertThat(pool.intern("a", value)).isSameAs(value);
+        assertThat(pool.get("a")).isSameAs(value);
+        assertThat(pool.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void intern_withKnownKey_returnsCanonicalInstance() {
+        WeakInternPool<Object> pool = new WeakInternPool<>();
+        Object canonical = new Object();
+        pool.intern("a", canonical);
+
+        assertThat(pool.intern("a", new Object())).isSameAs(canonical);
+        assertThat(pool.intern(new String("a"), new Object())).isSameAs(canonical);
+        assertThat(pool.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void intern_withDistinctKeys_retainsBoth() {
+        WeakInternPool<Object> pool = new WeakInternPool<>();
+        Object first = new Object();
+        Object second = new Object();
+
+        assertThat(pool.intern("a", first)).isSameAs(first);
+        assertThat(pool.intern("b", second)).isSameAs(second);
+        assertThat(pool.get("a")).isSameAs(first);
+        assertThat(pool.get("b")).isSameAs(second);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.spi;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.util.Log;
+import com.google.bbq.BaseBroadcastQueryReceiver;
+import com.google.bbq.Protobufs.BroadcastQuery;
+import com.google.bbq.QueryResponseSender;
+import org.openyolo.protocol.AuthenticationDomain;
+import org.openyolo.protocol.HintRetrieveRequest;
+import org.openyolo.protocol.MalformedDataException;
+import org.openyolo.protocol.Protobufs.HintAvailabilityBbqResponse;
+
+/**
+ * Partial implementation of an OpenYOLO hint availability query receiver, that should be
+ * extended by providers. Answering these queries allows clients to omit the provider from the
+ * hint flow when it has no hints for the requested authentication methods, rather than starting
+ * its hint activity. This implementation handles basic validation and decoding of the request
+ * before handing it to
+ * {@link #hasHintsAvailable(Context, BroadcastQuery, HintRetrieveRequest, AuthenticationDomain)}.
+ *
+ * <p>The receiver must be declared in the provider's manifest with an intent filter for the
+ * {@link org.openyolo.protocol.ProtocolConstants#HINT_AVAILABILITY_DATA_TYPE hint availability
+ * data type} action, and the {@code com.google.bbq.QUERY} category.
+ */
+public abstract class BaseHintQueryReceiver extends BaseBroadcastQueryReceiver {
+
+    /**
+     * Creates a receiver that will log errors to the specified log tag.
+     */
+    public BaseHintQueryReceiver(String logTag) {
+        super(logTag);
+    }
+
+    @Override
+    protected void processQuery(@NonNull Context context, @NonNull BroadcastQuery query) {
+        QueryResponseSender responseSender = new QueryResponseSender(context);
+
+        HintRetrieveRequest request;
+        try {
+            request = HintRetrieveRequest.fromProtoBytes(query.getQueryMessage().toByteArray());
+        } catch (MalformedDataException ex) {
+            Log.w(mLogTag, "Hint request message failed field validation", ex);
+            responseSender.sendResponse(query, null);
+            return;
+        }
+
+        AuthenticationDomain requestorDomain =
+                AuthenticationDomain.fromPackageName(context, query.getRequestingApp());
+
+        // Ensure the authentication domain of the requesting app can be determined
+        if (null == requestorDomain) {
+            Log.w(mLogTag, "Unable to determine the authentication domain of the requesting app");
+            responseSender.sendResponse(query, null);
+            return;
+        }
+
+        boolean hintsAvailable = hasHintsAvailable(context, query, request, requestorDomain);
+        responseSender.sendResponse(
+                query,
+                HintAvailabilityBbqResponse.newBuilder()
+                        .setHintsAvailable(hintsAvailable)
+                        .build()
+                        .toByteArray());
+    }
+
+    /**
+     * Determines whether the provider has hints available for the request. This is invoked on
+     * the main thread, and should not block: it should be answerable from data that does not
+     * require the provider's store to be unlocked.
+     */
+    protected abstract boolean hasHintsAvailable(
+            @NonNull Context context,
+            @NonNull BroadcastQuery query,
+            @NonNull HintRetrieveRequest request,
+            @NonNull AuthenticationDomain requestorDomain);
+}
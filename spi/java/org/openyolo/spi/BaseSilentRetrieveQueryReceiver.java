@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 The OpenYOLO Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openyolo.spi;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import com.google.bbq.BaseBroadcastQueryReceiver;
+import com.google.bbq.Protobufs.BroadcastQuery;
+import com.google.bbq.QueryResponseSender;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.openyolo.protocol.AuthenticationDomain;
+import org.openyolo.protocol.Credential;
+import org.openyolo.protocol.CredentialRetrieveRequest;
+import org.openyolo.protocol.MalformedDataException;
+import org.openyolo.protocol.Protobufs.SilentRetrieveBbqRequest;
+import org.openyolo.protocol.Protobufs.SilentRetrieveBbqResponse;
+
+/**
+ * Partial implementation of an OpenYOLO silent retrieve query receiver, that may be extended by
+ * providers. Answering these queries allows a returning user to be signed in without any
+ * activity being started, when the provider holds exactly one credential for the requesting app
+ * and the request does not require user mediation. This implementation handles decoding and
+ * validation of the request, and checking the domain of the returned credential, around
+ * {@link #retrieveSilently(Context, BroadcastQuery, CredentialRetrieveRequest,
+ * AuthenticationDomain)}.
+ *
+ * <p>The returned credential is not encrypted. Clients only send this query to providers they
+ * trust, and this is the only protection the credential has.
+ *
+ * <p>The receiver must be declared in the provider's manifest with an intent filter for the
+ * {@link org.openyolo.protocol.ProtocolConstants#SILENT_RETRIEVE_DATA_TYPE silent retrieve data
+ * type} action, and the {@code com.google.bbq.QUERY} category. Providers that do not declare it
+ * are never asked for credentials silently.
+ */
+public abstract class BaseSilentRetrieveQueryReceiver extends BaseBroadcastQueryReceiver {
+
+    /**
+     * Creates a receiver that will log errors to the specified log tag.
+     */
+    public BaseSilentRetrieveQueryReceiver(String logTag) {
+        super(logTag);
+    }
+
+    @Override
+    protected void processQuery(@NonNull Context context, @NonNull BroadcastQuery query) {
+        QueryResponseSender responseSender = new QueryResponseSender(context);
+
+        SilentRetrieveBbqRequest silentRequest;
+        CredentialRetrieveRequest request;
+        try {
+            silentRequest = SilentRetrieveBbqRequest.parseFrom(query.getQueryMessage());
+            request = CredentialRetrieveRequest.fromProtobuf(silentRequest.getRequest());
+        } catch (InvalidProtocolBufferException | MalformedDataException ex) {
+            Log.w(mLogTag, "Silent retrieve request message failed field validation", ex);
+            responseSender.sendResponse(query, null);
+            return;
+        }
+
+        SilentRetrieveBbqResponse.Builder response = SilentRetrieveBbqResponse.newBuilder();
+
+        // a request requiring user mediation must never be answered silently
+        if (request.getRequireUserMediation()) {
+            responseSender.sendResponse(query, response.build().toByteArray());
+            return;
+        }
+
+        AuthenticationDomain requestorDomain =
+                AuthenticationDomain.fromPackageName(context, query.getRequestingApp());
+
+        // Ensure the authentication domain of the requesting app can be determined
+        if (null == requestorDomain) {
+            Log.w(mLogTag, "Unable to determine the authentication domain of the requesting app");
+            responseSender.sendResponse(query, null);
+            return;
+        }
+
+        Credential credential = retrieveSilently(context, query, request, requestorDomain);
+        if (credential != null) {
+            if (requestorDomain.equals(credential.getAuthenticationDomain())) {
+                response.setCredential(credential.toProtobuf());
+            } else {
+                Log.w(mLogTag, "Refusing to silently return a credential for another domain");
+            }
+        }
+
+        responseSender.sendResponse(query, response.build().toByteArray());
+    }
+
+    /**
+     * Returns the single credential to be returned silently to the requesting app, or null if
+     * the provider will not do so. Null should be returned unless the provider holds exactly
+     * one credential matching the request for the requestor's authentication domain, and the
+     * user has permitted automatic sign-in to the app; this is how a provider opts out per app.
+     * This is invoked on the main thread, and should not block.
+     */
+    @Nullable
+    protected abstract Credential retrieveSilently(
+            @NonNull Context context,
+            @NonNull BroadcastQuery query,
+            @NonNull CredentialRetrieveRequest request,
+            @NonNull AuthenticationDomain requestorDomain);
+}